@@ -0,0 +1,60 @@
+package com.cyecize.gatewayserver.benchmarks;
+
+import com.cyecize.gatewayserver.api.http.HttpHead;
+import com.cyecize.gatewayserver.api.http.HttpHeadParser;
+import com.cyecize.gatewayserver.constants.General;
+import com.cyecize.gatewayserver.error.CannotParseRequestException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finding the lines of a request head and copying it out of the read buffer, done once per request.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpHeadParserBenchmark {
+
+    @Param({"small", "large"})
+    private String head;
+
+    private byte[] bytes;
+
+    private HttpHeadParser parser;
+
+    @Setup
+    public void setUp() {
+        this.bytes = RequestHeads.create(this.head);
+        this.parser = new HttpHeadParser(General.MAX_HEAD_SIZE, General.MAX_HEAD_LINES);
+    }
+
+    @Benchmark
+    public HttpHead parse() throws CannotParseRequestException {
+        this.parser.reset(0);
+        final int headEnd = this.parser.scan(this.bytes, this.bytes.length);
+        return this.parser.toHead(this.bytes, headEnd);
+    }
+
+    /**
+     * Decoding every line, for comparison with reading header fields straight from the bytes.
+     */
+    @Benchmark
+    public List<String> parseAndDecodeLines() throws CannotParseRequestException {
+        return this.parse().getLines();
+    }
+}
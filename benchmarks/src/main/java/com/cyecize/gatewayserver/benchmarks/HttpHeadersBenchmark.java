@@ -0,0 +1,67 @@
+package com.cyecize.gatewayserver.benchmarks;
+
+import com.cyecize.gatewayserver.api.http.HttpHead;
+import com.cyecize.gatewayserver.api.http.HttpHeadParser;
+import com.cyecize.gatewayserver.api.http.HttpHeaders;
+import com.cyecize.gatewayserver.constants.General;
+import com.cyecize.gatewayserver.error.CannotParseRequestException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Indexing the header fields of a head and reading the ones that every request needs for routing and framing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpHeadersBenchmark {
+
+    @Param({"small", "large"})
+    private String head;
+
+    private HttpHead httpHead;
+
+    @Setup
+    public void setUp() throws CannotParseRequestException {
+        final byte[] bytes = RequestHeads.create(this.head);
+        final HttpHeadParser parser = new HttpHeadParser(General.MAX_HEAD_SIZE, General.MAX_HEAD_LINES);
+        this.httpHead = parser.toHead(bytes, parser.scan(bytes, bytes.length));
+    }
+
+    @Benchmark
+    public HttpHeaders index() {
+        return new HttpHeaders(this.httpHead);
+    }
+
+    @Benchmark
+    public void indexAndRead(Blackhole blackhole) {
+        final HttpHeaders headers = new HttpHeaders(this.httpHead);
+        blackhole.consume(headers.getHost());
+        blackhole.consume(headers.getConnection());
+        blackhole.consume(headers.isChunked());
+        blackhole.consume(headers.getContentLength());
+    }
+
+    /**
+     * A field that is not one of the indexed ones, like the cache and compression look up.
+     */
+    @Benchmark
+    public String readOtherField() {
+        return this.httpHead.getHeaders().get("Accept-Encoding");
+    }
+}
@@ -0,0 +1,156 @@
+package com.cyecize.gatewayserver.benchmarks;
+
+import com.cyecize.gatewayserver.api.buffer.BufferPool;
+import com.cyecize.gatewayserver.constants.General;
+import com.cyecize.gatewayserver.util.RelayUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Body relay between two loopback connections, the way the blocking engine moves a body from a client to
+ * a destination. A producer thread keeps the source full and a consumer thread drains the target, so the
+ * relay itself is what is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RelayBenchmark {
+
+    /**
+     * Channels relay through pooled direct buffers, streams through a heap array, e.g. for TLS sockets.
+     */
+    @Param({"channels", "streams"})
+    private String mode;
+
+    @Param({"65536", "1048576"})
+    private int bodySize;
+
+    private final BufferPool bufferPool = new BufferPool(
+            General.DEFAULT_BUFFER_POOL_MAX_MEMORY_BYTES,
+            General.DEFAULT_BUFFER_POOL_MAX_IDLE_BYTES,
+            General.DEFAULT_BUFFER_POOL_THREAD_CACHE_SIZE
+    );
+
+    private SocketPair sourcePair;
+
+    private SocketPair targetPair;
+
+    private Thread producer;
+
+    private Thread consumer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        this.sourcePair = SocketPair.open();
+        this.targetPair = SocketPair.open();
+
+        if ("streams".equals(this.mode)) {
+            // A read timeout makes the relay fall back to streams.
+            this.sourcePair.local.setSoTimeout(60000);
+        }
+
+        this.producer = startDaemon("Relay Producer", () -> {
+            final byte[] bytes = new byte[64 * 1024];
+            final OutputStream outputStream = this.sourcePair.remote.getOutputStream();
+            while (true) {
+                outputStream.write(bytes);
+            }
+        });
+
+        this.consumer = startDaemon("Relay Consumer", () -> {
+            final byte[] bytes = new byte[64 * 1024];
+            final InputStream inputStream = this.targetPair.remote.getInputStream();
+            while (inputStream.read(bytes) >= 0) {
+                // Discard.
+            }
+        });
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        this.sourcePair.close();
+        this.targetPair.close();
+        this.producer.interrupt();
+        this.consumer.interrupt();
+    }
+
+    /**
+     * Score times body size is the throughput in bytes.
+     */
+    @Benchmark
+    public long relay() throws IOException {
+        return RelayUtils.relay(this.sourcePair.local, this.targetPair.local, this.bodySize, this.bufferPool);
+    }
+
+    private static Thread startDaemon(String name, IoRunnable runnable) {
+        final Thread thread = new Thread(() -> {
+            try {
+                runnable.run();
+            } catch (IOException ignored) {
+                // Closed by tear down.
+            }
+        }, name);
+        thread.setDaemon(true);
+        thread.start();
+
+        return thread;
+    }
+
+    private interface IoRunnable {
+        void run() throws IOException;
+    }
+
+    /**
+     * Connected loopback sockets, the local one is backed by a blocking channel like accepted client sockets.
+     */
+    private static class SocketPair {
+        private final Socket local;
+
+        private final Socket remote;
+
+        private SocketPair(Socket local, Socket remote) {
+            this.local = local;
+            this.remote = remote;
+        }
+
+        static SocketPair open() throws IOException {
+            try (ServerSocketChannel server = ServerSocketChannel.open()) {
+                server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+
+                final Socket remote = new Socket(InetAddress.getLoopbackAddress(), server.socket().getLocalPort());
+                final SocketChannel local = server.accept();
+
+                return new SocketPair(local.socket(), remote);
+            }
+        }
+
+        void close() throws IOException {
+            this.local.close();
+            this.remote.close();
+        }
+    }
+}
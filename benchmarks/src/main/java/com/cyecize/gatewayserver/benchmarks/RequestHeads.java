@@ -0,0 +1,43 @@
+package com.cyecize.gatewayserver.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Request heads of typical sizes, a plain API call and a browser request with cookies.
+ */
+class RequestHeads {
+    private static final String SMALL = "GET /api/users/42 HTTP/1.1\r\n"
+            + "Host: api.example.com\r\n"
+            + "User-Agent: curl/8.4.0\r\n"
+            + "Accept: */*\r\n"
+            + "\r\n";
+
+    static byte[] create(String size) {
+        if ("small".equals(size)) {
+            return SMALL.getBytes(StandardCharsets.ISO_8859_1);
+        }
+
+        final StringBuilder head = new StringBuilder()
+                .append("GET /static/js/app.3f2c1a.js?version=1700000000 HTTP/1.1\r\n")
+                .append("Host: www.example.com\r\n")
+                .append("User-Agent: Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko) ")
+                .append("Chrome/120.0.0.0 Safari/537.36\r\n")
+                .append("Accept: text/html,application/xhtml+xml,application/xml;q=0.9,image/avif,*/*;q=0.8\r\n")
+                .append("Accept-Encoding: gzip, deflate, br\r\n")
+                .append("Accept-Language: en-US,en;q=0.9,bg;q=0.8\r\n")
+                .append("Connection: keep-alive\r\n")
+                .append("Referer: https://www.example.com/products/category/shoes?page=3\r\n");
+
+        for (int i = 0; i < 40; i++) {
+            head.append("X-Forwarded-Header-").append(i).append(": value-").append(i).append("-abcdefghij\r\n");
+        }
+
+        head.append("Cookie: ");
+        for (int i = 0; i < 30; i++) {
+            head.append("cookie").append(i).append("=").append("0123456789abcdef0123456789abcdef; ");
+        }
+        head.append("session=deadbeef\r\n\r\n");
+
+        return head.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,107 @@
+package com.cyecize.gatewayserver.benchmarks;
+
+import com.cyecize.gatewayserver.api.balancing.DestinationGroup;
+import com.cyecize.gatewayserver.api.balancing.LoadBalancingStrategy;
+import com.cyecize.gatewayserver.api.metrics.RouteMetrics;
+import com.cyecize.gatewayserver.api.options.DestinationOption;
+import com.cyecize.gatewayserver.api.options.RouteOption;
+import com.cyecize.gatewayserver.api.routing.RoutingTable;
+import com.cyecize.gatewayserver.api.server.Scheme;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Host lookups in tables of different sizes. Every third route is HTTPS only, so that lookups over plain HTTP
+ * go through the scheme filtering of those hosts as well.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoutingTableBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    private int routeCount;
+
+    private RoutingTable routingTable;
+
+    private String exactHost;
+
+    private String subdomainHost;
+
+    private String wildcardHost;
+
+    private String httpsOnlyHost;
+
+    @Setup
+    public void setUp() {
+        final List<RouteOption> routeOptions = new ArrayList<>();
+        for (int i = 0; i < this.routeCount; i++) {
+            routeOptions.add(createRoute("site" + i + ".example.com", i % 3 == 0 ? Scheme.HTTPS : Scheme.ALL));
+        }
+        routeOptions.add(createRoute("*.apps.example.com", Scheme.ALL));
+
+        this.routingTable = RoutingTable.compile(routeOptions, List.of(), RouteMetrics::new);
+
+        final int middle = this.routeCount / 2;
+        final int visibleOverHttp = middle % 3 == 0 ? middle + 1 : middle;
+        this.exactHost = "site" + visibleOverHttp + ".example.com";
+        this.subdomainHost = "WWW.site" + visibleOverHttp + ".example.com:8080";
+        this.wildcardHost = "billing.apps.example.com";
+        this.httpsOnlyHost = "site0.example.com";
+    }
+
+    @Benchmark
+    public DestinationGroup exact() {
+        return this.routingTable.resolve(this.exactHost, false);
+    }
+
+    @Benchmark
+    public DestinationGroup subdomainWithPort() {
+        return this.routingTable.resolve(this.subdomainHost, false);
+    }
+
+    @Benchmark
+    public DestinationGroup wildcard() {
+        return this.routingTable.resolve(this.wildcardHost, false);
+    }
+
+    @Benchmark
+    public DestinationGroup schemeMismatch() {
+        return this.routingTable.resolve(this.httpsOnlyHost, false);
+    }
+
+    @Benchmark
+    public DestinationGroup miss() {
+        return this.routingTable.resolve("unknown.example.org", false);
+    }
+
+    private static RouteOption createRoute(String host, Scheme scheme) {
+        final RouteOption routeOption = new RouteOption();
+        routeOption.setHost(host);
+        routeOption.setSubdomains(List.of("www"));
+        routeOption.setScheme(scheme);
+        routeOption.setDestinations(List.of(new DestinationOption("127.0.0.1", 8080)));
+        routeOption.setLoadBalancing(LoadBalancingStrategy.ROUND_ROBIN);
+        routeOption.setCacheResponses(false);
+        routeOption.setCompressResponses(false);
+        routeOption.setClientConnectionsPerSecond(0D);
+
+        return routeOption;
+    }
+}
@@ -0,0 +1,39 @@
+package com.cyecize.gatewayserver.benchmarks;
+
+import com.cyecize.gatewayserver.api.server.Scheme;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scheme compatibility checks, done while filtering routes for a connection.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SchemeBenchmark {
+
+    private final Scheme[] schemes = Scheme.values();
+
+    private boolean isSsl;
+
+    @Benchmark
+    public void isCompatibleWith(Blackhole blackhole) {
+        this.isSsl = !this.isSsl;
+        for (Scheme scheme : this.schemes) {
+            blackhole.consume(scheme.isCompatibleWith(this.isSsl));
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.cyecize.gatewayserver.loadtest;
+
+import com.cyecize.gatewayserver.api.buffer.BufferPool;
+import com.cyecize.gatewayserver.api.http.HttpHead;
+import com.cyecize.gatewayserver.api.http.HttpHeadReader;
+import com.cyecize.gatewayserver.api.http.HttpHeaders;
+import com.cyecize.gatewayserver.util.HttpProtocolUtils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Sends requests one after another over a keep-alive connection, reconnecting whenever the gateway closes it.
+ * Latencies are kept as they are, so that percentiles are exact.
+ */
+class LoadClient implements Runnable {
+    private static final int SO_TIMEOUT_MILLIS = 30000;
+
+    private final LoadTestOptions options;
+
+    private final int gatewayPort;
+
+    private final int clientIndex;
+
+    private final BufferPool bufferPool;
+
+    private final byte[] discardBuffer = new byte[16 * 1024];
+
+    private volatile boolean isRecording;
+
+    private volatile boolean isStopped;
+
+    private long[] latencies = new long[1024];
+
+    private int latencyCount;
+
+    private long errors;
+
+    private Socket socket;
+
+    private HttpHeadReader reader;
+
+    LoadClient(LoadTestOptions options, int gatewayPort, int clientIndex, BufferPool bufferPool) {
+        this.options = options;
+        this.gatewayPort = gatewayPort;
+        this.clientIndex = clientIndex;
+        this.bufferPool = bufferPool;
+    }
+
+    @Override
+    public void run() {
+        for (long index = this.clientIndex; !this.isStopped; index += this.options.clients) {
+            final String path = this.options.createPath(index);
+            final long startNanos = System.nanoTime();
+            try {
+                this.exchange(path);
+                if (this.isRecording) {
+                    this.record(System.nanoTime() - startNanos);
+                }
+            } catch (IOException ex) {
+                if (this.isRecording && !this.isStopped) {
+                    this.errors++;
+                }
+                this.disconnect();
+            }
+        }
+
+        this.disconnect();
+    }
+
+    void startRecording() {
+        this.isRecording = true;
+    }
+
+    void stop() {
+        this.isRecording = false;
+        this.isStopped = true;
+    }
+
+    /**
+     * Only valid after the client thread has ended.
+     */
+    long[] getLatencies() {
+        return Arrays.copyOf(this.latencies, this.latencyCount);
+    }
+
+    long getErrors() {
+        return this.errors;
+    }
+
+    private void exchange(String path) throws IOException {
+        if (this.socket == null) {
+            this.socket = new Socket(InetAddress.getLoopbackAddress(), this.gatewayPort);
+            this.socket.setTcpNoDelay(true);
+            this.socket.setSoTimeout(SO_TIMEOUT_MILLIS);
+            this.reader = new HttpHeadReader(this.socket.getInputStream(), this.bufferPool);
+        }
+
+        final OutputStream outputStream = this.socket.getOutputStream();
+        outputStream.write(String.format(
+                "GET %s HTTP/1.1\r\nHost: %s\r\nUser-Agent: gateway-load-test\r\n\r\n", path, LoadTest.ROUTE_HOST
+        ).getBytes(StandardCharsets.ISO_8859_1));
+
+        final HttpHead head = this.reader.readHead();
+        final int statusCode = HttpProtocolUtils.getStatusCode(head.getLine(0));
+        final HttpHeaders headers = head.getHeaders();
+
+        if (headers.hasContentLength()) {
+            this.discard(headers.getContentLength());
+        } else if (headers.isChunked()) {
+            this.discardChunked();
+        } else {
+            this.discard(Long.MAX_VALUE);
+        }
+
+        if (statusCode != 200) {
+            throw new IOException("Unexpected status " + statusCode);
+        }
+
+        if ("close".equalsIgnoreCase(headers.getConnection()) || !headers.hasContentLength()
+                && headers.getTransferEncoding() == null) {
+            this.disconnect();
+        }
+    }
+
+    private void discardChunked() throws IOException {
+        long chunkSize;
+        do {
+            chunkSize = Long.parseLong(this.reader.readLine().trim(), 16);
+            if (chunkSize > 0) {
+                this.discard(chunkSize);
+                this.reader.readLine();
+            }
+        } while (chunkSize > 0);
+
+        while (!this.reader.readLine().isEmpty()) {
+            // Trailer fields.
+        }
+    }
+
+    /**
+     * @param length number of bytes or {@link Long#MAX_VALUE} to read until the connection is closed.
+     */
+    private void discard(long length) throws IOException {
+        long remaining = length - this.reader.drainTo(OutputStream.nullOutputStream(), length);
+
+        final InputStream inputStream = this.socket.getInputStream();
+        while (remaining > 0) {
+            final int read = inputStream.read(
+                    this.discardBuffer, 0, (int) Math.min(this.discardBuffer.length, remaining)
+            );
+            if (read < 0) {
+                if (length == Long.MAX_VALUE) {
+                    return;
+                }
+                throw new EOFException("Response body ended early.");
+            }
+            remaining -= read;
+        }
+    }
+
+    private void record(long nanos) {
+        if (this.latencyCount == this.latencies.length) {
+            this.latencies = Arrays.copyOf(this.latencies, this.latencies.length * 2);
+        }
+        this.latencies[this.latencyCount++] = nanos;
+    }
+
+    private void disconnect() {
+        if (this.socket == null) {
+            return;
+        }
+
+        try {
+            this.socket.close();
+        } catch (IOException ignored) {
+            // Nothing to do.
+        }
+        this.socket = null;
+        this.reader.release();
+        this.reader = null;
+    }
+}
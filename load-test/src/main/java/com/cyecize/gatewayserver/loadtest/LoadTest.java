@@ -0,0 +1,199 @@
+package com.cyecize.gatewayserver.loadtest;
+
+import com.cyecize.gatewayserver.AppStartUp;
+import com.cyecize.gatewayserver.api.buffer.BufferPool;
+import com.cyecize.gatewayserver.constants.General;
+import com.cyecize.ioc.MagicInjector;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Starts stub backends and the gateway in this JVM, puts load on the gateway and reports throughput, latency
+ * percentiles, threads and heap. Everything runs on loopback, so the results depend only on this machine.
+ * <p>
+ * Exits with 1 if a threshold given in the arguments is not met, which allows gating releases on regressions.
+ */
+public class LoadTest {
+    static final String THREAD_PREFIX = "load-test-";
+
+    static final String ROUTE_HOST = "load.test";
+
+    private static final int GATEWAY_START_TIMEOUT_MILLIS = 30000;
+
+    public static void main(String[] args) throws Exception {
+        final LoadTestOptions options = LoadTestOptions.parse(args);
+        Thread.currentThread().setName(THREAD_PREFIX + "main");
+        System.out.println("Load test: " + options);
+
+        // Kept apart from the pool of the gateway, so that its memory limit only counts the buffers of the gateway.
+        final BufferPool bufferPool = new BufferPool(
+                General.DEFAULT_BUFFER_POOL_MAX_MEMORY_BYTES,
+                General.DEFAULT_BUFFER_POOL_MAX_IDLE_BYTES,
+                General.DEFAULT_BUFFER_POOL_THREAD_CACHE_SIZE
+        );
+
+        final List<StubBackend> backends = new ArrayList<>();
+        for (int i = 0; i < options.backends; i++) {
+            backends.add(new StubBackend(bufferPool));
+        }
+
+        final ResourceSampler sampler = new ResourceSampler();
+        final int gatewayPort = startGateway(options, backends);
+        System.out.printf("Gateway started on port %d with %d threads.%n", gatewayPort, sampler.getGatewayThreads());
+
+        final List<LoadClient> clients = new ArrayList<>();
+        final List<Thread> clientThreads = new ArrayList<>();
+        for (int i = 0; i < options.clients; i++) {
+            final LoadClient client = new LoadClient(options, gatewayPort, i, bufferPool);
+            final Thread thread = new Thread(client, THREAD_PREFIX + "client-" + i);
+            thread.setDaemon(true);
+            clients.add(client);
+            clientThreads.add(thread);
+            thread.start();
+        }
+
+        TimeUnit.SECONDS.sleep(options.warmupSeconds);
+
+        final Thread samplerThread = new Thread(sampler, THREAD_PREFIX + "sampler");
+        samplerThread.setDaemon(true);
+        samplerThread.start();
+
+        clients.forEach(LoadClient::startRecording);
+        final long startNanos = System.nanoTime();
+        TimeUnit.SECONDS.sleep(options.durationSeconds);
+        clients.forEach(LoadClient::stop);
+        final long elapsedNanos = System.nanoTime() - startNanos;
+
+        for (Thread thread : clientThreads) {
+            thread.join();
+        }
+        sampler.stop();
+
+        final boolean isPassed = report(options, clients, sampler, elapsedNanos);
+        System.exit(isPassed ? 0 : 1);
+    }
+
+    private static int startGateway(LoadTestOptions options, List<StubBackend> backends) throws Exception {
+        final int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+
+        final List<Map<String, Object>> destinations = new ArrayList<>();
+        for (StubBackend backend : backends) {
+            destinations.add(Map.of("host", "127.0.0.1", "port", backend.getPort()));
+        }
+
+        final Map<String, Object> route = new LinkedHashMap<>();
+        route.put("host", ROUTE_HOST);
+        route.put("destinations", destinations);
+
+        final Map<String, Object> gatewayOptions = new LinkedHashMap<>();
+        gatewayOptions.put("httpPort", port);
+        gatewayOptions.put("startHttps", false);
+        gatewayOptions.put("threadPoolSize", options.threadPoolSize);
+        gatewayOptions.put("minThreadPoolSize", General.MIN_THREAD_POOL_SIZE);
+        gatewayOptions.put("serverEngine", options.engine.name());
+        gatewayOptions.put("watchOptionsFile", false);
+        gatewayOptions.put("upstreamPoolOptions", Map.of("maxTotalPerDestination", options.clients * 2));
+        gatewayOptions.put("routeOptions", List.of(route));
+
+        final File optionsFile = File.createTempFile("gateway-load-test", ".json");
+        optionsFile.deleteOnExit();
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(optionsFile, gatewayOptions);
+
+        System.setProperty(General.ENV_VAR_OPTIONS_FILE_NAME, optionsFile.getAbsolutePath());
+        MagicInjector.run(AppStartUp.class);
+
+        awaitPort(port);
+        return port;
+    }
+
+    private static void awaitPort(int port) throws InterruptedException, IOException {
+        final long deadline = System.currentTimeMillis() + GATEWAY_START_TIMEOUT_MILLIS;
+        while (true) {
+            try {
+                new Socket(InetAddress.getLoopbackAddress(), port).close();
+                return;
+            } catch (IOException ex) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IOException("Gateway did not start listening on port " + port, ex);
+                }
+                Thread.sleep(50);
+            }
+        }
+    }
+
+    private static boolean report(LoadTestOptions options,
+                                  List<LoadClient> clients,
+                                  ResourceSampler sampler,
+                                  long elapsedNanos) {
+        long errors = 0;
+        int count = 0;
+        for (LoadClient client : clients) {
+            errors += client.getErrors();
+            count += client.getLatencies().length;
+        }
+
+        final long[] latencies = new long[count];
+        int offset = 0;
+        for (LoadClient client : clients) {
+            final long[] clientLatencies = client.getLatencies();
+            System.arraycopy(clientLatencies, 0, latencies, offset, clientLatencies.length);
+            offset += clientLatencies.length;
+        }
+        Arrays.sort(latencies);
+
+        final double seconds = elapsedNanos / 1e9;
+        final double requestsPerSecond = latencies.length / seconds;
+        final double p99Millis = percentileMillis(latencies, 0.99);
+
+        System.out.println();
+        System.out.printf("Requests:          %d in %.1f s, %d errors%n", latencies.length, seconds, errors);
+        System.out.printf("Throughput:        %.1f requests/s%n", requestsPerSecond);
+        System.out.printf("Latency p50:       %.3f ms%n", percentileMillis(latencies, 0.50));
+        System.out.printf("Latency p99:       %.3f ms%n", p99Millis);
+        System.out.printf("Latency p999:      %.3f ms%n", percentileMillis(latencies, 0.999));
+        System.out.printf("Latency max:       %.3f ms%n", percentileMillis(latencies, 1));
+        System.out.printf("Gateway threads:   %d max%n", sampler.getMaxGatewayThreads());
+        System.out.printf("Heap used:         %d MB max, %d MB after GC%n",
+                sampler.getMaxHeapUsed() >> 20, sampler.getHeapUsedAfterGc() >> 20
+        );
+
+        boolean isPassed = true;
+        if (options.minRequestsPerSecond >= 0 && requestsPerSecond < options.minRequestsPerSecond) {
+            System.out.printf("FAILED: throughput below %.1f requests/s%n", options.minRequestsPerSecond);
+            isPassed = false;
+        }
+        if (options.maxP99Millis >= 0 && p99Millis > options.maxP99Millis) {
+            System.out.printf("FAILED: p99 latency above %.3f ms%n", options.maxP99Millis);
+            isPassed = false;
+        }
+        if (options.maxErrors >= 0 && errors > options.maxErrors) {
+            System.out.printf("FAILED: more than %d errors%n", options.maxErrors);
+            isPassed = false;
+        }
+
+        return isPassed;
+    }
+
+    private static double percentileMillis(long[] sortedLatencies, double percentile) {
+        if (sortedLatencies.length == 0) {
+            return 0;
+        }
+
+        final int index = (int) Math.ceil(percentile * sortedLatencies.length) - 1;
+        return sortedLatencies[Math.max(index, 0)] / 1e6;
+    }
+}
@@ -0,0 +1,94 @@
+package com.cyecize.gatewayserver.loadtest;
+
+import com.cyecize.gatewayserver.api.server.ServerEngine;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Settings of a run, given as key=value arguments, e.g. clients=128 duration=60 scenario=mixed.
+ */
+class LoadTestOptions {
+    int clients = 64;
+
+    int warmupSeconds = 5;
+
+    int durationSeconds = 30;
+
+    /**
+     * One of fixed, chunked, slow, close or mixed.
+     */
+    String scenario = "fixed";
+
+    int bodySize = 1024;
+
+    int slowMillis = 20;
+
+    int backends = 2;
+
+    ServerEngine engine = ServerEngine.BLOCKING;
+
+    int threadPoolSize = 200;
+
+    /**
+     * Thresholds that fail the run, negative values disable them.
+     */
+    double minRequestsPerSecond = -1;
+
+    double maxP99Millis = -1;
+
+    long maxErrors = -1;
+
+    static LoadTestOptions parse(String[] args) {
+        final Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            final int separator = arg.indexOf('=');
+            if (separator < 1) {
+                throw new IllegalArgumentException(String.format("Expected key=value, got '%s'.", arg));
+            }
+            values.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+
+        final LoadTestOptions options = new LoadTestOptions();
+        options.clients = Integer.parseInt(values.getOrDefault("clients", "" + options.clients));
+        options.warmupSeconds = Integer.parseInt(values.getOrDefault("warmup", "" + options.warmupSeconds));
+        options.durationSeconds = Integer.parseInt(values.getOrDefault("duration", "" + options.durationSeconds));
+        options.scenario = values.getOrDefault("scenario", options.scenario);
+        options.bodySize = Integer.parseInt(values.getOrDefault("size", "" + options.bodySize));
+        options.slowMillis = Integer.parseInt(values.getOrDefault("slowMillis", "" + options.slowMillis));
+        options.backends = Integer.parseInt(values.getOrDefault("backends", "" + options.backends));
+        options.engine = ServerEngine.valueOf(values.getOrDefault("engine", options.engine.name()));
+        options.threadPoolSize = Integer.parseInt(values.getOrDefault("threads", "" + options.threadPoolSize));
+        options.minRequestsPerSecond = Double.parseDouble(
+                values.getOrDefault("minRps", "" + options.minRequestsPerSecond)
+        );
+        options.maxP99Millis = Double.parseDouble(values.getOrDefault("maxP99Millis", "" + options.maxP99Millis));
+        options.maxErrors = Long.parseLong(values.getOrDefault("maxErrors", "" + options.maxErrors));
+
+        return options;
+    }
+
+    /**
+     * @param index sequence number of the request, so that the mixed scenario rotates through every response.
+     */
+    String createPath(long index) {
+        final String scenario = "mixed".equals(this.scenario)
+                ? StubBackend.SCENARIOS[(int) (index % StubBackend.SCENARIOS.length)]
+                : this.scenario;
+
+        if ("slow".equals(scenario)) {
+            return String.format("/slow/%d/%d", this.bodySize, this.slowMillis);
+        }
+
+        return String.format("/%s/%d", scenario, this.bodySize);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "clients=%d warmup=%ds duration=%ds scenario=%s size=%d slowMillis=%d backends=%d engine=%s threads=%d",
+                this.clients, this.warmupSeconds, this.durationSeconds, this.scenario, this.bodySize,
+                this.slowMillis, this.backends, this.engine, this.threadPoolSize
+        );
+    }
+}
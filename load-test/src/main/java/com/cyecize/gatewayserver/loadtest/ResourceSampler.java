@@ -0,0 +1,73 @@
+package com.cyecize.gatewayserver.loadtest;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+/**
+ * Samples the threads of the gateway and the heap of the JVM while the load runs.
+ * Threads of the harness itself are recognized by their name and left out.
+ */
+class ResourceSampler implements Runnable {
+    private static final int INTERVAL_MILLIS = 100;
+
+    private final MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+
+    private final int baselineThreads;
+
+    private volatile int maxGatewayThreads;
+
+    private volatile long maxHeapUsed;
+
+    private volatile boolean isStopped;
+
+    /**
+     * Threads that exist before the gateway is started, like the ones of the JVM, are not counted.
+     */
+    ResourceSampler() {
+        this.baselineThreads = countForeignThreads();
+    }
+
+    @Override
+    public void run() {
+        while (!this.isStopped) {
+            this.maxGatewayThreads = Math.max(this.maxGatewayThreads, countForeignThreads() - this.baselineThreads);
+            this.maxHeapUsed = Math.max(this.maxHeapUsed, this.memoryBean.getHeapMemoryUsage().getUsed());
+
+            try {
+                Thread.sleep(INTERVAL_MILLIS);
+            } catch (InterruptedException ex) {
+                return;
+            }
+        }
+    }
+
+    void stop() {
+        this.isStopped = true;
+    }
+
+    int getGatewayThreads() {
+        return countForeignThreads() - this.baselineThreads;
+    }
+
+    int getMaxGatewayThreads() {
+        return this.maxGatewayThreads;
+    }
+
+    long getMaxHeapUsed() {
+        return this.maxHeapUsed;
+    }
+
+    /**
+     * Heap that is still referenced, e.g. by pools and caches of the gateway.
+     */
+    long getHeapUsedAfterGc() {
+        System.gc();
+        return this.memoryBean.getHeapMemoryUsage().getUsed();
+    }
+
+    private static int countForeignThreads() {
+        return (int) Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> !thread.getName().startsWith(LoadTest.THREAD_PREFIX))
+                .count();
+    }
+}
@@ -0,0 +1,158 @@
+package com.cyecize.gatewayserver.loadtest;
+
+import com.cyecize.gatewayserver.api.buffer.BufferPool;
+import com.cyecize.gatewayserver.api.http.HttpHead;
+import com.cyecize.gatewayserver.api.http.HttpHeadReader;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal HTTP/1.1 server on loopback that answers with generated bodies, a thread per connection.
+ * <p>
+ * /fixed/{size} - body with a content length.
+ * /chunked/{size} - body in chunks of up to 8 KB.
+ * /slow/{size}/{millis} - waits before answering like /fixed.
+ * /close/{size} - body delimited by closing the connection.
+ */
+class StubBackend implements Closeable {
+    static final String[] SCENARIOS = {"fixed", "chunked", "slow", "close"};
+
+    private static final int CHUNK_SIZE = 8192;
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private final ServerSocket serverSocket;
+
+    private final BufferPool bufferPool;
+
+    private final ExecutorService connectionExecutor = Executors.newCachedThreadPool(runnable -> {
+        final Thread thread = new Thread(runnable, LoadTest.THREAD_PREFIX + "backend-" + THREAD_COUNTER.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final byte[] filler = new byte[CHUNK_SIZE];
+
+    StubBackend(BufferPool bufferPool) throws IOException {
+        this.serverSocket = new ServerSocket(0, 1024, InetAddress.getLoopbackAddress());
+        this.bufferPool = bufferPool;
+        Arrays.fill(this.filler, (byte) 'x');
+
+        this.connectionExecutor.execute(this::acceptLoop);
+    }
+
+    int getPort() {
+        return this.serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.serverSocket.close();
+        this.connectionExecutor.shutdownNow();
+    }
+
+    private void acceptLoop() {
+        while (!this.serverSocket.isClosed()) {
+            try {
+                final Socket socket = this.serverSocket.accept();
+                this.connectionExecutor.execute(() -> this.serve(socket));
+            } catch (IOException ex) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            final HttpHeadReader reader = new HttpHeadReader(socket.getInputStream(), this.bufferPool);
+            final OutputStream outputStream = new BufferedOutputStream(socket.getOutputStream(), CHUNK_SIZE * 2);
+
+            while (true) {
+                final HttpHead head = reader.readHead();
+                if (!this.respond(head.getLine(0), outputStream)) {
+                    return;
+                }
+            }
+        } catch (IOException ex) {
+            // Connection was closed by the gateway.
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return false if the connection has to be closed.
+     */
+    private boolean respond(String requestLine, OutputStream outputStream) throws IOException, InterruptedException {
+        final String[] segments = requestLine.split(" ")[1].split("/");
+        final String scenario = segments[1];
+        final int size = Integer.parseInt(segments[2]);
+
+        switch (scenario) {
+            case "slow":
+                Thread.sleep(Integer.parseInt(segments[3]));
+                this.writeFixed(outputStream, size);
+                return true;
+            case "chunked":
+                this.writeChunked(outputStream, size);
+                return true;
+            case "close":
+                outputStream.write(ascii("HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nConnection: close\r\n\r\n"));
+                this.writeFiller(outputStream, size);
+                outputStream.flush();
+                return false;
+            default:
+                this.writeFixed(outputStream, size);
+                return true;
+        }
+    }
+
+    private void writeFixed(OutputStream outputStream, int size) throws IOException {
+        outputStream.write(ascii(String.format(
+                "HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nContent-Length: %d\r\n\r\n", size
+        )));
+        this.writeFiller(outputStream, size);
+        outputStream.flush();
+    }
+
+    private void writeChunked(OutputStream outputStream, int size) throws IOException {
+        outputStream.write(ascii("HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nTransfer-Encoding: chunked\r\n\r\n"));
+
+        int remaining = size;
+        while (remaining > 0) {
+            final int chunk = Math.min(remaining, CHUNK_SIZE);
+            outputStream.write(ascii(Integer.toHexString(chunk) + "\r\n"));
+            outputStream.write(this.filler, 0, chunk);
+            outputStream.write(ascii("\r\n"));
+            remaining -= chunk;
+        }
+
+        outputStream.write(ascii("0\r\n\r\n"));
+        outputStream.flush();
+    }
+
+    private void writeFiller(OutputStream outputStream, int size) throws IOException {
+        int remaining = size;
+        while (remaining > 0) {
+            final int count = Math.min(remaining, this.filler.length);
+            outputStream.write(this.filler, 0, count);
+            remaining -= count;
+        }
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.ISO_8859_1);
+    }
+}
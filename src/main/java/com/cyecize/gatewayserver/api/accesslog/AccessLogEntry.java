@@ -0,0 +1,46 @@
+package com.cyecize.gatewayserver.api.accesslog;
+
+import com.cyecize.gatewayserver.api.http.HttpHead;
+
+import java.net.InetAddress;
+
+/**
+ * Slot of the access log buffer, filled in by a request thread and formatted by the writer.
+ * Only references and numbers are copied on the request thread, everything is decoded by the writer.
+ */
+class AccessLogEntry {
+    long timestampMillis;
+
+    InetAddress client;
+
+    /**
+     * Null if the connection was turned away before its request was read.
+     */
+    HttpHead requestHead;
+
+    String route;
+
+    int statusCode;
+
+    long bytesIn;
+
+    long bytesOut;
+
+    long timeToFirstByteNanos;
+
+    /**
+     * The most bytes of pooled buffers that the exchange held at once.
+     */
+    long bufferedBytes;
+
+    long totalNanos;
+
+    /**
+     * Drops the references, so that heads do not outlive their requests while the slot waits for reuse.
+     */
+    void clear() {
+        this.client = null;
+        this.requestHead = null;
+        this.route = null;
+    }
+}
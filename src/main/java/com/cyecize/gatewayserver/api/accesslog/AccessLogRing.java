@@ -0,0 +1,99 @@
+package com.cyecize.gatewayserver.api.accesslog;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded buffer of preallocated entries, filled by any number of request threads and emptied by a single writer.
+ * <p>
+ * Every slot has a sequence number that tells whose turn it is. A request thread claims the next position with
+ * a single compare-and-set, fills in the entry and publishes it by advancing the sequence, the writer frees the
+ * slot for the next lap the same way. Nobody ever holds a lock, so a request thread is only delayed by other
+ * threads claiming a position at the same moment, and nothing is allocated after startup.
+ */
+class AccessLogRing {
+    private final AccessLogEntry[] entries;
+
+    /**
+     * Equals the position for a free slot, the position + 1 for a published one.
+     */
+    private final AtomicLongArray sequences;
+
+    private final int mask;
+
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Position of the next entry to write, only used by the writer.
+     */
+    private long head;
+
+    /**
+     * @param capacity rounded up to a power of two.
+     */
+    AccessLogRing(int capacity) {
+        final int size = capacity <= 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+
+        this.entries = new AccessLogEntry[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+
+        for (int i = 0; i < size; i++) {
+            this.entries[i] = new AccessLogEntry();
+            this.sequences.set(i, i);
+        }
+    }
+
+    /**
+     * @return position of a slot for the caller to fill in and {@link #publish}, -1 if the buffer is full.
+     */
+    long tryClaim() {
+        long position = this.tail.get();
+        while (true) {
+            final long difference = this.sequences.get(this.index(position)) - position;
+            if (difference == 0) {
+                if (this.tail.compareAndSet(position, position + 1)) {
+                    return position;
+                }
+                position = this.tail.get();
+            } else if (difference < 0) {
+                // The slot still holds the entry of the previous lap.
+                return -1;
+            } else {
+                position = this.tail.get();
+            }
+        }
+    }
+
+    AccessLogEntry get(long position) {
+        return this.entries[this.index(position)];
+    }
+
+    void publish(long position) {
+        this.sequences.lazySet(this.index(position), position + 1);
+    }
+
+    /**
+     * Called by the writer only.
+     *
+     * @return the oldest published entry or null if there is none.
+     */
+    AccessLogEntry peek() {
+        final int index = this.index(this.head);
+        return this.sequences.get(index) == this.head + 1 ? this.entries[index] : null;
+    }
+
+    /**
+     * Called by the writer only, once it is done with the entry returned by {@link #peek}.
+     */
+    void remove() {
+        final int index = this.index(this.head);
+        this.entries[index].clear();
+        this.sequences.lazySet(index, this.head + this.entries.length);
+        this.head++;
+    }
+
+    private int index(long position) {
+        return (int) position & this.mask;
+    }
+}
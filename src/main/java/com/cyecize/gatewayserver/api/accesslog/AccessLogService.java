@@ -0,0 +1,31 @@
+package com.cyecize.gatewayserver.api.accesslog;
+
+import com.cyecize.gatewayserver.api.balancing.DestinationGroup;
+import com.cyecize.gatewayserver.api.connection.Exchange;
+import com.cyecize.gatewayserver.api.server.Connection;
+
+public interface AccessLogService {
+    /**
+     * Records an exchange once it is over, with the status of the response that the destination sent.
+     */
+    void record(Exchange exchange);
+
+    /**
+     * Records an exchange that the gateway answered itself, e.g. with 502 after the destination failed.
+     */
+    void record(Exchange exchange, int statusCode);
+
+    /**
+     * Records a request that was answered without a destination, e.g. from the cache or by turning it away.
+     *
+     * @param route      null if the request did not match a route or was not read.
+     * @param statusCode 0 if the connection was closed without a response.
+     * @param startNanos when the gateway started working on the request.
+     */
+    void record(Connection clientConn, DestinationGroup route, int statusCode, long bytesOut, long startNanos);
+
+    /**
+     * @return number of entries that were left out because the writer could not keep up.
+     */
+    long getDroppedCount();
+}
@@ -0,0 +1,305 @@
+package com.cyecize.gatewayserver.api.accesslog;
+
+import com.cyecize.gatewayserver.api.balancing.DestinationGroup;
+import com.cyecize.gatewayserver.api.connection.Exchange;
+import com.cyecize.gatewayserver.api.http.HttpHead;
+import com.cyecize.gatewayserver.api.options.AccessLogOptions;
+import com.cyecize.gatewayserver.api.options.Options;
+import com.cyecize.gatewayserver.api.server.Connection;
+import com.cyecize.gatewayserver.constants.General;
+import com.cyecize.ioc.annotations.Service;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Request threads only copy a few references and numbers into a slot of a preallocated buffer. A single writer
+ * thread formats the entries as JSON lines and writes them in batches, so that neither formatting nor the disk
+ * ever holds up relaying.
+ */
+@Slf4j
+@Service
+public class AccessLogServiceImpl implements AccessLogService {
+    private static final int BATCH_SIZE_CHARS = 32 * 1024;
+
+    private static final String NO_VALUE = "-";
+
+    private final AccessLogOptions accessLogOptions;
+
+    /**
+     * Null while the access log is disabled.
+     */
+    private final AccessLogRing ring;
+
+    private final boolean isBlocking;
+
+    private final LongAdder droppedEntries = new LongAdder();
+
+    private volatile boolean isRunning;
+
+    private Thread writerThread;
+
+    private boolean isFailing;
+
+    public AccessLogServiceImpl(Options options) {
+        this.accessLogOptions = options.getAccessLogOptions();
+        this.isBlocking = this.accessLogOptions.getOverflowPolicy() == OverflowPolicy.BLOCK;
+        this.ring = this.accessLogOptions.getEnabled() ? this.start() : null;
+    }
+
+    @Override
+    public void record(Exchange exchange) {
+        if (this.ring != null) {
+            this.record(exchange, exchange.getStatusCode());
+        }
+    }
+
+    @Override
+    public void record(Exchange exchange, int statusCode) {
+        final long position = this.claim();
+        if (position < 0) {
+            return;
+        }
+
+        final AccessLogEntry entry = this.ring.get(position);
+        this.fill(entry, exchange.getClientConnection(), exchange.getRoute(), statusCode, exchange.getStartNanos());
+        entry.bytesIn = exchange.getBytesIn();
+        entry.bytesOut = exchange.getBytesOut();
+        entry.timeToFirstByteNanos = exchange.getTimeToFirstByteNanos();
+        entry.bufferedBytes = exchange.getMemoryAccount().getPeak();
+
+        this.ring.publish(position);
+    }
+
+    @Override
+    public void record(Connection clientConn, DestinationGroup route, int statusCode, long bytesOut, long startNanos) {
+        final long position = this.claim();
+        if (position < 0) {
+            return;
+        }
+
+        final AccessLogEntry entry = this.ring.get(position);
+        this.fill(entry, clientConn, route, statusCode, startNanos);
+        entry.bytesIn = entry.requestHead == null ? 0 : entry.requestHead.getSize();
+        entry.bytesOut = bytesOut;
+        entry.timeToFirstByteNanos = -1;
+        entry.bufferedBytes = 0;
+
+        this.ring.publish(position);
+    }
+
+    @Override
+    public long getDroppedCount() {
+        return this.droppedEntries.sum();
+    }
+
+    private AccessLogRing start() {
+        final RollingFileWriter fileWriter;
+        try {
+            fileWriter = new RollingFileWriter(
+                    Path.of(this.accessLogOptions.getFileName()),
+                    this.accessLogOptions.getMaxFileSizeBytes(),
+                    this.accessLogOptions.getMaxFiles()
+            );
+        } catch (IOException ex) {
+            log.error("Could not open access log {}, access logging is disabled.",
+                    this.accessLogOptions.getFileName(), ex
+            );
+            return null;
+        }
+
+        final AccessLogRing ring = new AccessLogRing(this.accessLogOptions.getBufferSize());
+
+        this.isRunning = true;
+        this.writerThread = new Thread(() -> this.runWriter(ring, fileWriter), "Access Log Writer Thread");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(this::stop, "Access Log Shutdown Thread"));
+
+        log.info("Writing access log to {}, {} entries are buffered.",
+                this.accessLogOptions.getFileName(), this.accessLogOptions.getBufferSize()
+        );
+        return ring;
+    }
+
+    /**
+     * Lets the writer finish the entries that are buffered, so that the last requests are not lost.
+     */
+    private void stop() {
+        this.isRunning = false;
+        LockSupport.unpark(this.writerThread);
+
+        try {
+            this.writerThread.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return position of a slot to fill in, -1 if the entry is left out.
+     */
+    private long claim() {
+        if (this.ring == null) {
+            return -1;
+        }
+
+        long position = this.ring.tryClaim();
+        while (position < 0 && this.isBlocking && this.isRunning) {
+            LockSupport.parkNanos(General.ACCESS_LOG_FULL_PARK_NANOS);
+            position = this.ring.tryClaim();
+        }
+
+        if (position < 0) {
+            this.droppedEntries.increment();
+        }
+        return position;
+    }
+
+    private void fill(AccessLogEntry entry, Connection clientConn, DestinationGroup route, int statusCode,
+                      long startNanos) {
+        entry.timestampMillis = System.currentTimeMillis();
+        entry.totalNanos = System.nanoTime() - startNanos;
+        entry.client = clientConn.getSocket().getInetAddress();
+        entry.requestHead = clientConn.isHeadRead() ? clientConn.getHead() : null;
+        entry.route = route == null ? null : route.getMetrics().getRoute();
+        entry.statusCode = statusCode;
+    }
+
+    private void runWriter(AccessLogRing ring, RollingFileWriter fileWriter) {
+        final StringBuilder batch = new StringBuilder(BATCH_SIZE_CHARS * 2);
+
+        while (true) {
+            // Read before draining, so that entries published before stopping are still written.
+            final boolean isRunning = this.isRunning;
+
+            AccessLogEntry entry;
+            while ((entry = ring.peek()) != null) {
+                appendEntry(batch, entry);
+                ring.remove();
+
+                if (batch.length() >= BATCH_SIZE_CHARS) {
+                    this.write(fileWriter, batch);
+                }
+            }
+
+            this.write(fileWriter, batch);
+            this.flush(fileWriter);
+
+            if (!isRunning) {
+                break;
+            }
+            LockSupport.parkNanos(General.ACCESS_LOG_IDLE_PARK_NANOS);
+        }
+
+        try {
+            fileWriter.close();
+        } catch (IOException ex) {
+            log.warn("Could not close access log. {}", ex.getMessage());
+        }
+    }
+
+    private void write(RollingFileWriter fileWriter, StringBuilder batch) {
+        if (batch.length() == 0) {
+            return;
+        }
+
+        final byte[] bytes = batch.toString().getBytes(StandardCharsets.UTF_8);
+        batch.setLength(0);
+
+        try {
+            fileWriter.write(bytes, 0, bytes.length);
+            this.isFailing = false;
+        } catch (IOException ex) {
+            this.onFailure(ex);
+        }
+    }
+
+    private void flush(RollingFileWriter fileWriter) {
+        try {
+            fileWriter.flush();
+        } catch (IOException ex) {
+            this.onFailure(ex);
+        }
+    }
+
+    /**
+     * Failures are logged once until writing succeeds again, so that a full disk does not flood the log.
+     */
+    private void onFailure(IOException ex) {
+        if (!this.isFailing) {
+            log.error("Could not write access log, entries are lost until it works again. {}", ex.getMessage());
+            this.isFailing = true;
+        }
+    }
+
+    private static void appendEntry(StringBuilder line, AccessLogEntry entry) {
+        final HttpHead head = entry.requestHead;
+
+        line.append("{\"time\":\"");
+        DateTimeFormatter.ISO_INSTANT.formatTo(Instant.ofEpochMilli(entry.timestampMillis), line);
+        line.append("\",\"client\":\"").append(entry.client.getHostAddress());
+        appendString(line.append("\",\"host\":\""), head == null ? null : head.getHeaders().getHost());
+        appendString(line.append("\",\"route\":\""), entry.route);
+        appendString(line.append("\",\"request\":\""), head == null ? null : head.getLine(0));
+        line.append("\",\"status\":").append(entry.statusCode);
+        line.append(",\"bytesIn\":").append(entry.bytesIn);
+        line.append(",\"bytesOut\":").append(entry.bytesOut);
+        line.append(",\"bufferedBytes\":").append(entry.bufferedBytes);
+        line.append(",\"upstreamMillis\":");
+        if (entry.timeToFirstByteNanos < 0) {
+            line.append("null");
+        } else {
+            appendMillis(line, entry.timeToFirstByteNanos);
+        }
+        line.append(",\"totalMillis\":");
+        appendMillis(line, entry.totalNanos);
+        line.append("}\n");
+    }
+
+    /**
+     * Escapes what JSON requires, request lines are decoded as ISO-8859-1 and may contain anything.
+     */
+    private static void appendString(StringBuilder line, String value) {
+        if (value == null) {
+            line.append(NO_VALUE);
+            return;
+        }
+
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c < 0x20 || c == 0x7F) {
+                line.append(String.format("\\u%04x", (int) c));
+            } else {
+                line.append(c);
+            }
+        }
+    }
+
+    /**
+     * Millis with microsecond precision, without going through floating point formatting.
+     */
+    private static void appendMillis(StringBuilder line, long nanos) {
+        final long micros = Math.max(nanos, 0) / 1000;
+        final long fraction = micros % 1000;
+
+        line.append(micros / 1000).append('.');
+        if (fraction < 100) {
+            line.append('0');
+        }
+        if (fraction < 10) {
+            line.append('0');
+        }
+        line.append(fraction);
+    }
+}
@@ -0,0 +1,16 @@
+package com.cyecize.gatewayserver.api.accesslog;
+
+/**
+ * What a request thread does when the access log buffer is full, because the file cannot keep up.
+ */
+public enum OverflowPolicy {
+    /**
+     * The entry is left out and counted, so that relaying never waits for the log.
+     */
+    DROP,
+
+    /**
+     * The request thread waits for the writer to make room, so that no entry is lost.
+     */
+    BLOCK
+}
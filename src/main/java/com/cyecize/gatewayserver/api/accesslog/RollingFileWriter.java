@@ -0,0 +1,97 @@
+package com.cyecize.gatewayserver.api.accesslog;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends to a file and rolls it over to "name.1" once it grows past a size, older files move up by one and the
+ * oldest one is deleted. Only used by the access log writer thread.
+ */
+class RollingFileWriter implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path path;
+
+    private final long maxFileSizeBytes;
+
+    private final int maxFiles;
+
+    private OutputStream outputStream;
+
+    private long size;
+
+    /**
+     * @param maxFiles rolled over files that are kept, 0 to start over with an empty file.
+     */
+    RollingFileWriter(Path path, long maxFileSizeBytes, int maxFiles) throws IOException {
+        this.path = path.toAbsolutePath();
+        this.maxFileSizeBytes = maxFileSizeBytes;
+        this.maxFiles = maxFiles;
+
+        Files.createDirectories(this.path.getParent());
+        this.open();
+    }
+
+    /**
+     * Writes are not split between files, so that every line ends up whole in one of them.
+     */
+    void write(byte[] bytes, int offset, int length) throws IOException {
+        if (this.size > 0 && this.size + length > this.maxFileSizeBytes) {
+            this.roll();
+        }
+
+        this.outputStream.write(bytes, offset, length);
+        this.size += length;
+    }
+
+    void flush() throws IOException {
+        this.outputStream.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.outputStream.close();
+    }
+
+    private void open() throws IOException {
+        this.outputStream = new BufferedOutputStream(Files.newOutputStream(
+                this.path, StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE
+        ), BUFFER_SIZE);
+        this.size = Files.size(this.path);
+    }
+
+    private void roll() throws IOException {
+        this.outputStream.close();
+
+        try {
+            this.moveFiles();
+        } finally {
+            this.open();
+        }
+    }
+
+    private void moveFiles() throws IOException {
+        if (this.maxFiles < 1) {
+            Files.delete(this.path);
+        } else {
+            Files.deleteIfExists(this.getRolledPath(this.maxFiles));
+            for (int i = this.maxFiles - 1; i >= 1; i--) {
+                final Path rolled = this.getRolledPath(i);
+                if (Files.exists(rolled)) {
+                    Files.move(rolled, this.getRolledPath(i + 1), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.move(this.path, this.getRolledPath(1), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private Path getRolledPath(int index) {
+        return this.path.resolveSibling(this.path.getFileName() + "." + index);
+    }
+}
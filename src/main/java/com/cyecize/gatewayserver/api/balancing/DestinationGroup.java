@@ -0,0 +1,117 @@
+package com.cyecize.gatewayserver.api.balancing;
+
+import com.cyecize.gatewayserver.api.connection.DestinationDto;
+import com.cyecize.gatewayserver.api.health.DestinationHealth;
+import com.cyecize.gatewayserver.api.metrics.RouteMetrics;
+import com.cyecize.gatewayserver.api.server.Scheme;
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * Destinations of a single route and the balancer that spreads requests between them.
+ * <p>
+ * Unavailable destinations are filtered out once per change of health, not on every request. When none are
+ * available, all of them are used, since refusing every request would not be any better.
+ */
+public class DestinationGroup {
+    @Getter
+    private final Scheme scheme;
+
+    private final DestinationDto[] destinations;
+
+    private final LoadBalancer balancer;
+
+    @Getter
+    private final RouteMetrics metrics;
+
+    private final boolean isCacheEnabled;
+
+    private final boolean isCompressionEnabled;
+
+    @Getter
+    private final double clientConnectionsPerSecond;
+
+    @Getter
+    private final int maxClientConnections;
+
+    private volatile AvailableDestinations available;
+
+    public DestinationGroup(Scheme scheme,
+                            DestinationDto[] destinations,
+                            LoadBalancer balancer,
+                            RouteMetrics metrics,
+                            boolean isCacheEnabled,
+                            boolean isCompressionEnabled,
+                            double clientConnectionsPerSecond,
+                            int maxClientConnections) {
+        if (destinations.length == 0) {
+            throw new IllegalArgumentException("Destination group must not be empty.");
+        }
+
+        this.scheme = scheme;
+        this.destinations = destinations;
+        this.balancer = balancer;
+        this.metrics = metrics;
+        this.isCacheEnabled = isCacheEnabled;
+        this.isCompressionEnabled = isCompressionEnabled;
+        this.clientConnectionsPerSecond = clientConnectionsPerSecond;
+        this.maxClientConnections = maxClientConnections;
+        this.available = new AvailableDestinations(-1, destinations);
+    }
+
+    /**
+     * @return true if responses of the route may be answered from the response cache.
+     */
+    public boolean isCacheEnabled() {
+        return this.isCacheEnabled;
+    }
+
+    public boolean isCompressionEnabled() {
+        return this.isCompressionEnabled;
+    }
+
+    public DestinationDto choose() {
+        if (this.destinations.length == 1) {
+            return this.destinations[0];
+        }
+
+        final DestinationDto[] candidates = this.getAvailable();
+        if (candidates.length == 1) {
+            return candidates[0];
+        }
+
+        return this.balancer.choose(candidates);
+    }
+
+    private DestinationDto[] getAvailable() {
+        // Read before filtering, a change that happens meanwhile leaves the result stale and it is filtered again.
+        final long generation = DestinationHealth.getGeneration();
+
+        AvailableDestinations available = this.available;
+        if (available.generation != generation) {
+            DestinationDto[] filtered = Arrays.stream(this.destinations)
+                    .filter(d -> d.getHealth().isAvailable())
+                    .toArray(DestinationDto[]::new);
+            if (filtered.length == 0) {
+                filtered = this.destinations;
+            }
+
+            available = new AvailableDestinations(generation, filtered);
+            this.available = available;
+        }
+
+        return available.destinations;
+    }
+
+    private static class AvailableDestinations {
+        private final long generation;
+
+        private final DestinationDto[] destinations;
+
+        AvailableDestinations(long generation, DestinationDto[] destinations) {
+            this.generation = generation;
+            this.destinations = destinations;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.cyecize.gatewayserver.api.balancing;
+
+import com.cyecize.gatewayserver.constants.General;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free counters that load balancers read to compare destinations.
+ */
+public class DestinationStats {
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    private final AtomicLong latencyEwmaNanos = new AtomicLong();
+
+    public void onExchangeStarted() {
+        this.outstanding.incrementAndGet();
+    }
+
+    public void onExchangeCompleted() {
+        this.outstanding.decrementAndGet();
+    }
+
+    /**
+     * The first sample is taken as is, later ones are blended into the moving average.
+     */
+    public void recordLatency(long nanos) {
+        this.latencyEwmaNanos.accumulateAndGet(
+                Math.max(nanos, 1),
+                (average, sample) -> average == 0
+                        ? sample
+                        : average + ((sample - average) >> General.LATENCY_EWMA_SHIFT)
+        );
+    }
+
+    /**
+     * @return number of exchanges that were started but not completed yet.
+     */
+    public int getOutstanding() {
+        return this.outstanding.get();
+    }
+
+    /**
+     * @return moving average of the latency or 0 if nothing was recorded yet.
+     */
+    public long getLatencyEwmaNanos() {
+        return this.latencyEwmaNanos.get();
+    }
+}
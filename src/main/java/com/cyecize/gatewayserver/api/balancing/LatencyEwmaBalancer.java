@@ -0,0 +1,33 @@
+package com.cyecize.gatewayserver.api.balancing;
+
+import com.cyecize.gatewayserver.api.connection.DestinationDto;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks the destination with the lowest expected wait, the latency average multiplied by the exchanges that
+ * would be in progress with the new one. Destinations without samples score zero, so each of them is tried
+ * before the averages are compared.
+ */
+class LatencyEwmaBalancer implements LoadBalancer {
+
+    @Override
+    public DestinationDto choose(DestinationDto[] destinations) {
+        final int start = ThreadLocalRandom.current().nextInt(destinations.length);
+
+        DestinationDto best = null;
+        long bestScore = Long.MAX_VALUE;
+        for (int i = 0; i < destinations.length; i++) {
+            final DestinationDto destination = destinations[(start + i) % destinations.length];
+            final DestinationStats stats = destination.getStats();
+
+            final long score = stats.getLatencyEwmaNanos() * (stats.getOutstanding() + 1);
+            if (score < bestScore) {
+                best = destination;
+                bestScore = score;
+            }
+        }
+
+        return best;
+    }
+}
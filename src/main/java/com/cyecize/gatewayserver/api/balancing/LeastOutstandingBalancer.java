@@ -0,0 +1,30 @@
+package com.cyecize.gatewayserver.api.balancing;
+
+import com.cyecize.gatewayserver.api.connection.DestinationDto;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks the destination with the fewest exchanges in progress.
+ * The scan starts at a random index, so that ties do not always go to the first destination.
+ */
+class LeastOutstandingBalancer implements LoadBalancer {
+
+    @Override
+    public DestinationDto choose(DestinationDto[] destinations) {
+        final int start = ThreadLocalRandom.current().nextInt(destinations.length);
+
+        DestinationDto best = null;
+        int bestOutstanding = Integer.MAX_VALUE;
+        for (int i = 0; i < destinations.length; i++) {
+            final DestinationDto destination = destinations[(start + i) % destinations.length];
+            final int outstanding = destination.getStats().getOutstanding();
+            if (outstanding < bestOutstanding) {
+                best = destination;
+                bestOutstanding = outstanding;
+            }
+        }
+
+        return best;
+    }
+}
@@ -0,0 +1,13 @@
+package com.cyecize.gatewayserver.api.balancing;
+
+import com.cyecize.gatewayserver.api.connection.DestinationDto;
+
+/**
+ * Picks one of the destinations of a route. Called concurrently, so implementations must not lock.
+ */
+public interface LoadBalancer {
+    /**
+     * @param destinations non-empty array.
+     */
+    DestinationDto choose(DestinationDto[] destinations);
+}
@@ -0,0 +1,22 @@
+package com.cyecize.gatewayserver.api.balancing;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+
+import java.util.function.Supplier;
+
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public enum LoadBalancingStrategy {
+    ROUND_ROBIN(RoundRobinBalancer::new),
+    LEAST_OUTSTANDING(LeastOutstandingBalancer::new),
+    LATENCY_EWMA(LatencyEwmaBalancer::new);
+
+    private final Supplier<LoadBalancer> factory;
+
+    /**
+     * @return new balancer, since balancers may keep state per route.
+     */
+    public LoadBalancer createBalancer() {
+        return this.factory.get();
+    }
+}
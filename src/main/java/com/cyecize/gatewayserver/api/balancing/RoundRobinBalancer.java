@@ -0,0 +1,14 @@
+package com.cyecize.gatewayserver.api.balancing;
+
+import com.cyecize.gatewayserver.api.connection.DestinationDto;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+class RoundRobinBalancer implements LoadBalancer {
+    private final AtomicInteger next = new AtomicInteger();
+
+    @Override
+    public DestinationDto choose(DestinationDto[] destinations) {
+        return destinations[Math.floorMod(this.next.getAndIncrement(), destinations.length)];
+    }
+}
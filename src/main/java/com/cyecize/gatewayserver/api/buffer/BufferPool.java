@@ -0,0 +1,310 @@
+package com.cyecize.gatewayserver.api.buffer;
+
+import com.cyecize.gatewayserver.constants.General;
+import com.cyecize.gatewayserver.error.MemoryLimitExceededException;
+
+import java.lang.ref.Cleaner;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToIntFunction;
+
+/**
+ * Heap arrays and direct buffers in power of two size classes, shared by everything that parses and relays.
+ * <p>
+ * Every thread keeps a few buffers of each class for itself, so that a buffer that is given back by the thread
+ * that took it, like the one of a relay, only touches shared state to be counted. Other buffers go to a queue of
+ * their class. Buffers are only kept, by threads or in queues, as long as the idle memory stays below a limit.
+ * Buffers in use are counted against a limit, past which no buffers are handed out, so that slow clients cannot
+ * make the gateway buffer without bound.
+ * Larger buffers than the largest class are counted as well, but not pooled.
+ */
+public class BufferPool {
+    private static final int MIN_SIZE_SHIFT = Integer.numberOfTrailingZeros(General.BUFFER_POOL_MIN_SIZE);
+
+    private static final int CLASS_COUNT =
+            Integer.numberOfTrailingZeros(General.BUFFER_POOL_MAX_SIZE) - MIN_SIZE_SHIFT + 1;
+
+    /**
+     * Gives the buffers of a thread that has ended back to the idle limit.
+     */
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final long maxMemoryBytes;
+
+    private final long maxIdleBytes;
+
+    private final int threadCacheSize;
+
+    private final AtomicLong usedBytes = new AtomicLong();
+
+    /**
+     * Bytes in the shared queues and the ones that threads keep for themselves.
+     */
+    private final AtomicLong idleBytes = new AtomicLong();
+
+    private final LongAdder refusedCount = new LongAdder();
+
+    private final Queue<byte[]>[] heapBuffers;
+
+    private final Queue<ByteBuffer>[] directBuffers;
+
+    private final ThreadLocal<ThreadCache> threadCaches = ThreadLocal.withInitial(ThreadCache::new);
+
+    public BufferPool(long maxMemoryBytes, long maxIdleBytes, int threadCacheSize) {
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.maxIdleBytes = maxIdleBytes;
+        this.threadCacheSize = threadCacheSize;
+
+        this.heapBuffers = newArray(Queue.class, CLASS_COUNT);
+        this.directBuffers = newArray(Queue.class, CLASS_COUNT);
+        for (int i = 0; i < CLASS_COUNT; i++) {
+            this.heapBuffers[i] = new ConcurrentLinkedQueue<>();
+            this.directBuffers[i] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    /**
+     * @param account charged with the size of the buffer until it is released, may be null.
+     * @return array of at least the given size, with undefined content.
+     */
+    public byte[] acquireHeap(int minSize, MemoryAccount account) throws MemoryLimitExceededException {
+        final int sizeClass = getSizeClass(minSize);
+        if (sizeClass < 0) {
+            this.reserve(minSize, account);
+            return new byte[minSize];
+        }
+
+        this.reserve(getClassSize(sizeClass), account);
+
+        byte[] buffer = this.threadCaches.get().heapBuffers[sizeClass].pop();
+        if (buffer == null) {
+            buffer = this.heapBuffers[sizeClass].poll();
+        }
+        if (buffer == null) {
+            return new byte[getClassSize(sizeClass)];
+        }
+
+        this.idleBytes.addAndGet(-buffer.length);
+        return buffer;
+    }
+
+    /**
+     * @param account the account that was given when acquiring the buffer.
+     */
+    public void releaseHeap(byte[] buffer, MemoryAccount account) {
+        this.unreserve(buffer.length, account);
+
+        final int sizeClass = getExactSizeClass(buffer.length);
+        if (sizeClass < 0 || !this.reserveIdle(buffer.length)) {
+            return;
+        }
+
+        if (!this.threadCaches.get().heapBuffers[sizeClass].push(buffer)) {
+            this.heapBuffers[sizeClass].offer(buffer);
+        }
+    }
+
+    /**
+     * @param account charged with the capacity of the buffer until it is released, may be null.
+     * @return cleared direct buffer with a capacity of at least the given size.
+     */
+    public ByteBuffer acquireDirect(int minSize, MemoryAccount account) throws MemoryLimitExceededException {
+        final int sizeClass = getSizeClass(minSize);
+        if (sizeClass < 0) {
+            this.reserve(minSize, account);
+            return ByteBuffer.allocateDirect(minSize);
+        }
+
+        this.reserve(getClassSize(sizeClass), account);
+
+        ByteBuffer buffer = this.threadCaches.get().directBuffers[sizeClass].pop();
+        if (buffer == null) {
+            buffer = this.directBuffers[sizeClass].poll();
+        }
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(getClassSize(sizeClass));
+        }
+
+        this.idleBytes.addAndGet(-buffer.capacity());
+        return buffer;
+    }
+
+    /**
+     * @param account the account that was given when acquiring the buffer.
+     */
+    public void releaseDirect(ByteBuffer buffer, MemoryAccount account) {
+        this.unreserve(buffer.capacity(), account);
+
+        final int sizeClass = buffer.isDirect() ? getExactSizeClass(buffer.capacity()) : -1;
+        if (sizeClass < 0 || !this.reserveIdle(buffer.capacity())) {
+            return;
+        }
+
+        buffer.clear();
+        if (!this.threadCaches.get().directBuffers[sizeClass].push(buffer)) {
+            this.directBuffers[sizeClass].offer(buffer);
+        }
+    }
+
+    /**
+     * @return bytes of the buffers that are in use.
+     */
+    public long getUsedBytes() {
+        return this.usedBytes.get();
+    }
+
+    /**
+     * @return bytes of the buffers that wait to be reused, by threads or in the shared queues.
+     */
+    public long getIdleBytes() {
+        return this.idleBytes.get();
+    }
+
+    public long getMaxMemoryBytes() {
+        return this.maxMemoryBytes;
+    }
+
+    /**
+     * @return number of buffers that were refused because of the memory limit.
+     */
+    public long getRefusedCount() {
+        return this.refusedCount.sum();
+    }
+
+    private void reserve(int size, MemoryAccount account) throws MemoryLimitExceededException {
+        if (this.usedBytes.addAndGet(size) > this.maxMemoryBytes) {
+            this.usedBytes.addAndGet(-size);
+            this.refusedCount.increment();
+            throw new MemoryLimitExceededException(String.format(
+                    "Buffers already hold %d of %d bytes.", this.usedBytes.get(), this.maxMemoryBytes
+            ));
+        }
+
+        if (account != null) {
+            account.charge(size);
+        }
+    }
+
+    private void unreserve(int size, MemoryAccount account) {
+        this.usedBytes.addAndGet(-size);
+
+        if (account != null) {
+            account.credit(size);
+        }
+    }
+
+    private boolean reserveIdle(int size) {
+        if (this.idleBytes.addAndGet(size) > this.maxIdleBytes) {
+            this.idleBytes.addAndGet(-size);
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * @return index of the smallest class that fits the size, -1 if none does.
+     */
+    private static int getSizeClass(int minSize) {
+        if (minSize <= General.BUFFER_POOL_MIN_SIZE) {
+            return 0;
+        }
+
+        final int sizeClass = 32 - Integer.numberOfLeadingZeros(minSize - 1) - MIN_SIZE_SHIFT;
+        return sizeClass < CLASS_COUNT ? sizeClass : -1;
+    }
+
+    /**
+     * @return index of the class of exactly this size, -1 for buffers that were not pooled.
+     */
+    private static int getExactSizeClass(int size) {
+        if (size < General.BUFFER_POOL_MIN_SIZE || Integer.bitCount(size) != 1) {
+            return -1;
+        }
+
+        final int sizeClass = Integer.numberOfTrailingZeros(size) - MIN_SIZE_SHIFT;
+        return sizeClass < CLASS_COUNT ? sizeClass : -1;
+    }
+
+    private static int getClassSize(int sizeClass) {
+        return 1 << (sizeClass + MIN_SIZE_SHIFT);
+    }
+
+    /**
+     * Arrays of generic types can only be created unchecked.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T[] newArray(Class<?> componentType, int length) {
+        return (T[]) Array.newInstance(componentType, length);
+    }
+
+    private final class ThreadCache {
+        private final Stack<byte[]>[] heapBuffers = newArray(Stack.class, CLASS_COUNT);
+
+        private final Stack<ByteBuffer>[] directBuffers = newArray(Stack.class, CLASS_COUNT);
+
+        /**
+         * Bytes of the buffers in the stacks, read by the cleaner once the thread has ended.
+         */
+        private final AtomicLong cachedBytes = new AtomicLong();
+
+        private ThreadCache() {
+            for (int i = 0; i < CLASS_COUNT; i++) {
+                this.heapBuffers[i] = new Stack<>(BufferPool.this.threadCacheSize, this.cachedBytes, b -> b.length);
+                this.directBuffers[i] = new Stack<>(
+                        BufferPool.this.threadCacheSize, this.cachedBytes, ByteBuffer::capacity
+                );
+            }
+
+            // The action must not reference the cache, otherwise it would never become unreachable.
+            final AtomicLong cachedBytes = this.cachedBytes;
+            final AtomicLong idleBytes = BufferPool.this.idleBytes;
+            CLEANER.register(this, () -> idleBytes.addAndGet(-cachedBytes.get()));
+        }
+    }
+
+    private static final class Stack<T> {
+        private final Object[] items;
+
+        private final AtomicLong cachedBytes;
+
+        private final ToIntFunction<T> sizeFunction;
+
+        private int count;
+
+        private Stack(int capacity, AtomicLong cachedBytes, ToIntFunction<T> sizeFunction) {
+            this.items = new Object[capacity];
+            this.cachedBytes = cachedBytes;
+            this.sizeFunction = sizeFunction;
+        }
+
+        /**
+         * @return false if the stack is full.
+         */
+        private boolean push(T item) {
+            if (this.count == this.items.length) {
+                return false;
+            }
+
+            this.items[this.count++] = item;
+            this.cachedBytes.addAndGet(this.sizeFunction.applyAsInt(item));
+            return true;
+        }
+
+        @SuppressWarnings("unchecked")
+        private T pop() {
+            if (this.count == 0) {
+                return null;
+            }
+
+            final T item = (T) this.items[--this.count];
+            this.items[this.count] = null;
+            this.cachedBytes.addAndGet(-this.sizeFunction.applyAsInt(item));
+            return item;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.cyecize.gatewayserver.api.buffer;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bytes of pooled buffers that are held on behalf of something, e.g. an exchange or a route.
+ * Charges are passed on to the parent account, so that a route sums up the buffers of its exchanges.
+ */
+public class MemoryAccount {
+    private final MemoryAccount parent;
+
+    private final LongAdder used = new LongAdder();
+
+    /**
+     * Exact for accounts that are charged by a single thread at a time, like the one of an exchange.
+     */
+    private volatile long peak;
+
+    public MemoryAccount(MemoryAccount parent) {
+        this.parent = parent;
+    }
+
+    public void charge(long bytes) {
+        this.used.add(bytes);
+
+        final long used = this.used.sum();
+        if (used > this.peak) {
+            this.peak = used;
+        }
+
+        if (this.parent != null) {
+            this.parent.charge(bytes);
+        }
+    }
+
+    public void credit(long bytes) {
+        this.used.add(-bytes);
+
+        if (this.parent != null) {
+            this.parent.credit(bytes);
+        }
+    }
+
+    /**
+     * @return bytes that are held right now.
+     */
+    public long getUsed() {
+        return this.used.sum();
+    }
+
+    /**
+     * @return the most bytes that were held at once.
+     */
+    public long getPeak() {
+        return this.peak;
+    }
+}
@@ -0,0 +1,92 @@
+package com.cyecize.gatewayserver.api.cache;
+
+/**
+ * Directives of a Cache-Control field that matter to a shared cache. Unknown directives are ignored.
+ */
+class CacheControl {
+    private boolean isNoStore;
+
+    private boolean isNoCache;
+
+    private boolean isPrivate;
+
+    private long maxAge = -1;
+
+    private long sharedMaxAge = -1;
+
+    private CacheControl() {
+    }
+
+    /**
+     * @param value value of the field, may be null.
+     */
+    static CacheControl parse(String value) {
+        final CacheControl cacheControl = new CacheControl();
+        if (value == null) {
+            return cacheControl;
+        }
+
+        for (String directive : value.split(",")) {
+            final int equalsIndex = directive.indexOf('=');
+            final String name = (equalsIndex < 0 ? directive : directive.substring(0, equalsIndex)).trim().toLowerCase();
+            final String argument = equalsIndex < 0 ? null : directive.substring(equalsIndex + 1).trim();
+
+            switch (name) {
+                case "no-store":
+                    cacheControl.isNoStore = true;
+                    break;
+                case "no-cache":
+                    // Also with field names, which would only allow storing the rest of the response.
+                    cacheControl.isNoCache = true;
+                    break;
+                case "private":
+                    cacheControl.isPrivate = true;
+                    break;
+                case "max-age":
+                    cacheControl.maxAge = parseSeconds(argument);
+                    break;
+                case "s-maxage":
+                    cacheControl.sharedMaxAge = parseSeconds(argument);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        return cacheControl;
+    }
+
+    /**
+     * @return delta seconds of a field or directive, -1 if they are missing or invalid.
+     */
+    static long parseSeconds(String value) {
+        if (value == null) {
+            return -1;
+        }
+
+        try {
+            return Math.max(Long.parseLong(value.replace("\"", "").trim()), 0);
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    boolean isNoStore() {
+        return this.isNoStore;
+    }
+
+    boolean isNoCache() {
+        return this.isNoCache;
+    }
+
+    boolean isPrivate() {
+        return this.isPrivate;
+    }
+
+    /**
+     * @return seconds for which a shared cache may use the response without asking the server, -1 if not given.
+     */
+    long getFreshnessSeconds() {
+        return this.sharedMaxAge >= 0 ? this.sharedMaxAge : this.maxAge;
+    }
+}
@@ -0,0 +1,152 @@
+package com.cyecize.gatewayserver.api.cache;
+
+import com.cyecize.gatewayserver.api.http.BodyFraming;
+import com.cyecize.gatewayserver.api.server.Connection;
+import com.cyecize.gatewayserver.util.RelayUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request that goes to the destination on behalf of every concurrent request for the same resource. The others
+ * wait until the fill is finished and are then answered from the cache.
+ * <p>
+ * Responses with a Content-Length up to the entry size limit are read whole before they are sent to the client,
+ * anything else is relayed as usual and not stored.
+ */
+public class CacheFill {
+    private static final Set<Integer> STORABLE_STATUS_CODES = Set.of(200, 203, 300, 301, 308, 404, 410);
+
+    private final ResponseCacheService responseCacheService;
+
+    private final String key;
+
+    private final Connection request;
+
+    /**
+     * Response that is not fresh anymore and is revalidated with its entity tag, unless the client sent
+     * conditions of its own.
+     */
+    private final CachedResponse stale;
+
+    private final boolean isRevalidating;
+
+    private final int maxEntrySize;
+
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    CacheFill(ResponseCacheService responseCacheService,
+              String key,
+              Connection request,
+              CachedResponse stale,
+              int maxEntrySize) {
+        this.responseCacheService = responseCacheService;
+        this.key = key;
+        this.request = request;
+        this.stale = stale;
+        this.maxEntrySize = maxEntrySize;
+
+        this.isRevalidating = stale != null && stale.getEtag() != null
+                && request.getHeader("If-None-Match") == null
+                && request.getHeader("If-Modified-Since") == null;
+    }
+
+    String getKey() {
+        return this.key;
+    }
+
+    public boolean isRevalidating() {
+        return this.isRevalidating;
+    }
+
+    /**
+     * @return head of the client request with the entity tag of the stale response as a condition.
+     */
+    public byte[] createRevalidationHead() {
+        final ByteArrayOutputStream head = new ByteArrayOutputStream();
+        for (String line : this.request.getRequestLines()) {
+            writeLine(head, line);
+        }
+        writeLine(head, "If-None-Match: " + this.stale.getEtag());
+        writeLine(head, "");
+
+        return head.toByteArray();
+    }
+
+    /**
+     * Stores the response if it can be stored, reading its body in the process. Waiting requests are released
+     * either way, once it is known whether the cache will have the response.
+     *
+     * @param response connection of the final response, with its head read.
+     * @return stored response that should be sent to the client instead of relaying or null.
+     */
+    public CachedResponse complete(Connection response) throws IOException {
+        try {
+            final long now = System.currentTimeMillis();
+            if (this.isRevalidating && response.getStatusCode() == 304) {
+                final CachedResponse refreshed = this.stale.refresh(response.getHead(), now);
+                this.responseCacheService.put(this.request, refreshed);
+                return refreshed;
+            }
+
+            if (!this.isStorable(response)) {
+                return null;
+            }
+
+            final ByteBuffer body = ByteBuffer.allocateDirect((int) response.getContentLength());
+            RelayUtils.readFully(response.getHeadReader(), response.getSocket(), body);
+            body.flip();
+
+            final CachedResponse cachedResponse = CachedResponse.create(
+                    response.getHead(), body.asReadOnlyBuffer(), now
+            );
+            this.responseCacheService.put(this.request, cachedResponse);
+            return cachedResponse;
+        } finally {
+            this.responseCacheService.finishFill(this);
+        }
+    }
+
+    void markFinished() {
+        this.finished.countDown();
+    }
+
+    void awaitFinished(long timeoutMillis) {
+        try {
+            this.finished.await(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean isStorable(Connection response) {
+        if (!STORABLE_STATUS_CODES.contains(response.getStatusCode())) {
+            return false;
+        }
+
+        if (response.getResponseBodyFraming(this.request.getMethod()) != BodyFraming.CONTENT_LENGTH
+                || response.getContentLength() > this.maxEntrySize) {
+            return false;
+        }
+
+        final String vary = response.getHeader("Vary");
+        if (response.getHeader("Set-Cookie") != null || (vary != null && vary.contains("*"))) {
+            return false;
+        }
+
+        final CacheControl cacheControl = CacheControl.parse(response.getHeader("Cache-Control"));
+        return !cacheControl.isNoStore()
+                && !cacheControl.isNoCache()
+                && !cacheControl.isPrivate()
+                && cacheControl.getFreshnessSeconds() > 0;
+    }
+
+    private static void writeLine(ByteArrayOutputStream outputStream, String line) {
+        outputStream.writeBytes((line + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+    }
+}
@@ -0,0 +1,246 @@
+package com.cyecize.gatewayserver.api.cache;
+
+import com.cyecize.gatewayserver.api.http.HttpHead;
+import com.cyecize.gatewayserver.api.server.Connection;
+import com.cyecize.gatewayserver.util.HttpProtocolUtils;
+import com.cyecize.gatewayserver.util.RelayUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Response kept by the response cache. Header fields are kept without the ones that only describe the connection
+ * they came over. The body is kept outside of the java heap and is shared by every request it is served to.
+ */
+public class CachedResponse {
+    /**
+     * Lower case names of fields that are not stored. Age is replaced when serving.
+     */
+    private static final Set<String> UNSTORED_FIELDS = Set.of(
+            "connection", "keep-alive", "proxy-connection", "te", "trailer", "transfer-encoding", "upgrade", "age"
+    );
+
+    /**
+     * Lower case names of the stored fields that are sent with a 304 answer.
+     */
+    private static final Set<String> NOT_MODIFIED_FIELDS = Set.of(
+            "cache-control", "content-location", "date", "etag", "expires", "last-modified", "vary"
+    );
+
+    private final String statusLine;
+
+    private final List<String> fieldLines;
+
+    private final ByteBuffer body;
+
+    private final String etag;
+
+    private final String[] varyFieldNames;
+
+    private final long storedAtMillis;
+
+    private final long initialAgeSeconds;
+
+    private final long freshnessSeconds;
+
+    private CachedResponse(String statusLine,
+                           List<String> fieldLines,
+                           ByteBuffer body,
+                           long initialAgeSeconds,
+                           long storedAtMillis) {
+        this.statusLine = statusLine;
+        this.fieldLines = fieldLines;
+        this.body = body;
+        this.initialAgeSeconds = initialAgeSeconds;
+        this.storedAtMillis = storedAtMillis;
+
+        this.etag = this.getField("ETag");
+        this.freshnessSeconds = CacheControl.parse(this.getField("Cache-Control")).getFreshnessSeconds();
+
+        final String vary = this.getField("Vary");
+        this.varyFieldNames = vary == null || vary.isBlank()
+                ? new String[0]
+                : vary.trim().split("\\s*,\\s*");
+    }
+
+    /**
+     * @param body read-only buffer with the whole body.
+     */
+    static CachedResponse create(HttpHead head, ByteBuffer body, long now) {
+        final List<String> fieldLines = new ArrayList<>();
+        long age = 0;
+
+        for (int i = 1; i < head.getLineCount(); i++) {
+            final String line = head.getLine(i);
+            final String name = getFieldName(line);
+            if ("age".equals(name)) {
+                age = Math.max(CacheControl.parseSeconds(getFieldValue(line)), 0);
+            }
+
+            if (!UNSTORED_FIELDS.contains(name)) {
+                fieldLines.add(line);
+            }
+        }
+
+        return new CachedResponse(head.getLine(0), fieldLines, body, age, now);
+    }
+
+    /**
+     * Applies the fields of a 304 answer to a revalidation request, the body stays the same.
+     */
+    CachedResponse refresh(HttpHead notModifiedHead, long now) {
+        final List<String> updates = new ArrayList<>();
+        final Set<String> updatedNames = new HashSet<>();
+        long age = 0;
+
+        for (int i = 1; i < notModifiedHead.getLineCount(); i++) {
+            final String line = notModifiedHead.getLine(i);
+            final String name = getFieldName(line);
+            if ("age".equals(name)) {
+                age = Math.max(CacheControl.parseSeconds(getFieldValue(line)), 0);
+            }
+
+            if (!UNSTORED_FIELDS.contains(name) && !"content-length".equals(name)) {
+                updates.add(line);
+                updatedNames.add(name);
+            }
+        }
+
+        final List<String> fieldLines = new ArrayList<>();
+        for (String line : this.fieldLines) {
+            if (!updatedNames.contains(getFieldName(line))) {
+                fieldLines.add(line);
+            }
+        }
+        fieldLines.addAll(updates);
+
+        return new CachedResponse(this.statusLine, fieldLines, this.body, age, now);
+    }
+
+    public boolean isFresh(long now) {
+        return this.getAgeSeconds(now) < this.freshnessSeconds;
+    }
+
+    public String getEtag() {
+        return this.etag;
+    }
+
+    String[] getVaryFieldNames() {
+        return this.varyFieldNames;
+    }
+
+    /**
+     * @return approximate number of bytes that the response takes.
+     */
+    long getSize() {
+        long size = this.body.capacity() + this.statusLine.length();
+        for (String line : this.fieldLines) {
+            size += line.length();
+        }
+
+        return size;
+    }
+
+    /**
+     * @return status that {@link #writeTo} answers the request with.
+     */
+    public int getStatusCode(Connection clientConnection) {
+        if (this.matches(clientConnection.getHeader("If-None-Match"))) {
+            return 304;
+        }
+
+        return HttpProtocolUtils.getStatusCode(this.statusLine);
+    }
+
+    /**
+     * Answers a request with the cached response or with 304 if the client already has it.
+     *
+     * @return the number of written bytes.
+     */
+    public long writeTo(Connection clientConnection, long now) throws IOException {
+        final boolean isNotModified = this.matches(clientConnection.getHeader("If-None-Match"));
+
+        final StringBuilder head = new StringBuilder();
+        if (isNotModified) {
+            head.append(this.statusLine, 0, this.statusLine.indexOf(' ')).append(" 304 Not Modified\r\n");
+        } else {
+            head.append(this.statusLine).append("\r\n");
+        }
+
+        for (String line : this.fieldLines) {
+            if (!isNotModified || NOT_MODIFIED_FIELDS.contains(getFieldName(line))) {
+                head.append(line).append("\r\n");
+            }
+        }
+        head.append("Age: ").append(this.getAgeSeconds(now)).append("\r\n");
+
+        if (!clientConnection.isKeepAlive()) {
+            head.append("Connection: close\r\n");
+        } else if (clientConnection.getHead().getLine(0).endsWith("HTTP/1.0")) {
+            head.append("Connection: keep-alive\r\n");
+        }
+        head.append("\r\n");
+
+        final byte[] headBytes = head.toString().getBytes(StandardCharsets.ISO_8859_1);
+        clientConnection.getSocket().getOutputStream().write(headBytes);
+        if (isNotModified) {
+            return headBytes.length;
+        }
+
+        return headBytes.length + RelayUtils.write(
+                this.body.duplicate(), clientConnection.getSocket(), clientConnection.getBufferPool()
+        );
+    }
+
+    private long getAgeSeconds(long now) {
+        return this.initialAgeSeconds + Math.max(now - this.storedAtMillis, 0) / 1000;
+    }
+
+    /**
+     * Weak comparison, like servers do for If-None-Match.
+     */
+    private boolean matches(String ifNoneMatch) {
+        if (ifNoneMatch == null || this.etag == null) {
+            return false;
+        }
+
+        final String etag = stripWeakness(this.etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            final String tag = candidate.trim();
+            if ("*".equals(tag) || etag.equals(stripWeakness(tag))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private String getField(String name) {
+        for (String line : this.fieldLines) {
+            if (getFieldName(line).equalsIgnoreCase(name)) {
+                return getFieldValue(line);
+            }
+        }
+
+        return null;
+    }
+
+    private static String stripWeakness(String etag) {
+        return etag.startsWith("W/") ? etag.substring(2) : etag;
+    }
+
+    private static String getFieldName(String line) {
+        final int colonIndex = line.indexOf(':');
+        return (colonIndex < 0 ? line : line.substring(0, colonIndex)).trim().toLowerCase();
+    }
+
+    private static String getFieldValue(String line) {
+        final int colonIndex = line.indexOf(':');
+        return colonIndex < 0 ? "" : line.substring(colonIndex + 1).trim();
+    }
+}
@@ -0,0 +1,44 @@
+package com.cyecize.gatewayserver.api.cache;
+
+import com.cyecize.gatewayserver.api.server.Connection;
+
+/**
+ * Shared cache of responses that destinations mark as cacheable, for routes that enable it.
+ * Responses are looked up by scheme, host and request target, plus the request fields named by their Vary field.
+ */
+public interface ResponseCacheService {
+
+    /**
+     * @return false for requests that the cache must not answer, e.g. with credentials or with a body.
+     */
+    boolean isCacheable(Connection request);
+
+    /**
+     * @return fresh or stale response for the request or null.
+     */
+    CachedResponse get(Connection request);
+
+    /**
+     * @param stale response that is going to be revalidated or null.
+     * @return fill for the request or null if another request is already filling the cache for the same resource.
+     */
+    CacheFill startFill(Connection request, CachedResponse stale);
+
+    /**
+     * Waits for the fill that another request is running for the same resource, if any, for a limited time.
+     */
+    void awaitFill(Connection request);
+
+    /**
+     * Releases the requests that wait for the fill. Safe to call more than once.
+     */
+    void finishFill(CacheFill cacheFill);
+
+    void put(Connection request, CachedResponse response);
+
+    long getHitCount();
+
+    long getMissCount();
+
+    long getSize();
+}
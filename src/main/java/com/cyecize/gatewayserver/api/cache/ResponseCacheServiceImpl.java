@@ -0,0 +1,211 @@
+package com.cyecize.gatewayserver.api.cache;
+
+import com.cyecize.gatewayserver.api.http.BodyFraming;
+import com.cyecize.gatewayserver.api.options.Options;
+import com.cyecize.gatewayserver.api.options.ResponseCacheOptions;
+import com.cyecize.gatewayserver.api.server.Connection;
+import com.cyecize.gatewayserver.constants.General;
+import com.cyecize.ioc.annotations.Service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Least recently used entries are evicted once the cache exceeds its size in bytes.
+ * <p>
+ * A response with a Vary field is stored under a key that includes the values of the named request fields. Its
+ * plain key holds a marker with those names instead, which tells lookups how to build the full key. Markers are
+ * evicted like any other entry, which leaves their variants to be evicted in turn.
+ */
+@Service
+public class ResponseCacheServiceImpl implements ResponseCacheService {
+
+    private final long maxSize;
+
+    private final int maxEntrySize;
+
+    /**
+     * Access ordered, iteration starts with the least recently used entry. Guarded by itself.
+     */
+    private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long size;
+
+    private final Map<String, CacheFill> fills = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    public ResponseCacheServiceImpl(Options options) {
+        final ResponseCacheOptions cacheOptions = options.getResponseCacheOptions();
+        this.maxSize = cacheOptions.getMaxSizeBytes();
+        this.maxEntrySize = cacheOptions.getMaxEntrySizeBytes();
+    }
+
+    @Override
+    public boolean isCacheable(Connection request) {
+        if (!"GET".equals(request.getMethod()) || request.getRequestBodyFraming() != BodyFraming.NONE) {
+            return false;
+        }
+
+        if (request.getHeader("Authorization") != null || request.getHeader("Range") != null) {
+            return false;
+        }
+
+        // A client that asks to skip caches gets the response of the destination, which is not stored either.
+        final CacheControl cacheControl = CacheControl.parse(request.getHeader("Cache-Control"));
+        final String pragma = request.getHeader("Pragma");
+        return !cacheControl.isNoCache()
+                && !cacheControl.isNoStore()
+                && (pragma == null || !pragma.toLowerCase().contains("no-cache"));
+    }
+
+    @Override
+    public CachedResponse get(Connection request) {
+        final String key = createKey(request);
+
+        final CachedResponse response;
+        synchronized (this.entries) {
+            CacheEntry entry = this.entries.get(key);
+            if (entry != null && entry.response == null) {
+                entry = this.entries.get(createVariantKey(key, entry.varyFieldNames, request));
+            }
+
+            response = entry == null ? null : entry.response;
+        }
+
+        if (response != null && response.isFresh(System.currentTimeMillis())) {
+            this.hits.increment();
+        }
+
+        return response;
+    }
+
+    @Override
+    public CacheFill startFill(Connection request, CachedResponse stale) {
+        final String key = createKey(request);
+
+        final CacheFill cacheFill = new CacheFill(this, key, request, stale, this.maxEntrySize);
+        if (this.fills.putIfAbsent(key, cacheFill) != null) {
+            return null;
+        }
+
+        this.misses.increment();
+        return cacheFill;
+    }
+
+    @Override
+    public void awaitFill(Connection request) {
+        final CacheFill cacheFill = this.fills.get(createKey(request));
+        if (cacheFill != null) {
+            cacheFill.awaitFinished(General.RESPONSE_CACHE_FILL_WAIT_MILLIS);
+        }
+    }
+
+    @Override
+    public void finishFill(CacheFill cacheFill) {
+        this.fills.remove(cacheFill.getKey(), cacheFill);
+        cacheFill.markFinished();
+    }
+
+    @Override
+    public void put(Connection request, CachedResponse response) {
+        final String key = createKey(request);
+        final String[] varyFieldNames = response.getVaryFieldNames();
+
+        synchronized (this.entries) {
+            if (varyFieldNames.length == 0) {
+                this.putEntry(key, new CacheEntry(key, null, response));
+            } else {
+                this.putEntry(key, new CacheEntry(key, varyFieldNames, null));
+
+                final String variantKey = createVariantKey(key, varyFieldNames, request);
+                this.putEntry(variantKey, new CacheEntry(variantKey, null, response));
+            }
+
+            final Iterator<CacheEntry> iterator = this.entries.values().iterator();
+            while (this.size > this.maxSize && iterator.hasNext()) {
+                this.size -= iterator.next().size;
+                iterator.remove();
+            }
+        }
+    }
+
+    @Override
+    public long getHitCount() {
+        return this.hits.sum();
+    }
+
+    @Override
+    public long getMissCount() {
+        return this.misses.sum();
+    }
+
+    @Override
+    public long getSize() {
+        synchronized (this.entries) {
+            return this.size;
+        }
+    }
+
+    private void putEntry(String key, CacheEntry entry) {
+        if (entry.size > this.maxSize) {
+            return;
+        }
+
+        final CacheEntry previous = this.entries.put(key, entry);
+        if (previous != null) {
+            this.size -= previous.size;
+        }
+        this.size += entry.size;
+    }
+
+    /**
+     * Responses over HTTP and HTTPS are kept apart, a route may send different content for each.
+     */
+    private static String createKey(Connection request) {
+        return (request.isSsl() ? "https://" : "http://")
+                + request.getHost().toLowerCase()
+                + request.getRequestTarget();
+    }
+
+    private static String createVariantKey(String key, String[] varyFieldNames, Connection request) {
+        final StringBuilder variantKey = new StringBuilder(key);
+        for (String name : varyFieldNames) {
+            final String value = request.getHeader(name);
+            variantKey.append('\n').append(name.toLowerCase()).append(':').append(value == null ? "" : value.trim());
+        }
+
+        return variantKey.toString();
+    }
+
+    private static class CacheEntry {
+        /**
+         * Set for markers of responses with a Vary field.
+         */
+        private final String[] varyFieldNames;
+
+        private final CachedResponse response;
+
+        private final long size;
+
+        CacheEntry(String key, String[] varyFieldNames, CachedResponse response) {
+            this.varyFieldNames = varyFieldNames;
+            this.response = response;
+
+            long size = key.length();
+            if (response != null) {
+                size += response.getSize();
+            } else {
+                for (String name : varyFieldNames) {
+                    size += name.length();
+                }
+            }
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.cyecize.gatewayserver.api.compression;
+
+import com.cyecize.gatewayserver.api.server.Connection;
+
+/**
+ * Compresses responses for routes that enable it and keeps compressed bodies of responses with validators,
+ * so that frequently requested resources are not compressed again for every request.
+ */
+public interface CompressionService {
+
+    /**
+     * @return compression of the response to the request or null if the client does not accept any coding.
+     */
+    ResponseCompression negotiate(Connection request);
+
+    /**
+     * @return compressed body that was stored under the key or null.
+     */
+    byte[] getCompressedBody(String key);
+
+    void putCompressedBody(String key, byte[] body);
+}
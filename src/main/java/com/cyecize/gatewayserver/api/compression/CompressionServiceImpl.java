@@ -0,0 +1,108 @@
+package com.cyecize.gatewayserver.api.compression;
+
+import com.cyecize.gatewayserver.api.options.CompressionOptions;
+import com.cyecize.gatewayserver.api.options.Options;
+import com.cyecize.gatewayserver.api.server.Connection;
+import com.cyecize.ioc.annotations.Service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Compressed bodies are evicted least recently used first, once they exceed the size of the cache in bytes.
+ */
+@Service
+public class CompressionServiceImpl implements CompressionService {
+
+    private final Set<String> mimeTypes;
+
+    private final int minSize;
+
+    private final int level;
+
+    private final long cacheMaxSize;
+
+    /**
+     * Access ordered, iteration starts with the least recently used body. Guarded by itself.
+     */
+    private final LinkedHashMap<String, byte[]> compressedBodies = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long cacheSize;
+
+    public CompressionServiceImpl(Options options) {
+        final CompressionOptions compressionOptions = options.getCompressionOptions();
+        this.mimeTypes = compressionOptions.getMimeTypes().stream()
+                .map(mimeType -> mimeType.trim().toLowerCase(Locale.ROOT))
+                .collect(Collectors.toSet());
+        this.minSize = compressionOptions.getMinSizeBytes();
+        this.level = compressionOptions.getLevel();
+        this.cacheMaxSize = compressionOptions.getCacheMaxSizeBytes();
+    }
+
+    @Override
+    public ResponseCompression negotiate(Connection request) {
+        // Without chunked coding the end of a compressed body of unknown length cannot be sent to the client.
+        if (request.getHead().getLine(0).endsWith("HTTP/1.0")) {
+            return null;
+        }
+
+        final ContentCoding coding = ContentCoding.negotiate(request.getHeader("Accept-Encoding"));
+        if (coding == null) {
+            return null;
+        }
+
+        return new ResponseCompression(this, request, coding, this.level);
+    }
+
+    @Override
+    public byte[] getCompressedBody(String key) {
+        synchronized (this.compressedBodies) {
+            return this.compressedBodies.get(key);
+        }
+    }
+
+    @Override
+    public void putCompressedBody(String key, byte[] body) {
+        final long size = key.length() + body.length;
+        if (size > this.cacheMaxSize) {
+            return;
+        }
+
+        synchronized (this.compressedBodies) {
+            final byte[] previous = this.compressedBodies.put(key, body);
+            if (previous != null) {
+                this.cacheSize -= key.length() + previous.length;
+            }
+            this.cacheSize += size;
+
+            final Iterator<Map.Entry<String, byte[]>> iterator = this.compressedBodies.entrySet().iterator();
+            while (this.cacheSize > this.cacheMaxSize && iterator.hasNext()) {
+                final Map.Entry<String, byte[]> eldest = iterator.next();
+                this.cacheSize -= eldest.getKey().length() + eldest.getValue().length;
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @param contentType value of the Content-Type field, may be null.
+     */
+    boolean isCompressible(String contentType, long contentLength) {
+        if (contentType == null || (contentLength >= 0 && contentLength < this.minSize)) {
+            return false;
+        }
+
+        final int parametersStart = contentType.indexOf(';');
+        final String mimeType = (parametersStart < 0 ? contentType : contentType.substring(0, parametersStart))
+                .trim()
+                .toLowerCase(Locale.ROOT);
+
+        final int slashIndex = mimeType.indexOf('/');
+        return this.mimeTypes.contains(mimeType)
+                || (slashIndex > 0 && this.mimeTypes.contains(mimeType.substring(0, slashIndex) + "/*"));
+    }
+}
@@ -0,0 +1,109 @@
+package com.cyecize.gatewayserver.api.compression;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Content codings that the gateway applies to responses, in order of preference.
+ */
+public enum ContentCoding {
+    GZIP("gzip") {
+        @Override
+        DeflaterOutputStream createStream(OutputStream outputStream, int level) throws IOException {
+            return new GZIPOutputStream(outputStream, STREAM_BUFFER_SIZE) {
+                {
+                    this.def.setLevel(level);
+                }
+            };
+        }
+    },
+
+    /**
+     * The "deflate" coding is the zlib format, not raw deflate.
+     */
+    DEFLATE("deflate") {
+        @Override
+        DeflaterOutputStream createStream(OutputStream outputStream, int level) {
+            return new DeflaterOutputStream(outputStream, new Deflater(level), STREAM_BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        // The deflater was not created by the stream, so the stream does not release it.
+                        this.def.end();
+                    }
+                }
+            };
+        }
+    };
+
+    private static final int STREAM_BUFFER_SIZE = 8192;
+
+    private final String name;
+
+    ContentCoding(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * The returned stream must be closed to release the native memory of its deflater.
+     */
+    abstract DeflaterOutputStream createStream(OutputStream outputStream, int level) throws IOException;
+
+    /**
+     * @param acceptEncoding value of the Accept-Encoding field, may be null.
+     * @return most preferred coding that the client accepts or null.
+     */
+    static ContentCoding negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+
+        boolean isDeflateAccepted = false;
+        for (String element : acceptEncoding.split(",")) {
+            final String[] parts = element.split(";");
+            final String coding = parts[0].trim().toLowerCase();
+            if (isRejected(parts)) {
+                continue;
+            }
+
+            if ("gzip".equals(coding) || "x-gzip".equals(coding) || "*".equals(coding)) {
+                return GZIP;
+            }
+
+            if ("deflate".equals(coding)) {
+                isDeflateAccepted = true;
+            }
+        }
+
+        return isDeflateAccepted ? DEFLATE : null;
+    }
+
+    /**
+     * @return true if the element has a quality value of zero.
+     */
+    private static boolean isRejected(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            final String parameter = parts[i].trim().toLowerCase();
+            if (!parameter.startsWith("q=")) {
+                continue;
+            }
+
+            try {
+                return Double.parseDouble(parameter.substring(2)) <= 0;
+            } catch (NumberFormatException ex) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
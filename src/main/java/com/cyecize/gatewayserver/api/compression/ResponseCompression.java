@@ -0,0 +1,193 @@
+package com.cyecize.gatewayserver.api.compression;
+
+import com.cyecize.gatewayserver.api.http.BodyFraming;
+import com.cyecize.gatewayserver.api.http.ChunkedOutputStream;
+import com.cyecize.gatewayserver.api.http.HttpHead;
+import com.cyecize.gatewayserver.api.server.Connection;
+import com.cyecize.gatewayserver.constants.General;
+import com.cyecize.gatewayserver.util.RelayUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Compression of a single response with the coding that was negotiated with the client.
+ * <p>
+ * Bodies of unknown or large size are compressed while they are relayed and sent with chunked coding.
+ * Small bodies with an entity tag are compressed whole, so that the compressed copy can be reused for later
+ * requests with the same tag.
+ */
+public class ResponseCompression {
+    private final CompressionServiceImpl compressionService;
+
+    private final Connection request;
+
+    private final ContentCoding coding;
+
+    private final int level;
+
+    ResponseCompression(CompressionServiceImpl compressionService,
+                        Connection request,
+                        ContentCoding coding,
+                        int level) {
+        this.compressionService = compressionService;
+        this.request = request;
+        this.coding = coding;
+        this.level = level;
+    }
+
+    public ContentCoding getCoding() {
+        return this.coding;
+    }
+
+    /**
+     * Partial content, already encoded bodies and bodies that the server does not allow to transform are
+     * sent as they are.
+     */
+    public boolean canCompress(Connection response) {
+        final int statusCode = response.getStatusCode();
+        if (statusCode / 100 != 2 || statusCode == 204 || statusCode == 206) {
+            return false;
+        }
+
+        final BodyFraming framing = response.getResponseBodyFraming(this.request.getMethod());
+        if (framing != BodyFraming.CONTENT_LENGTH && framing != BodyFraming.CHUNKED) {
+            return false;
+        }
+
+        if (response.getHeader("Content-Encoding") != null) {
+            return false;
+        }
+
+        final String cacheControl = response.getHeader("Cache-Control");
+        if (cacheControl != null && cacheControl.toLowerCase(Locale.ROOT).contains("no-transform")) {
+            return false;
+        }
+
+        return this.compressionService.isCompressible(
+                response.getHeader("Content-Type"),
+                framing == BodyFraming.CONTENT_LENGTH ? response.getContentLength() : -1
+        );
+    }
+
+    /**
+     * Sends the response to the client with a compressed body. Should only be called if
+     * {@link #canCompress(Connection)} returned true.
+     *
+     * @return the number of bytes sent to the client.
+     */
+    public long relay(Connection response, Connection client) throws IOException {
+        final BodyFraming framing = response.getResponseBodyFraming(this.request.getMethod());
+        final String etag = response.getHeader("ETag");
+
+        if (etag != null && framing == BodyFraming.CONTENT_LENGTH
+                && response.getContentLength() <= General.MAX_PRECOMPRESSED_BODY_SIZE) {
+            return this.relayPrecompressed(response, client, etag);
+        }
+
+        final OutputStream clientStream = client.getSocket().getOutputStream();
+        final byte[] head = this.createHead(response.getHead(), "Transfer-Encoding: chunked");
+        clientStream.write(head);
+
+        final ChunkedOutputStream chunkedStream = new ChunkedOutputStream(clientStream);
+        try (DeflaterOutputStream compressingStream = this.coding.createStream(chunkedStream, this.level)) {
+            this.transferContent(response, framing, compressingStream);
+        }
+        chunkedStream.finish();
+
+        return head.length + chunkedStream.getWrittenCount();
+    }
+
+    private long relayPrecompressed(Connection response, Connection client, String etag) throws IOException {
+        final String key = String.format(
+                "%s %s%s%s %s",
+                this.coding.getName(),
+                this.request.isSsl() ? "https://" : "http://",
+                this.request.getHost().toLowerCase(Locale.ROOT),
+                this.request.getRequestTarget(),
+                etag
+        );
+
+        byte[] body = this.compressionService.getCompressedBody(key);
+        if (body == null) {
+            final ByteArrayOutputStream compressedBody = new ByteArrayOutputStream();
+            try (DeflaterOutputStream compressingStream = this.coding.createStream(compressedBody, this.level)) {
+                this.transferContent(response, BodyFraming.CONTENT_LENGTH, compressingStream);
+            }
+
+            body = compressedBody.toByteArray();
+            this.compressionService.putCompressedBody(key, body);
+        } else {
+            // The server sent the body anyway, it has to be consumed to keep the connection usable.
+            this.transferContent(response, BodyFraming.CONTENT_LENGTH, OutputStream.nullOutputStream());
+        }
+
+        final OutputStream clientStream = client.getSocket().getOutputStream();
+        final byte[] head = this.createHead(response.getHead(), "Content-Length: " + body.length);
+        clientStream.write(head);
+        clientStream.write(body);
+
+        return head.length + body.length;
+    }
+
+    private void transferContent(Connection response, BodyFraming framing, OutputStream target) throws IOException {
+        RelayUtils.transferContent(
+                response.getHeadReader(),
+                response.getSocket(),
+                framing,
+                framing == BodyFraming.CONTENT_LENGTH ? response.getContentLength() : 0,
+                target
+        );
+    }
+
+    /**
+     * Copies the response head without its framing fields. The entity tag is weakened, since the compressed
+     * body is not the byte for byte representation that the server tagged, and caches down the line are told
+     * that the body depends on Accept-Encoding.
+     */
+    private byte[] createHead(HttpHead responseHead, String framingLine) {
+        final StringBuilder head = new StringBuilder(responseHead.getSize() + 64);
+        head.append(responseHead.getLine(0)).append("\r\n");
+
+        boolean hasVary = false;
+        for (int i = 1; i < responseHead.getLineCount(); i++) {
+            final String line = responseHead.getLine(i);
+            final int colonIndex = line.indexOf(':');
+            final String name = (colonIndex < 0 ? line : line.substring(0, colonIndex)).trim().toLowerCase(Locale.ROOT);
+            final String value = colonIndex < 0 ? "" : line.substring(colonIndex + 1).trim();
+
+            switch (name) {
+                case "content-length":
+                case "transfer-encoding":
+                case "trailer":
+                    continue;
+                case "etag":
+                    head.append("ETag: ").append(value.startsWith("W/") ? value : "W/" + value);
+                    break;
+                case "vary":
+                    hasVary = true;
+                    head.append(line);
+                    final String lowerCaseValue = value.toLowerCase(Locale.ROOT);
+                    if (!lowerCaseValue.contains("accept-encoding") && !lowerCaseValue.equals("*")) {
+                        head.append(value.isEmpty() ? "Accept-Encoding" : ", Accept-Encoding");
+                    }
+                    break;
+                default:
+                    head.append(line);
+            }
+            head.append("\r\n");
+        }
+
+        if (!hasVary) {
+            head.append("Vary: Accept-Encoding\r\n");
+        }
+        head.append("Content-Encoding: ").append(this.coding.getName()).append("\r\n");
+        head.append(framingLine).append("\r\n\r\n");
+
+        return head.toString().getBytes(StandardCharsets.ISO_8859_1);
+    }
+}
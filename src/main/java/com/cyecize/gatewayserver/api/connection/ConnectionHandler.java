@@ -1,7 +1,17 @@
-package com.cyecize.gatewayserver.api.connection;
-
-import com.cyecize.gatewayserver.api.server.Connection;
-
-public interface ConnectionHandler {
-    void process(Connection connection);
-}
+package com.cyecize.gatewayserver.api.connection;
+
+import com.cyecize.gatewayserver.api.server.Connection;
+
+public interface ConnectionHandler {
+    void process(Connection connection);
+
+    /**
+     * Turns away a connection that the pool did not admit, on the calling thread.
+     */
+    void reject(Connection connection);
+
+    /**
+     * Turns away a connection of a client that exceeded its rate limit, on the calling thread.
+     */
+    void throttle(Connection connection);
+}
@@ -1,159 +1,162 @@
-package com.cyecize.gatewayserver.api.connection;
-
-import com.cyecize.gatewayserver.api.options.Options;
-import com.cyecize.gatewayserver.api.options.RouteOption;
-import com.cyecize.gatewayserver.api.pool.PoolService;
-import com.cyecize.gatewayserver.api.pool.Task;
-import com.cyecize.gatewayserver.api.server.Connection;
-import com.cyecize.gatewayserver.util.ScheduleUtils;
-import com.cyecize.ioc.annotations.PostConstruct;
-import com.cyecize.ioc.annotations.Service;
-import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
-
-import java.io.IOException;
-import java.net.Socket;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
-import static com.cyecize.gatewayserver.util.HttpProtocolUtils.transferHttpRequest;
-import static com.cyecize.gatewayserver.util.HttpProtocolUtils.transferHttpResponse;
-
-@Service
-@Slf4j
-@RequiredArgsConstructor
-public class ConnectionHandlerImpl implements ConnectionHandler {
-
-    private final Options options;
-
-    private final PoolService poolService;
-
-    private final KeepAliveSessionHandler keepAliveSessionHandler;
-
-    /**
-     * Mapping of host to the desired destination server / servers.
-     * If more than one server are present in a collection, choose the most appropriate one or the first one.
-     * <p>
-     * Eg.
-     * abc.com -> localhost:8080
-     * www.abc.com -> localhost:8080
-     * <p>
-     * xyz.com -> http localhost:5050, https localhost:5051
-     * abc.xyz.com -> localhost:5060
-     * <p>
-     * yyy.com -> 192.168.0.1:80
-     * 134.134.122.19 -> localhost:8090
-     */
-    private final Map<String, List<DestinationDto>> domainsMap = new HashMap<>();
-
-    @PostConstruct
-    void init() {
-        for (RouteOption option : this.options.getRouteOptions()) {
-            final DestinationDto dest = new DestinationDto(
-                    option.getDestinationPort(),
-                    option.getDestinationHost(),
-                    option.getScheme()
-            );
-
-            this.domainsMap.putIfAbsent(option.getHost(), new ArrayList<>());
-            this.domainsMap.get(option.getHost()).add(dest);
-
-            for (String subdomain : option.getSubdomains()) {
-                final String domainKey = subdomain + "." + option.getHost();
-                this.domainsMap.putIfAbsent(domainKey, new ArrayList<>());
-                this.domainsMap.get(domainKey).add(dest);
-            }
-        }
-    }
-
-    @Override
-    public void process(Connection clientConn) {
-        try {
-            ScheduleUtils.scheduleConnectionTerminator(clientConn, this.options.getKillConnectionAfterSeconds());
-
-            if (!clientConn.readRequestLines()) {
-                return;
-            }
-
-            final String host = clientConn.getHost();
-
-            final List<DestinationDto> servers = this.domainsMap.getOrDefault(host, new ArrayList<>());
-            final DestinationDto server = servers.stream()
-                    .filter(s -> s.getScheme().isCompatibleWith(clientConn))
-                    .findFirst().orElse(null);
-
-            if (server == null) {
-                log.warn("No such host " + host);
-                clientConn.close();
-                return;
-            }
-
-            final Exchange exchange;
-            try {
-                final Socket serverSock = new Socket(server.getHost(), server.getPort());
-                final Connection serverConn = new Connection(serverSock, false);
-
-                exchange = new Exchange(clientConn, serverConn, server);
-            } catch (IOException ex) {
-                log.warn("Could not establish connection to server {}:{}, Host: {}. Message: {}",
-                        server.getHost(), server.getPort(), host, ex.getMessage()
-                );
-                clientConn.close();
-                return;
-            }
-
-            final String exchangeName = exchange.getName();
-            this.poolService.updateCurrentTaskName(String.format("Client Connection Task, %s", exchangeName));
-
-            this.asyncSocketConnection(
-                    String.format("Request Transfer Task, %s", exchangeName),
-                    () -> transferHttpRequest(exchange),
-                    exchange
-            );
-
-            this.asyncSocketConnection(
-                    String.format("Response Transfer Task, %s", exchangeName),
-                    () -> this.transferServerResponse(exchange),
-                    exchange
-            );
-
-        } catch (IOException ex) {
-            log.error("Error while processing client request! {}", clientConn.getHostOrIp(), ex);
-            clientConn.close();
-        }
-    }
-
-    private void transferServerResponse(Exchange exchange) throws IOException {
-        transferHttpResponse(exchange);
-
-        final String connection = exchange.getServerConnection().getConnection();
-        if (connection == null || !connection.contains("keep-alive")) {
-            exchange.close();
-            return;
-        }
-
-        this.keepAliveSessionHandler.runKeepAliveConnection(exchange);
-    }
-
-    private void asyncSocketConnection(String taskName,
-                                       RunnableThrowable runnable,
-                                       Exchange exchange) {
-        this.poolService.submit(new Task(
-                taskName,
-                () -> {
-                    try {
-                        runnable.run();
-                    } catch (IOException ignored) {
-                        exchange.close();
-                    }
-                }
-        ));
-    }
-
-    @FunctionalInterface
-    interface RunnableThrowable {
-        void run() throws IOException;
-    }
-}
+package com.cyecize.gatewayserver.api.connection;
+
+import com.cyecize.gatewayserver.api.accesslog.AccessLogService;
+import com.cyecize.gatewayserver.api.balancing.DestinationGroup;
+import com.cyecize.gatewayserver.api.http2.Http2Connection;
+import com.cyecize.gatewayserver.api.options.Options;
+import com.cyecize.gatewayserver.api.pool.PoolService;
+import com.cyecize.gatewayserver.api.ratelimit.RateLimitService;
+import com.cyecize.gatewayserver.api.routing.RoutingService;
+import com.cyecize.gatewayserver.api.server.Connection;
+import com.cyecize.gatewayserver.api.timer.TimerService;
+import com.cyecize.gatewayserver.util.ScheduleUtils;
+import com.cyecize.ioc.annotations.Service;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+@Service
+@Slf4j
+public class ConnectionHandlerImpl implements ConnectionHandler {
+
+    private final Options options;
+
+    private final PoolService poolService;
+
+    private final KeepAliveSessionHandler keepAliveSessionHandler;
+
+    private final Http2SessionHandler http2SessionHandler;
+
+    private final TimerService timerService;
+
+    private final RoutingService routingService;
+
+    private final RateLimitService rateLimitService;
+
+    private final AccessLogService accessLogService;
+
+    /**
+     * Encoded once, since they are sent exactly when the gateway has the least time to spare.
+     */
+    private final byte[] serviceUnavailableResponse;
+
+    private final byte[] tooManyRequestsResponse;
+
+    public ConnectionHandlerImpl(Options options,
+                                 PoolService poolService,
+                                 KeepAliveSessionHandler keepAliveSessionHandler,
+                                 Http2SessionHandler http2SessionHandler,
+                                 TimerService timerService,
+                                 RoutingService routingService,
+                                 RateLimitService rateLimitService,
+                                 AccessLogService accessLogService) {
+        this.options = options;
+        this.poolService = poolService;
+        this.keepAliveSessionHandler = keepAliveSessionHandler;
+        this.http2SessionHandler = http2SessionHandler;
+        this.timerService = timerService;
+        this.routingService = routingService;
+        this.rateLimitService = rateLimitService;
+        this.accessLogService = accessLogService;
+        this.serviceUnavailableResponse = encodeRefusal(
+                "503 Service Unavailable", options.getAdmissionOptions().getRetryAfterSeconds()
+        );
+        this.tooManyRequestsResponse = encodeRefusal(
+                "429 Too Many Requests", options.getRateLimitOptions().getRetryAfterSeconds()
+        );
+    }
+
+    @Override
+    public void process(Connection clientConn) {
+        final long startNanos = System.nanoTime();
+        try {
+            ScheduleUtils.scheduleConnectionTerminator(
+                    this.timerService, clientConn, this.options.getKillConnectionAfterSeconds()
+            );
+
+            if (this.isHttp2(clientConn)) {
+                this.http2SessionHandler.runSession(clientConn);
+                return;
+            }
+
+            if (!clientConn.readRequestLines()) {
+                return;
+            }
+
+            final DestinationGroup route = this.routingService.resolveRoute(clientConn);
+            if (route == null) {
+                this.accessLogService.record(clientConn, null, 0, 0, startNanos);
+                clientConn.close();
+                return;
+            }
+
+            if (!this.rateLimitService.tryAcquire(clientConn.getSocket().getInetAddress(), route)) {
+                this.refuse(clientConn, route, 429, this.tooManyRequestsResponse, startNanos);
+                return;
+            }
+
+            this.poolService.updateCurrentTaskName(String.format(
+                    "Client Connection Task, From client '%s'", clientConn.getHostOrIp()
+            ));
+            this.keepAliveSessionHandler.runSession(clientConn, route);
+        } catch (IOException | RuntimeException ex) {
+            log.error("Error while processing client request! {}", clientConn.getHostOrIp(), ex);
+            clientConn.close();
+        } finally {
+            clientConn.releaseHeadReader();
+        }
+    }
+
+    /**
+     * Plain connections get the response without reading their request. TLS connections are closed instead, since
+     * the handshake would hold up the thread that accepts connections.
+     */
+    @Override
+    public void reject(Connection clientConn) {
+        if (clientConn.isSsl()) {
+            this.accessLogService.record(clientConn, null, 0, 0, System.nanoTime());
+            clientConn.close();
+        } else {
+            this.refuse(clientConn, null, 503, this.serviceUnavailableResponse, System.nanoTime());
+        }
+    }
+
+    @Override
+    public void throttle(Connection clientConn) {
+        if (clientConn.isSsl()) {
+            this.accessLogService.record(clientConn, null, 0, 0, System.nanoTime());
+            clientConn.close();
+        } else {
+            this.refuse(clientConn, null, 429, this.tooManyRequestsResponse, System.nanoTime());
+        }
+    }
+
+    private void refuse(Connection clientConn, DestinationGroup route, int statusCode, byte[] response,
+                        long startNanos) {
+        long bytesOut = 0;
+        try {
+            clientConn.getSocket().getOutputStream().write(response);
+            bytesOut = response.length;
+        } catch (IOException ex) {
+            log.debug("Could not turn away client {}. {}", clientConn.getHostOrIp(), ex.getMessage());
+        }
+
+        this.accessLogService.record(clientConn, route, statusCode, bytesOut, startNanos);
+        clientConn.close();
+    }
+
+    private boolean isHttp2(Connection clientConn) throws IOException {
+        return clientConn.isSsl()
+                && this.options.getHttp2Options().getEnabled()
+                && Http2Connection.PROTOCOL.equals(clientConn.getApplicationProtocol());
+    }
+
+    static byte[] encodeRefusal(String status, int retryAfterSeconds) {
+        return String.format(
+                "HTTP/1.1 %s\r\nRetry-After: %d\r\nContent-Length: 0\r\nConnection: close\r\n\r\n",
+                status,
+                retryAfterSeconds
+        ).getBytes(StandardCharsets.ISO_8859_1);
+    }
+}
@@ -1,15 +1,35 @@
-package com.cyecize.gatewayserver.api.connection;
-
-import com.cyecize.gatewayserver.api.server.Scheme;
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
-
-@Data
-@AllArgsConstructor
-@NoArgsConstructor
-public class DestinationDto {
-    private int port;
-    private String host;
-    private Scheme scheme;
-}
+package com.cyecize.gatewayserver.api.connection;
+
+import com.cyecize.gatewayserver.api.balancing.DestinationStats;
+import com.cyecize.gatewayserver.api.dns.DestinationAddresses;
+import com.cyecize.gatewayserver.api.health.DestinationHealth;
+import com.cyecize.gatewayserver.api.server.Scheme;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class DestinationDto {
+    private int port;
+    private String host;
+    private Scheme scheme;
+
+    /**
+     * Load of the destination, shared by the routes that lead to it.
+     */
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final DestinationStats stats = new DestinationStats();
+
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final DestinationHealth health = new DestinationHealth();
+
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final DestinationAddresses addresses = new DestinationAddresses();
+}
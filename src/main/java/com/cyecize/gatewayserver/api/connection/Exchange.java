@@ -1,69 +1,164 @@
-package com.cyecize.gatewayserver.api.connection;
-
-import com.cyecize.gatewayserver.api.server.Connection;
-import lombok.Getter;
-import lombok.extern.slf4j.Slf4j;
-
-import java.net.SocketException;
-
-@Slf4j
-public class Exchange {
-    @Getter
-    private final Connection clientConnection;
-
-    @Getter
-    private final Connection serverConnection;
-    private final DestinationDto destination;
-
-    public Exchange(Connection clientConnection, Connection serverConnection, DestinationDto destination) {
-        this.clientConnection = clientConnection;
-        this.serverConnection = serverConnection;
-        this.destination = destination;
-    }
-
-    public static Exchange createFrom(Exchange exchange) {
-        final Connection client = new Connection(
-                exchange.getClientConnection().getSocket(),
-                exchange.getClientConnection().isSsl()
-        );
-
-        final Connection server = new Connection(
-                exchange.getServerConnection().getSocket(),
-                exchange.getServerConnection().isSsl()
-        );
-
-        return new Exchange(client, server, exchange.destination);
-    }
-
-
-    public String getName() {
-        return String.format("From client '%s' to server '%s:%d'",
-                this.clientConnection.getHostOrIp(),
-                this.destination.getHost(),
-                this.destination.getPort()
-        );
-    }
-
-    public void close() {
-        try {
-            this.clientConnection.close();
-        } finally {
-            this.serverConnection.close();
-        }
-    }
-
-    public void closeCloseables() {
-        this.clientConnection.closeCloseables();
-        this.serverConnection.closeCloseables();
-    }
-
-    public void removeSocketTimeouts() {
-        try {
-            this.clientConnection.getSocket().setSoTimeout(0);
-            this.serverConnection.getSocket().setSoTimeout(0);
-        } catch (SocketException e) {
-            log.warn("Error while removing socket timeouts! Closing exchange {}.", this.getName());
-            this.close();
-        }
-    }
-}
+package com.cyecize.gatewayserver.api.connection;
+
+import com.cyecize.gatewayserver.api.balancing.DestinationGroup;
+import com.cyecize.gatewayserver.api.buffer.MemoryAccount;
+import com.cyecize.gatewayserver.api.cache.CacheFill;
+import com.cyecize.gatewayserver.api.compression.ResponseCompression;
+import com.cyecize.gatewayserver.api.metrics.RouteMetrics;
+import com.cyecize.gatewayserver.api.server.Connection;
+import com.cyecize.gatewayserver.api.upstream.PooledSocket;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Single request / response pair between a client and a destination server.
+ */
+public class Exchange {
+    @Getter
+    private final Connection clientConnection;
+
+    @Getter
+    private Connection serverConnection;
+
+    @Getter
+    private final PooledSocket upstream;
+
+    @Getter
+    private final DestinationGroup route;
+
+    /**
+     * Set if the response is meant to fill the response cache.
+     */
+    @Getter
+    @Setter
+    private CacheFill cacheFill;
+
+    /**
+     * Set if the route compresses responses and the client accepts a compressed response.
+     */
+    @Getter
+    @Setter
+    private ResponseCompression responseCompression;
+
+    @Getter
+    private final long startNanos;
+
+    /**
+     * Time from sending the request until the first bytes of the response, -1 until then.
+     */
+    @Getter
+    private long timeToFirstByteNanos = -1;
+
+    @Getter
+    private long bytesIn;
+
+    @Getter
+    private long bytesOut;
+
+    /**
+     * Charged with the buffers of the server reader, and of the client reader on HTTP/1.1.
+     */
+    @Getter
+    private final MemoryAccount memoryAccount;
+
+    private boolean isResponseStarted;
+
+    private boolean isCompleted;
+
+    public Exchange(Connection clientConnection, PooledSocket upstream, DestinationGroup route) {
+        this.clientConnection = clientConnection;
+        this.upstream = upstream;
+        this.route = route;
+        this.serverConnection = new Connection(upstream.getSocket(), false, upstream.getHeadReader());
+
+        this.memoryAccount = new MemoryAccount(route.getMetrics().getMemoryAccount());
+        upstream.getHeadReader().setMemoryAccount(this.memoryAccount);
+
+        this.startNanos = System.nanoTime();
+        this.getDestination().getStats().onExchangeStarted();
+    }
+
+    /**
+     * Prepares for another response head on the same request, used after informational responses.
+     */
+    public Connection nextServerConnection() {
+        this.serverConnection = new Connection(this.upstream.getSocket(), false, this.upstream.getHeadReader());
+        return this.serverConnection;
+    }
+
+    /**
+     * Records how long the server took to start responding, used for latency based load balancing.
+     */
+    public void onResponseStarted() {
+        if (this.isResponseStarted) {
+            return;
+        }
+
+        this.isResponseStarted = true;
+
+        final long latency = System.nanoTime() - this.startNanos;
+        this.timeToFirstByteNanos = latency;
+        this.getDestination().getStats().recordLatency(latency);
+        this.getRouteMetrics().onResponseStarted(latency);
+    }
+
+    /**
+     * Stops counting the exchange as outstanding for its destination. Safe to call more than once.
+     */
+    public void complete() {
+        if (this.isCompleted) {
+            return;
+        }
+
+        this.isCompleted = true;
+        this.getDestination().getStats().onExchangeCompleted();
+    }
+
+    /**
+     * @param count bytes received from the client and sent to the destination.
+     */
+    public void addBytesIn(long count) {
+        this.bytesIn += count;
+        this.getRouteMetrics().addBytesIn(count);
+    }
+
+    /**
+     * @param count bytes received from the destination and sent to the client.
+     */
+    public void addBytesOut(long count) {
+        this.bytesOut += count;
+        this.getRouteMetrics().addBytesOut(count);
+    }
+
+    /**
+     * @return status of the last response head that the destination sent, 0 if there was none.
+     */
+    public int getStatusCode() {
+        return this.serverConnection.isHeadRead() ? this.serverConnection.getStatusCode() : 0;
+    }
+
+    public RouteMetrics getRouteMetrics() {
+        return this.route.getMetrics();
+    }
+
+    public DestinationDto getDestination() {
+        return this.upstream.getDestination();
+    }
+
+    public String getName() {
+        return String.format("From client '%s' to server '%s:%d'",
+                this.clientConnection.getHostOrIp(),
+                this.getDestination().getHost(),
+                this.getDestination().getPort()
+        );
+    }
+
+    public void close() {
+        try {
+            this.clientConnection.close();
+        } finally {
+            this.upstream.discard();
+            this.complete();
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.cyecize.gatewayserver.api.connection;
+
+import com.cyecize.gatewayserver.api.accesslog.AccessLogService;
+import com.cyecize.gatewayserver.api.balancing.DestinationGroup;
+import com.cyecize.gatewayserver.api.health.HealthCheckService;
+import com.cyecize.gatewayserver.api.http.BodyFraming;
+import com.cyecize.gatewayserver.api.http.ChunkedOutputStream;
+import com.cyecize.gatewayserver.api.http.HttpHead;
+import com.cyecize.gatewayserver.api.http2.Http2Connection;
+import com.cyecize.gatewayserver.api.http2.Http2DataOutputStream;
+import com.cyecize.gatewayserver.api.http2.Http2ErrorCode;
+import com.cyecize.gatewayserver.api.http2.Http2Messages;
+import com.cyecize.gatewayserver.api.http2.Http2Stream;
+import com.cyecize.gatewayserver.api.options.Options;
+import com.cyecize.gatewayserver.api.pool.PoolService;
+import com.cyecize.gatewayserver.api.pool.Task;
+import com.cyecize.gatewayserver.api.routing.RoutingService;
+import com.cyecize.gatewayserver.api.server.Connection;
+import com.cyecize.gatewayserver.api.upstream.PooledSocket;
+import com.cyecize.gatewayserver.api.upstream.UpstreamConnectionPool;
+import com.cyecize.gatewayserver.error.Http2Exception;
+import com.cyecize.gatewayserver.util.RelayUtils;
+import com.cyecize.ioc.annotations.Service;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static com.cyecize.gatewayserver.util.HttpProtocolUtils.isInformational;
+
+/**
+ * Serves clients that negotiated HTTP/2. Every stream is forwarded as an HTTP/1.1 request over a connection of
+ * the upstream pool, so that many requests of a client share one TLS connection while destination servers keep
+ * speaking HTTP/1.1.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class Http2SessionHandler {
+    private final Options options;
+
+    private final PoolService poolService;
+
+    private final RoutingService routingService;
+
+    private final UpstreamConnectionPool upstreamConnectionPool;
+
+    private final HealthCheckService healthCheckService;
+
+    private final AccessLogService accessLogService;
+
+    /**
+     * Reads the frames of the client on the calling thread, while streams are forwarded by the thread pool.
+     */
+    public void runSession(Connection clientConn) {
+        this.poolService.updateCurrentTaskName(String.format(
+                "HTTP/2 Connection Task, From client '%s'", clientConn.getHostOrIp()
+        ));
+
+        try {
+            new Http2Connection(
+                    clientConn, this.options.getHttp2Options(), stream -> this.submitStream(clientConn, stream)
+            ).run();
+        } catch (IOException ex) {
+            log.warn("Could not start HTTP/2 connection with client {}. {}", clientConn.getHostOrIp(), ex.getMessage());
+            clientConn.close();
+        }
+    }
+
+    /**
+     * Streams are shed like new connections when the pool is overloaded, the client may retry a refused stream.
+     */
+    private void submitStream(Connection clientConn, Http2Stream stream) {
+        final boolean isAdmitted = this.poolService.trySubmit(new Task(
+                String.format("HTTP/2 Stream %d Task, From client '%s'", stream.getId(), clientConn.getHostOrIp()),
+                () -> this.handleStream(clientConn, stream)
+        ));
+
+        if (!isAdmitted) {
+            stream.reset(Http2ErrorCode.REFUSED_STREAM);
+            stream.close();
+        }
+    }
+
+    private void handleStream(Connection clientConn, Http2Stream stream) {
+        final long startNanos = System.nanoTime();
+        try {
+            final boolean hasBody = stream.awaitRequestBody();
+            final HttpHead head = Http2Messages.createRequestHead(stream.getId(), stream.getRequestFields(), hasBody);
+
+            final Connection request = new Connection(
+                    clientConn.getSocket(), clientConn.isSsl(), head, clientConn.getBufferPool()
+            );
+            request.setClientName(clientConn.getClientName());
+
+            final DestinationGroup route = this.routingService.resolveRoute(request);
+            if (route == null) {
+                this.writeError(stream, 421);
+                this.accessLogService.record(request, null, 421, 0, startNanos);
+                return;
+            }
+
+            this.forward(stream, request, route, hasBody, startNanos);
+        } catch (Http2Exception ex) {
+            log.debug("Rejecting stream {} of client {}. {}", stream.getId(), clientConn.getHostOrIp(), ex.getMessage());
+            stream.reset(ex.getErrorCode());
+        } catch (IOException ex) {
+            stream.reset(Http2ErrorCode.CANCEL);
+        } catch (RuntimeException ex) {
+            log.error("Error while processing HTTP/2 stream of client {}.", clientConn.getHostOrIp(), ex);
+            stream.reset(Http2ErrorCode.INTERNAL_ERROR);
+        } finally {
+            stream.close();
+        }
+    }
+
+    private void forward(Http2Stream stream, Connection request, DestinationGroup route, boolean hasBody,
+                         long startNanos) {
+        final DestinationDto destination = route.choose();
+        Exchange exchange;
+        try {
+            exchange = this.createExchange(stream, request, this.upstreamConnectionPool.borrow(destination), route);
+        } catch (IOException ex) {
+            log.warn("Could not establish connection to server {}:{}, Host: {}. Message: {}",
+                    destination.getHost(), destination.getPort(), request.getHost(), ex.getMessage()
+            );
+            this.writeError(stream, 502);
+            this.accessLogService.record(request, route, 502, 0, startNanos);
+            return;
+        }
+
+        try {
+            boolean isTransferred = this.transfer(stream, exchange, hasBody);
+
+            // A reused connection may have been closed by the server right before the request was sent.
+            if (!isTransferred && !hasBody && exchange.getUpstream().isReused() && !stream.isResponseStarted()) {
+                exchange.getUpstream().discard();
+                exchange.complete();
+
+                exchange = this.createExchange(
+                        stream, request, this.upstreamConnectionPool.connect(destination), route
+                );
+                isTransferred = this.transfer(stream, exchange, false);
+            }
+
+            if (!isTransferred) {
+                this.healthCheckService.reportFailure(exchange.getDestination());
+                exchange.getUpstream().discard();
+                this.writeError(stream, 502);
+                this.accessLogService.record(exchange, 502);
+                return;
+            }
+            this.healthCheckService.reportSuccess(exchange.getDestination());
+            this.accessLogService.record(exchange);
+
+            if (this.isServerReusable(exchange) && stream.removeCloseables()) {
+                exchange.getUpstream().release();
+            } else {
+                exchange.getUpstream().discard();
+            }
+        } catch (IOException ex) {
+            exchange.getUpstream().discard();
+            if (stream.isReset()) {
+                log.debug("Client reset stream {} while it was forwarded. {}", stream.getId(), ex.getMessage());
+                this.accessLogService.record(exchange);
+            } else if (stream.isResponseStarted()) {
+                stream.reset(Http2ErrorCode.INTERNAL_ERROR);
+                this.accessLogService.record(exchange);
+            } else {
+                log.warn("Error while forwarding HTTP/2 stream to server {}:{}, Host: {}. Message: {}",
+                        destination.getHost(), destination.getPort(), request.getHost(), ex.getMessage()
+                );
+                this.writeError(stream, 502);
+                this.accessLogService.record(exchange, 502);
+            }
+        } finally {
+            exchange.complete();
+        }
+    }
+
+    /**
+     * A reset stream closes the server connection, so that a thread blocked on the server is released.
+     */
+    private Exchange createExchange(Http2Stream stream, Connection request, PooledSocket upstream,
+                                    DestinationGroup route) {
+        final Exchange exchange = new Exchange(request, upstream, route);
+        stream.addCloseable(upstream::discard);
+
+        return exchange;
+    }
+
+    /**
+     * @return false if the server closed the connection without sending a response.
+     */
+    private boolean transfer(Http2Stream stream, Exchange exchange, boolean hasBody) throws IOException {
+        try {
+            this.sendRequest(stream, exchange, hasBody);
+        } catch (IOException ex) {
+            if (hasBody || !exchange.getUpstream().isReused()) {
+                throw ex;
+            }
+            return false;
+        }
+
+        return this.sendResponse(stream, exchange);
+    }
+
+    private void sendRequest(Http2Stream stream, Exchange exchange, boolean hasBody) throws IOException {
+        final Connection request = exchange.getClientConnection();
+        final OutputStream outputStream = exchange.getServerConnection().getSocket().getOutputStream();
+
+        request.getHead().writeTo(outputStream);
+        exchange.addBytesIn(request.getHead().getSize());
+
+        if (!hasBody) {
+            return;
+        }
+
+        if (request.getRequestBodyFraming() == BodyFraming.CHUNKED) {
+            final ChunkedOutputStream chunkedOutputStream = new ChunkedOutputStream(outputStream);
+            stream.getRequestBody().transferTo(chunkedOutputStream);
+            chunkedOutputStream.finish();
+            exchange.addBytesIn(chunkedOutputStream.getWrittenCount());
+        } else {
+            exchange.addBytesIn(stream.getRequestBody().transferTo(outputStream));
+        }
+    }
+
+    /**
+     * Interim responses are dropped, since HTTP/2 clients do not need them to continue sending the body.
+     *
+     * @return false if the server did not send a response.
+     */
+    private boolean sendResponse(Http2Stream stream, Exchange exchange) throws IOException {
+        Connection serverConn = exchange.getServerConnection();
+        if (!serverConn.readRequestLines()) {
+            return false;
+        }
+        exchange.onResponseStarted();
+
+        while (isInformational(serverConn.getStatusCode())) {
+            if (serverConn.getStatusCode() == 101) {
+                throw new IOException("Server switched protocols, which HTTP/2 does not support.");
+            }
+
+            serverConn = exchange.nextServerConnection();
+            if (!serverConn.readRequestLines()) {
+                return false;
+            }
+        }
+        exchange.addBytesOut(serverConn.getHead().getSize());
+
+        final BodyFraming framing = serverConn.getResponseBodyFraming(exchange.getClientConnection().getMethod());
+        final boolean hasBody = framing != BodyFraming.NONE
+                && !(framing == BodyFraming.CONTENT_LENGTH && serverConn.getContentLength() == 0);
+
+        stream.writeHeaders(
+                Http2Messages.createResponseFields(serverConn.getStatusCode(), serverConn.getHeaders()), !hasBody
+        );
+        if (!hasBody) {
+            return true;
+        }
+
+        final Http2DataOutputStream dataOutputStream = stream.openResponseBody();
+        exchange.addBytesOut(RelayUtils.transferContent(
+                serverConn.getHeadReader(), serverConn.getSocket(), framing, serverConn.getContentLength(), dataOutputStream
+        ));
+        dataOutputStream.finish();
+
+        return true;
+    }
+
+    private boolean isServerReusable(Exchange exchange) {
+        final Connection serverConn = exchange.getServerConnection();
+
+        return serverConn.isKeepAlive()
+                && serverConn.getResponseBodyFraming(exchange.getClientConnection().getMethod()).isPersistent()
+                && !serverConn.hasBufferedInput();
+    }
+
+    private void writeError(Http2Stream stream, int statusCode) {
+        try {
+            stream.writeHeaders(Http2Messages.createErrorFields(statusCode), true);
+        } catch (IOException ex) {
+            log.debug("Could not send {} on stream {}. {}", statusCode, stream.getId(), ex.getMessage());
+        }
+    }
+}
@@ -1,86 +1,474 @@
-package com.cyecize.gatewayserver.api.connection;
-
-import com.cyecize.gatewayserver.api.pool.PoolService;
-import com.cyecize.gatewayserver.api.pool.Task;
-import com.cyecize.gatewayserver.api.server.Connection;
-import com.cyecize.ioc.annotations.Service;
-import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
-
-import java.io.IOException;
-
-import static com.cyecize.gatewayserver.util.HttpProtocolUtils.transferHttpRequest;
-import static com.cyecize.gatewayserver.util.HttpProtocolUtils.transferHttpResponse;
-
-@Slf4j
-@Service
-@RequiredArgsConstructor
-public class KeepAliveSessionHandler {
-    private final PoolService poolService;
-
-    public void runKeepAliveConnection(Exchange exchange) {
-        exchange.closeCloseables();
-        exchange.removeSocketTimeouts();
-
-        this.asyncSocketConnection(
-                String.format("Request transfer Keep-Alive session %s", exchange.getName()),
-                () -> this.runRequestTransfer(exchange),
-                exchange
-        );
-
-        this.asyncSocketConnection(
-                String.format("Response transfer Keep-Alive session %s", exchange.getName()),
-                () -> this.runResponseTransfer(exchange),
-                exchange
-        );
-    }
-
-    private void runRequestTransfer(Exchange exchange) throws IOException {
-        while (true) {
-            // Create new instance to reset data from previous request.
-            exchange = Exchange.createFrom(exchange);
-            final Connection clientConn = exchange.getClientConnection();
-            if (!clientConn.readRequestLines()) {
-                return;
-            }
-            transferHttpRequest(exchange);
-        }
-    }
-
-    private void runResponseTransfer(Exchange exchange) throws IOException {
-        while (true) {
-            // Create new instance to reset data from previous request.
-            exchange = Exchange.createFrom(exchange);
-            final Connection serverConn = exchange.getServerConnection();
-            if (!serverConn.readRequestLines()) {
-                return;
-            }
-            System.out.println(exchange.getServerConnection().getConnection());
-            transferHttpResponse(exchange);
-        }
-    }
-
-    private void asyncSocketConnection(String taskName,
-                                       RunnableThrowable runnable,
-                                       Exchange exchange) {
-        this.poolService.submit(new Task(
-                taskName,
-                () -> {
-                    try {
-                        runnable.run();
-                    } catch (IOException ignored) {
-                        exchange.close();
-                    } finally {
-                        //Since sessions are while true loops, if one of the tasks completes it would mean
-                        // that the connection is finally ready to close
-                        exchange.close();
-                    }
-                }
-        ));
-    }
-
-    @FunctionalInterface
-    interface RunnableThrowable {
-        void run() throws IOException;
-    }
-}
+package com.cyecize.gatewayserver.api.connection;
+
+import com.cyecize.gatewayserver.api.accesslog.AccessLogService;
+import com.cyecize.gatewayserver.api.balancing.DestinationGroup;
+import com.cyecize.gatewayserver.api.cache.CacheFill;
+import com.cyecize.gatewayserver.api.cache.CachedResponse;
+import com.cyecize.gatewayserver.api.cache.ResponseCacheService;
+import com.cyecize.gatewayserver.api.compression.CompressionService;
+import com.cyecize.gatewayserver.api.health.HealthCheckService;
+import com.cyecize.gatewayserver.api.http.BodyFraming;
+import com.cyecize.gatewayserver.api.options.Options;
+import com.cyecize.gatewayserver.api.ratelimit.RateLimitService;
+import com.cyecize.gatewayserver.api.routing.RoutingService;
+import com.cyecize.gatewayserver.api.server.Connection;
+import com.cyecize.gatewayserver.api.upstream.PooledSocket;
+import com.cyecize.gatewayserver.api.upstream.UpstreamConnectionPool;
+import com.cyecize.gatewayserver.error.CannotParseRequestException;
+import com.cyecize.ioc.annotations.Service;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import static com.cyecize.gatewayserver.util.HttpProtocolUtils.transferHttpRequest;
+import static com.cyecize.gatewayserver.util.HttpProtocolUtils.transferHttpResponse;
+
+@Slf4j
+@Service
+public class KeepAliveSessionHandler {
+    private static final byte[] BAD_REQUEST_RESPONSE =
+            "HTTP/1.1 400 Bad Request\r\nContent-Length: 0\r\nConnection: close\r\n\r\n"
+                    .getBytes(StandardCharsets.ISO_8859_1);
+
+    private final UpstreamConnectionPool upstreamConnectionPool;
+
+    private final RoutingService routingService;
+
+    private final HealthCheckService healthCheckService;
+
+    private final ResponseCacheService responseCacheService;
+
+    private final CompressionService compressionService;
+
+    private final AccessLogService accessLogService;
+
+    private final RateLimitService rateLimitService;
+
+    private final int pipeliningDepth;
+
+    private final byte[] tooManyRequestsResponse;
+
+    public KeepAliveSessionHandler(Options options,
+                                   UpstreamConnectionPool upstreamConnectionPool,
+                                   RoutingService routingService,
+                                   HealthCheckService healthCheckService,
+                                   ResponseCacheService responseCacheService,
+                                   CompressionService compressionService,
+                                   AccessLogService accessLogService,
+                                   RateLimitService rateLimitService) {
+        this.upstreamConnectionPool = upstreamConnectionPool;
+        this.routingService = routingService;
+        this.healthCheckService = healthCheckService;
+        this.responseCacheService = responseCacheService;
+        this.compressionService = compressionService;
+        this.accessLogService = accessLogService;
+        this.rateLimitService = rateLimitService;
+        this.pipeliningDepth = options.getUpstreamPoolOptions().getPipeliningDepth();
+        this.tooManyRequestsResponse = ConnectionHandlerImpl.encodeRefusal(
+                "429 Too Many Requests", options.getRateLimitOptions().getRetryAfterSeconds()
+        );
+    }
+
+    /**
+     * Relays the requests of a client on the calling thread until either side stops keeping the connection alive.
+     * Between batches of requests the server connection goes back to the upstream pool, so idle clients do not
+     * hold backend connections and the next request may reuse a connection warmed up by another client.
+     * The destination is resolved again for every batch, so that the requests of a session are balanced too.
+     *
+     * @param clientConn connection with the head of the first request read.
+     * @param route      route of the first request, acquired from the {@link RateLimitService} and released once the
+     *                   session ends or moves on to another route.
+     */
+    public void runSession(Connection clientConn, DestinationGroup route) {
+        final Connection initialClientConn = clientConn;
+        boolean isFirstRequest = true;
+
+        try {
+            if (!this.removeReadTimeout(clientConn)) {
+                return;
+            }
+
+            while (true) {
+                if (!this.isValidRequest(clientConn)) {
+                    this.refuse(clientConn, route, 400, BAD_REQUEST_RESPONSE, System.nanoTime());
+                    return;
+                }
+
+                final Connection last = this.handleRequest(clientConn, route);
+                if (last == null) {
+                    return;
+                }
+
+                if (!last.isKeepAlive()) {
+                    last.close();
+                    return;
+                }
+
+                if (isFirstRequest) {
+                    // Keep-alive sessions are not bound by the connection terminator of the first request.
+                    isFirstRequest = false;
+                    initialClientConn.closeCloseables();
+                }
+
+                clientConn = this.readNextRequest(last);
+                if (clientConn == null) {
+                    return;
+                }
+
+                final DestinationGroup nextRoute = this.routingService.resolveRoute(clientConn);
+                if (nextRoute != route) {
+                    this.rateLimitService.release(clientConn.getSocket().getInetAddress(), route);
+                    route = null;
+                }
+
+                if (nextRoute == null) {
+                    // Logged like a first request without a route, see ConnectionHandlerImpl.
+                    this.accessLogService.record(clientConn, null, 0, 0, System.nanoTime());
+                    clientConn.close();
+                    return;
+                }
+
+                if (route == null) {
+                    if (!this.rateLimitService.tryAcquire(clientConn.getSocket().getInetAddress(), nextRoute)) {
+                        this.refuse(clientConn, nextRoute, 429, this.tooManyRequestsResponse, System.nanoTime());
+                        return;
+                    }
+                    route = nextRoute;
+                }
+            }
+        } finally {
+            if (route != null) {
+                this.rateLimitService.release(initialClientConn.getSocket().getInetAddress(), route);
+            }
+            initialClientConn.closeCloseables();
+        }
+    }
+
+    /**
+     * Answers the request from the response cache if it has a fresh response. Otherwise only one of the
+     * concurrent requests for a resource fills the cache, the rest wait for it and are answered from the cache.
+     *
+     * @return connection of the last answered request if the client can send more requests, null otherwise.
+     */
+    private Connection handleRequest(Connection clientConn, DestinationGroup route) {
+        final long startNanos = System.nanoTime();
+        if (!route.isCacheEnabled() || !this.responseCacheService.isCacheable(clientConn)) {
+            return this.forward(clientConn, route, null);
+        }
+
+        CachedResponse cached = this.responseCacheService.get(clientConn);
+        CacheFill cacheFill = null;
+        if (cached == null || !cached.isFresh(System.currentTimeMillis())) {
+            cacheFill = this.responseCacheService.startFill(clientConn, cached);
+            if (cacheFill == null) {
+                this.responseCacheService.awaitFill(clientConn);
+                cached = this.responseCacheService.get(clientConn);
+            }
+        }
+
+        if (cacheFill == null && cached != null && cached.isFresh(System.currentTimeMillis())) {
+            final int statusCode = cached.getStatusCode(clientConn);
+            try {
+                final long bytesOut = cached.writeTo(clientConn, System.currentTimeMillis());
+                this.accessLogService.record(clientConn, route, statusCode, bytesOut, startNanos);
+                return clientConn;
+            } catch (IOException ex) {
+                this.accessLogService.record(clientConn, route, statusCode, 0, startNanos);
+                clientConn.close();
+                return null;
+            }
+        }
+
+        try {
+            return this.forward(clientConn, route, cacheFill);
+        } finally {
+            if (cacheFill != null) {
+                this.responseCacheService.finishFill(cacheFill);
+            }
+        }
+    }
+
+    /**
+     * Sends the request to a destination of the route, followed by the requests that were pipelined after it.
+     *
+     * @return connection of the last answered request if both connections can carry more requests, null otherwise.
+     */
+    private Connection forward(Connection clientConn, DestinationGroup route, CacheFill cacheFill) {
+        final long startNanos = System.nanoTime();
+        final DestinationDto destination = route.choose();
+        final Exchange exchange;
+        try {
+            exchange = this.createExchange(clientConn, this.upstreamConnectionPool.borrow(destination), route);
+        } catch (IOException ex) {
+            log.warn("Could not establish connection to server {}:{}, Host: {}. Message: {}",
+                    destination.getHost(), destination.getPort(), clientConn.getHost(), ex.getMessage()
+            );
+            this.accessLogService.record(clientConn, route, 0, 0, startNanos);
+            clientConn.close();
+            return null;
+        }
+        exchange.setCacheFill(cacheFill);
+
+        final Exchange last = this.runBatch(exchange);
+        if (last == null) {
+            return null;
+        }
+
+        this.releaseUpstream(last);
+        return last.getClientConnection();
+    }
+
+    /**
+     * Bytes past the last response are not something that the next request could have asked for.
+     */
+    private void releaseUpstream(Exchange last) {
+        if (last.getServerConnection().hasBufferedInput()) {
+            last.getUpstream().discard();
+        } else {
+            last.getUpstream().release();
+        }
+    }
+
+    /**
+     * Forwards the request of the given exchange, followed by the requests that the client has already pipelined
+     * after it, up to the pipelining depth. The in-flight queue then pairs each request with its response, so
+     * that responses are framed according to the request they answer, e.g. HEAD.
+     *
+     * A pipelined request that is not framed unambiguously ends the batch and is answered with 400 once the
+     * requests before it got their responses.
+     *
+     * @return the exchange of the last response if both connections can carry more requests, null otherwise.
+     */
+    private Exchange runBatch(Exchange first) {
+        final Deque<Exchange> inFlight = new ArrayDeque<>();
+        Exchange exchange = first;
+        Connection rejected = null;
+        long rejectedStartNanos = 0;
+
+        try {
+            try {
+                transferHttpRequest(first);
+            } catch (IOException ex) {
+                if (!this.canRetry(first)) {
+                    throw ex;
+                }
+                return this.retry(first);
+            }
+            inFlight.add(first);
+
+            while (inFlight.size() < this.pipeliningDepth && exchange.getClientConnection().isKeepAlive()) {
+                final Connection clientConn = this.createNextClientConnection(exchange.getClientConnection());
+                if (!clientConn.readBufferedRequestLines()) {
+                    break;
+                }
+                if (!this.isValidRequest(clientConn)) {
+                    rejected = clientConn;
+                    rejectedStartNanos = System.nanoTime();
+                    break;
+                }
+
+                exchange = this.createExchange(clientConn, first.getUpstream(), first.getRoute());
+                transferHttpRequest(exchange);
+                inFlight.add(exchange);
+            }
+
+            Exchange last = null;
+            while ((exchange = inFlight.poll()) != null) {
+                final boolean isTransferred = transferHttpResponse(exchange);
+                exchange.complete();
+
+                if (!isTransferred) {
+                    if (exchange == first && inFlight.isEmpty() && this.canRetry(first)) {
+                        return this.retry(first);
+                    }
+
+                    this.accessLogService.record(exchange);
+                    this.healthCheckService.reportFailure(exchange.getDestination());
+                    exchange.close();
+                    return null;
+                }
+                this.healthCheckService.reportSuccess(exchange.getDestination());
+                this.accessLogService.record(exchange);
+
+                if (!this.isServerReusable(exchange)) {
+                    exchange.close();
+                    return null;
+                }
+
+                last = exchange;
+            }
+
+            if (rejected != null && last != null) {
+                this.releaseUpstream(last);
+                this.refuse(rejected, last.getRoute(), 400, BAD_REQUEST_RESPONSE, rejectedStartNanos);
+                return null;
+            }
+
+            return last;
+        } catch (IOException ex) {
+            // The exchange that failed has not been recorded yet, whether it failed on the request or the response.
+            this.accessLogService.record(exchange);
+            exchange.close();
+            return null;
+        } catch (RuntimeException | Error ex) {
+            // The server connection would otherwise keep its permit of the upstream pool for good.
+            this.accessLogService.record(exchange);
+            exchange.close();
+            throw ex;
+        } finally {
+            // Requests that will not get a response are not outstanding anymore.
+            first.complete();
+            inFlight.forEach(Exchange::complete);
+        }
+    }
+
+    private Exchange createExchange(Connection clientConn, PooledSocket upstream, DestinationGroup route) {
+        final Exchange exchange = new Exchange(clientConn, upstream, route);
+        clientConn.getHeadReader().setMemoryAccount(exchange.getMemoryAccount());
+        if (route.isCompressionEnabled()) {
+            exchange.setResponseCompression(this.compressionService.negotiate(clientConn));
+        }
+
+        return exchange;
+    }
+
+    /**
+     * The client learns about the end of a close-delimited response only when its connection is closed.
+     */
+    private boolean isServerReusable(Exchange exchange) {
+        final Connection clientConn = exchange.getClientConnection();
+        final Connection serverConn = exchange.getServerConnection();
+
+        return serverConn.isKeepAlive() && serverConn.getResponseBodyFraming(clientConn.getMethod()).isPersistent();
+    }
+
+    /**
+     * A reused connection may have been closed by the server right before the request was sent.
+     * Requests without a body are sent again over a new connection in that case.
+     *
+     * @return the exchange that got the response if both connections can carry more requests, null otherwise.
+     */
+    private Exchange retry(Exchange exchange) {
+        exchange.getUpstream().discard();
+
+        Exchange retry = null;
+        try {
+            retry = this.createExchange(
+                    exchange.getClientConnection(),
+                    this.upstreamConnectionPool.connect(exchange.getDestination()),
+                    exchange.getRoute()
+            );
+            retry.setCacheFill(exchange.getCacheFill());
+
+            transferHttpRequest(retry);
+            final boolean isTransferred = transferHttpResponse(retry);
+            retry.complete();
+            this.accessLogService.record(retry);
+
+            if (!isTransferred) {
+                this.healthCheckService.reportFailure(retry.getDestination());
+            } else {
+                this.healthCheckService.reportSuccess(retry.getDestination());
+                if (this.isServerReusable(retry)) {
+                    return retry;
+                }
+            }
+
+            retry.close();
+            return null;
+        } catch (IOException ex) {
+            this.closeRetry(exchange, retry);
+            return null;
+        } catch (RuntimeException | Error ex) {
+            this.closeRetry(exchange, retry);
+            throw ex;
+        }
+    }
+
+    private void closeRetry(Exchange exchange, Exchange retry) {
+        if (retry != null) {
+            this.accessLogService.record(retry);
+            retry.close();
+        } else {
+            this.accessLogService.record(exchange);
+            exchange.close();
+        }
+    }
+
+    private boolean isValidRequest(Connection clientConn) {
+        try {
+            clientConn.getHeaders().validateRequest();
+            return true;
+        } catch (CannotParseRequestException ex) {
+            log.warn("Rejecting request of client {}. {}", clientConn.getHostOrIp(), ex.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Answers and closes the connection, since the end of the request body is not known.
+     */
+    private void refuse(Connection clientConn, DestinationGroup route, int statusCode, byte[] response,
+                        long startNanos) {
+        long bytesOut = 0;
+        try {
+            clientConn.getSocket().getOutputStream().write(response);
+            bytesOut = response.length;
+        } catch (IOException ex) {
+            log.debug("Could not send {} to client {}. {}", statusCode, clientConn.getHostOrIp(), ex.getMessage());
+        }
+
+        this.accessLogService.record(clientConn, route, statusCode, bytesOut, startNanos);
+        clientConn.close();
+    }
+
+    private boolean canRetry(Exchange exchange) {
+        return exchange.getUpstream().isReused()
+                && exchange.getClientConnection().getRequestBodyFraming() == BodyFraming.NONE;
+    }
+
+    /**
+     * The read timeout only guards the head of the first request. Bodies are relayed without it, so that
+     * {@link com.cyecize.gatewayserver.util.RelayUtils} can move them through channels, while the connection
+     * terminator still bounds the first request.
+     */
+    private boolean removeReadTimeout(Connection clientConn) {
+        try {
+            clientConn.getSocket().setSoTimeout(0);
+            return true;
+        } catch (SocketException ex) {
+            log.warn("Error while removing socket timeouts! Closing connection {}.", clientConn.getHostOrIp());
+            clientConn.close();
+            return false;
+        }
+    }
+
+    /**
+     * @return connection of the next request of the client with its head read or null if there is none.
+     */
+    private Connection readNextRequest(Connection previous) {
+        final Connection clientConn = this.createNextClientConnection(previous);
+        try {
+            return clientConn.readRequestLines() ? clientConn : null;
+        } catch (IOException ex) {
+            log.warn("Could not continue keep-alive session of client {}. Message: {}",
+                    clientConn.getHostOrIp(), ex.getMessage()
+            );
+            clientConn.close();
+            return null;
+        }
+    }
+
+    /**
+     * Create new instance to reset data from previous request, while keeping what was read past it.
+     */
+    private Connection createNextClientConnection(Connection previous) {
+        final Connection next = new Connection(previous.getSocket(), previous.isSsl(), previous.getHeadReader());
+        next.setClientName(previous.getClientName());
+        return next;
+    }
+}
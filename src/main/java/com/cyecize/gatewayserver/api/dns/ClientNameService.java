@@ -0,0 +1,16 @@
+package com.cyecize.gatewayserver.api.dns;
+
+import java.net.InetAddress;
+
+/**
+ * Host names of clients, only meant for log lines.
+ */
+public interface ClientNameService {
+    /**
+     * Never waits for a reverse lookup. Unknown and expired addresses are looked up in the background, so that
+     * their name is available for the next connection.
+     *
+     * @return cached host name or null if there is none yet or lookups are disabled.
+     */
+    String getCachedName(InetAddress address);
+}
@@ -0,0 +1,118 @@
+package com.cyecize.gatewayserver.api.dns;
+
+import com.cyecize.gatewayserver.api.options.Options;
+import com.cyecize.gatewayserver.api.timer.TimerService;
+import com.cyecize.gatewayserver.constants.General;
+import com.cyecize.ioc.annotations.Service;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.InetAddress;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reverse lookups run on their own thread and their results are kept for a limited time.
+ * <p>
+ * While a lookup is pending, the previous name, if any, is still returned. Lookups that do not fit in the queue
+ * are dropped and retried once the pending entry expires.
+ */
+@Slf4j
+@Service
+public class ClientNameServiceImpl implements ClientNameService {
+
+    private final boolean isEnabled;
+
+    private final long ttlMillis;
+
+    private final Map<InetAddress, CachedName> names = new ConcurrentHashMap<>();
+
+    private ExecutorService lookupExecutor;
+
+    public ClientNameServiceImpl(Options options, TimerService timerService) {
+        this.isEnabled = options.getResolveClientNames();
+        this.ttlMillis = options.getClientNameTtlMillis();
+
+        if (this.isEnabled) {
+            this.lookupExecutor = new ThreadPoolExecutor(
+                    1, 1,
+                    0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(General.CLIENT_NAME_LOOKUP_QUEUE_SIZE),
+                    runnable -> {
+                        final Thread thread = new Thread(runnable, "Client Name Lookup Thread");
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    new ThreadPoolExecutor.DiscardPolicy()
+            );
+
+            timerService.scheduleAtFixedRate(this::evictExpired, this.ttlMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public String getCachedName(InetAddress address) {
+        if (!this.isEnabled) {
+            return null;
+        }
+
+        final long now = System.currentTimeMillis();
+        final CachedName cachedName = this.names.get(address);
+        if (cachedName != null && cachedName.expiresAt > now) {
+            return cachedName.name;
+        }
+
+        if (cachedName == null && this.names.size() >= General.MAX_CACHED_CLIENT_NAMES) {
+            return null;
+        }
+
+        // Whoever replaces the expired entry with a pending one starts the lookup.
+        final CachedName pending = new CachedName(cachedName == null ? null : cachedName.name, now + this.ttlMillis);
+        final boolean isOwner = cachedName == null
+                ? this.names.putIfAbsent(address, pending) == null
+                : this.names.replace(address, cachedName, pending);
+
+        if (isOwner) {
+            this.lookupExecutor.execute(() -> this.lookup(address));
+        }
+
+        return pending.name;
+    }
+
+    private void lookup(InetAddress address) {
+        // A fresh instance, so that the name does not stick to the address of the socket.
+        String name;
+        try {
+            name = InetAddress.getByAddress(address.getAddress()).getHostName();
+        } catch (Exception ex) {
+            log.debug("Reverse lookup of {} failed. {}", address.getHostAddress(), ex.getMessage());
+            name = null;
+        }
+
+        // Without a PTR record the literal address is returned, which is already known.
+        if (name != null && name.equals(address.getHostAddress())) {
+            name = null;
+        }
+
+        this.names.put(address, new CachedName(name, System.currentTimeMillis() + this.ttlMillis));
+    }
+
+    private void evictExpired() {
+        final long now = System.currentTimeMillis();
+        this.names.values().removeIf(cachedName -> cachedName.expiresAt <= now);
+    }
+
+    private static class CachedName {
+        private final String name;
+
+        private final long expiresAt;
+
+        CachedName(String name, long expiresAt) {
+            this.name = name;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
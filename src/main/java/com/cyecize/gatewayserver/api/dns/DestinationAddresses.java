@@ -0,0 +1,51 @@
+package com.cyecize.gatewayserver.api.dns;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resolved addresses of a destination host. Connections are spread over all of them in turn.
+ */
+public class DestinationAddresses {
+    private volatile InetSocketAddress[] addresses;
+
+    /**
+     * Time after which the addresses are looked up again, they are still used until the lookup succeeds.
+     */
+    private volatile long refreshAt;
+
+    private final AtomicBoolean isRefreshing = new AtomicBoolean();
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * @return null if the host was never resolved.
+     */
+    public InetSocketAddress next() {
+        final InetSocketAddress[] addresses = this.addresses;
+        if (addresses == null) {
+            return null;
+        }
+
+        return addresses[Math.floorMod(this.next.getAndIncrement(), addresses.length)];
+    }
+
+    boolean isRefreshDue(long now) {
+        return now >= this.refreshAt && !this.isRefreshing.get();
+    }
+
+    boolean startRefresh() {
+        return this.isRefreshing.compareAndSet(false, true);
+    }
+
+    void update(InetSocketAddress[] addresses, long refreshAt) {
+        this.addresses = addresses;
+        this.finishRefresh(refreshAt);
+    }
+
+    void finishRefresh(long refreshAt) {
+        this.refreshAt = refreshAt;
+        this.isRefreshing.set(false);
+    }
+}
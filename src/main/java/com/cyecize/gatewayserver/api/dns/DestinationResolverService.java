@@ -0,0 +1,19 @@
+package com.cyecize.gatewayserver.api.dns;
+
+import com.cyecize.gatewayserver.api.connection.DestinationDto;
+
+import java.net.InetSocketAddress;
+import java.util.Collection;
+
+public interface DestinationResolverService {
+    /**
+     * Replaces the destinations whose addresses are kept fresh, new ones are resolved in the background.
+     */
+    void watch(Collection<DestinationDto> destinations);
+
+    /**
+     * Picks the next cached address of the destination. Only a destination that has never been resolved
+     * is looked up on the calling thread.
+     */
+    InetSocketAddress resolve(DestinationDto destination);
+}
@@ -0,0 +1,98 @@
+package com.cyecize.gatewayserver.api.dns;
+
+import com.cyecize.gatewayserver.api.connection.DestinationDto;
+import com.cyecize.gatewayserver.api.options.Options;
+import com.cyecize.gatewayserver.api.timer.TimerService;
+import com.cyecize.gatewayserver.constants.General;
+import com.cyecize.ioc.annotations.Service;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looks up destination hosts on a background thread, so that connecting to a destination does not wait for DNS.
+ * <p>
+ * Addresses are looked up again a while before their TTL runs out. If that fails, the previous addresses are
+ * kept and the lookup is retried, since a stale address is more likely to work than none at all.
+ */
+@Slf4j
+@Service
+public class DestinationResolverServiceImpl implements DestinationResolverService {
+
+    private final long ttlMillis;
+
+    private final ExecutorService lookupExecutor;
+
+    private volatile Collection<DestinationDto> destinations = List.of();
+
+    public DestinationResolverServiceImpl(Options options, TimerService timerService) {
+        this.ttlMillis = options.getDestinationDnsTtlMillis();
+
+        this.lookupExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "Destination Resolver Thread");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        timerService.scheduleAtFixedRate(
+                this::refreshDue, General.DNS_REFRESH_CHECK_MILLIS, TimeUnit.MILLISECONDS
+        );
+    }
+
+    @Override
+    public void watch(Collection<DestinationDto> destinations) {
+        this.destinations = List.copyOf(destinations);
+        this.refreshDue();
+    }
+
+    @Override
+    public InetSocketAddress resolve(DestinationDto destination) {
+        final InetSocketAddress address = destination.getAddresses().next();
+        if (address != null) {
+            return address;
+        }
+
+        return new InetSocketAddress(destination.getHost(), destination.getPort());
+    }
+
+    private void refreshDue() {
+        final long now = System.currentTimeMillis();
+        for (DestinationDto destination : this.destinations) {
+            final DestinationAddresses addresses = destination.getAddresses();
+            if (addresses.isRefreshDue(now) && addresses.startRefresh()) {
+                this.lookupExecutor.execute(() -> this.refresh(destination));
+            }
+        }
+    }
+
+    private void refresh(DestinationDto destination) {
+        final DestinationAddresses addresses = destination.getAddresses();
+        try {
+            final InetAddress[] inetAddresses = InetAddress.getAllByName(destination.getHost());
+
+            // Only the family that the JVM prefers, e.g. "localhost" is often both ::1 and 127.0.0.1,
+            // while the server listens on one of them.
+            final InetSocketAddress[] socketAddresses = Arrays.stream(inetAddresses)
+                    .filter(address -> address.getClass() == inetAddresses[0].getClass())
+                    .map(address -> new InetSocketAddress(address, destination.getPort()))
+                    .toArray(InetSocketAddress[]::new);
+
+            // Refreshed when three quarters of the TTL have passed, so that there is time to retry.
+            addresses.update(socketAddresses, System.currentTimeMillis() + this.ttlMillis * 3 / 4);
+        } catch (UnknownHostException | RuntimeException ex) {
+            final long retryMillis = Math.min(this.ttlMillis, General.DNS_RETRY_MILLIS);
+            log.warn("Could not resolve destination host {}, retrying in {} millis. {}",
+                    destination.getHost(), retryMillis, ex.getMessage()
+            );
+            addresses.finishRefresh(System.currentTimeMillis() + retryMillis);
+        }
+    }
+}
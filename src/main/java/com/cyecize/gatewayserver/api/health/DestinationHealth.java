@@ -0,0 +1,92 @@
+package com.cyecize.gatewayserver.api.health;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Health of a destination, as seen by active probes and by the requests that are sent to it.
+ * <p>
+ * Every change of availability increments a global generation, so that destination groups can tell that
+ * their cached list of available destinations is stale with a single read.
+ */
+public class DestinationHealth {
+    private static final AtomicLong GENERATION = new AtomicLong();
+
+    private volatile boolean isHealthy = true;
+
+    private final AtomicBoolean isEjected = new AtomicBoolean();
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    /**
+     * Only touched by the health check thread.
+     */
+    private int consecutiveProbeSuccesses;
+
+    private int consecutiveProbeFailures;
+
+    public static long getGeneration() {
+        return GENERATION.get();
+    }
+
+    public boolean isAvailable() {
+        return this.isHealthy && !this.isEjected.get();
+    }
+
+    boolean isHealthy() {
+        return this.isHealthy;
+    }
+
+    void setHealthy(boolean isHealthy) {
+        this.isHealthy = isHealthy;
+        GENERATION.incrementAndGet();
+    }
+
+    /**
+     * @return false if the destination was already ejected.
+     */
+    boolean eject() {
+        if (!this.isEjected.compareAndSet(false, true)) {
+            return false;
+        }
+
+        GENERATION.incrementAndGet();
+        return true;
+    }
+
+    void readmit() {
+        this.consecutiveFailures.set(0);
+        this.isEjected.set(false);
+        GENERATION.incrementAndGet();
+    }
+
+    int incrementFailures() {
+        return this.consecutiveFailures.incrementAndGet();
+    }
+
+    /**
+     * Called for every successful request, so the shared counter is written only when it has to change.
+     */
+    void resetFailures() {
+        if (this.consecutiveFailures.get() != 0) {
+            this.consecutiveFailures.set(0);
+        }
+    }
+
+    /**
+     * @return number of successful probes in a row, including this one.
+     */
+    int onProbeSuccess() {
+        this.consecutiveProbeFailures = 0;
+        return ++this.consecutiveProbeSuccesses;
+    }
+
+    /**
+     * @return number of failed probes in a row, including this one.
+     */
+    int onProbeFailure() {
+        this.consecutiveProbeSuccesses = 0;
+        return ++this.consecutiveProbeFailures;
+    }
+}
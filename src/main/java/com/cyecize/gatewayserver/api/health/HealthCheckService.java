@@ -0,0 +1,22 @@
+package com.cyecize.gatewayserver.api.health;
+
+import com.cyecize.gatewayserver.api.connection.DestinationDto;
+
+import java.util.Collection;
+
+public interface HealthCheckService {
+    /**
+     * Replaces the destinations that are probed.
+     */
+    void watch(Collection<DestinationDto> destinations);
+
+    /**
+     * Called when a destination has answered a request.
+     */
+    void reportSuccess(DestinationDto destination);
+
+    /**
+     * Called when a destination could not be connected to or closed the connection without answering.
+     */
+    void reportFailure(DestinationDto destination);
+}
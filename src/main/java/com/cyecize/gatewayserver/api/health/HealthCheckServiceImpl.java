@@ -0,0 +1,202 @@
+package com.cyecize.gatewayserver.api.health;
+
+import com.cyecize.gatewayserver.api.buffer.BufferPool;
+import com.cyecize.gatewayserver.api.connection.DestinationDto;
+import com.cyecize.gatewayserver.api.dns.DestinationResolverService;
+import com.cyecize.gatewayserver.api.http.HttpHead;
+import com.cyecize.gatewayserver.api.http.HttpHeadReader;
+import com.cyecize.gatewayserver.api.options.HealthCheckOptions;
+import com.cyecize.gatewayserver.api.options.Options;
+import com.cyecize.gatewayserver.api.timer.TimerService;
+import com.cyecize.gatewayserver.util.HttpProtocolUtils;
+import com.cyecize.ioc.annotations.Service;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Marks destinations as unavailable so that routing skips them without waiting for a connect timeout.
+ * <p>
+ * Active probes run on their own thread at a fixed interval, a destination goes down and back up after a number
+ * of failed or successful probes in a row. Independently of probes, a destination that fails a number of requests
+ * in a row is ejected for a while and then readmitted.
+ */
+@Slf4j
+@Service
+public class HealthCheckServiceImpl implements HealthCheckService {
+
+    private final HealthCheckOptions healthCheckOptions;
+
+    private final TimerService timerService;
+
+    private final DestinationResolverService destinationResolverService;
+
+    private final BufferPool bufferPool;
+
+    private volatile Collection<DestinationDto> destinations = List.of();
+
+    /**
+     * Skips a round of probes if the previous one is still running, e.g. because of many timeouts.
+     */
+    private final AtomicBoolean isProbing = new AtomicBoolean();
+
+    private ExecutorService probeExecutor;
+
+    public HealthCheckServiceImpl(Options options,
+                                  TimerService timerService,
+                                  DestinationResolverService destinationResolverService,
+                                  BufferPool bufferPool) {
+        this.healthCheckOptions = options.getHealthCheckOptions();
+        this.timerService = timerService;
+        this.destinationResolverService = destinationResolverService;
+        this.bufferPool = bufferPool;
+
+        if (this.healthCheckOptions.getType() != HealthCheckType.NONE) {
+            this.probeExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "Health Check Thread");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            this.timerService.scheduleAtFixedRate(
+                    this::startProbing, this.healthCheckOptions.getIntervalMillis(), TimeUnit.MILLISECONDS
+            );
+        }
+    }
+
+    @Override
+    public void watch(Collection<DestinationDto> destinations) {
+        this.destinations = List.copyOf(destinations);
+    }
+
+    @Override
+    public void reportSuccess(DestinationDto destination) {
+        destination.getHealth().resetFailures();
+    }
+
+    @Override
+    public void reportFailure(DestinationDto destination) {
+        final int maxFailures = this.healthCheckOptions.getMaxConsecutiveFailures();
+        if (maxFailures < 1) {
+            return;
+        }
+
+        final DestinationHealth health = destination.getHealth();
+        if (health.incrementFailures() < maxFailures || !health.eject()) {
+            return;
+        }
+
+        log.warn("Ejecting destination {}:{} for {} millis after {} failures in a row.",
+                destination.getHost(),
+                destination.getPort(),
+                this.healthCheckOptions.getEjectionMillis(),
+                maxFailures
+        );
+
+        this.timerService.schedule(() -> {
+            log.info("Readmitting destination {}:{}.", destination.getHost(), destination.getPort());
+            health.readmit();
+        }, this.healthCheckOptions.getEjectionMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void startProbing() {
+        if (!this.isProbing.compareAndSet(false, true)) {
+            return;
+        }
+
+        this.probeExecutor.execute(() -> {
+            try {
+                for (DestinationDto destination : this.destinations) {
+                    this.probe(destination);
+                }
+            } finally {
+                this.isProbing.set(false);
+            }
+        });
+    }
+
+    private void probe(DestinationDto destination) {
+        final DestinationHealth health = destination.getHealth();
+        final boolean isSuccessful = this.healthCheckOptions.getType() == HealthCheckType.HTTP
+                ? this.probeHttp(destination)
+                : this.probeTcp(destination);
+
+        if (isSuccessful) {
+            if (health.onProbeSuccess() >= this.healthCheckOptions.getHealthyThreshold() && !health.isHealthy()) {
+                log.info("Destination {}:{} is healthy.", destination.getHost(), destination.getPort());
+                health.setHealthy(true);
+            }
+        } else {
+            if (health.onProbeFailure() >= this.healthCheckOptions.getUnhealthyThreshold() && health.isHealthy()) {
+                log.warn("Destination {}:{} is unhealthy.", destination.getHost(), destination.getPort());
+                health.setHealthy(false);
+            }
+        }
+    }
+
+    private boolean probeTcp(DestinationDto destination) {
+        try {
+            // Being able to connect is all that is checked.
+            this.connect(destination).close();
+            return true;
+        } catch (IOException ex) {
+            log.debug("TCP health check of {}:{} failed. {}",
+                    destination.getHost(), destination.getPort(), ex.getMessage()
+            );
+            return false;
+        }
+    }
+
+    /**
+     * Any status below 400 counts as healthy, since redirects are a valid answer to a plain GET.
+     */
+    private boolean probeHttp(DestinationDto destination) {
+        try (Socket socket = this.connect(destination)) {
+            socket.setSoTimeout(this.healthCheckOptions.getTimeoutMillis());
+
+            final String request = String.format(
+                    "GET %s HTTP/1.1\r\nHost: %s\r\nConnection: close\r\n\r\n",
+                    this.healthCheckOptions.getHttpPath(),
+                    destination.getHost()
+            );
+            socket.getOutputStream().write(request.getBytes(StandardCharsets.ISO_8859_1));
+
+            final HttpHeadReader headReader = new HttpHeadReader(socket.getInputStream(), this.bufferPool);
+            try {
+                final HttpHead head = headReader.readHead();
+                final int statusCode = HttpProtocolUtils.getStatusCode(head.getLine(0));
+
+                return statusCode >= 200 && statusCode < 400;
+            } finally {
+                headReader.release();
+            }
+        } catch (IOException ex) {
+            log.debug("HTTP health check of {}:{} failed. {}",
+                    destination.getHost(), destination.getPort(), ex.getMessage()
+            );
+            return false;
+        }
+    }
+
+    private Socket connect(DestinationDto destination) throws IOException {
+        final Socket socket = new Socket();
+        try {
+            socket.connect(
+                    this.destinationResolverService.resolve(destination),
+                    this.healthCheckOptions.getTimeoutMillis()
+            );
+            return socket;
+        } catch (IOException ex) {
+            socket.close();
+            throw ex;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.cyecize.gatewayserver.api.health;
+
+public enum HealthCheckType {
+    /**
+     * Destinations are only ejected passively, after failing real requests.
+     */
+    NONE,
+    TCP,
+    HTTP
+}
@@ -0,0 +1,24 @@
+package com.cyecize.gatewayserver.api.http;
+
+/**
+ * How the end of a message body is found, see RFC 7230 section 3.3.3.
+ */
+public enum BodyFraming {
+    NONE(true),
+    CONTENT_LENGTH(true),
+    CHUNKED(true),
+    /**
+     * Body ends when the sender closes the connection, which therefore cannot carry another message.
+     */
+    UNTIL_CLOSED(false);
+
+    private final boolean isPersistent;
+
+    BodyFraming(boolean isPersistent) {
+        this.isPersistent = isPersistent;
+    }
+
+    public boolean isPersistent() {
+        return this.isPersistent;
+    }
+}
@@ -0,0 +1,107 @@
+package com.cyecize.gatewayserver.api.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes a body with chunked transfer coding, used when the length of the body is not known up front.
+ * Small writes are buffered so that every chunk is of a reasonable size.
+ * <p>
+ * Closing does not close the target, the last chunk is only written by {@link #finish()} so that a failed body
+ * is not mistaken for a complete one.
+ */
+public class ChunkedOutputStream extends OutputStream {
+    private static final int CHUNK_SIZE = 8192;
+
+    /**
+     * Room in front of the data for the chunk size line, 8192 is "2000" in hex.
+     */
+    private static final int SIZE_LINE_LENGTH = 6;
+
+    private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+
+    private final OutputStream target;
+
+    /**
+     * Size line, data and the line ending after the data, so that each chunk is a single write.
+     */
+    private final byte[] buffer = new byte[SIZE_LINE_LENGTH + CHUNK_SIZE + 2];
+
+    private int count;
+
+    private long writtenCount;
+
+    public ChunkedOutputStream(OutputStream target) {
+        this.target = target;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (this.count == CHUNK_SIZE) {
+            this.writeChunk();
+        }
+
+        this.buffer[SIZE_LINE_LENGTH + this.count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (this.count == CHUNK_SIZE) {
+                this.writeChunk();
+            }
+
+            final int copied = Math.min(length, CHUNK_SIZE - this.count);
+            System.arraycopy(bytes, offset, this.buffer, SIZE_LINE_LENGTH + this.count, copied);
+            this.count += copied;
+            offset += copied;
+            length -= copied;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        this.writeChunk();
+        this.target.flush();
+    }
+
+    /**
+     * Writes the buffered bytes and the last chunk, which ends the body.
+     */
+    public void finish() throws IOException {
+        this.writeChunk();
+        this.target.write(LAST_CHUNK);
+        this.writtenCount += LAST_CHUNK.length;
+        this.target.flush();
+    }
+
+    /**
+     * @return the number of bytes written to the target, including chunk sizes.
+     */
+    public long getWrittenCount() {
+        return this.writtenCount;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private void writeChunk() throws IOException {
+        if (this.count == 0) {
+            return;
+        }
+
+        final byte[] size = (Integer.toHexString(this.count) + "\r\n").getBytes(StandardCharsets.ISO_8859_1);
+        final int start = SIZE_LINE_LENGTH - size.length;
+        System.arraycopy(size, 0, this.buffer, start, size.length);
+
+        final int end = SIZE_LINE_LENGTH + this.count;
+        this.buffer[end] = '\r';
+        this.buffer[end + 1] = '\n';
+
+        this.target.write(this.buffer, start, end + 2 - start);
+        this.writtenCount += end + 2 - start;
+        this.count = 0;
+    }
+}
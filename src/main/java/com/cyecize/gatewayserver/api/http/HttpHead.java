@@ -0,0 +1,113 @@
+package com.cyecize.gatewayserver.api.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Start line and header lines of a request or a response, kept as the raw bytes that were received.
+ * Lines are referenced by offset and length and only decoded to strings when asked for.
+ */
+public class HttpHead {
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private final byte[] bytes;
+
+    private final int[] lineStarts;
+
+    private final int[] lineEnds;
+
+    private final int lineCount;
+
+    /**
+     * False if some lines end with a new-line without a preceding return.
+     */
+    private final boolean isCrlfOnly;
+
+    private List<String> lines;
+
+    private HttpHeaders headers;
+
+    HttpHead(byte[] bytes, int[] lineStarts, int[] lineEnds, int lineCount, boolean isCrlfOnly) {
+        this.bytes = bytes;
+        this.lineStarts = lineStarts;
+        this.lineEnds = lineEnds;
+        this.lineCount = lineCount;
+        this.isCrlfOnly = isCrlfOnly;
+    }
+
+    public int getLineCount() {
+        return this.lineCount;
+    }
+
+    /**
+     * @return size of the head in bytes, including the empty line at the end.
+     */
+    public int getSize() {
+        return this.bytes.length;
+    }
+
+    public String getLine(int index) {
+        if (index >= this.lineCount) {
+            throw new IndexOutOfBoundsException(index);
+        }
+
+        final int start = this.lineStarts[index];
+        return new String(this.bytes, start, this.lineEnds[index] - start, StandardCharsets.ISO_8859_1);
+    }
+
+    public List<String> getLines() {
+        if (this.lines == null) {
+            final List<String> lines = new ArrayList<>(this.lineCount);
+            for (int i = 0; i < this.lineCount; i++) {
+                lines.add(this.getLine(i));
+            }
+            this.lines = Collections.unmodifiableList(lines);
+        }
+
+        return this.lines;
+    }
+
+    /**
+     * @return header fields of the head, indexed on first use.
+     */
+    public HttpHeaders getHeaders() {
+        // A thread that does not see the instance of another one builds its own, which is harmless since its fields are final.
+        if (this.headers == null) {
+            this.headers = new HttpHeaders(this);
+        }
+
+        return this.headers;
+    }
+
+    /**
+     * Writes the head as it was received, unless it has to be normalized to CRLF line endings.
+     */
+    public void writeTo(OutputStream outputStream) throws IOException {
+        if (this.isCrlfOnly) {
+            outputStream.write(this.bytes);
+            return;
+        }
+
+        for (int i = 0; i < this.lineCount; i++) {
+            outputStream.write(this.bytes, this.lineStarts[i], this.lineEnds[i] - this.lineStarts[i]);
+            outputStream.write(CRLF);
+        }
+        outputStream.write(CRLF);
+    }
+
+    byte[] getBytes() {
+        return this.bytes;
+    }
+
+    int[] getLineStarts() {
+        return this.lineStarts;
+    }
+
+    int[] getLineEnds() {
+        return this.lineEnds;
+    }
+}
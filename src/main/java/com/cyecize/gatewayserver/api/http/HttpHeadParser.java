@@ -0,0 +1,162 @@
+package com.cyecize.gatewayserver.api.http;
+
+import com.cyecize.gatewayserver.error.CannotParseRequestException;
+
+import java.util.Arrays;
+
+/**
+ * Incrementally finds the lines of an HTTP head in a byte array that is being filled.
+ * <p>
+ * Bytes that were already scanned are not scanned again when more data arrives. Leading empty lines are skipped,
+ * lines may end with CRLF or with a bare new-line.
+ */
+public class HttpHeadParser {
+    private final int maxHeadSize;
+
+    private final int maxLineCount;
+
+    private int[] lineStarts = new int[16];
+
+    private int[] lineEnds = new int[16];
+
+    private int lineCount;
+
+    private int offset;
+
+    /**
+     * Index of the first byte of the head, after leading empty lines.
+     */
+    private int headStart;
+
+    private int lineStart;
+
+    private int scanPosition;
+
+    /**
+     * Index of the first return in the current line, returns are only allowed right before the new-line.
+     */
+    private int returnIndex;
+
+    private boolean isCrlfOnly;
+
+    public HttpHeadParser(int maxHeadSize, int maxLineCount) {
+        this.maxHeadSize = maxHeadSize;
+        this.maxLineCount = maxLineCount;
+        this.reset(0);
+    }
+
+    /**
+     * Prepares the parser for a head that begins at the given index.
+     */
+    public void reset(int offset) {
+        this.lineCount = 0;
+        this.offset = offset;
+        this.headStart = offset;
+        this.lineStart = offset;
+        this.scanPosition = offset;
+        this.returnIndex = -1;
+        this.isCrlfOnly = true;
+    }
+
+    /**
+     * Continues scanning from where the previous call stopped.
+     *
+     * @param bytes array that holds the head, starting at the offset given to {@link #reset(int)}.
+     * @param limit index after the last byte that was read.
+     * @return index after the empty line that ends the head or -1 if more bytes are needed.
+     */
+    public int scan(byte[] bytes, int limit) throws CannotParseRequestException {
+        for (int i = this.scanPosition; i < limit; i++) {
+            final byte b = bytes[i];
+            if (b == '\r' && this.returnIndex < this.lineStart) {
+                this.returnIndex = i;
+            }
+            if (b != '\n') {
+                continue;
+            }
+
+            int lineEnd = i;
+            if (lineEnd > this.lineStart && bytes[lineEnd - 1] == '\r') {
+                lineEnd--;
+            } else {
+                this.isCrlfOnly = false;
+            }
+
+            if (this.returnIndex >= this.lineStart && this.returnIndex < lineEnd) {
+                throw new CannotParseRequestException(String.format(
+                        "Illegal character after return on line %d.", this.lineCount + 1
+                ));
+            }
+
+            if (lineEnd == this.lineStart) {
+                if (this.lineCount > 0) {
+                    this.checkSize(i + 1);
+                    this.scanPosition = i + 1;
+                    return i + 1;
+                }
+
+                // Empty lines before the start line are ignored.
+                this.headStart = i + 1;
+                this.isCrlfOnly = true;
+            } else {
+                this.addLine(this.lineStart, lineEnd);
+            }
+
+            this.lineStart = i + 1;
+        }
+
+        this.scanPosition = limit;
+        this.checkSize(limit);
+
+        return -1;
+    }
+
+    public int getHeadStart() {
+        return this.headStart;
+    }
+
+    /**
+     * @param headEnd value returned by {@link #scan(byte[], int)}.
+     * @return copy of the head that does not depend on the array anymore.
+     * @throws CannotParseRequestException if the fields that frame the body are invalid.
+     */
+    public HttpHead toHead(byte[] bytes, int headEnd) throws CannotParseRequestException {
+        final int[] starts = new int[this.lineCount];
+        final int[] ends = new int[this.lineCount];
+        for (int i = 0; i < this.lineCount; i++) {
+            starts[i] = this.lineStarts[i] - this.headStart;
+            ends[i] = this.lineEnds[i] - this.headStart;
+        }
+
+        final HttpHead head = new HttpHead(
+                Arrays.copyOfRange(bytes, this.headStart, headEnd), starts, ends, this.lineCount, this.isCrlfOnly
+        );
+        head.getHeaders().validate();
+
+        return head;
+    }
+
+    /**
+     * Leading empty lines count as well, so that they cannot be sent endlessly.
+     */
+    private void checkSize(int limit) throws CannotParseRequestException {
+        if (limit - this.offset > this.maxHeadSize) {
+            throw new CannotParseRequestException(String.format("Head exceeds %d bytes.", this.maxHeadSize));
+        }
+    }
+
+    private void addLine(int start, int end) throws CannotParseRequestException {
+        if (this.lineCount >= this.maxLineCount) {
+            throw new CannotParseRequestException(String.format("Head exceeds %d lines.", this.maxLineCount));
+        }
+
+        if (this.lineCount == this.lineStarts.length) {
+            this.lineStarts = Arrays.copyOf(this.lineStarts, this.lineCount * 2);
+            this.lineEnds = Arrays.copyOf(this.lineEnds, this.lineCount * 2);
+        }
+
+        this.lineStarts[this.lineCount] = start;
+        this.lineEnds[this.lineCount] = end;
+        this.lineCount++;
+    }
+}
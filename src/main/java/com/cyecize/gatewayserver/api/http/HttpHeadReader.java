@@ -0,0 +1,291 @@
+package com.cyecize.gatewayserver.api.http;
+
+import com.cyecize.gatewayserver.api.buffer.BufferPool;
+import com.cyecize.gatewayserver.api.buffer.MemoryAccount;
+import com.cyecize.gatewayserver.constants.General;
+import com.cyecize.gatewayserver.error.CannotParseRequestException;
+import com.cyecize.gatewayserver.error.EmptyRequestException;
+import com.cyecize.gatewayserver.error.MemoryLimitExceededException;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads HTTP heads from a blocking stream in bulk instead of a byte at a time.
+ * <p>
+ * Bytes that arrive together with a head, the beginning of the body or even the next pipelined request, stay
+ * buffered and must be consumed through {@link #drainTo(OutputStream, long)} before reading from the stream.
+ * One reader is meant to be used for all messages of a connection.
+ * <p>
+ * The buffer is taken from the {@link BufferPool} when reading starts and given back as soon as everything in it
+ * has been consumed, so that idle connections hold no buffer.
+ */
+public class HttpHeadReader {
+    private final InputStream inputStream;
+
+    private final HttpHeadParser parser = new HttpHeadParser(General.MAX_HEAD_SIZE, General.MAX_HEAD_LINES);
+
+    private final BufferPool bufferPool;
+
+    /**
+     * Null while nothing is buffered.
+     */
+    private byte[] buffer;
+
+    /**
+     * The account that the buffer was charged to, which may have been replaced since.
+     */
+    private MemoryAccount bufferAccount;
+
+    /**
+     * The thread that last read into the buffer, only this one may give it back early.
+     */
+    private Thread bufferOwner;
+
+    private MemoryAccount memoryAccount;
+
+    private int position;
+
+    private int limit;
+
+    public HttpHeadReader(InputStream inputStream, BufferPool bufferPool) {
+        this.inputStream = inputStream;
+        this.bufferPool = bufferPool;
+    }
+
+    /**
+     * @return the pool that buffers for the body of the messages of this reader are taken from as well.
+     */
+    public BufferPool getBufferPool() {
+        return this.bufferPool;
+    }
+
+    /**
+     * @param memoryAccount charged with the buffers that are taken from now on, may be null.
+     */
+    public void setMemoryAccount(MemoryAccount memoryAccount) {
+        this.memoryAccount = memoryAccount;
+    }
+
+    public MemoryAccount getMemoryAccount() {
+        return this.memoryAccount;
+    }
+
+    /**
+     * @throws EmptyRequestException if the stream ended or timed out before sending anything.
+     */
+    public HttpHead readHead() throws CannotParseRequestException, EmptyRequestException {
+        this.compact();
+        this.parser.reset(0);
+
+        try {
+            this.acquireBuffer();
+        } catch (MemoryLimitExceededException ex) {
+            throw new CannotParseRequestException(ex.getMessage(), ex);
+        }
+
+        int headEnd = this.parser.scan(this.buffer, this.limit);
+        while (headEnd < 0) {
+            if (this.limit == this.buffer.length) {
+                try {
+                    this.growBuffer();
+                } catch (MemoryLimitExceededException ex) {
+                    throw new CannotParseRequestException(ex.getMessage(), ex);
+                }
+            }
+
+            final int read = this.read();
+            if (read < 0) {
+                if (this.limit == 0) {
+                    this.releaseBuffer();
+                    throw new EmptyRequestException();
+                }
+
+                throw new CannotParseRequestException("Connection closed before the end of the head.");
+            }
+
+            this.limit += read;
+            headEnd = this.parser.scan(this.buffer, this.limit);
+        }
+
+        final HttpHead head = this.parser.toHead(this.buffer, headEnd);
+        this.position = headEnd;
+        this.releaseIfEmpty();
+
+        return head;
+    }
+
+    /**
+     * Parses a head only from bytes that were already read, e.g. a pipelined request.
+     *
+     * @return null if the buffered bytes do not contain a whole head.
+     */
+    public HttpHead readBufferedHead() throws CannotParseRequestException {
+        if (this.buffer == null) {
+            return null;
+        }
+
+        this.compact();
+        this.parser.reset(0);
+
+        final int headEnd = this.parser.scan(this.buffer, this.limit);
+        if (headEnd < 0) {
+            return null;
+        }
+
+        final HttpHead head = this.parser.toHead(this.buffer, headEnd);
+        this.position = headEnd;
+        this.releaseIfEmpty();
+
+        return head;
+    }
+
+    /**
+     * Reads a line that is part of a body, like a chunk size or a trailer field.
+     *
+     * @return the line without its ending.
+     */
+    public String readLine() throws IOException {
+        this.acquireBuffer();
+
+        int scanPosition = this.position;
+        while (true) {
+            for (int i = scanPosition; i < this.limit; i++) {
+                if (this.buffer[i] != '\n') {
+                    continue;
+                }
+
+                final int lineEnd = i > this.position && this.buffer[i - 1] == '\r' ? i - 1 : i;
+                final String line = new String(
+                        this.buffer, this.position, lineEnd - this.position, StandardCharsets.ISO_8859_1
+                );
+                this.position = i + 1;
+                this.releaseIfEmpty();
+
+                return line;
+            }
+
+            if (this.getBufferedCount() >= General.MAX_HEAD_SIZE) {
+                throw new CannotParseRequestException(String.format("Line exceeds %d bytes.", General.MAX_HEAD_SIZE));
+            }
+
+            this.compact();
+            scanPosition = this.limit;
+
+            if (this.limit == this.buffer.length) {
+                this.growBuffer();
+            }
+
+            final int read = this.inputStream.read(this.buffer, this.limit, this.buffer.length - this.limit);
+            if (read < 0) {
+                throw new EOFException("Connection closed in the middle of a line.");
+            }
+            this.limit += read;
+        }
+    }
+
+    public int getBufferedCount() {
+        return this.limit - this.position;
+    }
+
+    /**
+     * Writes up to {@code maxCount} buffered bytes.
+     *
+     * @return the number of written bytes.
+     */
+    public int drainTo(OutputStream outputStream, long maxCount) throws IOException {
+        final int count = (int) Math.min(this.getBufferedCount(), maxCount);
+        if (count > 0) {
+            outputStream.write(this.buffer, this.position, count);
+            this.position += count;
+            this.releaseIfEmpty();
+        }
+
+        return count;
+    }
+
+    /**
+     * Moves as many buffered bytes as fit into the given buffer.
+     *
+     * @return the number of moved bytes.
+     */
+    public int drainTo(ByteBuffer target) {
+        final int count = Math.min(this.getBufferedCount(), target.remaining());
+        if (count > 0) {
+            target.put(this.buffer, this.position, count);
+            this.position += count;
+            this.releaseIfEmpty();
+        }
+
+        return count;
+    }
+
+    /**
+     * Gives the buffer back to the pool, dropping whatever is still buffered, e.g. when the connection is closed.
+     * Calls from other threads than the one that reads are ignored, since it may still be using the buffer.
+     */
+    public void release() {
+        if (this.buffer != null && this.bufferOwner == Thread.currentThread()) {
+            this.releaseBuffer();
+        }
+    }
+
+    private void acquireBuffer() throws MemoryLimitExceededException {
+        this.bufferOwner = Thread.currentThread();
+        if (this.buffer == null) {
+            this.buffer = this.bufferPool.acquireHeap(General.READ_BUFFER_SIZE, this.memoryAccount);
+            this.bufferAccount = this.memoryAccount;
+        }
+    }
+
+    /**
+     * The parser rejects heads and lines that are too long before the buffer grows past their limit.
+     */
+    private void growBuffer() throws MemoryLimitExceededException {
+        final byte[] buffer = this.bufferPool.acquireHeap(this.buffer.length * 2, this.memoryAccount);
+        System.arraycopy(this.buffer, 0, buffer, 0, this.limit);
+
+        this.bufferPool.releaseHeap(this.buffer, this.bufferAccount);
+        this.buffer = buffer;
+        this.bufferAccount = this.memoryAccount;
+    }
+
+    private void releaseIfEmpty() {
+        if (this.position == this.limit) {
+            this.releaseBuffer();
+        }
+    }
+
+    private void releaseBuffer() {
+        this.bufferPool.releaseHeap(this.buffer, this.bufferAccount);
+        this.buffer = null;
+        this.bufferAccount = null;
+        this.position = 0;
+        this.limit = 0;
+    }
+
+    private int read() throws CannotParseRequestException, EmptyRequestException {
+        try {
+            return this.inputStream.read(this.buffer, this.limit, this.buffer.length - this.limit);
+        } catch (SocketTimeoutException ex) {
+            throw new EmptyRequestException();
+        } catch (IOException ex) {
+            throw new CannotParseRequestException(ex.getMessage(), ex);
+        }
+    }
+
+    private void compact() {
+        if (this.buffer == null || this.position == 0) {
+            return;
+        }
+
+        System.arraycopy(this.buffer, this.position, this.buffer, 0, this.limit - this.position);
+        this.limit -= this.position;
+        this.position = 0;
+    }
+}
@@ -0,0 +1,374 @@
+package com.cyecize.gatewayserver.api.http;
+
+import com.cyecize.gatewayserver.error.CannotParseRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.BiConsumer;
+
+/**
+ * Header fields of a head, read straight from its bytes. Names are matched ignoring case, since HTTP/2 clients
+ * and many libraries send them in lower case, and values are trimmed of surrounding whitespace.
+ * <p>
+ * A single pass over the field lines finds where every name ends and which lines hold the fields that every
+ * message needs, nothing is decoded until a value is asked for. Lines without a colon or with whitespace in the
+ * name are ignored, and make requests invalid, see {@link #validateRequest()}. If a field is repeated, the first one counts, except for Content-Length, whose values all have to agree, and
+ * Transfer-Encoding, whose last field holds the final coding. Instances never change, so a head can be shared with
+ * other threads.
+ */
+public class HttpHeaders {
+    private static final byte[] HOST = bytes("Host");
+
+    private static final byte[] CONTENT_LENGTH = bytes("Content-Length");
+
+    private static final byte[] CONNECTION = bytes("Connection");
+
+    private static final byte[] TRANSFER_ENCODING = bytes("Transfer-Encoding");
+
+    private static final byte[] CHUNKED = bytes("chunked");
+
+    private static final long INVALID_CONTENT_LENGTH = -1;
+
+    private final byte[] bytes;
+
+    private final int[] lineStarts;
+
+    private final int[] lineEnds;
+
+    /**
+     * Index of the colon of every line, -1 for the start line and invalid lines.
+     */
+    private final int[] colons;
+
+    /**
+     * First field line without a colon or with whitespace in the name, -1 if there is none.
+     */
+    private final int invalidLine;
+
+    private final int hostLine;
+
+    private final int contentLengthLine;
+
+    private final int connectionLine;
+
+    /**
+     * The last Transfer-Encoding field, since codings are listed in the order they were applied.
+     */
+    private final int transferEncodingLine;
+
+    private final int transferEncodingCount;
+
+    /**
+     * Parsed up front, so that a head with an invalid value is rejected when it is read.
+     */
+    private final long contentLength;
+
+    /**
+     * Prefer {@link HttpHead#getHeaders()}, which indexes a head only once.
+     */
+    public HttpHeaders(HttpHead head) {
+        this.bytes = head.getBytes();
+        this.lineStarts = head.getLineStarts();
+        this.lineEnds = head.getLineEnds();
+
+        final int lineCount = head.getLineCount();
+        this.colons = new int[lineCount];
+
+        int hostLine = -1;
+        int contentLengthLine = -1;
+        int connectionLine = -1;
+        int transferEncodingLine = -1;
+        int transferEncodingCount = 0;
+        int invalidLine = -1;
+        long contentLength = 0;
+
+        if (lineCount > 0) {
+            this.colons[0] = -1;
+        }
+        for (int i = 1; i < lineCount; i++) {
+            final int colon = this.indexOfColon(i);
+            this.colons[i] = colon;
+            if (colon < 0) {
+                if (invalidLine < 0) {
+                    invalidLine = i;
+                }
+                continue;
+            }
+
+            // Names are told apart by length first, so that most lines are compared with a single name at most.
+            final int nameLength = colon - this.lineStarts[i];
+            if (hostLine < 0 && this.isName(i, HOST, nameLength)) {
+                hostLine = i;
+            } else if (this.isName(i, CONTENT_LENGTH, nameLength)) {
+                final long value = this.parseContentLength(i);
+                if (contentLengthLine < 0) {
+                    contentLengthLine = i;
+                    contentLength = value;
+                } else if (value != contentLength) {
+                    contentLength = INVALID_CONTENT_LENGTH;
+                }
+            } else if (connectionLine < 0 && this.isName(i, CONNECTION, nameLength)) {
+                connectionLine = i;
+            } else if (this.isName(i, TRANSFER_ENCODING, nameLength)) {
+                transferEncodingLine = i;
+                transferEncodingCount++;
+            }
+        }
+
+        this.hostLine = hostLine;
+        this.contentLengthLine = contentLengthLine;
+        this.connectionLine = connectionLine;
+        this.transferEncodingLine = transferEncodingLine;
+        this.transferEncodingCount = transferEncodingCount;
+        this.invalidLine = invalidLine;
+        this.contentLength = contentLength;
+    }
+
+    /**
+     * Checks the fields that frame the body, see RFC 9112 section 6.3.
+     *
+     * @throws CannotParseRequestException if Content-Length is not a number or has differing values.
+     */
+    public void validate() throws CannotParseRequestException {
+        if (this.contentLength == INVALID_CONTENT_LENGTH) {
+            throw new CannotParseRequestException(String.format(
+                    "Invalid Content-Length '%s'.", this.getValue(this.contentLengthLine)
+            ));
+        }
+    }
+
+    /**
+     * Field lines must have a name without whitespace, otherwise destination servers may read a field that the
+     * gateway ignored, see RFC 9112 section 5.1. Requests may only use chunked coding, and not together with
+     * Content-Length, so that destination servers cannot find a different end of the body than the gateway, see
+     * RFC 9112 sections 6.1 and 6.3.
+     *
+     * @throws CannotParseRequestException if a field line is invalid or the body is not framed unambiguously.
+     */
+    public void validateRequest() throws CannotParseRequestException {
+        if (this.invalidLine >= 0) {
+            throw new CannotParseRequestException(String.format("Invalid field line %d.", this.invalidLine + 1));
+        }
+
+        if (this.transferEncodingLine < 0) {
+            return;
+        }
+
+        if (this.contentLengthLine >= 0) {
+            throw new CannotParseRequestException("Request has both Transfer-Encoding and Content-Length.");
+        }
+
+        final int start = this.getValueStart(this.transferEncodingLine);
+        final int end = this.getValueEnd(this.transferEncodingLine);
+        if (this.transferEncodingCount > 1
+                || end - start != CHUNKED.length
+                || !equalsIgnoreCase(this.bytes, start, CHUNKED)) {
+            throw new CannotParseRequestException(String.format(
+                    "Unsupported Transfer-Encoding '%s'.", this.getValue(this.transferEncodingLine)
+            ));
+        }
+    }
+
+    /**
+     * @return value of the field or null if there is none.
+     */
+    public String get(String name) {
+        final int nameLength = name.length();
+        for (int i = 1; i < this.colons.length; i++) {
+            if (this.colons[i] - this.lineStarts[i] == nameLength && this.isName(i, name)) {
+                return this.getValue(i);
+            }
+        }
+
+        return null;
+    }
+
+    public boolean contains(String name) {
+        return this.get(name) != null;
+    }
+
+    /**
+     * @return value of the Host field or null if there is none.
+     */
+    public String getHost() {
+        return this.getValue(this.hostLine);
+    }
+
+    public boolean hasContentLength() {
+        return this.contentLengthLine >= 0;
+    }
+
+    /**
+     * Heads are validated when they are read, see {@link #validate()}.
+     *
+     * @return value of the Content-Length field or 0 if there is none.
+     */
+    public long getContentLength() {
+        return Math.max(this.contentLength, 0);
+    }
+
+    /**
+     * @return value of the Connection field or null if there is none.
+     */
+    public String getConnection() {
+        return this.getValue(this.connectionLine);
+    }
+
+    /**
+     * @return value of the last Transfer-Encoding field or null if there is none.
+     */
+    public String getTransferEncoding() {
+        return this.getValue(this.transferEncodingLine);
+    }
+
+    /**
+     * @return true if chunked, in any case, is the final transfer coding, which alone frames the body.
+     */
+    public boolean isChunked() {
+        if (this.transferEncodingLine < 0) {
+            return false;
+        }
+
+        final int start = this.getValueStart(this.transferEncodingLine);
+        final int end = this.getValueEnd(this.transferEncodingLine);
+
+        int tokenStart = end;
+        while (tokenStart > start && this.bytes[tokenStart - 1] != ',') {
+            tokenStart--;
+        }
+        tokenStart = this.skipWhitespace(tokenStart, end);
+
+        return end - tokenStart == CHUNKED.length && equalsIgnoreCase(this.bytes, tokenStart, CHUNKED);
+    }
+
+    /**
+     * Passes the name and value of every field to the action, in the order they were sent.
+     */
+    public void forEach(BiConsumer<String, String> action) {
+        for (int i = 1; i < this.colons.length; i++) {
+            if (this.colons[i] >= 0) {
+                final int start = this.lineStarts[i];
+                action.accept(
+                        new String(this.bytes, start, this.colons[i] - start, StandardCharsets.ISO_8859_1),
+                        this.getValue(i)
+                );
+            }
+        }
+    }
+
+    /**
+     * Parsed without decoding the value. Lists of values are rejected as well, even equal ones, since destination
+     * servers may read them differently.
+     *
+     * @return the value or {@link #INVALID_CONTENT_LENGTH} if it is not a non-negative number.
+     */
+    private long parseContentLength(int line) {
+        final int end = this.getValueEnd(line);
+        final int start = this.getValueStart(line);
+        if (start == end) {
+            return INVALID_CONTENT_LENGTH;
+        }
+
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            final int digit = this.bytes[i] - '0';
+            if (digit < 0 || digit > 9 || value > (Long.MAX_VALUE - digit) / 10) {
+                return INVALID_CONTENT_LENGTH;
+            }
+            value = value * 10 + digit;
+        }
+
+        return value;
+    }
+
+    private int skipWhitespace(int position, int end) {
+        while (position < end && isWhitespace(this.bytes[position])) {
+            position++;
+        }
+
+        return position;
+    }
+
+    /**
+     * @return index of the colon or -1 if there is none or the name before it is empty or holds whitespace.
+     */
+    private int indexOfColon(int line) {
+        final int start = this.lineStarts[line];
+        for (int i = start; i < this.lineEnds[line]; i++) {
+            final byte b = this.bytes[i];
+            if (b == ':') {
+                return i > start ? i : -1;
+            }
+            if (isWhitespace(b)) {
+                return -1;
+            }
+        }
+
+        return -1;
+    }
+
+    private boolean isName(int line, byte[] name, int nameLength) {
+        return nameLength == name.length && equalsIgnoreCase(this.bytes, this.lineStarts[line], name);
+    }
+
+    private boolean isName(int line, String name) {
+        final int start = this.lineStarts[line];
+        for (int i = 0; i < name.length(); i++) {
+            if (toLowerCase(this.bytes[start + i]) != toLowerCase(name.charAt(i))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private String getValue(int line) {
+        if (line < 0) {
+            return null;
+        }
+
+        final int start = this.getValueStart(line);
+        return new String(this.bytes, start, this.getValueEnd(line) - start, StandardCharsets.ISO_8859_1);
+    }
+
+    private int getValueStart(int line) {
+        final int end = this.lineEnds[line];
+        int start = this.colons[line] + 1;
+        while (start < end && isWhitespace(this.bytes[start])) {
+            start++;
+        }
+
+        return start;
+    }
+
+    private int getValueEnd(int line) {
+        final int start = this.colons[line] + 1;
+        int end = this.lineEnds[line];
+        while (end > start && isWhitespace(this.bytes[end - 1])) {
+            end--;
+        }
+
+        return end;
+    }
+
+    private static boolean equalsIgnoreCase(byte[] bytes, int offset, byte[] name) {
+        for (int i = 0; i < name.length; i++) {
+            if (toLowerCase(bytes[offset + i]) != toLowerCase(name[i])) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static int toLowerCase(int c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.ISO_8859_1);
+    }
+}
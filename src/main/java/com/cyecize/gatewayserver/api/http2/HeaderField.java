@@ -0,0 +1,26 @@
+package com.cyecize.gatewayserver.api.http2;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class HeaderField {
+    /**
+     * Entries of the dynamic table are accounted with 32 bytes on top of their name and value.
+     */
+    static final int ENTRY_OVERHEAD = 32;
+
+    private final String name;
+
+    private final String value;
+
+    /**
+     * @return size of the field as defined by RFC 7541 section 4.1.
+     */
+    int getSize() {
+        return this.name.length() + this.value.length() + ENTRY_OVERHEAD;
+    }
+}
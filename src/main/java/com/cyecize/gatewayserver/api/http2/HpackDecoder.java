@@ -0,0 +1,152 @@
+package com.cyecize.gatewayserver.api.http2;
+
+import com.cyecize.gatewayserver.error.Http2Exception;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes header blocks of the requests of a connection. Blocks must be decoded in the order they were received,
+ * since they share the dynamic table.
+ */
+class HpackDecoder {
+    private final HpackTable table;
+
+    /**
+     * Limit that the peer may set the dynamic table to, our SETTINGS_HEADER_TABLE_SIZE.
+     */
+    private final int maxTableSize;
+
+    private final int maxHeaderListSize;
+
+    private byte[] block;
+
+    private int position;
+
+    private int limit;
+
+    HpackDecoder(int maxTableSize, int maxHeaderListSize) {
+        this.table = new HpackTable(maxTableSize);
+        this.maxTableSize = maxTableSize;
+        this.maxHeaderListSize = maxHeaderListSize;
+    }
+
+    /**
+     * A block is decoded to the end even if its fields are too large, so that the dynamic table stays in sync.
+     *
+     * @return the fields of the block or null if they exceed the header list size limit.
+     * @throws Http2Exception with COMPRESSION_ERROR if the block cannot be decoded, which ends the connection.
+     */
+    List<HeaderField> decode(byte[] block, int offset, int length) throws Http2Exception {
+        this.block = block;
+        this.position = offset;
+        this.limit = offset + length;
+
+        final List<HeaderField> fields = new ArrayList<>();
+        int listSize = 0;
+        boolean isFieldSeen = false;
+
+        while (this.position < this.limit) {
+            final int b = this.block[this.position] & 0xFF;
+            final HeaderField field;
+
+            if ((b & 0x80) != 0) {
+                field = this.getIndexed(this.readInteger(7));
+            } else if ((b & 0x40) != 0) {
+                field = this.readLiteral(6);
+                this.table.add(field);
+            } else if ((b & 0x20) != 0) {
+                if (isFieldSeen) {
+                    throw compressionError("Dynamic table size update after a header field.");
+                }
+
+                final int maxSize = this.readInteger(5);
+                if (maxSize > this.maxTableSize) {
+                    throw compressionError(String.format("Dynamic table size %d exceeds the limit.", maxSize));
+                }
+                this.table.setMaxSize(maxSize);
+                continue;
+            } else {
+                // Literal without indexing and literal never indexed differ only for intermediaries that re-encode.
+                field = this.readLiteral(4);
+            }
+
+            isFieldSeen = true;
+            listSize += field.getSize();
+            if (listSize <= this.maxHeaderListSize) {
+                fields.add(field);
+            }
+        }
+
+        this.block = null;
+        return listSize <= this.maxHeaderListSize ? fields : null;
+    }
+
+    private HeaderField readLiteral(int prefixBits) throws Http2Exception {
+        final int nameIndex = this.readInteger(prefixBits);
+        final String name = nameIndex == 0 ? this.readString() : this.getIndexed(nameIndex).getName();
+
+        return new HeaderField(name, this.readString());
+    }
+
+    private HeaderField getIndexed(int index) throws Http2Exception {
+        try {
+            return this.table.get(index);
+        } catch (IndexOutOfBoundsException ex) {
+            throw compressionError(String.format("Index %d is not in the table.", index));
+        }
+    }
+
+    private String readString() throws Http2Exception {
+        if (this.position >= this.limit) {
+            throw compressionError("Block ends before a string.");
+        }
+
+        final boolean isHuffman = (this.block[this.position] & 0x80) != 0;
+        final int length = this.readInteger(7);
+        if (length > this.limit - this.position) {
+            throw compressionError("String exceeds the block.");
+        }
+
+        final int start = this.position;
+        this.position += length;
+
+        if (isHuffman) {
+            return new String(Huffman.decode(this.block, start, length), StandardCharsets.ISO_8859_1);
+        }
+
+        return new String(this.block, start, length, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Reads an integer whose first byte keeps the given number of low bits, see RFC 7541 section 5.1.
+     */
+    private int readInteger(int prefixBits) throws Http2Exception {
+        final int prefixMax = (1 << prefixBits) - 1;
+        int value = this.block[this.position++] & prefixMax;
+        if (value < prefixMax) {
+            return value;
+        }
+
+        for (int shift = 0; ; shift += 7) {
+            if (this.position >= this.limit) {
+                throw compressionError("Block ends in the middle of an integer.");
+            }
+
+            if (shift > 21) {
+                throw compressionError("Integer exceeds 28 bits.");
+            }
+
+            final int b = this.block[this.position++] & 0xFF;
+            value += (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    private static Http2Exception compressionError(String message) {
+        return new Http2Exception(Http2ErrorCode.COMPRESSION_ERROR, message);
+    }
+}
@@ -0,0 +1,139 @@
+package com.cyecize.gatewayserver.api.http2;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Encodes header blocks of the responses of a connection. Blocks must be sent in the order they were encoded,
+ * since they share the dynamic table.
+ */
+class HpackEncoder {
+    /**
+     * Credentials are never indexed, so that intermediaries do not put them into tables of their own.
+     */
+    private static final Set<String> SENSITIVE_FIELDS = Set.of("authorization", "proxy-authorization", "set-cookie");
+
+    /**
+     * Values that rarely repeat would only push useful entries out of the table.
+     */
+    private static final Set<String> UNINDEXED_FIELDS = Set.of(
+            "age", "content-length", "content-range", "etag", "last-modified", "location"
+    );
+
+    private final HpackTable table;
+
+    /**
+     * Largest table that is used, even if the peer allows more.
+     */
+    private final int tableSizeLimit;
+
+    /**
+     * Smallest and last size that the table had since the previous block, they must be announced in that order.
+     */
+    private int minPendingSize = -1;
+
+    private int pendingSize = -1;
+
+    HpackEncoder(int tableSizeLimit) {
+        this.table = new HpackTable(Math.min(tableSizeLimit, Http2Settings.DEFAULT_HEADER_TABLE_SIZE));
+        this.tableSizeLimit = tableSizeLimit;
+    }
+
+    /**
+     * Applies the SETTINGS_HEADER_TABLE_SIZE of the peer, the change is announced at the start of the next block.
+     */
+    void setMaxTableSize(int peerMaxSize) {
+        final int maxSize = Math.min(peerMaxSize, this.tableSizeLimit);
+        if (maxSize == this.table.getMaxSize() && this.pendingSize < 0) {
+            return;
+        }
+
+        this.table.setMaxSize(maxSize);
+        this.minPendingSize = this.minPendingSize < 0 ? maxSize : Math.min(this.minPendingSize, maxSize);
+        this.pendingSize = maxSize;
+    }
+
+    byte[] encode(List<HeaderField> fields) {
+        final ByteArrayOutputStream block = new ByteArrayOutputStream(fields.size() * 16);
+
+        if (this.pendingSize >= 0) {
+            if (this.minPendingSize < this.pendingSize) {
+                writeInteger(block, 0x20, 5, this.minPendingSize);
+            }
+            writeInteger(block, 0x20, 5, this.pendingSize);
+            this.minPendingSize = -1;
+            this.pendingSize = -1;
+        }
+
+        for (HeaderField field : fields) {
+            this.encode(field, block);
+        }
+
+        return block.toByteArray();
+    }
+
+    private void encode(HeaderField field, ByteArrayOutputStream block) {
+        final String name = field.getName();
+        if (SENSITIVE_FIELDS.contains(name)) {
+            this.writeLiteral(block, 0x10, 4, field);
+            return;
+        }
+
+        final int index = this.table.indexOf(name, field.getValue());
+        if (index > 0) {
+            writeInteger(block, 0x80, 7, index);
+            return;
+        }
+
+        if (UNINDEXED_FIELDS.contains(name)) {
+            this.writeLiteral(block, 0x00, 4, field);
+            return;
+        }
+
+        this.writeLiteral(block, 0x40, 6, field);
+        this.table.add(field);
+    }
+
+    private void writeLiteral(ByteArrayOutputStream block, int pattern, int prefixBits, HeaderField field) {
+        final int nameIndex = this.table.indexOfName(field.getName());
+        writeInteger(block, pattern, prefixBits, nameIndex);
+        if (nameIndex == 0) {
+            writeString(block, field.getName());
+        }
+        writeString(block, field.getValue());
+    }
+
+    /**
+     * Huffman coding is used whenever it makes the string shorter.
+     */
+    private static void writeString(ByteArrayOutputStream block, String value) {
+        final byte[] bytes = value.getBytes(StandardCharsets.ISO_8859_1);
+        final int huffmanLength = Huffman.getEncodedLength(bytes);
+
+        if (huffmanLength < bytes.length) {
+            writeInteger(block, 0x80, 7, huffmanLength);
+            Huffman.encode(bytes, block);
+        } else {
+            writeInteger(block, 0x00, 7, bytes.length);
+            block.write(bytes, 0, bytes.length);
+        }
+    }
+
+    private static void writeInteger(ByteArrayOutputStream block, int pattern, int prefixBits, int value) {
+        final int prefixMax = (1 << prefixBits) - 1;
+        if (value < prefixMax) {
+            block.write(pattern | value);
+            return;
+        }
+
+        block.write(pattern | prefixMax);
+        value -= prefixMax;
+        while (value >= 0x80) {
+            block.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        block.write(value);
+    }
+}
@@ -0,0 +1,206 @@
+package com.cyecize.gatewayserver.api.http2;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Static table followed by the dynamic table of one direction of a connection, see RFC 7541 section 2.3.
+ * Index 1 is the first static entry, the newest dynamic entry comes right after the last static one.
+ */
+class HpackTable {
+    private static final HeaderField[] STATIC_TABLE = {
+            new HeaderField(":authority", ""),
+            new HeaderField(":method", "GET"),
+            new HeaderField(":method", "POST"),
+            new HeaderField(":path", "/"),
+            new HeaderField(":path", "/index.html"),
+            new HeaderField(":scheme", "http"),
+            new HeaderField(":scheme", "https"),
+            new HeaderField(":status", "200"),
+            new HeaderField(":status", "204"),
+            new HeaderField(":status", "206"),
+            new HeaderField(":status", "304"),
+            new HeaderField(":status", "400"),
+            new HeaderField(":status", "404"),
+            new HeaderField(":status", "500"),
+            new HeaderField("accept-charset", ""),
+            new HeaderField("accept-encoding", "gzip, deflate"),
+            new HeaderField("accept-language", ""),
+            new HeaderField("accept-ranges", ""),
+            new HeaderField("accept", ""),
+            new HeaderField("access-control-allow-origin", ""),
+            new HeaderField("age", ""),
+            new HeaderField("allow", ""),
+            new HeaderField("authorization", ""),
+            new HeaderField("cache-control", ""),
+            new HeaderField("content-disposition", ""),
+            new HeaderField("content-encoding", ""),
+            new HeaderField("content-language", ""),
+            new HeaderField("content-length", ""),
+            new HeaderField("content-location", ""),
+            new HeaderField("content-range", ""),
+            new HeaderField("content-type", ""),
+            new HeaderField("cookie", ""),
+            new HeaderField("date", ""),
+            new HeaderField("etag", ""),
+            new HeaderField("expect", ""),
+            new HeaderField("expires", ""),
+            new HeaderField("from", ""),
+            new HeaderField("host", ""),
+            new HeaderField("if-match", ""),
+            new HeaderField("if-modified-since", ""),
+            new HeaderField("if-none-match", ""),
+            new HeaderField("if-range", ""),
+            new HeaderField("if-unmodified-since", ""),
+            new HeaderField("last-modified", ""),
+            new HeaderField("link", ""),
+            new HeaderField("location", ""),
+            new HeaderField("max-forwards", ""),
+            new HeaderField("proxy-authenticate", ""),
+            new HeaderField("proxy-authorization", ""),
+            new HeaderField("range", ""),
+            new HeaderField("referer", ""),
+            new HeaderField("refresh", ""),
+            new HeaderField("retry-after", ""),
+            new HeaderField("server", ""),
+            new HeaderField("set-cookie", ""),
+            new HeaderField("strict-transport-security", ""),
+            new HeaderField("transfer-encoding", ""),
+            new HeaderField("user-agent", ""),
+            new HeaderField("vary", ""),
+            new HeaderField("via", ""),
+            new HeaderField("www-authenticate", ""),
+    };
+
+    /**
+     * Index of the first static entry with a name.
+     */
+    private static final Map<String, Integer> STATIC_NAME_INDEXES = new HashMap<>();
+
+    /**
+     * Index of static entries with a value, by name and value separated by a new-line.
+     */
+    private static final Map<String, Integer> STATIC_FIELD_INDEXES = new HashMap<>();
+
+    static {
+        for (int i = STATIC_TABLE.length - 1; i >= 0; i--) {
+            final HeaderField field = STATIC_TABLE[i];
+            STATIC_NAME_INDEXES.put(field.getName(), i + 1);
+            if (!field.getValue().isEmpty()) {
+                STATIC_FIELD_INDEXES.put(field.getName() + '\n' + field.getValue(), i + 1);
+            }
+        }
+    }
+
+    /**
+     * Ring of dynamic entries, {@code first} points at the newest one.
+     */
+    private HeaderField[] entries = new HeaderField[16];
+
+    private int first;
+
+    private int count;
+
+    private int size;
+
+    private int maxSize;
+
+    HpackTable(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @throws IndexOutOfBoundsException if the index is not in the table.
+     */
+    HeaderField get(int index) {
+        if (index >= 1 && index <= STATIC_TABLE.length) {
+            return STATIC_TABLE[index - 1];
+        }
+
+        final int dynamicIndex = index - STATIC_TABLE.length - 1;
+        if (dynamicIndex < 0 || dynamicIndex >= this.count) {
+            throw new IndexOutOfBoundsException(index);
+        }
+
+        return this.entries[(this.first + dynamicIndex) % this.entries.length];
+    }
+
+    /**
+     * @return index of an entry with the same name and value, 0 if there is none.
+     */
+    int indexOf(String name, String value) {
+        final Integer staticIndex = STATIC_FIELD_INDEXES.get(name + '\n' + value);
+        if (staticIndex != null) {
+            return staticIndex;
+        }
+
+        for (int i = 0; i < this.count; i++) {
+            final HeaderField field = this.entries[(this.first + i) % this.entries.length];
+            if (field.getName().equals(name) && field.getValue().equals(value)) {
+                return STATIC_TABLE.length + 1 + i;
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * @return index of an entry with the same name, 0 if there is none.
+     */
+    int indexOfName(String name) {
+        final Integer staticIndex = STATIC_NAME_INDEXES.get(name);
+        if (staticIndex != null) {
+            return staticIndex;
+        }
+
+        for (int i = 0; i < this.count; i++) {
+            if (this.entries[(this.first + i) % this.entries.length].getName().equals(name)) {
+                return STATIC_TABLE.length + 1 + i;
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * Evicts the oldest entries to make room. A field larger than the whole table empties it and is not added.
+     */
+    void add(HeaderField field) {
+        this.evict(this.maxSize - field.getSize());
+        if (field.getSize() > this.maxSize) {
+            return;
+        }
+
+        if (this.count == this.entries.length) {
+            final HeaderField[] grown = new HeaderField[this.entries.length * 2];
+            for (int i = 0; i < this.count; i++) {
+                grown[i] = this.entries[(this.first + i) % this.entries.length];
+            }
+            this.entries = grown;
+            this.first = 0;
+        }
+
+        this.first = (this.first - 1 + this.entries.length) % this.entries.length;
+        this.entries[this.first] = field;
+        this.count++;
+        this.size += field.getSize();
+    }
+
+    int getMaxSize() {
+        return this.maxSize;
+    }
+
+    void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+        this.evict(maxSize);
+    }
+
+    private void evict(int targetSize) {
+        while (this.count > 0 && this.size > targetSize) {
+            final int last = (this.first + this.count - 1) % this.entries.length;
+            this.size -= this.entries[last].getSize();
+            this.entries[last] = null;
+            this.count--;
+        }
+    }
+}
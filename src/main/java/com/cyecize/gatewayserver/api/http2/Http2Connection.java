@@ -0,0 +1,908 @@
+package com.cyecize.gatewayserver.api.http2;
+
+import com.cyecize.gatewayserver.api.options.Http2Options;
+import com.cyecize.gatewayserver.api.server.Connection;
+import com.cyecize.gatewayserver.constants.General;
+import com.cyecize.gatewayserver.error.Http2Exception;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Server side of an HTTP/2 connection, see RFC 9113.
+ * <p>
+ * The thread that runs the connection reads and handles every frame, while each stream is answered by a thread
+ * of its own. Frames are written under a lock, with the HPACK encoder used under the same lock, so that header
+ * blocks reach the client in the order they were encoded. When the connection window is exhausted, streams get
+ * it back in the order of their urgency, see RFC 9218.
+ */
+@Slf4j
+public class Http2Connection {
+    public static final String PROTOCOL = "h2";
+
+    private static final byte[] PREFACE = "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+
+    private static final int FRAME_HEADER_SIZE = 9;
+
+    private static final int DATA = 0x0;
+    private static final int HEADERS = 0x1;
+    private static final int PRIORITY = 0x2;
+    private static final int RST_STREAM = 0x3;
+    private static final int SETTINGS = 0x4;
+    private static final int PUSH_PROMISE = 0x5;
+    private static final int PING = 0x6;
+    private static final int GOAWAY = 0x7;
+    private static final int WINDOW_UPDATE = 0x8;
+    private static final int CONTINUATION = 0x9;
+    private static final int PRIORITY_UPDATE = 0x10;
+
+    private static final int FLAG_END_STREAM = 0x1;
+    private static final int FLAG_ACK = 0x1;
+    private static final int FLAG_END_HEADERS = 0x4;
+    private static final int FLAG_PADDED = 0x8;
+    private static final int FLAG_PRIORITY = 0x20;
+
+    private static final Comparator<Http2Stream> PRIORITY_ORDER = Comparator
+            .comparingInt(Http2Stream::getUrgency)
+            .thenComparingInt(Http2Stream::getId);
+
+    private final Connection clientConnection;
+
+    private final Consumer<Http2Stream> streamHandler;
+
+    private final int maxConcurrentStreams;
+
+    private final int initialWindowSize;
+
+    private final DataInputStream inputStream;
+
+    private final OutputStream outputStream;
+
+    private final Map<Integer, Http2Stream> streams = new ConcurrentHashMap<>();
+
+    /**
+     * Streams whose handler has not closed them yet. A stream that the client resets leaves {@link #streams} right
+     * away, but keeps its thread until the handler notices, so only this set bounds the concurrent streams.
+     */
+    private final Set<Http2Stream> activeStreams = ConcurrentHashMap.newKeySet();
+
+    private final HpackDecoder decoder = new HpackDecoder(
+            Http2Settings.DEFAULT_HEADER_TABLE_SIZE, General.MAX_HEAD_SIZE
+    );
+
+    /**
+     * Guards the output stream and the encoder.
+     */
+    private final Object writeLock = new Object();
+
+    private final HpackEncoder encoder = new HpackEncoder(Http2Settings.DEFAULT_HEADER_TABLE_SIZE);
+
+    /**
+     * Guards the send windows of the connection and its streams.
+     */
+    private final Object windowLock = new Object();
+
+    private long sendWindow = Http2Settings.DEFAULT_INITIAL_WINDOW_SIZE;
+
+    private int peerInitialWindowSize = Http2Settings.DEFAULT_INITIAL_WINDOW_SIZE;
+
+    /**
+     * Streams that wait for a send window.
+     */
+    private final List<Http2Stream> blockedStreams = new ArrayList<>();
+
+    private volatile int peerMaxFrameSize = Http2Settings.DEFAULT_MAX_FRAME_SIZE;
+
+    private volatile boolean isClosed;
+
+    // Fields below are only used by the thread that reads frames.
+
+    private final byte[] payload = new byte[Http2Settings.DEFAULT_MAX_FRAME_SIZE];
+
+    private long receiveWindow = Http2Settings.DEFAULT_INITIAL_WINDOW_SIZE;
+
+    private int lastStreamId;
+
+    private final ByteArrayOutputStream headerBlock = new ByteArrayOutputStream();
+
+    /**
+     * Stream whose header block continues in CONTINUATION frames, 0 if none.
+     */
+    private int headerBlockStreamId;
+
+    private boolean isHeaderBlockEndStream;
+
+    private int headerBlockWeight;
+
+    /**
+     * Streams reset by the client since {@link #resetWindowStartMillis}, see {@link #onRstStream(int, int)}.
+     */
+    private int resetCount;
+
+    private long resetWindowStartMillis;
+
+    public Http2Connection(Connection clientConnection, Http2Options options, Consumer<Http2Stream> streamHandler)
+            throws IOException {
+        this.clientConnection = clientConnection;
+        this.streamHandler = streamHandler;
+        this.maxConcurrentStreams = options.getMaxConcurrentStreams();
+        this.initialWindowSize = options.getInitialWindowSizeBytes();
+
+        this.inputStream = new DataInputStream(new BufferedInputStream(
+                clientConnection.getSocket().getInputStream(), Http2Settings.DEFAULT_MAX_FRAME_SIZE
+        ));
+        this.outputStream = new BufferedOutputStream(
+                clientConnection.getSocket().getOutputStream(), FRAME_HEADER_SIZE + Http2Settings.DEFAULT_MAX_FRAME_SIZE
+        );
+    }
+
+    /**
+     * Reads frames on the calling thread until the client closes the connection or breaks the protocol.
+     */
+    public void run() {
+        try {
+            this.readPreface();
+            this.writeSettings();
+
+            while (this.readFrame()) {
+                // Frames are handled as they are read.
+            }
+        } catch (Http2Exception ex) {
+            log.warn("HTTP/2 connection error with client {}. {}", this.clientConnection.getHostOrIp(), ex.getMessage());
+            this.writeGoAway(ex.getErrorCode(), ex.getMessage());
+        } catch (EOFException | SocketTimeoutException ex) {
+            log.debug("HTTP/2 connection with client {} ended.", this.clientConnection.getHostOrIp());
+        } catch (IOException ex) {
+            if (!this.isClosed) {
+                log.warn("Error on HTTP/2 connection with client {}. {}",
+                        this.clientConnection.getHostOrIp(), ex.getMessage()
+                );
+            }
+        } finally {
+            this.close();
+        }
+    }
+
+    public void close() {
+        this.isClosed = true;
+        this.streams.values().forEach(stream -> stream.onReset(Http2ErrorCode.CANCEL));
+        this.streams.clear();
+
+        synchronized (this.windowLock) {
+            this.windowLock.notifyAll();
+        }
+
+        this.clientConnection.close();
+    }
+
+    public Connection getClientConnection() {
+        return this.clientConnection;
+    }
+
+    int getPeerMaxFrameSize() {
+        return this.peerMaxFrameSize;
+    }
+
+    /**
+     * Sends a header block, split into CONTINUATION frames if it does not fit the largest frame of the peer.
+     */
+    void writeHeaders(Http2Stream stream, List<HeaderField> fields, boolean isEndStream) throws IOException {
+        synchronized (this.writeLock) {
+            this.checkWritable(stream);
+
+            final byte[] block = this.encoder.encode(fields);
+            final int maxFrameSize = this.peerMaxFrameSize;
+
+            int offset = 0;
+            do {
+                final int length = Math.min(block.length - offset, maxFrameSize);
+                final boolean isLast = offset + length == block.length;
+
+                int flags = isLast ? FLAG_END_HEADERS : 0;
+                if (offset == 0 && isEndStream) {
+                    flags |= FLAG_END_STREAM;
+                }
+
+                this.writeFrameHeader(length, offset == 0 ? HEADERS : CONTINUATION, flags, stream.getId());
+                this.outputStream.write(block, offset, length);
+                offset += length;
+            } while (offset < block.length);
+
+            this.outputStream.flush();
+        }
+
+        if (isEndStream) {
+            stream.onLocalClosed();
+        }
+    }
+
+    /**
+     * Sends the bytes as DATA frames, waiting for the peer to open the send windows when they are exhausted.
+     */
+    void writeData(Http2Stream stream, byte[] bytes, int length, boolean isEndStream) throws IOException {
+        int offset = 0;
+        do {
+            final int frameLength = length == 0
+                    ? 0
+                    : this.reserveSendWindow(stream, Math.min(length - offset, this.peerMaxFrameSize));
+            final boolean isLast = offset + frameLength == length;
+
+            synchronized (this.writeLock) {
+                this.checkWritable(stream);
+                this.writeFrameHeader(
+                        frameLength, DATA, isLast && isEndStream ? FLAG_END_STREAM : 0, stream.getId()
+                );
+                this.outputStream.write(bytes, offset, frameLength);
+                this.outputStream.flush();
+            }
+
+            offset += frameLength;
+        } while (offset < length);
+
+        if (isEndStream) {
+            stream.onLocalClosed();
+        }
+    }
+
+    void writeWindowUpdate(int streamId, int increment) {
+        try {
+            synchronized (this.writeLock) {
+                this.writeFrameHeader(4, WINDOW_UPDATE, 0, streamId);
+                this.writeInt(increment);
+                this.outputStream.flush();
+            }
+        } catch (IOException ex) {
+            log.debug("Could not send WINDOW_UPDATE to client {}. {}",
+                    this.clientConnection.getHostOrIp(), ex.getMessage()
+            );
+        }
+    }
+
+    void resetStream(Http2Stream stream, Http2ErrorCode errorCode) {
+        if (stream.onReset(errorCode)) {
+            this.writeRstStream(stream.getId(), errorCode);
+        }
+        this.streams.remove(stream.getId(), stream);
+
+        synchronized (this.windowLock) {
+            this.windowLock.notifyAll();
+        }
+    }
+
+    /**
+     * A client that is still sending a request whose response is complete is told to stop.
+     */
+    void closeStream(Http2Stream stream) {
+        if (!stream.isReset() && !stream.isRemoteClosed()) {
+            this.writeRstStream(stream.getId(), Http2ErrorCode.NO_ERROR);
+        }
+        this.streams.remove(stream.getId(), stream);
+        this.activeStreams.remove(stream);
+    }
+
+    private void readPreface() throws IOException {
+        final byte[] preface = new byte[PREFACE.length];
+        this.inputStream.readFully(preface);
+        if (!Arrays.equals(preface, PREFACE)) {
+            throw new Http2Exception(Http2ErrorCode.PROTOCOL_ERROR, "Invalid connection preface.");
+        }
+
+        // Like keep-alive sessions, the connection is not bound by the timeouts of its first request.
+        this.clientConnection.closeCloseables();
+        this.clientConnection.getSocket().setSoTimeout(0);
+    }
+
+    /**
+     * @return false if the client closed the connection between frames.
+     */
+    private boolean readFrame() throws IOException {
+        final int firstByte = this.inputStream.read();
+        if (firstByte < 0) {
+            return false;
+        }
+
+        final int length = (firstByte << 16) | this.inputStream.readUnsignedShort();
+        final int type = this.inputStream.readUnsignedByte();
+        final int flags = this.inputStream.readUnsignedByte();
+        final int streamId = this.inputStream.readInt() & 0x7FFFFFFF;
+
+        if (length > this.payload.length) {
+            throw new Http2Exception(Http2ErrorCode.FRAME_SIZE_ERROR, String.format("Frame of %d bytes.", length));
+        }
+        this.inputStream.readFully(this.payload, 0, length);
+
+        if (this.headerBlockStreamId != 0 && (type != CONTINUATION || streamId != this.headerBlockStreamId)) {
+            throw new Http2Exception(Http2ErrorCode.PROTOCOL_ERROR, "Header block was interrupted.");
+        }
+
+        try {
+            this.handleFrame(type, flags, streamId, length);
+        } catch (Http2Exception ex) {
+            if (ex.isConnectionError()) {
+                throw ex;
+            }
+
+            log.debug("Resetting stream {} of client {}. {}",
+                    ex.getStreamId(), this.clientConnection.getHostOrIp(), ex.getMessage()
+            );
+            final Http2Stream stream = this.streams.get(ex.getStreamId());
+            if (stream != null) {
+                this.resetStream(stream, ex.getErrorCode());
+            } else {
+                this.writeRstStream(ex.getStreamId(), ex.getErrorCode());
+            }
+        }
+
+        return true;
+    }
+
+    private void handleFrame(int type, int flags, int streamId, int length) throws IOException {
+        switch (type) {
+            case DATA:
+                this.onData(flags, streamId, length);
+                break;
+            case HEADERS:
+                this.onHeaders(flags, streamId, length);
+                break;
+            case CONTINUATION:
+                this.onContinuation(flags, streamId, length);
+                break;
+            case PRIORITY:
+                this.onPriority(streamId, length);
+                break;
+            case RST_STREAM:
+                this.onRstStream(streamId, length);
+                break;
+            case SETTINGS:
+                this.onSettings(flags, streamId, length);
+                break;
+            case PUSH_PROMISE:
+                throw new Http2Exception(Http2ErrorCode.PROTOCOL_ERROR, "Clients cannot push streams.");
+            case PING:
+                this.onPing(flags, streamId, length);
+                break;
+            case GOAWAY:
+                this.onGoAway(streamId, length);
+                break;
+            case WINDOW_UPDATE:
+                this.onWindowUpdate(streamId, length);
+                break;
+            case PRIORITY_UPDATE:
+                this.onPriorityUpdate(streamId, length);
+                break;
+            default:
+                // Frames of unknown types are ignored, see RFC 9113 section 4.1.
+        }
+    }
+
+    private void onData(int flags, int streamId, int length) throws IOException {
+        if (streamId == 0) {
+            throw new Http2Exception(Http2ErrorCode.PROTOCOL_ERROR, "DATA on stream 0.");
+        }
+
+        final int padding = this.getPadding(flags, length);
+        final int offset = (flags & FLAG_PADDED) != 0 ? 1 : 0;
+        final int dataLength = length - offset - padding;
+
+        // The whole frame counts against the connection window, even if its stream is gone.
+        if (length > this.receiveWindow) {
+            throw new Http2Exception(Http2ErrorCode.FLOW_CONTROL_ERROR, "DATA exceeds the connection window.");
+        }
+        this.receiveWindow -= length;
+        if (this.receiveWindow <= General.HTTP2_CONNECTION_WINDOW_SIZE_BYTES / 2) {
+            final long increment = General.HTTP2_CONNECTION_WINDOW_SIZE_BYTES - this.receiveWindow;
+            this.receiveWindow += increment;
+            this.writeWindowUpdate(0, (int) increment);
+        }
+
+        final Http2Stream stream = this.getOpenStream(streamId, "DATA");
+        final int windowUpdate = stream.onData(
+                this.payload, offset, dataLength, length - dataLength, (flags & FLAG_END_STREAM) != 0
+        );
+        if (windowUpdate > 0) {
+            this.writeWindowUpdate(streamId, windowUpdate);
+        }
+    }
+
+    private void onHeaders(int flags, int streamId, int length) throws IOException {
+        if (streamId == 0 || streamId % 2 == 0) {
+            throw new Http2Exception(Http2ErrorCode.PROTOCOL_ERROR, String.format("HEADERS on stream %d.", streamId));
+        }
+
+        final int padding = this.getPadding(flags, length);
+        int offset = (flags & FLAG_PADDED) != 0 ? 1 : 0;
+
+        int weight = 0;
+        if ((flags & FLAG_PRIORITY) != 0) {
+            if (length - offset - padding < 5) {
+                throw new Http2Exception(Http2ErrorCode.FRAME_SIZE_ERROR, "HEADERS too short for its priority.");
+            }
+
+            weight = (this.payload[offset + 4] & 0xFF) + 1;
+            offset += 5;
+        }
+
+        this.headerBlock.reset();
+        this.headerBlock.write(this.payload, offset, length - offset - padding);
+        this.isHeaderBlockEndStream = (flags & FLAG_END_STREAM) != 0;
+        this.headerBlockWeight = weight;
+
+        if ((flags & FLAG_END_HEADERS) != 0) {
+            this.onHeaderBlock(streamId);
+        } else {
+            this.headerBlockStreamId = streamId;
+        }
+    }
+
+    private void onContinuation(int flags, int streamId, int length) throws IOException {
+        if (this.headerBlockStreamId == 0 || streamId != this.headerBlockStreamId) {
+            throw new Http2Exception(Http2ErrorCode.PROTOCOL_ERROR, "CONTINUATION without a header block.");
+        }
+
+        // The block has to be decoded to keep the dynamic table in sync, so it is limited for the whole connection.
+        if (this.headerBlock.size() + length > General.MAX_HEAD_SIZE) {
+            throw new Http2Exception(
+                    Http2ErrorCode.ENHANCE_YOUR_CALM, String.format("Header block exceeds %d bytes.", General.MAX_HEAD_SIZE)
+            );
+        }
+        this.headerBlock.write(this.payload, 0, length);
+
+        if ((flags & FLAG_END_HEADERS) != 0) {
+            this.headerBlockStreamId = 0;
+            this.onHeaderBlock(streamId);
+        }
+    }
+
+    private void onHeaderBlock(int streamId) throws IOException {
+        final byte[] block = this.headerBlock.toByteArray();
+        final List<HeaderField> fields = this.decoder.decode(block, 0, block.length);
+
+        final Http2Stream existing = this.streams.get(streamId);
+        if (existing != null || streamId <= this.lastStreamId) {
+            this.onTrailers(existing, streamId);
+            return;
+        }
+        this.lastStreamId = streamId;
+
+        if (fields == null) {
+            throw new Http2Exception(streamId, Http2ErrorCode.REFUSED_STREAM, "Header list is too large.");
+        }
+
+        if (this.activeStreams.size() >= this.maxConcurrentStreams) {
+            throw new Http2Exception(streamId, Http2ErrorCode.REFUSED_STREAM, "Too many concurrent streams.");
+        }
+
+        final Http2Stream stream;
+        synchronized (this.windowLock) {
+            stream = new Http2Stream(this, streamId, fields, this.peerInitialWindowSize, this.initialWindowSize);
+        }
+
+        if (this.headerBlockWeight > 0) {
+            stream.setWeight(this.headerBlockWeight);
+        }
+        for (HeaderField field : fields) {
+            if ("priority".equals(field.getName())) {
+                stream.setPriority(field.getValue());
+            }
+        }
+
+        this.streams.put(streamId, stream);
+        this.activeStreams.add(stream);
+        if (this.isHeaderBlockEndStream) {
+            stream.onRemoteClosed();
+        }
+
+        this.streamHandler.accept(stream);
+    }
+
+    /**
+     * Trailer fields end the request body, they are not forwarded.
+     */
+    private void onTrailers(Http2Stream stream, int streamId) throws Http2Exception {
+        if (stream == null || stream.isRemoteClosed()) {
+            throw new Http2Exception(streamId, Http2ErrorCode.STREAM_CLOSED, "HEADERS on a closed stream.");
+        }
+
+        if (!this.isHeaderBlockEndStream) {
+            throw new Http2Exception(streamId, Http2ErrorCode.PROTOCOL_ERROR, "Trailers without END_STREAM.");
+        }
+
+        stream.onRemoteClosed();
+    }
+
+    /**
+     * Dependencies are deprecated by RFC 9113 and ignored, only the weight is used.
+     */
+    private void onPriority(int streamId, int length) throws Http2Exception {
+        if (streamId == 0) {
+            throw new Http2Exception(Http2ErrorCode.PROTOCOL_ERROR, "PRIORITY on stream 0.");
+        }
+
+        if (length != 5) {
+            throw new Http2Exception(streamId, Http2ErrorCode.FRAME_SIZE_ERROR, "PRIORITY must have 5 bytes.");
+        }
+
+        final Http2Stream stream = this.streams.get(streamId);
+        if (stream != null) {
+            stream.setWeight((this.payload[4] & 0xFF) + 1);
+        }
+    }
+
+    private void onPriorityUpdate(int streamId, int length) throws Http2Exception {
+        if (streamId != 0 || length < 4) {
+            throw new Http2Exception(Http2ErrorCode.PROTOCOL_ERROR, "Invalid PRIORITY_UPDATE.");
+        }
+
+        final Http2Stream stream = this.streams.get(this.getInt(0) & 0x7FFFFFFF);
+        if (stream != null) {
+            stream.setPriority(new String(this.payload, 4, length - 4, StandardCharsets.ISO_8859_1));
+        }
+    }
+
+    private void onRstStream(int streamId, int length) throws Http2Exception {
+        if (streamId == 0) {
+            throw new Http2Exception(Http2ErrorCode.PROTOCOL_ERROR, "RST_STREAM on stream 0.");
+        }
+
+        if (length != 4) {
+            throw new Http2Exception(Http2ErrorCode.FRAME_SIZE_ERROR, "RST_STREAM must have 4 bytes.");
+        }
+
+        if (streamId > this.lastStreamId) {
+            throw new Http2Exception(Http2ErrorCode.PROTOCOL_ERROR, "RST_STREAM on an idle stream.");
+        }
+
+        final Http2Stream stream = this.streams.remove(streamId);
+        if (stream != null) {
+            stream.onReset(Http2ErrorCode.valueOf(this.getInt(0)));
+            synchronized (this.windowLock) {
+                this.windowLock.notifyAll();
+            }
+            this.countReset();
+        }
+    }
+
+    /**
+     * Resetting streams right after opening them costs the client nothing, but starts work on the gateway and
+     * the destination servers every time, see CVE-2023-44487. Clients that do so too often are sent away.
+     */
+    private void countReset() throws Http2Exception {
+        final long now = System.currentTimeMillis();
+        if (now - this.resetWindowStartMillis > General.HTTP2_RESET_WINDOW_MILLIS) {
+            this.resetWindowStartMillis = now;
+            this.resetCount = 0;
+        }
+
+        if (++this.resetCount > General.HTTP2_MAX_RESETS_PER_WINDOW) {
+            throw new Http2Exception(Http2ErrorCode.ENHANCE_YOUR_CALM, "Too many streams reset by the client.");
+        }
+    }
+
+    private void onSettings(int flags, int streamId, int length) throws IOException {
+        if (streamId != 0) {
+            throw new Http2Exception(Http2ErrorCode.PROTOCOL_ERROR, "SETTINGS on a stream.");
+        }
+
+        if ((flags & FLAG_ACK) != 0) {
+            if (length != 0) {
+                throw new Http2Exception(Http2ErrorCode.FRAME_SIZE_ERROR, "SETTINGS ACK with a payload.");
+            }
+            return;
+        }
+
+        if (length % 6 != 0) {
+            throw new Http2Exception(Http2ErrorCode.FRAME_SIZE_ERROR, "SETTINGS length is not a multiple of 6.");
+        }
+
+        for (int offset = 0; offset < length; offset += 6) {
+            final int identifier = ((this.payload[offset] & 0xFF) << 8) | (this.payload[offset + 1] & 0xFF);
+            final long value = this.getInt(offset + 2) & 0xFFFFFFFFL;
+            this.applySetting(identifier, value);
+        }
+
+        synchronized (this.writeLock) {
+            this.writeFrameHeader(0, SETTINGS, FLAG_ACK, 0);
+            this.outputStream.flush();
+        }
+    }
+
+    private void applySetting(int identifier, long value) throws Http2Exception {
+        switch (identifier) {
+            case Http2Settings.HEADER_TABLE_SIZE:
+                synchronized (this.writeLock) {
+                    this.encoder.setMaxTableSize((int) Math.min(value, Integer.MAX_VALUE));
+                }
+                break;
+            case Http2Settings.ENABLE_PUSH:
+                if (value > 1) {
+                    throw new Http2Exception(Http2ErrorCode.PROTOCOL_ERROR, "Invalid SETTINGS_ENABLE_PUSH.");
+                }
+                break;
+            case Http2Settings.INITIAL_WINDOW_SIZE:
+                if (value > Http2Settings.MAX_WINDOW_SIZE) {
+                    throw new Http2Exception(Http2ErrorCode.FLOW_CONTROL_ERROR, "Invalid SETTINGS_INITIAL_WINDOW_SIZE.");
+                }
+                this.setPeerInitialWindowSize((int) value);
+                break;
+            case Http2Settings.MAX_FRAME_SIZE:
+                if (value < Http2Settings.DEFAULT_MAX_FRAME_SIZE || value > Http2Settings.MAX_MAX_FRAME_SIZE) {
+                    throw new Http2Exception(Http2ErrorCode.PROTOCOL_ERROR, "Invalid SETTINGS_MAX_FRAME_SIZE.");
+                }
+                this.peerMaxFrameSize = (int) value;
+                break;
+            default:
+                // The client does not accept streams from us, so its concurrency and header list limits do not
+                // matter, unknown settings are ignored.
+        }
+    }
+
+    /**
+     * Changing the initial window moves the windows of open streams by the difference, see RFC 9113 section 6.9.2.
+     */
+    private void setPeerInitialWindowSize(int windowSize) throws Http2Exception {
+        synchronized (this.windowLock) {
+            final int delta = windowSize - this.peerInitialWindowSize;
+            this.peerInitialWindowSize = windowSize;
+
+            for (Http2Stream stream : this.streams.values()) {
+                stream.addSendWindow(delta);
+                if (stream.getSendWindow() > Http2Settings.MAX_WINDOW_SIZE) {
+                    throw new Http2Exception(Http2ErrorCode.FLOW_CONTROL_ERROR, "Stream window overflow.");
+                }
+            }
+
+            this.windowLock.notifyAll();
+        }
+    }
+
+    private void onPing(int flags, int streamId, int length) throws IOException {
+        if (streamId != 0) {
+            throw new Http2Exception(Http2ErrorCode.PROTOCOL_ERROR, "PING on a stream.");
+        }
+
+        if (length != 8) {
+            throw new Http2Exception(Http2ErrorCode.FRAME_SIZE_ERROR, "PING must have 8 bytes.");
+        }
+
+        if ((flags & FLAG_ACK) != 0) {
+            return;
+        }
+
+        synchronized (this.writeLock) {
+            this.writeFrameHeader(8, PING, FLAG_ACK, 0);
+            this.outputStream.write(this.payload, 0, 8);
+            this.outputStream.flush();
+        }
+    }
+
+    /**
+     * Streams that were already started are still answered, the client closes the connection when it is done.
+     */
+    private void onGoAway(int streamId, int length) throws Http2Exception {
+        if (streamId != 0) {
+            throw new Http2Exception(Http2ErrorCode.PROTOCOL_ERROR, "GOAWAY on a stream.");
+        }
+
+        if (length < 8) {
+            throw new Http2Exception(Http2ErrorCode.FRAME_SIZE_ERROR, "GOAWAY must have at least 8 bytes.");
+        }
+
+        final Http2ErrorCode errorCode = Http2ErrorCode.valueOf(this.getInt(4));
+        if (errorCode != Http2ErrorCode.NO_ERROR) {
+            log.debug("Client {} sent GOAWAY with {}.", this.clientConnection.getHostOrIp(), errorCode);
+        }
+    }
+
+    private void onWindowUpdate(int streamId, int length) throws Http2Exception {
+        if (length != 4) {
+            throw new Http2Exception(Http2ErrorCode.FRAME_SIZE_ERROR, "WINDOW_UPDATE must have 4 bytes.");
+        }
+
+        final int increment = this.getInt(0) & 0x7FFFFFFF;
+        if (increment == 0) {
+            throw new Http2Exception(streamId, Http2ErrorCode.PROTOCOL_ERROR, "WINDOW_UPDATE of 0.");
+        }
+
+        synchronized (this.windowLock) {
+            if (streamId == 0) {
+                this.sendWindow += increment;
+                if (this.sendWindow > Http2Settings.MAX_WINDOW_SIZE) {
+                    throw new Http2Exception(Http2ErrorCode.FLOW_CONTROL_ERROR, "Connection window overflow.");
+                }
+            } else {
+                final Http2Stream stream = this.streams.get(streamId);
+                if (stream == null) {
+                    return;
+                }
+
+                stream.addSendWindow(increment);
+                if (stream.getSendWindow() > Http2Settings.MAX_WINDOW_SIZE) {
+                    throw new Http2Exception(streamId, Http2ErrorCode.FLOW_CONTROL_ERROR, "Stream window overflow.");
+                }
+            }
+
+            this.windowLock.notifyAll();
+        }
+    }
+
+    /**
+     * Waits until both the connection and the stream window are open and no more urgent stream waits for the
+     * connection window.
+     *
+     * @return the number of bytes that may be sent, at most {@code wanted}.
+     */
+    private int reserveSendWindow(Http2Stream stream, int wanted) throws IOException {
+        synchronized (this.windowLock) {
+            try {
+                while (true) {
+                    this.checkWritable(stream);
+
+                    final long available = Math.min(this.sendWindow, stream.getSendWindow());
+                    if (available > 0 && this.isNextToSend(stream)) {
+                        final int reserved = (int) Math.min(available, wanted);
+                        this.sendWindow -= reserved;
+                        stream.addSendWindow(-reserved);
+
+                        if (this.blockedStreams.remove(stream)) {
+                            this.windowLock.notifyAll();
+                        }
+                        return reserved;
+                    }
+
+                    if (!this.blockedStreams.contains(stream)) {
+                        this.blockedStreams.add(stream);
+                    }
+                    this.windowLock.wait();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for a send window.", ex);
+            } finally {
+                if (this.isClosed || stream.isReset()) {
+                    this.blockedStreams.remove(stream);
+                }
+            }
+        }
+    }
+
+    /**
+     * Streams whose own window is closed do not hold back the others.
+     */
+    private boolean isNextToSend(Http2Stream stream) {
+        for (Http2Stream blocked : this.blockedStreams) {
+            if (blocked != stream && blocked.getSendWindow() > 0 && PRIORITY_ORDER.compare(blocked, stream) < 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void checkWritable(Http2Stream stream) throws IOException {
+        if (this.isClosed) {
+            throw new EOFException("HTTP/2 connection is closed.");
+        }
+
+        if (stream.isReset()) {
+            throw new IOException(String.format("Stream %d was reset.", stream.getId()));
+        }
+    }
+
+    private Http2Stream getOpenStream(int streamId, String frameName) throws Http2Exception {
+        final Http2Stream stream = this.streams.get(streamId);
+        if (stream == null && streamId > this.lastStreamId) {
+            throw new Http2Exception(Http2ErrorCode.PROTOCOL_ERROR, String.format("%s on an idle stream.", frameName));
+        }
+
+        if (stream == null || stream.isRemoteClosed()) {
+            throw new Http2Exception(
+                    streamId, Http2ErrorCode.STREAM_CLOSED, String.format("%s on a closed stream.", frameName)
+            );
+        }
+
+        return stream;
+    }
+
+    private int getPadding(int flags, int length) throws Http2Exception {
+        if ((flags & FLAG_PADDED) == 0) {
+            return 0;
+        }
+
+        final int padding = length > 0 ? this.payload[0] & 0xFF : Integer.MAX_VALUE;
+        if (padding >= length) {
+            throw new Http2Exception(Http2ErrorCode.PROTOCOL_ERROR, "Padding exceeds the frame.");
+        }
+
+        return padding;
+    }
+
+    private int getInt(int offset) {
+        return ((this.payload[offset] & 0xFF) << 24)
+                | ((this.payload[offset + 1] & 0xFF) << 16)
+                | ((this.payload[offset + 2] & 0xFF) << 8)
+                | (this.payload[offset + 3] & 0xFF);
+    }
+
+    /**
+     * Announces the limits of the gateway and opens the connection window for request bodies.
+     */
+    private void writeSettings() throws IOException {
+        synchronized (this.writeLock) {
+            this.writeFrameHeader(12, SETTINGS, 0, 0);
+            this.writeSetting(Http2Settings.MAX_CONCURRENT_STREAMS, this.maxConcurrentStreams);
+            this.writeSetting(Http2Settings.INITIAL_WINDOW_SIZE, this.initialWindowSize);
+
+            this.writeFrameHeader(4, WINDOW_UPDATE, 0, 0);
+            this.writeInt(General.HTTP2_CONNECTION_WINDOW_SIZE_BYTES - Http2Settings.DEFAULT_INITIAL_WINDOW_SIZE);
+            this.outputStream.flush();
+        }
+        this.receiveWindow = General.HTTP2_CONNECTION_WINDOW_SIZE_BYTES;
+    }
+
+    private void writeRstStream(int streamId, Http2ErrorCode errorCode) {
+        try {
+            synchronized (this.writeLock) {
+                this.writeFrameHeader(4, RST_STREAM, 0, streamId);
+                this.writeInt(errorCode.getCode());
+                this.outputStream.flush();
+            }
+        } catch (IOException ex) {
+            log.debug("Could not send RST_STREAM to client {}. {}",
+                    this.clientConnection.getHostOrIp(), ex.getMessage()
+            );
+        }
+    }
+
+    private void writeGoAway(Http2ErrorCode errorCode, String message) {
+        final byte[] debugData = message == null ? new byte[0] : message.getBytes(StandardCharsets.UTF_8);
+        try {
+            synchronized (this.writeLock) {
+                this.writeFrameHeader(8 + debugData.length, GOAWAY, 0, 0);
+                this.writeInt(this.lastStreamId);
+                this.writeInt(errorCode.getCode());
+                this.outputStream.write(debugData);
+                this.outputStream.flush();
+            }
+        } catch (IOException ex) {
+            log.debug("Could not send GOAWAY to client {}. {}", this.clientConnection.getHostOrIp(), ex.getMessage());
+        }
+    }
+
+    private void writeSetting(int identifier, int value) throws IOException {
+        this.outputStream.write(identifier >>> 8);
+        this.outputStream.write(identifier);
+        this.writeInt(value);
+    }
+
+    private void writeFrameHeader(int length, int type, int flags, int streamId) throws IOException {
+        this.outputStream.write(length >>> 16);
+        this.outputStream.write(length >>> 8);
+        this.outputStream.write(length);
+        this.outputStream.write(type);
+        this.outputStream.write(flags);
+        this.writeInt(streamId);
+    }
+
+    private void writeInt(int value) throws IOException {
+        this.outputStream.write(value >>> 24);
+        this.outputStream.write(value >>> 16);
+        this.outputStream.write(value >>> 8);
+        this.outputStream.write(value);
+    }
+}
@@ -0,0 +1,81 @@
+package com.cyecize.gatewayserver.api.http2;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Sends a response body as DATA frames of the largest size that the peer accepts. Closing does not end the
+ * stream, only {@link #finish()} does, so that a failed body is not mistaken for a complete one.
+ */
+public class Http2DataOutputStream extends OutputStream {
+    private final Http2Connection connection;
+
+    private final Http2Stream stream;
+
+    private final byte[] buffer;
+
+    private int count;
+
+    private long writtenCount;
+
+    Http2DataOutputStream(Http2Connection connection, Http2Stream stream) {
+        this.connection = connection;
+        this.stream = stream;
+        this.buffer = new byte[connection.getPeerMaxFrameSize()];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (this.count == this.buffer.length) {
+            this.writeFrames(false);
+        }
+
+        this.buffer[this.count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (this.count == this.buffer.length) {
+                this.writeFrames(false);
+            }
+
+            final int copied = Math.min(length, this.buffer.length - this.count);
+            System.arraycopy(bytes, offset, this.buffer, this.count, copied);
+            this.count += copied;
+            offset += copied;
+            length -= copied;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (this.count > 0) {
+            this.writeFrames(false);
+        }
+    }
+
+    /**
+     * Sends the buffered bytes with the END_STREAM flag.
+     */
+    public void finish() throws IOException {
+        this.writeFrames(true);
+    }
+
+    /**
+     * @return the number of sent body bytes.
+     */
+    public long getWrittenCount() {
+        return this.writtenCount;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private void writeFrames(boolean isEndStream) throws IOException {
+        this.connection.writeData(this.stream, this.buffer, this.count, isEndStream);
+        this.writtenCount += this.count;
+        this.count = 0;
+    }
+}
@@ -0,0 +1,263 @@
+package com.cyecize.gatewayserver.api.http2;
+
+import com.cyecize.gatewayserver.api.http.HttpHead;
+import com.cyecize.gatewayserver.api.http.HttpHeadParser;
+import com.cyecize.gatewayserver.api.http.HttpHeaders;
+import com.cyecize.gatewayserver.constants.General;
+import com.cyecize.gatewayserver.error.CannotParseRequestException;
+import com.cyecize.gatewayserver.error.Http2Exception;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Translates HTTP/2 messages to and from the HTTP/1.1 messages that destination servers understand.
+ */
+public class Http2Messages {
+    private static final Set<String> CONNECTION_SPECIFIC_FIELDS = Set.of(
+            "connection", "proxy-connection", "keep-alive", "transfer-encoding", "upgrade"
+    );
+
+    /**
+     * Builds the HTTP/1.1 head of a request, the request is malformed if the fields break RFC 9113 section 8.2.
+     *
+     * @param hasBody true if the request has a body, which is then chunked unless it has a content-length.
+     */
+    public static HttpHead createRequestHead(int streamId, List<HeaderField> fields, boolean hasBody)
+            throws Http2Exception {
+        String method = null;
+        String scheme = null;
+        String path = null;
+        String authority = null;
+        String host = null;
+
+        final List<String> cookies = new ArrayList<>();
+        final StringBuilder headerLines = new StringBuilder();
+        boolean hasContentLength = false;
+        boolean isPseudoAllowed = true;
+
+        for (HeaderField field : fields) {
+            final String name = field.getName();
+            final String value = field.getValue();
+            validateField(streamId, name, value);
+
+            if (name.startsWith(":")) {
+                if (!isPseudoAllowed) {
+                    throw malformed(streamId, "Pseudo-header field after a regular field.");
+                }
+
+                switch (name) {
+                    case ":method":
+                        method = requireSingle(streamId, name, method, value);
+                        break;
+                    case ":scheme":
+                        scheme = requireSingle(streamId, name, scheme, value);
+                        break;
+                    case ":path":
+                        path = requireSingle(streamId, name, path, value);
+                        break;
+                    case ":authority":
+                        authority = requireSingle(streamId, name, authority, value);
+                        break;
+                    default:
+                        throw malformed(streamId, String.format("Unknown pseudo-header field %s.", name));
+                }
+                continue;
+            }
+            isPseudoAllowed = false;
+
+            if (CONNECTION_SPECIFIC_FIELDS.contains(name)) {
+                throw malformed(streamId, String.format("Connection-specific field %s.", name));
+            }
+
+            switch (name) {
+                case "te":
+                    if (!"trailers".equals(value)) {
+                        throw malformed(streamId, "TE other than trailers.");
+                    }
+                    break;
+                case "cookie":
+                    // Cookies may be split into several fields for better compression, see RFC 9113 section 8.2.3.
+                    cookies.add(value);
+                    break;
+                case "host":
+                    host = value;
+                    break;
+                case "priority":
+                    // Handled by the connection.
+                    break;
+                default:
+                    if ("content-length".equals(name)) {
+                        hasContentLength = true;
+                    }
+                    appendLine(headerLines, toCanonicalName(name), value);
+            }
+        }
+
+        if (method == null || scheme == null || path == null || path.isEmpty()) {
+            throw malformed(streamId, "Missing :method, :scheme or :path.");
+        }
+
+        // Both end up in the request line, which a space or a control character would break.
+        if (!isToken(method)) {
+            throw malformed(streamId, String.format("Invalid :method %s.", method));
+        }
+        for (int i = 0; i < path.length(); i++) {
+            final char c = path.charAt(i);
+            if (c <= 0x20 || c == 0x7F) {
+                throw malformed(streamId, "Invalid :path.");
+            }
+        }
+
+        if ("CONNECT".equals(method)) {
+            throw malformed(streamId, "CONNECT is not supported.");
+        }
+
+        final StringBuilder head = new StringBuilder(headerLines.length() + 256);
+        head.append(method).append(' ').append(path).append(" HTTP/1.1\r\n");
+
+        final String targetHost = authority != null ? authority : host;
+        if (targetHost != null) {
+            appendLine(head, "Host", targetHost);
+        }
+        if (!cookies.isEmpty()) {
+            appendLine(head, "Cookie", String.join("; ", cookies));
+        }
+        head.append(headerLines);
+        if (hasBody && !hasContentLength) {
+            appendLine(head, "Transfer-Encoding", "chunked");
+        }
+        head.append("\r\n");
+
+        return parseHead(streamId, head.toString().getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Converts the head of an HTTP/1.1 response to header fields, leaving out fields that only concern the
+     * connection to the destination server.
+     */
+    public static List<HeaderField> createResponseFields(int statusCode, HttpHeaders headers) {
+        final Set<String> excluded = new HashSet<>(CONNECTION_SPECIFIC_FIELDS);
+        headers.forEach((name, value) -> {
+            if ("connection".equalsIgnoreCase(name)) {
+                for (String option : value.split(",")) {
+                    excluded.add(option.trim().toLowerCase());
+                }
+            }
+        });
+
+        final List<HeaderField> fields = new ArrayList<>();
+        fields.add(new HeaderField(":status", String.valueOf(statusCode)));
+        headers.forEach((name, value) -> {
+            final String lowerCaseName = name.toLowerCase();
+            if (!excluded.contains(lowerCaseName)) {
+                fields.add(new HeaderField(lowerCaseName, value));
+            }
+        });
+
+        return fields;
+    }
+
+    /**
+     * Responses that the gateway makes up itself, e.g. when no destination can be reached.
+     */
+    public static List<HeaderField> createErrorFields(int statusCode) {
+        return List.of(
+                new HeaderField(":status", String.valueOf(statusCode)),
+                new HeaderField("content-length", "0")
+        );
+    }
+
+    /**
+     * Field names must be lowercase, values must not contain characters that would split a line, see RFC 9113
+     * section 8.2.1.
+     */
+    private static void validateField(int streamId, String name, String value) throws Http2Exception {
+        if (name.isEmpty()) {
+            throw malformed(streamId, "Empty field name.");
+        }
+
+        for (int i = name.startsWith(":") ? 1 : 0; i < name.length(); i++) {
+            final char c = name.charAt(i);
+            if (c <= 0x20 || c >= 0x7F || c == ':' || (c >= 'A' && c <= 'Z')) {
+                throw malformed(streamId, String.format("Invalid field name %s.", name));
+            }
+        }
+
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == 0 || c == '\r' || c == '\n') {
+                throw malformed(streamId, String.format("Invalid value of field %s.", name));
+            }
+        }
+    }
+
+    /**
+     * See RFC 9110 section 5.6.2.
+     */
+    private static boolean isToken(String value) {
+        if (value.isEmpty()) {
+            return false;
+        }
+
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            final boolean isAlphaNumeric = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+            if (!isAlphaNumeric && "!#$%&'*+-.^_`|~".indexOf(c) < 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static String requireSingle(int streamId, String name, String current, String value)
+            throws Http2Exception {
+        if (current != null) {
+            throw malformed(streamId, String.format("Repeated pseudo-header field %s.", name));
+        }
+
+        return value;
+    }
+
+    /**
+     * Destination servers and the rest of the gateway expect names like "Content-Length".
+     */
+    private static String toCanonicalName(String name) {
+        final char[] chars = name.toCharArray();
+        boolean isWordStart = true;
+        for (int i = 0; i < chars.length; i++) {
+            if (isWordStart) {
+                chars[i] = Character.toUpperCase(chars[i]);
+            }
+            isWordStart = chars[i] == '-';
+        }
+
+        return new String(chars);
+    }
+
+    private static void appendLine(StringBuilder head, String name, String value) {
+        head.append(name).append(": ").append(value.trim()).append("\r\n");
+    }
+
+    private static HttpHead parseHead(int streamId, byte[] bytes) throws Http2Exception {
+        final HttpHeadParser parser = new HttpHeadParser(General.MAX_HEAD_SIZE, General.MAX_HEAD_LINES);
+        try {
+            final int headEnd = parser.scan(bytes, bytes.length);
+            if (headEnd < 0) {
+                throw malformed(streamId, "Incomplete request head.");
+            }
+
+            return parser.toHead(bytes, headEnd);
+        } catch (CannotParseRequestException ex) {
+            throw new Http2Exception(streamId, Http2ErrorCode.REFUSED_STREAM, ex.getMessage());
+        }
+    }
+
+    private static Http2Exception malformed(int streamId, String message) {
+        return new Http2Exception(streamId, Http2ErrorCode.PROTOCOL_ERROR, message);
+    }
+}
@@ -0,0 +1,28 @@
+package com.cyecize.gatewayserver.api.http2;
+
+/**
+ * Identifiers and initial values of the settings of a connection, see RFC 9113 section 6.5.2.
+ */
+class Http2Settings {
+    static final int HEADER_TABLE_SIZE = 0x1;
+
+    static final int ENABLE_PUSH = 0x2;
+
+    static final int MAX_CONCURRENT_STREAMS = 0x3;
+
+    static final int INITIAL_WINDOW_SIZE = 0x4;
+
+    static final int MAX_FRAME_SIZE = 0x5;
+
+    static final int MAX_HEADER_LIST_SIZE = 0x6;
+
+    static final int DEFAULT_HEADER_TABLE_SIZE = 4096;
+
+    static final int DEFAULT_INITIAL_WINDOW_SIZE = 65535;
+
+    static final int DEFAULT_MAX_FRAME_SIZE = 16384;
+
+    static final int MAX_MAX_FRAME_SIZE = 16777215;
+
+    static final int MAX_WINDOW_SIZE = Integer.MAX_VALUE;
+}
@@ -0,0 +1,405 @@
+package com.cyecize.gatewayserver.api.http2;
+
+import com.cyecize.gatewayserver.api.server.Connection;
+import com.cyecize.gatewayserver.error.Http2Exception;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Request / response pair of an HTTP/2 connection. The connection thread feeds the request body, while the
+ * response is written by the thread that forwards the request.
+ */
+public class Http2Stream {
+    /**
+     * Urgency of requests without priority signals, see RFC 9218 section 4.1.
+     */
+    static final int DEFAULT_URGENCY = 3;
+
+    private static final int MAX_URGENCY = 7;
+
+    private final Http2Connection connection;
+
+    private final int id;
+
+    private final List<HeaderField> requestFields;
+
+    private final RequestBody requestBody;
+
+    /**
+     * Value of the content-length field or -1, checked against the DATA frames of the request.
+     */
+    private final long contentLength;
+
+    private long receivedLength;
+
+    /**
+     * Guarded by the window lock of the connection.
+     */
+    private long sendWindow;
+
+    private volatile int urgency = DEFAULT_URGENCY;
+
+    /**
+     * Once the request carries a priority field, PRIORITY frames of the deprecated dependency tree are ignored.
+     */
+    private volatile boolean isPriorityFieldSent;
+
+    private volatile boolean isRemoteClosed;
+
+    private volatile boolean isLocalClosed;
+
+    private volatile boolean isResponseStarted;
+
+    private volatile Http2ErrorCode resetCode;
+
+    /**
+     * Resources that are bound to this stream and are closed if it is reset, guarded by itself.
+     */
+    private final List<Connection.Closeable> closeables = new ArrayList<>();
+
+    Http2Stream(Http2Connection connection,
+                int id,
+                List<HeaderField> requestFields,
+                long sendWindow,
+                int receiveWindow) {
+        this.connection = connection;
+        this.id = id;
+        this.requestFields = requestFields;
+        this.sendWindow = sendWindow;
+        this.requestBody = new RequestBody(receiveWindow);
+        this.contentLength = getContentLength(requestFields);
+    }
+
+    public int getId() {
+        return this.id;
+    }
+
+    public List<HeaderField> getRequestFields() {
+        return this.requestFields;
+    }
+
+    public InputStream getRequestBody() {
+        return this.requestBody;
+    }
+
+    /**
+     * Waits for the first DATA frame of the request, if there will be any, since clients may end a request
+     * without a body through an empty DATA frame instead of the HEADERS frame.
+     *
+     * @return true if the request has a body.
+     */
+    public boolean awaitRequestBody() throws IOException {
+        return this.requestBody.awaitData();
+    }
+
+    public void writeHeaders(List<HeaderField> fields, boolean isEndStream) throws IOException {
+        this.isResponseStarted = true;
+        this.connection.writeHeaders(this, fields, isEndStream);
+    }
+
+    /**
+     * @return stream that sends DATA frames, {@link Http2DataOutputStream#finish()} ends the response.
+     */
+    public Http2DataOutputStream openResponseBody() {
+        return new Http2DataOutputStream(this.connection, this);
+    }
+
+    /**
+     * Ends the stream abruptly, e.g. because the request cannot be forwarded after the response has started.
+     */
+    public void reset(Http2ErrorCode errorCode) {
+        this.connection.resetStream(this, errorCode);
+    }
+
+    /**
+     * Releases the stream once the response has been sent or the stream has been reset.
+     */
+    public void close() {
+        this.connection.closeStream(this);
+    }
+
+    public void addCloseable(Connection.Closeable closeable) {
+        synchronized (this.closeables) {
+            if (this.resetCode == null) {
+                this.closeables.add(closeable);
+                return;
+            }
+        }
+
+        closeable.close();
+    }
+
+    /**
+     * Unbinds the resources given to {@link #addCloseable(Connection.Closeable)}, e.g. before a server connection
+     * goes back to the pool.
+     *
+     * @return false if the stream was reset, in which case they are closed.
+     */
+    public boolean removeCloseables() {
+        synchronized (this.closeables) {
+            this.closeables.clear();
+            return this.resetCode == null;
+        }
+    }
+
+    /**
+     * @return true once response headers were sent, the stream can only be reset after that.
+     */
+    public boolean isResponseStarted() {
+        return this.isResponseStarted;
+    }
+
+    public boolean isReset() {
+        return this.resetCode != null;
+    }
+
+    long getSendWindow() {
+        return this.sendWindow;
+    }
+
+    void addSendWindow(long increment) {
+        this.sendWindow += increment;
+    }
+
+    int getUrgency() {
+        return this.urgency;
+    }
+
+    /**
+     * Maps the weight of the deprecated priority scheme of RFC 7540 onto urgencies, browsers use weight 256 for
+     * documents and lower weights for scripts, styles and images.
+     */
+    void setWeight(int weight) {
+        if (!this.isPriorityFieldSent) {
+            this.urgency = (256 - weight) / 32;
+        }
+    }
+
+    /**
+     * @param priority value of a priority field or PRIORITY_UPDATE frame, e.g. "u=1, i".
+     */
+    void setPriority(String priority) {
+        this.isPriorityFieldSent = true;
+        this.urgency = DEFAULT_URGENCY;
+
+        for (String parameter : priority.split(",")) {
+            final String trimmed = parameter.trim();
+            if (trimmed.length() == 3 && trimmed.startsWith("u=") && Character.isDigit(trimmed.charAt(2))) {
+                this.urgency = Math.min(trimmed.charAt(2) - '0', MAX_URGENCY);
+            }
+        }
+    }
+
+    boolean isRemoteClosed() {
+        return this.isRemoteClosed;
+    }
+
+    boolean isLocalClosed() {
+        return this.isLocalClosed;
+    }
+
+    void onLocalClosed() {
+        this.isLocalClosed = true;
+    }
+
+    /**
+     * @return bytes to give back to the peer through a WINDOW_UPDATE, since padding is never consumed.
+     */
+    int onData(byte[] bytes, int offset, int length, int padding, boolean isEndStream) throws Http2Exception {
+        this.receivedLength += length;
+        if (this.contentLength >= 0 && this.receivedLength > this.contentLength) {
+            throw new Http2Exception(this.id, Http2ErrorCode.PROTOCOL_ERROR, "DATA exceeds the content-length.");
+        }
+
+        final int returned = this.requestBody.append(bytes, offset, length, padding);
+        if (isEndStream) {
+            this.onRemoteClosed();
+            return 0;
+        }
+
+        return returned;
+    }
+
+    void onRemoteClosed() throws Http2Exception {
+        this.isRemoteClosed = true;
+        if (this.contentLength >= 0 && this.receivedLength != this.contentLength) {
+            throw new Http2Exception(this.id, Http2ErrorCode.PROTOCOL_ERROR, "DATA do not match the content-length.");
+        }
+
+        this.requestBody.end();
+    }
+
+    /**
+     * @return false if the stream was already reset.
+     */
+    boolean onReset(Http2ErrorCode errorCode) {
+        final List<Connection.Closeable> closeables;
+        synchronized (this.closeables) {
+            if (this.resetCode != null) {
+                return false;
+            }
+
+            this.resetCode = errorCode;
+            closeables = new ArrayList<>(this.closeables);
+            this.closeables.clear();
+        }
+
+        this.requestBody.fail(new IOException(String.format("Stream %d was reset with %s.", this.id, errorCode)));
+        closeables.forEach(Connection.Closeable::close);
+        return true;
+    }
+
+    private static long getContentLength(List<HeaderField> fields) {
+        for (HeaderField field : fields) {
+            if (!"content-length".equals(field.getName())) {
+                continue;
+            }
+
+            try {
+                return Long.parseLong(field.getValue());
+            } catch (NumberFormatException ex) {
+                return -1;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Buffers DATA frames until the forwarding thread reads them. The peer can only send as much as the stream
+     * window allows, which is reopened as the body is read.
+     */
+    private class RequestBody extends InputStream {
+        private final int initialWindow;
+
+        private final Deque<byte[]> chunks = new ArrayDeque<>();
+
+        private int chunkOffset;
+
+        private int receiveWindow;
+
+        /**
+         * Read bytes that were not yet given back to the peer.
+         */
+        private int consumed;
+
+        private boolean isEnded;
+
+        private IOException failure;
+
+        RequestBody(int initialWindow) {
+            this.initialWindow = initialWindow;
+            this.receiveWindow = initialWindow;
+        }
+
+        synchronized int append(byte[] bytes, int offset, int length, int padding) throws Http2Exception {
+            if (length + padding > this.receiveWindow) {
+                throw new Http2Exception(
+                        Http2Stream.this.id, Http2ErrorCode.FLOW_CONTROL_ERROR, "DATA exceeds the stream window."
+                );
+            }
+
+            this.receiveWindow -= length + padding;
+            if (length > 0) {
+                final byte[] chunk = new byte[length];
+                System.arraycopy(bytes, offset, chunk, 0, length);
+                this.chunks.add(chunk);
+                this.notifyAll();
+            }
+
+            this.consumed += padding;
+            return this.takeWindowUpdate();
+        }
+
+        synchronized void end() {
+            this.isEnded = true;
+            this.notifyAll();
+        }
+
+        synchronized void fail(IOException failure) {
+            this.failure = failure;
+            this.chunks.clear();
+            this.notifyAll();
+        }
+
+        synchronized boolean awaitData() throws IOException {
+            this.awaitChunk();
+            return !this.chunks.isEmpty();
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] single = new byte[1];
+            return this.read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+
+            final int read;
+            final int windowUpdate;
+            synchronized (this) {
+                this.awaitChunk();
+                if (this.chunks.isEmpty()) {
+                    return -1;
+                }
+
+                final byte[] chunk = this.chunks.peek();
+                read = Math.min(length, chunk.length - this.chunkOffset);
+                System.arraycopy(chunk, this.chunkOffset, bytes, offset, read);
+
+                this.chunkOffset += read;
+                if (this.chunkOffset == chunk.length) {
+                    this.chunks.poll();
+                    this.chunkOffset = 0;
+                }
+
+                this.consumed += read;
+                windowUpdate = this.isEnded ? 0 : this.takeWindowUpdate();
+            }
+
+            if (windowUpdate > 0) {
+                Http2Stream.this.connection.writeWindowUpdate(Http2Stream.this.id, windowUpdate);
+            }
+
+            return read;
+        }
+
+        /**
+         * Returns the window in batches of half its size, instead of a WINDOW_UPDATE per read.
+         */
+        private int takeWindowUpdate() {
+            if (this.consumed < this.initialWindow / 2) {
+                return 0;
+            }
+
+            final int windowUpdate = this.consumed;
+            this.receiveWindow += windowUpdate;
+            this.consumed = 0;
+            return windowUpdate;
+        }
+
+        private void awaitChunk() throws IOException {
+            try {
+                while (this.chunks.isEmpty() && !this.isEnded && this.failure == null) {
+                    this.wait();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the request body.", ex);
+            }
+
+            if (this.failure != null) {
+                throw this.failure;
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.cyecize.gatewayserver.api.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts samples in fixed buckets, so that memory does not grow with the number of samples.
+ * Recording does not lock, concurrent samples only contend on the striped cells of the bucket they fall in.
+ */
+public class LatencyHistogram {
+    /**
+     * Upper bounds of the buckets in millis, samples above the last one go to an extra bucket.
+     */
+    static final long[] BUCKET_BOUNDS_MILLIS = {1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000};
+
+    private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS_MILLIS.length + 1];
+
+    private final LongAdder sumNanos = new LongAdder();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < this.buckets.length; i++) {
+            this.buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        final long millis = TimeUnit.NANOSECONDS.toMillis(Math.max(nanos, 0));
+
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS_MILLIS.length && millis > BUCKET_BOUNDS_MILLIS[bucket]) {
+            bucket++;
+        }
+
+        this.buckets[bucket].increment();
+        this.sumNanos.add(nanos);
+    }
+
+    /**
+     * @return number of samples in each bucket, not cumulative, the last one being above every bound.
+     */
+    long[] getBucketCounts() {
+        final long[] counts = new long[this.buckets.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = this.buckets[i].sum();
+        }
+
+        return counts;
+    }
+
+    long getSumNanos() {
+        return this.sumNanos.sum();
+    }
+}
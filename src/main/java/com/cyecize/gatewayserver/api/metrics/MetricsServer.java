@@ -0,0 +1,210 @@
+package com.cyecize.gatewayserver.api.metrics;
+
+import com.cyecize.gatewayserver.api.accesslog.AccessLogService;
+import com.cyecize.gatewayserver.api.buffer.BufferPool;
+import com.cyecize.gatewayserver.api.cache.ResponseCacheService;
+import com.cyecize.gatewayserver.api.connection.DestinationDto;
+import com.cyecize.gatewayserver.api.options.MetricsOptions;
+import com.cyecize.gatewayserver.api.options.Options;
+import com.cyecize.gatewayserver.api.pool.PoolService;
+import com.cyecize.gatewayserver.api.ratelimit.RateLimitService;
+import com.cyecize.gatewayserver.api.routing.RoutingService;
+import com.cyecize.gatewayserver.api.server.Server;
+import com.cyecize.gatewayserver.api.upstream.UpstreamConnectionPool;
+import com.cyecize.ioc.annotations.Service;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the metrics in Prometheus text format on a separate admin port, local only by default.
+ * Scrapes are rare, so a single thread of the JDK HTTP server is enough and the gateway threads are not used.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class MetricsServer implements Server {
+
+    private final Options options;
+
+    private final MetricsService metricsService;
+
+    private final RoutingService routingService;
+
+    private final PoolService poolService;
+
+    private final UpstreamConnectionPool upstreamConnectionPool;
+
+    private final ResponseCacheService responseCacheService;
+
+    private final RateLimitService rateLimitService;
+
+    private final AccessLogService accessLogService;
+
+    private final BufferPool bufferPool;
+
+    @Override
+    public void start() {
+        final MetricsOptions metricsOptions = this.options.getMetricsOptions();
+        if (!metricsOptions.getEnabled()) {
+            return;
+        }
+
+        try {
+            final HttpServer server = HttpServer.create(
+                    new InetSocketAddress(metricsOptions.getBindAddress(), metricsOptions.getPort()), 0
+            );
+            server.createContext("/metrics", this::handle);
+            server.setExecutor(Executors.newSingleThreadExecutor(runnable -> {
+                final Thread thread = new Thread(runnable, "Metrics Server Thread");
+                thread.setDaemon(true);
+                return thread;
+            }));
+            server.start();
+
+            log.info("Serving metrics on {}:{}/metrics.", metricsOptions.getBindAddress(), metricsOptions.getPort());
+        } catch (IOException ex) {
+            log.error("Error while initializing metrics server.", ex);
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        // HttpExchange is not AutoCloseable before Java 14.
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            final byte[] body = this.scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private String scrape() {
+        final PrometheusWriter writer = new PrometheusWriter();
+
+        writer.counter("gateway_connections_accepted_total", "Client connections accepted.")
+                .sample(this.metricsService.getAcceptedConnections(false), "scheme", "http")
+                .sample(this.metricsService.getAcceptedConnections(true), "scheme", "https");
+
+        this.writeRoutes(writer);
+        this.writeDestinations(writer);
+
+        writer.histogram("gateway_upstream_connect_seconds", "Time to open a new connection to a destination.")
+                .histogramSamples(this.metricsService.getUpstreamConnectTime());
+
+        writer.counter("gateway_upstream_pool_hits_total", "Requests that reused an idle destination connection.")
+                .sample(this.upstreamConnectionPool.getHitCount());
+        writer.counter("gateway_upstream_pool_misses_total", "Requests that opened a new destination connection.")
+                .sample(this.upstreamConnectionPool.getMissCount());
+
+        writer.counter("gateway_response_cache_hits_total", "Requests answered with a fresh cached response.")
+                .sample(this.responseCacheService.getHitCount());
+        writer.counter("gateway_response_cache_misses_total", "Requests that filled or revalidated the cache.")
+                .sample(this.responseCacheService.getMissCount());
+        writer.gauge("gateway_response_cache_size_bytes", "Approximate size of the cached responses.")
+                .sample(this.responseCacheService.getSize());
+
+        writer.gauge("gateway_thread_pool_threads", "Threads of the blocking engine pool.")
+                .sample(this.poolService.getThreadCount());
+        writer.gauge("gateway_thread_pool_active_threads", "Threads of the blocking engine pool running a task.")
+                .sample(this.poolService.getActiveThreadCount());
+        writer.gauge("gateway_thread_pool_queue_size", "Tasks waiting for a thread of the blocking engine pool.")
+                .sample(this.poolService.getQueueSize());
+        writer.counter("gateway_connections_shed_total", "Client connections turned away by admission control.")
+                .sample(this.poolService.getShedCount());
+        writer.counter("gateway_connections_rate_limited_total", "Client connections turned away by rate limits.")
+                .sample(this.rateLimitService.getLimitedCount());
+        writer.counter("gateway_access_log_dropped_total", "Access log entries left out because the buffer was full.")
+                .sample(this.accessLogService.getDroppedCount());
+
+        writer.gauge("gateway_buffer_pool_used_bytes", "Bytes of pooled buffers that are in use.")
+                .sample(this.bufferPool.getUsedBytes());
+        writer.gauge("gateway_buffer_pool_idle_bytes", "Bytes of pooled buffers that wait to be reused.")
+                .sample(this.bufferPool.getIdleBytes());
+        writer.gauge("gateway_buffer_pool_max_bytes", "Bytes of buffers that may be in use at once.")
+                .sample(this.bufferPool.getMaxMemoryBytes());
+        writer.counter("gateway_buffer_pool_refused_total", "Buffers refused because of the memory limit.")
+                .sample(this.bufferPool.getRefusedCount());
+
+        return writer.toString();
+    }
+
+    private void writeRoutes(PrometheusWriter writer) {
+        writer.counter("gateway_route_responses_total", "Responses that destinations started sending.");
+        for (RouteMetrics route : this.metricsService.getAllRouteMetrics()) {
+            writer.sample(route.getResponses(), "route", route.getRoute());
+        }
+
+        writer.counter("gateway_route_bytes_in_total", "Bytes relayed from clients to destinations.");
+        for (RouteMetrics route : this.metricsService.getAllRouteMetrics()) {
+            writer.sample(route.getBytesIn(), "route", route.getRoute());
+        }
+
+        writer.counter("gateway_route_bytes_out_total", "Bytes relayed from destinations to clients.");
+        for (RouteMetrics route : this.metricsService.getAllRouteMetrics()) {
+            writer.sample(route.getBytesOut(), "route", route.getRoute());
+        }
+
+        writer.gauge("gateway_route_buffered_bytes", "Bytes of pooled buffers held by exchanges of the route.");
+        for (RouteMetrics route : this.metricsService.getAllRouteMetrics()) {
+            writer.sample(route.getMemoryAccount().getUsed(), "route", route.getRoute());
+        }
+
+        writer.histogram("gateway_route_time_to_first_byte_seconds", "Time until a destination starts responding.");
+        for (RouteMetrics route : this.metricsService.getAllRouteMetrics()) {
+            writer.histogramSamples(route.getTimeToFirstByte(), "route", route.getRoute());
+        }
+    }
+
+    private void writeDestinations(PrometheusWriter writer) {
+        int activeExchanges = 0;
+        for (DestinationDto destination : this.routingService.getDestinations()) {
+            activeExchanges += destination.getStats().getOutstanding();
+        }
+        writer.gauge("gateway_active_exchanges", "Requests that are waiting for or receiving a response.")
+                .sample(activeExchanges);
+
+        writer.gauge("gateway_destination_outstanding_exchanges", "Active requests per destination.");
+        for (DestinationDto destination : this.routingService.getDestinations()) {
+            writer.sample(destination.getStats().getOutstanding(), this.getLabels(destination));
+        }
+
+        writer.gauge("gateway_destination_latency_ewma_seconds", "Moving average of the time to first byte.");
+        for (DestinationDto destination : this.routingService.getDestinations()) {
+            writer.sample(
+                    PrometheusWriter.toSeconds(destination.getStats().getLatencyEwmaNanos()),
+                    this.getLabels(destination)
+            );
+        }
+
+        writer.gauge("gateway_destination_available", "1 if the destination is healthy and not ejected.");
+        for (DestinationDto destination : this.routingService.getDestinations()) {
+            writer.sample(destination.getHealth().isAvailable() ? 1 : 0, this.getLabels(destination));
+        }
+    }
+
+    /**
+     * Scheme is part of the label, since routes with different schemes have their own destination instances.
+     */
+    private String[] getLabels(DestinationDto destination) {
+        return new String[]{
+                "destination", destination.getHost() + ":" + destination.getPort(),
+                "scheme", destination.getScheme().name()
+        };
+    }
+}
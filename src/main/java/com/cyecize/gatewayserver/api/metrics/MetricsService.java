@@ -0,0 +1,27 @@
+package com.cyecize.gatewayserver.api.metrics;
+
+import java.util.Collection;
+
+/**
+ * Counters that are updated on the request path. Gauges, like the state of the thread pool, are read
+ * when the metrics are scraped instead.
+ */
+public interface MetricsService {
+    /**
+     * @return metrics of the route with the given host, the same instance for every call.
+     */
+    RouteMetrics getRouteMetrics(String route);
+
+    Collection<RouteMetrics> getAllRouteMetrics();
+
+    void onConnectionAccepted(boolean isSsl);
+
+    /**
+     * @param nanos time until a new connection to a destination was established.
+     */
+    void recordUpstreamConnect(long nanos);
+
+    long getAcceptedConnections(boolean isSsl);
+
+    LatencyHistogram getUpstreamConnectTime();
+}
@@ -0,0 +1,54 @@
+package com.cyecize.gatewayserver.api.metrics;
+
+import com.cyecize.ioc.annotations.Service;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+@Service
+public class MetricsServiceImpl implements MetricsService {
+
+    private final Map<String, RouteMetrics> routeMetrics = new ConcurrentHashMap<>();
+
+    private final LongAdder acceptedHttpConnections = new LongAdder();
+
+    private final LongAdder acceptedHttpsConnections = new LongAdder();
+
+    private final LatencyHistogram upstreamConnectTime = new LatencyHistogram();
+
+    @Override
+    public RouteMetrics getRouteMetrics(String route) {
+        return this.routeMetrics.computeIfAbsent(route, RouteMetrics::new);
+    }
+
+    @Override
+    public Collection<RouteMetrics> getAllRouteMetrics() {
+        return this.routeMetrics.values();
+    }
+
+    @Override
+    public void onConnectionAccepted(boolean isSsl) {
+        if (isSsl) {
+            this.acceptedHttpsConnections.increment();
+        } else {
+            this.acceptedHttpConnections.increment();
+        }
+    }
+
+    @Override
+    public void recordUpstreamConnect(long nanos) {
+        this.upstreamConnectTime.record(nanos);
+    }
+
+    @Override
+    public long getAcceptedConnections(boolean isSsl) {
+        return isSsl ? this.acceptedHttpsConnections.sum() : this.acceptedHttpConnections.sum();
+    }
+
+    @Override
+    public LatencyHistogram getUpstreamConnectTime() {
+        return this.upstreamConnectTime;
+    }
+}
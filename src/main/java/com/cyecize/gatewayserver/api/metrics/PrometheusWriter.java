@@ -0,0 +1,108 @@
+package com.cyecize.gatewayserver.api.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the Prometheus text exposition format, version 0.0.4.
+ */
+class PrometheusWriter {
+    private final StringBuilder text = new StringBuilder();
+
+    private String currentMetric;
+
+    PrometheusWriter counter(String name, String help) {
+        return this.declare(name, help, "counter");
+    }
+
+    PrometheusWriter gauge(String name, String help) {
+        return this.declare(name, help, "gauge");
+    }
+
+    PrometheusWriter histogram(String name, String help) {
+        return this.declare(name, help, "histogram");
+    }
+
+    /**
+     * @param labels pairs of label name and value.
+     */
+    PrometheusWriter sample(double value, String... labels) {
+        return this.sample(this.currentMetric, value, labels);
+    }
+
+    /**
+     * Writes the cumulative buckets, the sum in seconds and the count of a histogram declared last.
+     */
+    PrometheusWriter histogramSamples(LatencyHistogram histogram, String... labels) {
+        final long[] counts = histogram.getBucketCounts();
+        final String[] bucketLabels = new String[labels.length + 2];
+        System.arraycopy(labels, 0, bucketLabels, 0, labels.length);
+        bucketLabels[labels.length] = "le";
+
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            bucketLabels[labels.length + 1] = i < LatencyHistogram.BUCKET_BOUNDS_MILLIS.length
+                    ? Double.toString(LatencyHistogram.BUCKET_BOUNDS_MILLIS[i] / 1000.0)
+                    : "+Inf";
+            this.sample(this.currentMetric + "_bucket", cumulative, bucketLabels);
+        }
+
+        this.sample(this.currentMetric + "_sum", toSeconds(histogram.getSumNanos()), labels);
+        return this.sample(this.currentMetric + "_count", cumulative, labels);
+    }
+
+    static double toSeconds(long nanos) {
+        return (double) nanos / TimeUnit.SECONDS.toNanos(1);
+    }
+
+    @Override
+    public String toString() {
+        return this.text.toString();
+    }
+
+    private PrometheusWriter declare(String name, String help, String type) {
+        this.currentMetric = name;
+        this.text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        this.text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        return this;
+    }
+
+    private PrometheusWriter sample(String name, double value, String... labels) {
+        this.text.append(name);
+        if (labels.length > 0) {
+            this.text.append('{');
+            for (int i = 0; i < labels.length; i += 2) {
+                if (i > 0) {
+                    this.text.append(',');
+                }
+                this.text.append(labels[i]).append("=\"");
+                this.appendEscaped(labels[i + 1]);
+                this.text.append('"');
+            }
+            this.text.append('}');
+        }
+
+        this.text.append(' ');
+        if (value == (long) value) {
+            this.text.append((long) value);
+        } else {
+            this.text.append(value);
+        }
+        this.text.append('\n');
+
+        return this;
+    }
+
+    private void appendEscaped(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                this.text.append('\\').append(c);
+            } else if (c == '\n') {
+                this.text.append("\\n");
+            } else {
+                this.text.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.cyecize.gatewayserver.api.metrics;
+
+import com.cyecize.gatewayserver.api.buffer.MemoryAccount;
+import lombok.Getter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Traffic of a single route, kept across reloads for as long as a route with the same host exists.
+ */
+public class RouteMetrics {
+    @Getter
+    private final String route;
+
+    private final LongAdder responses = new LongAdder();
+
+    private final LongAdder bytesIn = new LongAdder();
+
+    private final LongAdder bytesOut = new LongAdder();
+
+    @Getter
+    private final LatencyHistogram timeToFirstByte = new LatencyHistogram();
+
+    /**
+     * Parent of the accounts of the exchanges of this route.
+     */
+    @Getter
+    private final MemoryAccount memoryAccount = new MemoryAccount(null);
+
+    public RouteMetrics(String route) {
+        this.route = route;
+    }
+
+    /**
+     * @param nanos time from sending the request until the first bytes of the response.
+     */
+    public void onResponseStarted(long nanos) {
+        this.responses.increment();
+        this.timeToFirstByte.record(nanos);
+    }
+
+    /**
+     * @param count bytes received from the client and sent to the destination.
+     */
+    public void addBytesIn(long count) {
+        this.bytesIn.add(count);
+    }
+
+    /**
+     * @param count bytes received from the destination and sent to the client.
+     */
+    public void addBytesOut(long count) {
+        this.bytesOut.add(count);
+    }
+
+    long getResponses() {
+        return this.responses.sum();
+    }
+
+    long getBytesIn() {
+        return this.bytesIn.sum();
+    }
+
+    long getBytesOut() {
+        return this.bytesOut.sum();
+    }
+}
@@ -0,0 +1,49 @@
+package com.cyecize.gatewayserver.api.nio;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.function.Consumer;
+
+/**
+ * Accepts all pending connections of a listening channel and hands them over to the given consumer.
+ */
+@Slf4j
+@RequiredArgsConstructor
+class Acceptor implements ChannelHandler {
+    private final ServerSocketChannel serverChannel;
+
+    private final Consumer<SocketChannel> consumer;
+
+    @Override
+    public void handle(SelectionKey key) {
+        while (true) {
+            final SocketChannel channel;
+            try {
+                channel = this.serverChannel.accept();
+            } catch (IOException ex) {
+                log.error("Error while accepting connection.", ex);
+                return;
+            }
+
+            if (channel == null) {
+                return;
+            }
+
+            this.consumer.accept(channel);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            this.serverChannel.close();
+        } catch (IOException ex) {
+            log.warn("Error while closing server channel.", ex);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.cyecize.gatewayserver.api.nio;
+
+import com.cyecize.gatewayserver.api.http.BodyFraming;
+import com.cyecize.gatewayserver.constants.General;
+import com.cyecize.gatewayserver.error.CannotParseRequestException;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Finds the end of a message body in bytes that arrive in pieces, without copying or changing them, so that the
+ * event loop knows where the next message on the connection starts. Follows the same rules as
+ * {@link com.cyecize.gatewayserver.util.RelayUtils#relayChunked}, chunk size lines and trailer lines may end with a
+ * bare new-line as well.
+ */
+class BodyScanner {
+    private BodyFraming framing;
+
+    private State state;
+
+    /**
+     * Bytes left of the body or of the current chunk.
+     */
+    private long remaining;
+
+    private int digitCount;
+
+    private int lineLength;
+
+    private int trailerLineCount;
+
+    private byte previousByte;
+
+    /**
+     * Starts scanning the body of another message.
+     *
+     * @param contentLength used if the body is framed by Content-Length.
+     */
+    void start(BodyFraming framing, long contentLength) {
+        this.framing = framing;
+        this.remaining = 0;
+        this.digitCount = 0;
+        this.lineLength = 0;
+        this.trailerLineCount = 0;
+        this.previousByte = 0;
+
+        switch (framing) {
+            case CONTENT_LENGTH:
+                this.remaining = contentLength;
+                this.state = contentLength > 0 ? State.DATA : State.COMPLETE;
+                break;
+            case CHUNKED:
+                this.state = State.SIZE;
+                break;
+            case UNTIL_CLOSED:
+                this.state = State.DATA;
+                break;
+            default:
+                this.state = State.COMPLETE;
+        }
+    }
+
+    /**
+     * Bodies that last until the connection is closed are never complete.
+     */
+    boolean isComplete() {
+        return this.state == State.COMPLETE;
+    }
+
+    /**
+     * @param from index of the first byte that was not scanned yet.
+     * @param to   index after the last byte that was read.
+     * @return number of the given bytes that belong to the body, fewer than given once the body is complete.
+     */
+    int scan(ByteBuffer buffer, int from, int to) throws CannotParseRequestException {
+        if (this.framing == BodyFraming.UNTIL_CLOSED) {
+            return to - from;
+        }
+
+        int position = from;
+        while (position < to && this.state != State.COMPLETE) {
+            if (this.state == State.DATA) {
+                final int count = (int) Math.min(this.remaining, to - position);
+                position += count;
+                this.remaining -= count;
+                if (this.remaining == 0) {
+                    this.state = this.framing == BodyFraming.CHUNKED ? State.DATA_END : State.COMPLETE;
+                }
+                continue;
+            }
+
+            this.onLineByte(buffer.get(position++));
+        }
+
+        return position - from;
+    }
+
+    private void onLineByte(byte b) throws CannotParseRequestException {
+        if (++this.lineLength > General.MAX_HEAD_SIZE) {
+            throw new CannotParseRequestException(String.format("Line exceeds %d bytes.", General.MAX_HEAD_SIZE));
+        }
+
+        switch (this.state) {
+            case SIZE:
+                this.onSizeByte(b);
+                break;
+            case EXTENSION:
+                if (b == '\n') {
+                    this.onSizeLineEnd();
+                }
+                break;
+            case DATA_END:
+                if (b == '\n') {
+                    this.lineLength = 0;
+                    this.state = State.SIZE;
+                } else if (b != '\r' || this.lineLength > 1) {
+                    throw new CannotParseRequestException("Chunk is longer than its size.");
+                }
+                break;
+            case TRAILER:
+                this.onTrailerByte(b);
+                break;
+            default:
+                break;
+        }
+        this.previousByte = b;
+    }
+
+    private void onSizeByte(byte b) throws CannotParseRequestException {
+        final int digit = Character.digit(b, 16);
+        if (digit >= 0 && this.digitCount >= 0) {
+            if (++this.digitCount > 15) {
+                throw new CannotParseRequestException("Chunk size is too large.");
+            }
+            this.remaining = this.remaining * 16 + digit;
+        } else if (b == ' ' || b == '\t' || b == '\r') {
+            // Whitespace around the size is trimmed like on the blocking engine, a negative count ends the digits.
+            this.digitCount = this.digitCount > 0 ? -this.digitCount : this.digitCount;
+        } else if (b == ';') {
+            this.state = State.EXTENSION;
+        } else if (b == '\n') {
+            this.onSizeLineEnd();
+        } else {
+            throw new CannotParseRequestException("Invalid chunk size.");
+        }
+    }
+
+    private void onSizeLineEnd() throws CannotParseRequestException {
+        if (this.digitCount == 0) {
+            throw new CannotParseRequestException("Missing chunk size.");
+        }
+
+        this.digitCount = 0;
+        this.lineLength = 0;
+        this.state = this.remaining > 0 ? State.DATA : State.TRAILER;
+    }
+
+    private void onTrailerByte(byte b) throws CannotParseRequestException {
+        if (b != '\n') {
+            return;
+        }
+
+        // The line length includes the new-line.
+        final boolean isEmptyLine = this.lineLength == 1 || (this.lineLength == 2 && this.previousByte == '\r');
+        this.lineLength = 0;
+        if (isEmptyLine) {
+            this.state = State.COMPLETE;
+            return;
+        }
+
+        if (++this.trailerLineCount > General.MAX_HEAD_LINES) {
+            throw new CannotParseRequestException(String.format(
+                    "Trailer exceeds %d lines.", General.MAX_HEAD_LINES
+            ));
+        }
+    }
+
+    private enum State {
+        SIZE,
+        EXTENSION,
+        DATA,
+        DATA_END,
+        TRAILER,
+        COMPLETE
+    }
+}
@@ -0,0 +1,58 @@
+package com.cyecize.gatewayserver.api.nio;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of equally sized direct buffers, shared between event loop threads.
+ */
+public class ByteBufferPool {
+    private final int bufferSize;
+
+    private final int maxPooledBuffers;
+
+    private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger pooledBuffers = new AtomicInteger();
+
+    public ByteBufferPool(int bufferSize, int maxPooledBuffers) {
+        this.bufferSize = bufferSize;
+        this.maxPooledBuffers = maxPooledBuffers;
+    }
+
+    public int getBufferSize() {
+        return this.bufferSize;
+    }
+
+    /**
+     * @return cleared buffer of {@link #getBufferSize()} capacity.
+     */
+    public ByteBuffer acquire() {
+        final ByteBuffer buffer = this.buffers.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(this.bufferSize);
+        }
+
+        this.pooledBuffers.decrementAndGet();
+        return buffer;
+    }
+
+    /**
+     * Returns the buffer to the pool. Buffers of a different size or above the pool limit are left to the GC.
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || buffer.capacity() != this.bufferSize || !buffer.isDirect()) {
+            return;
+        }
+
+        if (this.pooledBuffers.incrementAndGet() > this.maxPooledBuffers) {
+            this.pooledBuffers.decrementAndGet();
+            return;
+        }
+
+        buffer.clear();
+        this.buffers.offer(buffer);
+    }
+}
@@ -0,0 +1,18 @@
+package com.cyecize.gatewayserver.api.nio;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+
+/**
+ * Attachment of every {@link SelectionKey} registered in an {@link EventLoop}.
+ * All methods are invoked from the event loop thread that owns the key.
+ */
+public interface ChannelHandler {
+    /**
+     * Called when any of the key's interest operations is ready.
+     * Throwing closes the handler.
+     */
+    void handle(SelectionKey key) throws IOException;
+
+    void close();
+}
@@ -0,0 +1,48 @@
+package com.cyecize.gatewayserver.api.nio;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Application data view of a non-blocking client channel, either plain or TLS.
+ */
+interface ClientTransport {
+    /**
+     * Progresses the handshake as far as possible without blocking.
+     *
+     * @return true once application data can flow.
+     */
+    boolean handshake() throws IOException;
+
+    /**
+     * @return the interest ops the handshake is waiting for.
+     */
+    int getHandshakeInterestOps();
+
+    /**
+     * @return number of application bytes read, 0 if none are available or -1 on end of stream.
+     */
+    int read(ByteBuffer dst) throws IOException;
+
+    /**
+     * Consumes as much of the given application data as possible without blocking.
+     */
+    void write(ByteBuffer src) throws IOException;
+
+    /**
+     * Writes output that is still pending from previous calls, without blocking.
+     */
+    void flush() throws IOException;
+
+    /**
+     * @return true if bytes that were already consumed by {@link #write(ByteBuffer)} still wait for the channel.
+     */
+    boolean hasPendingOutput();
+
+    /**
+     * @return true if application data is buffered and can be read without the channel being readable.
+     */
+    boolean hasBufferedInput();
+
+    void close();
+}
@@ -0,0 +1,99 @@
+package com.cyecize.gatewayserver.api.nio;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Single selector thread. Channels registered here are only ever touched by this thread, other threads hand work
+ * over through {@link #execute(Runnable)}.
+ */
+@Slf4j
+public class EventLoop implements Runnable {
+    private final Selector selector;
+
+    private final Thread thread;
+
+    private final Queue<Runnable> pendingTasks = new ConcurrentLinkedQueue<>();
+
+    public EventLoop(String name) throws IOException {
+        this.selector = Selector.open();
+        this.thread = new Thread(this, name);
+    }
+
+    public void start() {
+        this.thread.start();
+    }
+
+    public boolean inEventLoop() {
+        return Thread.currentThread() == this.thread;
+    }
+
+    public void execute(Runnable task) {
+        this.pendingTasks.add(task);
+        if (!this.inEventLoop()) {
+            this.selector.wakeup();
+        }
+    }
+
+    /**
+     * Must be called from the event loop thread.
+     */
+    public SelectionKey register(SelectableChannel channel, int ops, ChannelHandler handler) throws IOException {
+        channel.configureBlocking(false);
+        return channel.register(this.selector, ops, handler);
+    }
+
+    @Override
+    public void run() {
+        while (!this.thread.isInterrupted()) {
+            try {
+                // Deadlines are tracked by the shared timer, which wakes the loop up through execute.
+                this.selector.select();
+            } catch (IOException ex) {
+                log.error("Error while selecting keys.", ex);
+                continue;
+            }
+
+            this.processSelectedKeys();
+            this.runPendingTasks();
+        }
+    }
+
+    private void processSelectedKeys() {
+        final Iterator<SelectionKey> iterator = this.selector.selectedKeys().iterator();
+        while (iterator.hasNext()) {
+            final SelectionKey key = iterator.next();
+            iterator.remove();
+
+            final ChannelHandler handler = (ChannelHandler) key.attachment();
+            if (!key.isValid()) {
+                continue;
+            }
+
+            try {
+                handler.handle(key);
+            } catch (IOException | RuntimeException ex) {
+                log.debug("Closing channel handler after error. {}", ex.getMessage());
+                handler.close();
+            }
+        }
+    }
+
+    private void runPendingTasks() {
+        Runnable task;
+        while ((task = this.pendingTasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException ex) {
+                log.error("Error while running event loop task.", ex);
+            }
+        }
+    }
+}
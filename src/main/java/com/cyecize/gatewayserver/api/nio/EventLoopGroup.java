@@ -0,0 +1,12 @@
+package com.cyecize.gatewayserver.api.nio;
+
+import java.io.IOException;
+
+public interface EventLoopGroup {
+    /**
+     * Binds the given port and proxies every accepted connection on the event loop threads.
+     */
+    void listen(int port, boolean isSsl) throws IOException;
+
+    int getEventLoopCount();
+}
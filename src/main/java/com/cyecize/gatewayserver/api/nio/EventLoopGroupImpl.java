@@ -0,0 +1,213 @@
+package com.cyecize.gatewayserver.api.nio;
+
+import com.cyecize.gatewayserver.api.buffer.BufferPool;
+import com.cyecize.gatewayserver.api.dns.ClientNameService;
+import com.cyecize.gatewayserver.api.dns.DestinationResolverService;
+import com.cyecize.gatewayserver.api.health.HealthCheckService;
+import com.cyecize.gatewayserver.api.metrics.MetricsService;
+import com.cyecize.gatewayserver.api.options.Options;
+import com.cyecize.gatewayserver.api.ratelimit.RateLimitService;
+import com.cyecize.gatewayserver.api.routing.RoutingService;
+import com.cyecize.gatewayserver.api.timer.TimerService;
+import com.cyecize.gatewayserver.constants.General;
+import com.cyecize.ioc.annotations.Nullable;
+import com.cyecize.ioc.annotations.Service;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class EventLoopGroupImpl implements EventLoopGroup {
+
+    private final Options options;
+
+    private final RoutingService routingService;
+
+    private final TimerService timerService;
+
+    private final HealthCheckService healthCheckService;
+
+    private final ClientNameService clientNameService;
+
+    private final DestinationResolverService destinationResolverService;
+
+    private final MetricsService metricsService;
+
+    private final BufferPool bufferPool;
+
+    private final RateLimitService rateLimitService;
+
+    @Nullable
+    private final SSLContext sslContext;
+
+    private final AtomicInteger nextEventLoop = new AtomicInteger();
+
+    /**
+     * Created on first use so that the blocking engine does not start selector threads.
+     */
+    private EventLoop[] eventLoops;
+
+    private TlsBufferPools tlsBufferPools;
+
+    /**
+     * Runs the CPU heavy parts of TLS handshakes so that they do not stall the event loops.
+     * Bounded, a saturated executor fails new handshakes instead of queueing them indefinitely.
+     */
+    private ExecutorService handshakeExecutor;
+
+    @Override
+    public void listen(int port, boolean isSsl) throws IOException {
+        if (isSsl) {
+            this.initTls();
+        }
+
+        final ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+
+        final EventLoop acceptLoop = this.next();
+        acceptLoop.execute(() -> {
+            final Acceptor acceptor = new Acceptor(serverChannel, channel -> this.onAccept(channel, isSsl));
+            try {
+                acceptLoop.register(serverChannel, SelectionKey.OP_ACCEPT, acceptor);
+            } catch (IOException ex) {
+                log.error("Error while registering server channel for port {}.", port, ex);
+                acceptor.close();
+            }
+        });
+    }
+
+    @Override
+    public int getEventLoopCount() {
+        return this.options.getEventLoopThreads();
+    }
+
+    private void onAccept(SocketChannel channel, boolean isSsl) {
+        this.metricsService.onConnectionAccepted(isSsl);
+
+        // Nothing has been read yet, so the client is turned away without a response, TLS or not.
+        final InetAddress address = channel.socket().getInetAddress();
+        if (!this.rateLimitService.tryAcquire(address)) {
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                log.warn("Error occurred while closing channel.", ex);
+            }
+            return;
+        }
+
+        final EventLoop eventLoop = this.next();
+        eventLoop.execute(() -> {
+            final ProxyChannelHandler handler = new ProxyChannelHandler(
+                    eventLoop,
+                    channel,
+                    isSsl,
+                    this.clientNameService.getCachedName(channel.socket().getInetAddress()),
+                    this.options,
+                    this.routingService,
+                    this.timerService,
+                    this.healthCheckService,
+                    this.destinationResolverService,
+                    this.metricsService,
+                    this.bufferPool,
+                    this.rateLimitService
+            );
+            try {
+                final ClientTransport transport;
+                if (isSsl) {
+                    transport = new TlsTransport(
+                            channel,
+                            this.createSSLEngine(),
+                            this.tlsBufferPools,
+                            this.handshakeExecutor,
+                            eventLoop,
+                            handler::resumeHandshake
+                    );
+                } else {
+                    transport = new PlainTransport(channel);
+                }
+
+                handler.start(transport);
+            } catch (IOException | RuntimeException ex) {
+                log.warn("Error while registering client channel. {}", ex.getMessage());
+                handler.close();
+            }
+        });
+    }
+
+    private SSLEngine createSSLEngine() {
+        final SSLEngine engine = this.sslContext.createSSLEngine();
+        engine.setUseClientMode(false);
+        engine.setNeedClientAuth(false);
+
+        return engine;
+    }
+
+    private synchronized void initTls() {
+        if (this.handshakeExecutor != null) {
+            return;
+        }
+
+        final int threads = this.options.getSslHandshakeThreads();
+        log.info("Initializing {} SSL handshake threads.", threads);
+
+        this.tlsBufferPools = new TlsBufferPools(this.sslContext, General.MAX_POOLED_SSL_BUFFERS);
+
+        final AtomicInteger threadNumber = new AtomicInteger();
+        this.handshakeExecutor = new ThreadPoolExecutor(
+                threads,
+                threads,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(General.SSL_HANDSHAKE_QUEUE_SIZE),
+                runnable -> {
+                    final Thread thread = new Thread(
+                            runnable, String.format("SSL Handshake Thread %d", threadNumber.getAndIncrement())
+                    );
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+    }
+
+    private EventLoop next() {
+        final EventLoop[] loops = this.getEventLoops();
+        return loops[Math.floorMod(this.nextEventLoop.getAndIncrement(), loops.length)];
+    }
+
+    private synchronized EventLoop[] getEventLoops() {
+        if (this.eventLoops != null) {
+            return this.eventLoops;
+        }
+
+        final int count = this.options.getEventLoopThreads();
+        log.info("Initializing {} event loop threads.", count);
+
+        final EventLoop[] loops = new EventLoop[count];
+        for (int i = 0; i < count; i++) {
+            try {
+                loops[i] = new EventLoop(String.format("Event Loop Thread %d", i));
+            } catch (IOException ex) {
+                throw new IllegalStateException("Cannot open selector.", ex);
+            }
+            loops[i].start();
+        }
+
+        this.eventLoops = loops;
+        return loops;
+    }
+}
@@ -0,0 +1,58 @@
+package com.cyecize.gatewayserver.api.nio;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+@Slf4j
+@RequiredArgsConstructor
+class PlainTransport implements ClientTransport {
+    private final SocketChannel channel;
+
+    @Override
+    public boolean handshake() {
+        return true;
+    }
+
+    @Override
+    public int getHandshakeInterestOps() {
+        return SelectionKey.OP_READ;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        return this.channel.read(dst);
+    }
+
+    @Override
+    public void write(ByteBuffer src) throws IOException {
+        this.channel.write(src);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public boolean hasPendingOutput() {
+        return false;
+    }
+
+    @Override
+    public boolean hasBufferedInput() {
+        return false;
+    }
+
+    @Override
+    public void close() {
+        try {
+            this.channel.close();
+        } catch (IOException ex) {
+            log.warn("Error occurred while closing channel.", ex);
+        }
+    }
+}
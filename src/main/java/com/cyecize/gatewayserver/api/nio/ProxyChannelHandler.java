@@ -0,0 +1,866 @@
+package com.cyecize.gatewayserver.api.nio;
+
+import com.cyecize.gatewayserver.api.balancing.DestinationGroup;
+import com.cyecize.gatewayserver.api.buffer.BufferPool;
+import com.cyecize.gatewayserver.api.connection.DestinationDto;
+import com.cyecize.gatewayserver.api.dns.DestinationResolverService;
+import com.cyecize.gatewayserver.api.health.HealthCheckService;
+import com.cyecize.gatewayserver.api.http.BodyFraming;
+import com.cyecize.gatewayserver.api.http.HttpHead;
+import com.cyecize.gatewayserver.api.http.HttpHeadParser;
+import com.cyecize.gatewayserver.api.metrics.MetricsService;
+import com.cyecize.gatewayserver.api.metrics.RouteMetrics;
+import com.cyecize.gatewayserver.api.options.Options;
+import com.cyecize.gatewayserver.api.ratelimit.RateLimitService;
+import com.cyecize.gatewayserver.api.routing.RoutingService;
+import com.cyecize.gatewayserver.api.server.Connection;
+import com.cyecize.gatewayserver.api.timer.Timeout;
+import com.cyecize.gatewayserver.api.timer.TimerService;
+import com.cyecize.gatewayserver.constants.General;
+import com.cyecize.gatewayserver.error.CannotParseRequestException;
+import com.cyecize.gatewayserver.util.HttpProtocolUtils;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-blocking counterpart of {@link com.cyecize.gatewayserver.api.connection.ConnectionHandlerImpl}.
+ * <p>
+ * Completes the TLS handshake if needed, reads the request head of the client, resolves the destination and then
+ * relays bytes in both directions. Bodies are framed by the same rules as on the blocking engine, so that once a
+ * response has reached the client, the next request head is read and routed on its own. The server connection is
+ * kept for the next request if it goes to the same destination. After switching protocols, bytes are relayed until
+ * either side closes.
+ */
+@Slf4j
+class ProxyChannelHandler implements ChannelHandler {
+    private static final byte[] BAD_REQUEST_RESPONSE =
+            "HTTP/1.1 400 Bad Request\r\nContent-Length: 0\r\nConnection: close\r\n\r\n"
+                    .getBytes(StandardCharsets.ISO_8859_1);
+
+    private final EventLoop eventLoop;
+
+    private final SocketChannel clientChannel;
+
+    private final boolean isSsl;
+
+    /**
+     * Literal address of the client and its cached name, if any, only used in logs.
+     */
+    private final String clientAddress;
+
+    /**
+     * Acquired from the rate limiter when the connection was accepted, released once it is closed.
+     */
+    private final InetAddress clientInetAddress;
+
+    private final Options options;
+
+    private final RoutingService routingService;
+
+    private final TimerService timerService;
+
+    private final HealthCheckService healthCheckService;
+
+    private final DestinationResolverService destinationResolverService;
+
+    private final MetricsService metricsService;
+
+    /**
+     * Moved forward on every event while the head is being read, like a socket timeout on the blocking engine.
+     * The timer is not rescheduled on every event, instead it checks the deadline when it fires.
+     */
+    private long headDeadline;
+
+    private Timeout headTimeout;
+
+    private Timeout killTimeout;
+
+    private ClientTransport transport;
+
+    private final BufferPool bufferPool;
+
+    private final RateLimitService rateLimitService;
+
+    /**
+     * Client to server bytes, wraps a pooled array. Kept in fill mode, grows while the request head is being read.
+     */
+    private ByteBuffer requestBuffer;
+
+    /**
+     * Server to client bytes, taken from the pool. Kept in fill mode.
+     */
+    private ByteBuffer responseBuffer;
+
+    private State state;
+
+    private SelectionKey clientKey;
+
+    private DestinationDto destination;
+
+    /**
+     * Route of the last request, acquired from the rate limit service until the client moves on to another route.
+     */
+    private DestinationGroup route;
+
+    private RouteMetrics routeMetrics;
+
+    private long exchangeStartNanos;
+
+    private boolean isResponseStarted;
+
+    private SocketChannel serverChannel;
+
+    private SelectionKey serverKey;
+
+    private boolean clientEof;
+
+    private boolean serverEof;
+
+    private boolean serverOutputShutdown;
+
+    private final HttpHeadParser headParser = new HttpHeadParser(General.MAX_HEAD_SIZE, General.MAX_HEAD_LINES);
+
+    /**
+     * True while the destination counts the current request as outstanding.
+     */
+    private boolean isExchangeActive;
+
+    private String requestMethod;
+
+    /**
+     * True if both the client and the server can carry another request after the current one.
+     */
+    private boolean isKeepAlive;
+
+    /**
+     * Finds the end of the request, bytes after it belong to the next request and are not relayed yet.
+     */
+    private final BodyScanner requestScanner = new BodyScanner();
+
+    /**
+     * Bytes at the start of the request buffer that belong to the current request and were not sent yet.
+     */
+    private int requestForwardable;
+
+    private final BodyScanner responseScanner = new BodyScanner();
+
+    private final HttpHeadParser responseHeadParser = new HttpHeadParser(
+            General.MAX_HEAD_SIZE, General.MAX_HEAD_LINES
+    );
+
+    /**
+     * Copy of the response head that is being read, since the response buffer is direct. Null once it is read.
+     */
+    private ByteBuffer responseHead;
+
+    private boolean isResponseHeadRead;
+
+    ProxyChannelHandler(EventLoop eventLoop,
+                        SocketChannel clientChannel,
+                        boolean isSsl,
+                        String clientName,
+                        Options options,
+                        RoutingService routingService,
+                        TimerService timerService,
+                        HealthCheckService healthCheckService,
+                        DestinationResolverService destinationResolverService,
+                        MetricsService metricsService,
+                        BufferPool bufferPool,
+                        RateLimitService rateLimitService) {
+        this.eventLoop = eventLoop;
+        this.clientChannel = clientChannel;
+        this.isSsl = isSsl;
+        this.options = options;
+
+        this.clientInetAddress = clientChannel.socket().getInetAddress();
+        final String address = this.clientInetAddress.getHostAddress();
+        this.clientAddress = clientName == null ? address : String.format("%s (%s)", clientName, address);
+        this.routingService = routingService;
+        this.timerService = timerService;
+        this.healthCheckService = healthCheckService;
+        this.destinationResolverService = destinationResolverService;
+        this.metricsService = metricsService;
+        this.bufferPool = bufferPool;
+        this.rateLimitService = rateLimitService;
+
+        this.headDeadline = System.currentTimeMillis() + this.options.getClientSoTimeoutMillis();
+    }
+
+    /**
+     * @param transport plain or TLS view of the client channel.
+     */
+    void start(ClientTransport transport) throws IOException {
+        this.transport = transport;
+        this.requestBuffer = ByteBuffer.wrap(this.bufferPool.acquireHeap(General.READ_BUFFER_SIZE, null));
+        this.responseBuffer = this.bufferPool.acquireDirect(General.READ_BUFFER_SIZE, null);
+
+        this.state = State.HANDSHAKING;
+        this.clientKey = this.eventLoop.register(this.clientChannel, 0, this);
+
+        this.scheduleHeadTimeout(this.options.getClientSoTimeoutMillis());
+        if (this.options.getKillConnectionAfterSeconds() > 0) {
+            this.killTimeout = this.timerService.schedule(
+                    () -> this.eventLoop.execute(this::onKillTimeout),
+                    this.options.getKillConnectionAfterSeconds(),
+                    TimeUnit.SECONDS
+            );
+        }
+
+        this.handshake();
+    }
+
+    /**
+     * Continues the handshake once delegated TLS tasks are completed.
+     */
+    void resumeHandshake() {
+        if (this.state != State.HANDSHAKING) {
+            return;
+        }
+
+        try {
+            this.headDeadline = System.currentTimeMillis() + this.options.getClientSoTimeoutMillis();
+            this.handshake();
+        } catch (IOException | RuntimeException ex) {
+            log.debug("Closing channel handler after error. {}", ex.getMessage());
+            this.close();
+        }
+    }
+
+    @Override
+    public void handle(SelectionKey key) throws IOException {
+        if (key == this.serverKey && this.state == State.READING_HEAD) {
+            this.onIdleServerEvent();
+            return;
+        }
+
+        switch (this.state) {
+            case HANDSHAKING:
+                this.headDeadline = System.currentTimeMillis() + this.options.getClientSoTimeoutMillis();
+                this.handshake();
+                break;
+            case READING_HEAD:
+                this.headDeadline = System.currentTimeMillis() + this.options.getClientSoTimeoutMillis();
+                if (key.isWritable()) {
+                    this.transport.flush();
+                }
+                if (key.isReadable()) {
+                    this.readHead();
+                }
+                this.updateHeadInterestOps();
+                break;
+            case CONNECTING:
+                if (key.isConnectable() && this.finishConnect()) {
+                    this.onConnected();
+                }
+                break;
+            case RELAYING:
+                this.relay(key);
+                break;
+            case CLOSING:
+                this.closeWhenFlushed();
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void scheduleHeadTimeout(long delayMillis) {
+        this.headTimeout = this.timerService.schedule(
+                () -> this.eventLoop.execute(this::onHeadTimeout), delayMillis, TimeUnit.MILLISECONDS
+        );
+    }
+
+    private void onHeadTimeout() {
+        if (this.state != State.HANDSHAKING && this.state != State.READING_HEAD && this.state != State.CLOSING) {
+            return;
+        }
+
+        // Time spent waiting for the handshake executor is not the client's idle time.
+        final boolean isWaitingForTasks = this.state == State.HANDSHAKING
+                && this.transport.getHandshakeInterestOps() == 0;
+
+        final long now = System.currentTimeMillis();
+        if (!isWaitingForTasks && now >= this.headDeadline) {
+            // Same as a socket timeout on the blocking engine, usually an empty browser connection.
+            this.close();
+            return;
+        }
+
+        this.scheduleHeadTimeout(
+                isWaitingForTasks ? this.options.getClientSoTimeoutMillis() : this.headDeadline - now
+        );
+    }
+
+    private void onKillTimeout() {
+        if (this.state == State.CLOSED) {
+            return;
+        }
+
+        log.warn("Connection {} is running for more than {} seconds, closing.",
+                this.clientAddress, this.options.getKillConnectionAfterSeconds()
+        );
+        this.close();
+    }
+
+    @Override
+    public void close() {
+        if (this.state == State.CLOSED) {
+            return;
+        }
+        this.state = State.CLOSED;
+
+        if (this.headTimeout != null) {
+            this.headTimeout.cancel();
+        }
+        if (this.killTimeout != null) {
+            this.killTimeout.cancel();
+        }
+
+        if (this.transport != null) {
+            this.transport.close();
+        } else {
+            closeQuietly(this.clientChannel);
+        }
+        this.closeServer();
+        if (this.isExchangeActive) {
+            this.isExchangeActive = false;
+            this.destination.getStats().onExchangeCompleted();
+        }
+        if (this.route != null) {
+            this.rateLimitService.release(this.clientInetAddress, this.route);
+            this.route = null;
+        }
+        this.rateLimitService.release(this.clientInetAddress);
+
+        // Always called on the event loop, so the buffers go back to its thread cache.
+        if (this.requestBuffer != null) {
+            this.bufferPool.releaseHeap(this.requestBuffer.array(), null);
+            this.requestBuffer = null;
+        }
+        if (this.responseBuffer != null) {
+            this.bufferPool.releaseDirect(this.responseBuffer, null);
+            this.responseBuffer = null;
+        }
+        if (this.responseHead != null) {
+            this.bufferPool.releaseHeap(this.responseHead.array(), null);
+            this.responseHead = null;
+        }
+    }
+
+    private void closeServer() {
+        if (this.serverChannel == null) {
+            return;
+        }
+
+        closeQuietly(this.serverChannel);
+        this.serverChannel = null;
+        this.serverKey = null;
+        this.serverEof = false;
+        this.serverOutputShutdown = false;
+    }
+
+    private void handshake() throws IOException {
+        if (!this.transport.handshake()) {
+            this.clientKey.interestOps(this.transport.getHandshakeInterestOps());
+            return;
+        }
+
+        this.state = State.READING_HEAD;
+
+        // The handshake may have already buffered application data.
+        this.readHead();
+        this.updateHeadInterestOps();
+    }
+
+    private void updateHeadInterestOps() {
+        if (this.state != State.READING_HEAD) {
+            return;
+        }
+
+        this.clientKey.interestOps(
+                SelectionKey.OP_READ | (this.transport.hasPendingOutput() ? SelectionKey.OP_WRITE : 0)
+        );
+    }
+
+    private void readHead() throws IOException {
+        int headEnd;
+        do {
+            if (!this.requestBuffer.hasRemaining()) {
+                // The parser rejects heads above the limit before the buffer gets any bigger.
+                final ByteBuffer grown = ByteBuffer.wrap(
+                        this.bufferPool.acquireHeap(this.requestBuffer.capacity() * 2, null)
+                );
+                this.requestBuffer.flip();
+                grown.put(this.requestBuffer);
+                this.bufferPool.releaseHeap(this.requestBuffer.array(), null);
+                this.requestBuffer = grown;
+            }
+
+            final int read = this.transport.read(this.requestBuffer);
+            if (read < 0) {
+                this.close();
+                return;
+            }
+
+            try {
+                headEnd = this.headParser.scan(this.requestBuffer.array(), this.requestBuffer.position());
+            } catch (CannotParseRequestException ex) {
+                log.warn("Error while reading HTTP request lines (ip: {}). {}",
+                        this.clientAddress, ex.getMessage()
+                );
+                this.close();
+                return;
+            }
+
+            if (read == 0) {
+                break;
+            }
+        } while (headEnd < 0);
+
+        if (headEnd < 0) {
+            return;
+        }
+
+        // The head stays in the buffer and is relayed as it was received, without the empty lines before it.
+        final HttpHead head;
+        try {
+            head = this.headParser.toHead(this.requestBuffer.array(), headEnd);
+        } catch (CannotParseRequestException ex) {
+            log.warn("Error while reading HTTP request lines (ip: {}). {}", this.clientAddress, ex.getMessage());
+            this.close();
+            return;
+        }
+
+        try {
+            head.getHeaders().validateRequest();
+        } catch (CannotParseRequestException ex) {
+            log.warn("Rejecting request of client {}. {}", this.clientAddress, ex.getMessage());
+            this.rejectRequest();
+            return;
+        }
+        if (this.headParser.getHeadStart() > 0) {
+            this.requestBuffer.flip().position(this.headParser.getHeadStart());
+            this.requestBuffer.compact();
+        }
+
+        final Connection clientConnection = new Connection(
+                this.clientChannel.socket(), this.isSsl, head, this.bufferPool
+        );
+        final DestinationGroup route = this.routingService.resolveRoute(clientConnection);
+        if (route != this.route && this.route != null) {
+            this.rateLimitService.release(this.clientInetAddress, this.route);
+            this.route = null;
+        }
+        if (route == null) {
+            this.close();
+            return;
+        }
+
+        if (this.route == null) {
+            if (!this.rateLimitService.tryAcquire(this.clientInetAddress, route)) {
+                this.close();
+                return;
+            }
+            this.route = route;
+        }
+
+        this.routeMetrics = route.getMetrics();
+        this.startExchange(clientConnection, route.choose());
+    }
+
+    /**
+     * Answers with 400 like the blocking engine and closes the connection, since the end of the request body is
+     * not known. The response buffer is empty while a head is read.
+     */
+    private void rejectRequest() throws IOException {
+        this.state = State.CLOSING;
+        this.closeServer();
+
+        this.responseBuffer.put(BAD_REQUEST_RESPONSE);
+        this.closeWhenFlushed();
+    }
+
+    private void closeWhenFlushed() throws IOException {
+        this.pumpServerToClient();
+        this.transport.flush();
+
+        if (this.responseBuffer.position() == 0 && !this.transport.hasPendingOutput()) {
+            this.close();
+        } else {
+            this.clientKey.interestOps(SelectionKey.OP_WRITE);
+        }
+    }
+
+    /**
+     * Every request counts as an exchange for load balancing, its latency is the time until the first response
+     * bytes arrive, connecting included.
+     */
+    private void startExchange(Connection request, DestinationDto destination) throws IOException {
+        this.requestMethod = request.getMethod();
+        this.isKeepAlive = request.isKeepAlive();
+        this.requestForwardable = request.getHead().getSize();
+        this.requestScanner.start(request.getRequestBodyFraming(), request.getContentLength());
+        this.scanRequest();
+
+        this.isResponseStarted = false;
+        this.isResponseHeadRead = false;
+        this.responseHeadParser.reset(0);
+        this.responseHead = ByteBuffer.wrap(this.bufferPool.acquireHeap(General.READ_BUFFER_SIZE, null));
+
+        if (this.serverChannel != null && this.destination != destination) {
+            this.closeServer();
+        }
+        this.destination = destination;
+        this.destination.getStats().onExchangeStarted();
+        this.isExchangeActive = true;
+        this.exchangeStartNanos = System.nanoTime();
+
+        if (this.serverChannel != null) {
+            this.startRelaying();
+        } else {
+            this.connect(destination);
+        }
+    }
+
+    private void connect(DestinationDto destination) throws IOException {
+        this.state = State.CONNECTING;
+        this.clientKey.interestOps(0);
+
+        this.serverChannel = SocketChannel.open();
+        this.serverChannel.configureBlocking(false);
+
+        final boolean connected;
+        try {
+            connected = this.serverChannel.connect(this.destinationResolverService.resolve(destination));
+        } catch (IOException | RuntimeException ex) {
+            log.warn("Could not establish connection to server {}:{}. Message: {}",
+                    destination.getHost(), destination.getPort(), ex.getMessage()
+            );
+            this.healthCheckService.reportFailure(destination);
+            this.close();
+            return;
+        }
+
+        this.serverKey = this.eventLoop.register(
+                this.serverChannel, connected ? 0 : SelectionKey.OP_CONNECT, this
+        );
+
+        if (connected) {
+            this.onConnected();
+        }
+    }
+
+    private boolean finishConnect() throws IOException {
+        try {
+            return this.serverChannel.finishConnect();
+        } catch (IOException ex) {
+            this.healthCheckService.reportFailure(this.destination);
+            throw ex;
+        }
+    }
+
+    private void onConnected() throws IOException {
+        this.metricsService.recordUpstreamConnect(System.nanoTime() - this.exchangeStartNanos);
+        this.startRelaying();
+    }
+
+    private void startRelaying() throws IOException {
+        this.state = State.RELAYING;
+
+        // Whatever was read together with the head, plus application data the TLS transport may still hold.
+        this.pumpClientToServer();
+        this.updateInterestOps();
+    }
+
+    private void relay(SelectionKey key) throws IOException {
+        if (key == this.clientKey) {
+            if (key.isReadable()) {
+                this.pumpClientToServer();
+            }
+            if (key.isValid() && key.isWritable()) {
+                this.pumpServerToClient();
+            }
+        } else {
+            if (key.isReadable()) {
+                final int position = this.responseBuffer.position();
+                final int read = this.serverChannel.read(this.responseBuffer);
+                if (read < 0) {
+                    this.serverEof = true;
+                } else if (read > 0) {
+                    this.onResponseBytes(read);
+                    this.scanResponse(position);
+                }
+                this.pumpServerToClient();
+            }
+            if (key.isValid() && key.isWritable()) {
+                this.pumpClientToServer();
+            }
+        }
+
+        this.updateInterestOps();
+    }
+
+    private void pumpClientToServer() throws IOException {
+        while (!this.clientEof && !this.requestScanner.isComplete() && this.requestBuffer.hasRemaining()) {
+            final int read = this.transport.read(this.requestBuffer);
+            if (read < 0) {
+                this.clientEof = true;
+            }
+            if (read <= 0) {
+                break;
+            }
+            this.scanRequest();
+        }
+
+        this.routeMetrics.addBytesIn(this.flushRequest());
+    }
+
+    /**
+     * Bytes after the forwardable ones were not scanned yet, unless the request is complete.
+     */
+    private void scanRequest() throws CannotParseRequestException {
+        if (!this.requestScanner.isComplete()) {
+            this.requestForwardable += this.requestScanner.scan(
+                    this.requestBuffer, this.requestForwardable, this.requestBuffer.position()
+            );
+        }
+    }
+
+    /**
+     * Writes as much of the current request as the server accepts without blocking.
+     *
+     * @return the number of written bytes.
+     */
+    private int flushRequest() throws IOException {
+        this.requestBuffer.flip();
+        final int limit = this.requestBuffer.limit();
+        this.requestBuffer.limit(this.requestForwardable);
+        try {
+            final int written = this.serverChannel.write(this.requestBuffer);
+            this.requestForwardable -= written;
+            return written;
+        } finally {
+            this.requestBuffer.limit(limit);
+            this.requestBuffer.compact();
+        }
+    }
+
+    /**
+     * Response bytes are relayed as they arrive, while their heads and bodies are followed to find the end of the
+     * response. Bytes after it are nothing that the client asked for, so they are dropped.
+     *
+     * @param from index of the first byte that was read last.
+     */
+    private void scanResponse(int from) throws IOException {
+        final int to = this.responseBuffer.position();
+        int position = from;
+        while (position < to && !this.isResponseComplete()) {
+            if (this.isResponseHeadRead) {
+                position += this.responseScanner.scan(this.responseBuffer, position, to);
+            } else {
+                position = this.scanResponseHead(position, to);
+            }
+        }
+
+        if (position < to) {
+            this.responseBuffer.position(position);
+            this.isKeepAlive = false;
+        }
+    }
+
+    /**
+     * @return index after the head or the given end if the head continues.
+     */
+    private int scanResponseHead(int from, int to) throws IOException {
+        final int count = to - from;
+        if (this.responseHead.remaining() < count) {
+            final ByteBuffer grown = ByteBuffer.wrap(
+                    this.bufferPool.acquireHeap(this.responseHead.position() + count, null)
+            );
+            this.responseHead.flip();
+            grown.put(this.responseHead);
+            this.bufferPool.releaseHeap(this.responseHead.array(), null);
+            this.responseHead = grown;
+        }
+
+        final ByteBuffer bytes = this.responseBuffer.duplicate();
+        bytes.limit(to).position(from);
+        this.responseHead.put(bytes);
+
+        final int headEnd = this.responseHeadParser.scan(this.responseHead.array(), this.responseHead.position());
+        if (headEnd < 0) {
+            return to;
+        }
+
+        final HttpHead head = this.responseHeadParser.toHead(this.responseHead.array(), headEnd);
+        final int unscanned = this.responseHead.position() - headEnd;
+        this.responseHead.clear();
+        this.responseHeadParser.reset(0);
+
+        this.onResponseHead(head);
+        return to - unscanned;
+    }
+
+    /**
+     * Interim responses like "100 Continue" are relayed and followed by the actual one. Switching protocols is
+     * final, since nothing that follows it is HTTP.
+     */
+    private void onResponseHead(HttpHead head) throws CannotParseRequestException {
+        final int statusCode = HttpProtocolUtils.getStatusCode(head.getLine(0));
+        if (statusCode < 0) {
+            throw new CannotParseRequestException(String.format("Invalid status line '%s'.", head.getLine(0)));
+        }
+
+        if (HttpProtocolUtils.isInformational(statusCode) && statusCode != 101) {
+            return;
+        }
+
+        this.isResponseHeadRead = true;
+        this.bufferPool.releaseHeap(this.responseHead.array(), null);
+        this.responseHead = null;
+
+        final BodyFraming framing = HttpProtocolUtils.getResponseBodyFraming(
+                this.requestMethod, statusCode, head.getHeaders()
+        );
+        this.responseScanner.start(framing, head.getHeaders().getContentLength());
+        this.isKeepAlive &= framing.isPersistent()
+                && HttpProtocolUtils.isKeepAlive(head.getLine(0), head.getHeaders().getConnection());
+
+        if (statusCode == 101) {
+            this.requestScanner.start(BodyFraming.UNTIL_CLOSED, 0);
+            this.scanRequest();
+        }
+    }
+
+    private boolean isResponseComplete() {
+        return this.isResponseHeadRead && this.responseScanner.isComplete();
+    }
+
+    /**
+     * Reads the next request once the response has reached the client. The server connection waits for it with
+     * read interest, so that it is dropped if the server closes it in the meantime.
+     */
+    private void finishExchange() throws IOException {
+        this.isExchangeActive = false;
+        this.destination.getStats().onExchangeCompleted();
+
+        if (!this.isKeepAlive || this.clientEof) {
+            this.close();
+            return;
+        }
+
+        if (this.serverEof) {
+            this.closeServer();
+        } else {
+            this.serverKey.interestOps(SelectionKey.OP_READ);
+        }
+
+        this.state = State.READING_HEAD;
+        this.headParser.reset(0);
+        this.headDeadline = System.currentTimeMillis() + this.options.getClientSoTimeoutMillis();
+        this.headTimeout.cancel();
+        this.scheduleHeadTimeout(this.options.getClientSoTimeoutMillis());
+
+        // The next request may have been read together with the previous one.
+        this.readHead();
+        this.updateHeadInterestOps();
+    }
+
+    /**
+     * A server has nothing to say while its connection is idle, it is either closing it or misbehaving.
+     */
+    private void onIdleServerEvent() throws IOException {
+        final int read = this.serverChannel.read(this.responseBuffer);
+        this.responseBuffer.clear();
+        if (read != 0) {
+            this.closeServer();
+        }
+    }
+
+    private void onResponseBytes(int count) {
+        this.routeMetrics.addBytesOut(count);
+        if (this.isResponseStarted) {
+            return;
+        }
+
+        this.isResponseStarted = true;
+
+        final long latency = System.nanoTime() - this.exchangeStartNanos;
+        this.destination.getStats().recordLatency(latency);
+        this.routeMetrics.onResponseStarted(latency);
+        this.healthCheckService.reportSuccess(this.destination);
+    }
+
+    private void pumpServerToClient() throws IOException {
+        this.responseBuffer.flip();
+        try {
+            this.transport.write(this.responseBuffer);
+        } finally {
+            this.responseBuffer.compact();
+        }
+    }
+
+    private void updateInterestOps() throws IOException {
+        final boolean isResponseFlushed = this.responseBuffer.position() == 0 && !this.transport.hasPendingOutput();
+        if (isResponseFlushed && this.isResponseComplete()
+                && this.requestScanner.isComplete() && this.requestForwardable == 0) {
+            this.finishExchange();
+            return;
+        }
+
+        if (this.serverEof && isResponseFlushed) {
+            // Server is done and everything it sent has reached the client.
+            this.close();
+            return;
+        }
+
+        if (this.clientEof && this.requestForwardable == 0 && !this.serverOutputShutdown) {
+            this.serverChannel.shutdownOutput();
+            this.serverOutputShutdown = true;
+        }
+
+        int clientOps = 0;
+        int serverOps = 0;
+
+        if (!this.clientEof && !this.requestScanner.isComplete() && this.requestBuffer.hasRemaining()) {
+            clientOps |= SelectionKey.OP_READ;
+        }
+        if (this.requestForwardable > 0) {
+            serverOps |= SelectionKey.OP_WRITE;
+        }
+
+        if (!this.serverEof && this.responseBuffer.hasRemaining()) {
+            serverOps |= SelectionKey.OP_READ;
+        }
+        if (this.responseBuffer.position() > 0 || this.transport.hasPendingOutput()) {
+            clientOps |= SelectionKey.OP_WRITE;
+        }
+
+        this.clientKey.interestOps(clientOps);
+        this.serverKey.interestOps(serverOps);
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            log.warn("Error occurred while closing channel.", ex);
+        }
+    }
+
+    private enum State {
+        HANDSHAKING,
+        READING_HEAD,
+        CONNECTING,
+        RELAYING,
+        CLOSING,
+        CLOSED
+    }
+}
@@ -0,0 +1,23 @@
+package com.cyecize.gatewayserver.api.nio;
+
+import lombok.Getter;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+
+/**
+ * Network (packet) and application buffer pools sized for the sessions of an {@link SSLContext}.
+ */
+@Getter
+class TlsBufferPools {
+    private final ByteBufferPool packetBuffers;
+
+    private final ByteBufferPool applicationBuffers;
+
+    TlsBufferPools(SSLContext sslContext, int maxPooledBuffers) {
+        final SSLSession session = sslContext.createSSLEngine().getSession();
+
+        this.packetBuffers = new ByteBufferPool(session.getPacketBufferSize(), maxPooledBuffers);
+        this.applicationBuffers = new ByteBufferPool(session.getApplicationBufferSize(), maxPooledBuffers);
+    }
+}
@@ -0,0 +1,381 @@
+package com.cyecize.gatewayserver.api.nio;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * {@link SSLEngine} wrap / unwrap pipeline over a non-blocking channel.
+ * <p>
+ * Network and application buffers are taken from the shared pools only while they hold data, so idle
+ * keep-alive connections do not pin any buffers. Delegated handshake tasks (key exchange, certificate
+ * signing) run on the handshake executor and the handshake is resumed on the event loop afterwards.
+ */
+@Slf4j
+class TlsTransport implements ClientTransport {
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final SocketChannel channel;
+
+    private final SSLEngine engine;
+
+    private final TlsBufferPools bufferPools;
+
+    private final Executor handshakeExecutor;
+
+    private final EventLoop eventLoop;
+
+    private final Runnable onTasksCompleted;
+
+    /**
+     * Network bytes read from the channel and not yet unwrapped. Fill mode.
+     */
+    private ByteBuffer netIn;
+
+    /**
+     * Network bytes produced by wrap and not yet written to the channel. Fill mode.
+     */
+    private ByteBuffer netOut;
+
+    /**
+     * Unwrapped application bytes not yet read. Fill mode.
+     */
+    private ByteBuffer appIn;
+
+    private boolean handshakeComplete;
+
+    private boolean runningTasks;
+
+    private boolean inboundClosed;
+
+    private boolean closed;
+
+    TlsTransport(SocketChannel channel,
+                 SSLEngine engine,
+                 TlsBufferPools bufferPools,
+                 Executor handshakeExecutor,
+                 EventLoop eventLoop,
+                 Runnable onTasksCompleted) throws SSLException {
+        this.channel = channel;
+        this.engine = engine;
+        this.bufferPools = bufferPools;
+        this.handshakeExecutor = handshakeExecutor;
+        this.eventLoop = eventLoop;
+        this.onTasksCompleted = onTasksCompleted;
+
+        this.engine.beginHandshake();
+    }
+
+    @Override
+    public boolean handshake() throws IOException {
+        while (!this.handshakeComplete) {
+            if (this.runningTasks || !this.flushNetOut()) {
+                return false;
+            }
+
+            switch (this.engine.getHandshakeStatus()) {
+                case NEED_TASK:
+                    this.runDelegatedTasks();
+                    return false;
+                case NEED_WRAP:
+                    this.wrap(EMPTY);
+                    break;
+                case NEED_UNWRAP:
+                case NEED_UNWRAP_AGAIN:
+                    if (!this.unwrap()) {
+                        return false;
+                    }
+                    if (this.inboundClosed) {
+                        throw new SSLException("Connection closed during handshake.");
+                    }
+                    break;
+                default:
+                    this.handshakeComplete = true;
+            }
+        }
+
+        this.releaseIdleBuffers();
+        return true;
+    }
+
+    @Override
+    public int getHandshakeInterestOps() {
+        if (this.runningTasks) {
+            return 0;
+        }
+
+        if (this.hasPendingOutput() || this.engine.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NEED_WRAP) {
+            return SelectionKey.OP_WRITE;
+        }
+
+        return SelectionKey.OP_READ;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        while (!this.hasBufferedInput() && !this.inboundClosed) {
+            if (!this.unwrap()) {
+                break;
+            }
+            this.handlePostHandshake();
+        }
+
+        if (this.hasBufferedInput()) {
+            return transfer(this.appIn, dst);
+        }
+
+        this.releaseIdleBuffers();
+        return this.inboundClosed ? -1 : 0;
+    }
+
+    @Override
+    public void write(ByteBuffer src) throws IOException {
+        while (src.hasRemaining() && this.flushNetOut()) {
+            this.wrap(src);
+        }
+        this.flushNetOut();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        this.flushNetOut();
+    }
+
+    @Override
+    public boolean hasPendingOutput() {
+        return this.netOut != null && this.netOut.position() > 0;
+    }
+
+    @Override
+    public boolean hasBufferedInput() {
+        return this.appIn != null && this.appIn.position() > 0;
+    }
+
+    @Override
+    public void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+
+        try {
+            // Best effort close_notify, the channel is not waited for.
+            this.engine.closeOutbound();
+            this.wrap(EMPTY);
+            this.flushNetOut();
+        } catch (IOException ignored) {
+        }
+
+        try {
+            this.channel.close();
+        } catch (IOException ex) {
+            log.warn("Error occurred while closing channel.", ex);
+        }
+
+        this.bufferPools.getPacketBuffers().release(this.netIn);
+        this.bufferPools.getPacketBuffers().release(this.netOut);
+        this.bufferPools.getApplicationBuffers().release(this.appIn);
+        this.netIn = null;
+        this.netOut = null;
+        this.appIn = null;
+    }
+
+    /**
+     * Unwraps buffered network bytes, reading from the channel when a whole record is not yet available.
+     *
+     * @return false if no progress can be made until the channel is readable again.
+     */
+    private boolean unwrap() throws IOException {
+        if (this.netIn == null) {
+            this.netIn = this.bufferPools.getPacketBuffers().acquire();
+        }
+        if (this.appIn == null) {
+            this.appIn = this.bufferPools.getApplicationBuffers().acquire();
+        }
+
+        while (true) {
+            final SSLEngineResult result;
+            this.netIn.flip();
+            try {
+                result = this.engine.unwrap(this.netIn, this.appIn);
+            } finally {
+                this.netIn.compact();
+            }
+
+            switch (result.getStatus()) {
+                case OK:
+                    return true;
+                case CLOSED:
+                    this.inboundClosed = true;
+                    return true;
+                case BUFFER_OVERFLOW:
+                    if (this.appIn.position() > 0) {
+                        // Caller has to drain the application data first.
+                        return false;
+                    }
+                    this.appIn = grow(this.appIn, this.engine.getSession().getApplicationBufferSize());
+                    break;
+                case BUFFER_UNDERFLOW:
+                    if (!this.netIn.hasRemaining()) {
+                        this.netIn = grow(this.netIn, this.engine.getSession().getPacketBufferSize());
+                    }
+
+                    final int read = this.channel.read(this.netIn);
+                    if (read < 0) {
+                        if (!this.handshakeComplete) {
+                            throw new EOFException("Connection closed during handshake.");
+                        }
+                        this.inboundClosed = true;
+                        return true;
+                    }
+                    if (read == 0) {
+                        return false;
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown unwrap status " + result.getStatus());
+            }
+        }
+    }
+
+    private void wrap(ByteBuffer src) throws IOException {
+        if (this.netOut == null) {
+            this.netOut = this.bufferPools.getPacketBuffers().acquire();
+        }
+
+        final SSLEngineResult result = this.engine.wrap(src, this.netOut);
+        switch (result.getStatus()) {
+            case BUFFER_OVERFLOW:
+                if (this.netOut.position() == 0) {
+                    this.netOut = grow(this.netOut, this.engine.getSession().getPacketBufferSize());
+                }
+                break;
+            case CLOSED:
+                if (!this.closed) {
+                    throw new SSLException("SSL engine is closed.");
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * @return true if no network output is pending anymore.
+     */
+    private boolean flushNetOut() throws IOException {
+        if (this.netOut == null) {
+            return true;
+        }
+
+        if (this.netOut.position() > 0) {
+            this.netOut.flip();
+            try {
+                this.channel.write(this.netOut);
+            } finally {
+                this.netOut.compact();
+            }
+        }
+
+        if (this.netOut.position() > 0) {
+            return false;
+        }
+
+        this.bufferPools.getPacketBuffers().release(this.netOut);
+        this.netOut = null;
+        return true;
+    }
+
+    /**
+     * TLS 1.3 key updates and renegotiation can require wrapping or tasks after the initial handshake.
+     * Those are rare and short, so they are handled inline.
+     */
+    private void handlePostHandshake() throws IOException {
+        while (true) {
+            switch (this.engine.getHandshakeStatus()) {
+                case NEED_TASK:
+                    Runnable task;
+                    while ((task = this.engine.getDelegatedTask()) != null) {
+                        task.run();
+                    }
+                    break;
+                case NEED_WRAP:
+                    if (!this.flushNetOut()) {
+                        return;
+                    }
+                    this.wrap(EMPTY);
+                    break;
+                default:
+                    this.flushNetOut();
+                    return;
+            }
+        }
+    }
+
+    private void runDelegatedTasks() throws IOException {
+        this.runningTasks = true;
+        try {
+            this.handshakeExecutor.execute(() -> {
+                Runnable task;
+                while ((task = this.engine.getDelegatedTask()) != null) {
+                    task.run();
+                }
+
+                this.eventLoop.execute(() -> {
+                    this.runningTasks = false;
+                    this.onTasksCompleted.run();
+                });
+            });
+        } catch (RejectedExecutionException ex) {
+            throw new IOException("SSL handshake executor is saturated.", ex);
+        }
+    }
+
+    private void releaseIdleBuffers() {
+        if (this.netIn != null && this.netIn.position() == 0) {
+            this.bufferPools.getPacketBuffers().release(this.netIn);
+            this.netIn = null;
+        }
+
+        if (this.appIn != null && this.appIn.position() == 0) {
+            this.bufferPools.getApplicationBuffers().release(this.appIn);
+            this.appIn = null;
+        }
+    }
+
+    /**
+     * Moves bytes from a buffer in fill mode to the destination.
+     */
+    private static int transfer(ByteBuffer src, ByteBuffer dst) {
+        src.flip();
+        final int count = Math.min(src.remaining(), dst.remaining());
+        final int limit = src.limit();
+
+        src.limit(src.position() + count);
+        dst.put(src);
+        src.limit(limit);
+        src.compact();
+
+        return count;
+    }
+
+    /**
+     * Replaces a buffer in fill mode with a bigger one. Happens only when the session negotiates larger records
+     * than the pools were sized for.
+     */
+    private static ByteBuffer grow(ByteBuffer buffer, int minCapacity) {
+        final ByteBuffer grown = ByteBuffer.allocateDirect(Math.max(minCapacity, buffer.capacity() * 2));
+        buffer.flip();
+        grown.put(buffer);
+        return grown;
+    }
+}
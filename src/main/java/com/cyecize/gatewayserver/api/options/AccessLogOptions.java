@@ -0,0 +1,25 @@
+package com.cyecize.gatewayserver.api.options;
+
+import com.cyecize.gatewayserver.api.accesslog.OverflowPolicy;
+import lombok.Data;
+
+@Data
+public class AccessLogOptions {
+    /**
+     * Writes a JSON line per exchange of the blocking engine, off the request threads.
+     */
+    private Boolean enabled;
+    private String fileName;
+
+    /**
+     * The file is rolled over to "fileName.1" once it grows past this size, older files move up by one.
+     */
+    private Long maxFileSizeBytes;
+    private Integer maxFiles;
+
+    /**
+     * Entries that can wait for the writer, rounded up to a power of two.
+     */
+    private Integer bufferSize;
+    private OverflowPolicy overflowPolicy;
+}
@@ -0,0 +1,19 @@
+package com.cyecize.gatewayserver.api.options;
+
+import lombok.Data;
+
+@Data
+public class AdmissionOptions {
+    /**
+     * Sheds new connections of the blocking engine with 503 when its thread pool is overloaded.
+     */
+    private Boolean enabled;
+    private Integer maxQueuedConnections;
+
+    /**
+     * Connections are shed once tasks have waited longer than this for a thread during a whole interval.
+     */
+    private Integer targetQueueDelayMillis;
+    private Integer intervalMillis;
+    private Integer retryAfterSeconds;
+}
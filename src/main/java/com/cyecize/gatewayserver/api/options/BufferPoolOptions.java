@@ -0,0 +1,18 @@
+package com.cyecize.gatewayserver.api.options;
+
+import lombok.Data;
+
+@Data
+public class BufferPoolOptions {
+    /**
+     * Memory that buffers of heads and bodies may hold at once, heap and direct together. Past it, new requests
+     * and relays are refused until buffers are given back.
+     */
+    private Long maxMemoryBytes;
+
+    /**
+     * Memory of unused buffers that is kept for reuse, beyond what every thread keeps for itself.
+     */
+    private Long maxIdleBytes;
+    private Integer threadCacheSize;
+}
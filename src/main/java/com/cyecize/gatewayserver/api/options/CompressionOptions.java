@@ -0,0 +1,16 @@
+package com.cyecize.gatewayserver.api.options;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class CompressionOptions {
+    /**
+     * Media types that are compressed, "text/*" matches every text type.
+     */
+    private List<String> mimeTypes;
+    private Integer minSizeBytes;
+    private Integer level;
+    private Long cacheMaxSizeBytes;
+}
@@ -1,10 +1,10 @@
-package com.cyecize.gatewayserver.api.options;
-
-import lombok.Data;
-
-@Data
-public class DebuggingOptions {
-    private int runningTasksIntervalSeconds;
-    private int taskStuckIntervalSeconds;
-    private boolean logSSL;
-}
+package com.cyecize.gatewayserver.api.options;
+
+import lombok.Data;
+
+@Data
+public class DebuggingOptions {
+    private int runningTasksIntervalSeconds;
+    private int taskStuckIntervalSeconds;
+    private boolean logSSL;
+}
@@ -0,0 +1,13 @@
+package com.cyecize.gatewayserver.api.options;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class DestinationOption {
+    private String host;
+    private int port;
+}
@@ -0,0 +1,20 @@
+package com.cyecize.gatewayserver.api.options;
+
+import com.cyecize.gatewayserver.api.health.HealthCheckType;
+import lombok.Data;
+
+@Data
+public class HealthCheckOptions {
+    private HealthCheckType type;
+    private Integer intervalMillis;
+    private Integer timeoutMillis;
+    private String httpPath;
+    private Integer healthyThreshold;
+    private Integer unhealthyThreshold;
+
+    /**
+     * Failed requests in a row after which a destination is ejected, 0 to disable passive ejection.
+     */
+    private Integer maxConsecutiveFailures;
+    private Integer ejectionMillis;
+}
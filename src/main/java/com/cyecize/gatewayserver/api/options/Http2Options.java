@@ -0,0 +1,17 @@
+package com.cyecize.gatewayserver.api.options;
+
+import lombok.Data;
+
+@Data
+public class Http2Options {
+    /**
+     * Offers HTTP/2 to HTTPS clients through ALPN, only with the blocking server engine.
+     */
+    private Boolean enabled;
+    private Integer maxConcurrentStreams;
+
+    /**
+     * How much of a request body a client may send ahead of the gateway forwarding it, per stream.
+     */
+    private Integer initialWindowSizeBytes;
+}
@@ -0,0 +1,10 @@
+package com.cyecize.gatewayserver.api.options;
+
+import lombok.Data;
+
+@Data
+public class MetricsOptions {
+    private Boolean enabled;
+    private Integer port;
+    private String bindAddress;
+}
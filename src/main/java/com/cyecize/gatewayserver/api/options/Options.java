@@ -1,31 +1,54 @@
-package com.cyecize.gatewayserver.api.options;
-
-import lombok.Data;
-
-import java.util.ArrayList;
-import java.util.List;
-
-@Data
-public class Options {
-    private Integer httpPort;
-    private Integer httpsPort;
-    private boolean startHttps;
-
-    private String keystoreFileName;
-    private String keystoreFileDir;
-    private String keystorePassword;
-    private String defaultCertificateAlias;
-    private Integer threadPoolSize;
-    private Integer minThreadPoolSize;
-    private Integer killConnectionAfterSeconds;
-    private Integer clientSoTimeoutMillis;
-
-    private List<RouteOption> routeOptions;
-    private DebuggingOptions debuggingOptions;
-
-    static Options empty() {
-        final Options options = new Options();
-        options.setRouteOptions(new ArrayList<>());
-        return options;
-    }
-}
+package com.cyecize.gatewayserver.api.options;
+
+import com.cyecize.gatewayserver.api.server.ServerEngine;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class Options {
+    private Integer httpPort;
+    private Integer httpsPort;
+    private boolean startHttps;
+
+    private String keystoreFileName;
+    private String keystoreFileDir;
+    private String keystorePassword;
+    private String defaultCertificateAlias;
+    private Integer threadPoolSize;
+    private Integer minThreadPoolSize;
+    private Integer killConnectionAfterSeconds;
+    private Integer clientSoTimeoutMillis;
+    private Boolean resolveClientNames;
+    private Integer clientNameTtlMillis;
+    private Integer destinationDnsTtlMillis;
+
+    private ServerEngine serverEngine;
+    private Integer eventLoopThreads;
+    private Integer sslHandshakeThreads;
+
+    private List<RouteOption> routeOptions;
+    private Boolean watchOptionsFile;
+    private DebuggingOptions debuggingOptions;
+    private UpstreamPoolOptions upstreamPoolOptions;
+    private HealthCheckOptions healthCheckOptions;
+    private MetricsOptions metricsOptions;
+    private ResponseCacheOptions responseCacheOptions;
+    private CompressionOptions compressionOptions;
+    private Http2Options http2Options;
+
+    private AdmissionOptions admissionOptions;
+
+    private RateLimitOptions rateLimitOptions;
+
+    private AccessLogOptions accessLogOptions;
+
+    private BufferPoolOptions bufferPoolOptions;
+
+    static Options empty() {
+        final Options options = new Options();
+        options.setRouteOptions(new ArrayList<>());
+        return options;
+    }
+}
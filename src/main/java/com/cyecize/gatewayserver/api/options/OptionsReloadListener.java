@@ -0,0 +1,15 @@
+package com.cyecize.gatewayserver.api.options;
+
+/**
+ * Service that has state built from the options and rebuilds it when the options file changes.
+ */
+public interface OptionsReloadListener {
+    /**
+     * Builds everything that depends on the new options without applying it, so that invalid options are
+     * rejected before any listener has switched to them.
+     *
+     * @return task that swaps in the prepared state or null if there is nothing to swap.
+     * @throws Exception if the new options cannot be applied.
+     */
+    Runnable prepareReload(Options newOptions) throws Exception;
+}
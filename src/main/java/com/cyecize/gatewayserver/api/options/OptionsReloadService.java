@@ -0,0 +1,11 @@
+package com.cyecize.gatewayserver.api.options;
+
+public interface OptionsReloadService {
+    /**
+     * Reads the options file again and applies routes and certificates from it. Keeps the current ones if the
+     * file is not valid.
+     *
+     * @return true if the new options were applied.
+     */
+    boolean reload();
+}
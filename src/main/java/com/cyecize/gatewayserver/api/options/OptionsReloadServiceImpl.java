@@ -0,0 +1,105 @@
+package com.cyecize.gatewayserver.api.options;
+
+import com.cyecize.gatewayserver.constants.General;
+import com.cyecize.ioc.annotations.PostConstruct;
+import com.cyecize.ioc.annotations.Service;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies routes and certificates from the options file without a restart.
+ * <p>
+ * Every listener builds its new state first and the states are swapped in only if all of them succeed, so a
+ * broken file leaves the gateway running with the previous options. Exchanges in progress keep the destination
+ * they have already resolved, new requests use the new routes. Other options, like ports and thread counts,
+ * still require a restart.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OptionsReloadServiceImpl implements OptionsReloadService {
+
+    private final Options options;
+
+    private final OptionsService optionsService;
+
+    private final List<OptionsReloadListener> listeners;
+
+    @PostConstruct
+    void init() {
+        if (!this.options.getWatchOptionsFile()) {
+            return;
+        }
+
+        final Thread thread = new Thread(this::watch, "Options Watch Thread");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public synchronized boolean reload() {
+        final String filePath = this.optionsService.getOptionsFilePath();
+
+        final Options newOptions;
+        final List<Runnable> swaps = new ArrayList<>();
+        try {
+            newOptions = this.optionsService.readOptions();
+            for (OptionsReloadListener listener : this.listeners) {
+                final Runnable swap = listener.prepareReload(newOptions);
+                if (swap != null) {
+                    swaps.add(swap);
+                }
+            }
+        } catch (Exception ex) {
+            log.error("Options file {} cannot be applied, keeping the current options.", filePath, ex);
+            return false;
+        }
+
+        swaps.forEach(Runnable::run);
+        log.info("Reloaded {} routes from options file {}.", newOptions.getRouteOptions().size(), filePath);
+
+        return true;
+    }
+
+    private void watch() {
+        final Path file = new File(this.optionsService.getOptionsFilePath()).getAbsoluteFile().toPath();
+
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+            file.getParent().register(
+                    watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY
+            );
+            log.info("Watching options file {} for changes.", file);
+
+            while (true) {
+                WatchKey key = watchService.take();
+
+                boolean isChanged = false;
+                while (key != null) {
+                    isChanged |= key.pollEvents().stream().anyMatch(e -> file.getFileName().equals(e.context()));
+                    key.reset();
+
+                    key = watchService.poll(General.OPTIONS_RELOAD_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+                }
+
+                if (isChanged) {
+                    this.reload();
+                }
+            }
+        } catch (IOException ex) {
+            log.error("Cannot watch options file {}, changes will apply after a restart.", file, ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,5 +1,17 @@
-package com.cyecize.gatewayserver.api.options;
-
-public interface OptionsService {
-    Options getOptions();
-}
+package com.cyecize.gatewayserver.api.options;
+
+import java.io.IOException;
+
+public interface OptionsService {
+    Options getOptions();
+
+    /**
+     * Reads the options file again, the options returned by {@link #getOptions()} stay unchanged.
+     *
+     * @throws IOException              if the file cannot be read or parsed.
+     * @throws IllegalArgumentException if a route is not valid.
+     */
+    Options readOptions() throws IOException;
+
+    String getOptionsFilePath();
+}
@@ -1,118 +1,523 @@
-package com.cyecize.gatewayserver.api.options;
-
-import com.cyecize.gatewayserver.api.server.Scheme;
-import com.cyecize.gatewayserver.constants.General;
-import com.cyecize.ioc.annotations.Service;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
-
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.util.ArrayList;
-
-@Service
-@Slf4j
-@RequiredArgsConstructor
-public class OptionsServiceImpl implements OptionsService {
-
-    private final ObjectMapper objectMapper;
-
-    private Options optionsCache;
-
-    @Override
-    public Options getOptions() {
-        if (this.optionsCache != null) {
-            return this.optionsCache;
-        }
-
-        final String fileName;
-        if (!System.getenv().containsKey(General.ENV_VAR_OPTIONS_FILE_NAME)) {
-            log.info("Reading default options from file [{}].", General.DEFAULT_OPTIONS_FILE_NAME);
-            fileName = General.WORKING_DIRECTORY + General.DEFAULT_OPTIONS_FILE_NAME;
-        } else {
-            fileName = System.getenv(General.ENV_VAR_OPTIONS_FILE_NAME);
-            log.info("Reading options from user provided file {}.", fileName);
-        }
-
-        final Options options = this.readFromFile(fileName);
-        this.optionsCache = options;
-
-        return options;
-    }
-
-    private Options readFromFile(String filePath) {
-        Options options;
-        try (InputStream inputStream = new FileInputStream(filePath)) {
-            try {
-                options = this.objectMapper
-                        .readerFor(Options.class)
-                        .readValue(inputStream);
-            } catch (Exception ex) {
-                log.error("Error while parsing options file {}!", filePath, ex);
-                options = Options.empty();
-            }
-        } catch (IOException ex) {
-            log.error("Error while reading the options file {}!", filePath, ex);
-            options = Options.empty();
-        }
-
-        if (options.getHttpPort() == null) {
-            log.info("Using default HTTP port {}.", General.DEFAULT_HTTP_PORT);
-            options.setHttpPort(General.DEFAULT_HTTP_PORT);
-        }
-
-        if (options.getHttpsPort() == null) {
-            log.info("Using default HTTPS port {}.", General.DEFAULT_HTTPS_PORT);
-            options.setHttpsPort(General.DEFAULT_HTTPS_PORT);
-        }
-
-        if (options.getRouteOptions() == null || options.getRouteOptions().isEmpty()) {
-            log.warn("There are no routes configured in file [{}].", filePath);
-            options.setRouteOptions(new ArrayList<>());
-        }
-
-        if (options.getThreadPoolSize() == null) {
-            log.info("Using default thread pool size {}.", General.DEFAULT_THREAD_POOL_SIZE);
-            options.setThreadPoolSize(General.DEFAULT_THREAD_POOL_SIZE);
-        }
-
-        if (options.getMinThreadPoolSize() == null) {
-            log.info("Using default min thread pool size {}.", General.MIN_THREAD_POOL_SIZE);
-            options.setMinThreadPoolSize(General.MIN_THREAD_POOL_SIZE);
-        }
-
-        if (options.getDebuggingOptions() != null) {
-            log.info("Debugging options present!");
-        }
-
-        if (options.getKillConnectionAfterSeconds() == null || options.getKillConnectionAfterSeconds() < 1) {
-            log.info("Setting connection timeout to {} seconds.", General.DEFAULT_CONNECTION_TIMEOUT_SECONDS);
-            options.setKillConnectionAfterSeconds(General.DEFAULT_CONNECTION_TIMEOUT_SECONDS);
-        }
-
-        if (options.getKeystoreFileName() == null) {
-            log.info("Using default keystore, {}.", General.DEFAULT_KEYSTORE_FILE_NAME);
-            options.setKeystoreFileName(General.DEFAULT_KEYSTORE_FILE_NAME);
-        }
-
-        if (options.getKeystoreFileDir() == null) {
-            log.info("Using keystore dir, {}.", General.WORKING_DIRECTORY);
-            options.setKeystoreFileDir(General.WORKING_DIRECTORY);
-        }
-
-        if (options.getClientSoTimeoutMillis() == null) {
-            log.info("Using default client SO timeout, {} millis.", General.DEFAULT_CLIENT_SO_TIMEOUT_MILLIS);
-            options.setClientSoTimeoutMillis(General.DEFAULT_CLIENT_SO_TIMEOUT_MILLIS);
-        }
-
-        for (RouteOption routeOption : options.getRouteOptions()) {
-            if (routeOption.getScheme() == null) {
-                routeOption.setScheme(Scheme.ALL);
-            }
-        }
-
-        return options;
-    }
-}
+package com.cyecize.gatewayserver.api.options;
+
+import com.cyecize.gatewayserver.api.accesslog.OverflowPolicy;
+import com.cyecize.gatewayserver.api.balancing.LoadBalancingStrategy;
+import com.cyecize.gatewayserver.api.health.HealthCheckType;
+import com.cyecize.gatewayserver.api.server.Scheme;
+import com.cyecize.gatewayserver.api.server.ServerEngine;
+import com.cyecize.gatewayserver.constants.General;
+import com.cyecize.ioc.annotations.Service;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class OptionsServiceImpl implements OptionsService {
+
+    private final ObjectMapper objectMapper;
+
+    private Options optionsCache;
+
+    @Override
+    public Options getOptions() {
+        if (this.optionsCache != null) {
+            return this.optionsCache;
+        }
+
+        final String fileName = this.getOptionsFilePath();
+        if (this.getUserOptionsFile() == null) {
+            log.info("Reading default options from file [{}].", General.DEFAULT_OPTIONS_FILE_NAME);
+        } else {
+            log.info("Reading options from user provided file {}.", fileName);
+        }
+
+        final Options options = this.readFromFile(fileName);
+        this.optionsCache = options;
+
+        return options;
+    }
+
+    @Override
+    public Options readOptions() throws IOException {
+        final String filePath = this.getOptionsFilePath();
+
+        final Options options;
+        try (InputStream inputStream = new FileInputStream(filePath)) {
+            options = this.objectMapper
+                    .readerFor(Options.class)
+                    .readValue(inputStream);
+        }
+
+        this.applyDefaults(options, filePath);
+        this.validateRoutes(options);
+
+        return options;
+    }
+
+    @Override
+    public String getOptionsFilePath() {
+        final String userOptionsFile = this.getUserOptionsFile();
+        if (userOptionsFile == null) {
+            return General.WORKING_DIRECTORY + General.DEFAULT_OPTIONS_FILE_NAME;
+        }
+
+        return userOptionsFile;
+    }
+
+    /**
+     * Environment variable or a system property of the same name, for when the gateway is started in-process.
+     */
+    private String getUserOptionsFile() {
+        final String userOptionsFile = System.getenv(General.ENV_VAR_OPTIONS_FILE_NAME);
+        if (userOptionsFile != null) {
+            return userOptionsFile;
+        }
+
+        return System.getProperty(General.ENV_VAR_OPTIONS_FILE_NAME);
+    }
+
+    private Options readFromFile(String filePath) {
+        Options options;
+        try (InputStream inputStream = new FileInputStream(filePath)) {
+            try {
+                options = this.objectMapper
+                        .readerFor(Options.class)
+                        .readValue(inputStream);
+            } catch (Exception ex) {
+                log.error("Error while parsing options file {}!", filePath, ex);
+                options = Options.empty();
+            }
+        } catch (IOException ex) {
+            log.error("Error while reading the options file {}!", filePath, ex);
+            options = Options.empty();
+        }
+
+        this.applyDefaults(options, filePath);
+
+        return options;
+    }
+
+    private void applyDefaults(Options options, String filePath) {
+        if (options.getHttpPort() == null) {
+            log.info("Using default HTTP port {}.", General.DEFAULT_HTTP_PORT);
+            options.setHttpPort(General.DEFAULT_HTTP_PORT);
+        }
+
+        if (options.getHttpsPort() == null) {
+            log.info("Using default HTTPS port {}.", General.DEFAULT_HTTPS_PORT);
+            options.setHttpsPort(General.DEFAULT_HTTPS_PORT);
+        }
+
+        if (options.getRouteOptions() == null || options.getRouteOptions().isEmpty()) {
+            log.warn("There are no routes configured in file [{}].", filePath);
+            options.setRouteOptions(new ArrayList<>());
+        }
+
+        if (options.getThreadPoolSize() == null) {
+            log.info("Using default thread pool size {}.", General.DEFAULT_THREAD_POOL_SIZE);
+            options.setThreadPoolSize(General.DEFAULT_THREAD_POOL_SIZE);
+        }
+
+        if (options.getMinThreadPoolSize() == null) {
+            log.info("Using default min thread pool size {}.", General.MIN_THREAD_POOL_SIZE);
+            options.setMinThreadPoolSize(General.MIN_THREAD_POOL_SIZE);
+        }
+
+        if (options.getDebuggingOptions() != null) {
+            log.info("Debugging options present!");
+        }
+
+        if (options.getKillConnectionAfterSeconds() == null || options.getKillConnectionAfterSeconds() < 1) {
+            log.info("Setting connection timeout to {} seconds.", General.DEFAULT_CONNECTION_TIMEOUT_SECONDS);
+            options.setKillConnectionAfterSeconds(General.DEFAULT_CONNECTION_TIMEOUT_SECONDS);
+        }
+
+        if (options.getKeystoreFileName() == null) {
+            log.info("Using default keystore, {}.", General.DEFAULT_KEYSTORE_FILE_NAME);
+            options.setKeystoreFileName(General.DEFAULT_KEYSTORE_FILE_NAME);
+        }
+
+        if (options.getKeystoreFileDir() == null) {
+            log.info("Using keystore dir, {}.", General.WORKING_DIRECTORY);
+            options.setKeystoreFileDir(General.WORKING_DIRECTORY);
+        }
+
+        if (options.getClientSoTimeoutMillis() == null) {
+            log.info("Using default client SO timeout, {} millis.", General.DEFAULT_CLIENT_SO_TIMEOUT_MILLIS);
+            options.setClientSoTimeoutMillis(General.DEFAULT_CLIENT_SO_TIMEOUT_MILLIS);
+        }
+
+        if (options.getResolveClientNames() == null) {
+            options.setResolveClientNames(false);
+        }
+
+        if (options.getClientNameTtlMillis() == null || options.getClientNameTtlMillis() < 1) {
+            options.setClientNameTtlMillis(General.DEFAULT_CLIENT_NAME_TTL_MILLIS);
+        }
+
+        if (options.getDestinationDnsTtlMillis() == null || options.getDestinationDnsTtlMillis() < 1) {
+            options.setDestinationDnsTtlMillis(General.DEFAULT_DESTINATION_DNS_TTL_MILLIS);
+        }
+
+        if (options.getServerEngine() == null) {
+            options.setServerEngine(ServerEngine.BLOCKING);
+        }
+        log.info("Using {} server engine.", options.getServerEngine());
+
+        if (options.getEventLoopThreads() == null || options.getEventLoopThreads() < 1) {
+            options.setEventLoopThreads(General.DEFAULT_EVENT_LOOP_THREADS);
+        }
+
+        if (options.getSslHandshakeThreads() == null || options.getSslHandshakeThreads() < 1) {
+            options.setSslHandshakeThreads(General.DEFAULT_SSL_HANDSHAKE_THREADS);
+        }
+
+        this.applyUpstreamPoolDefaults(options);
+        this.applyHealthCheckDefaults(options);
+        this.applyMetricsDefaults(options);
+        this.applyResponseCacheDefaults(options);
+        this.applyCompressionDefaults(options);
+        this.applyHttp2Defaults(options);
+        this.applyAdmissionDefaults(options);
+        this.applyRateLimitDefaults(options);
+        this.applyAccessLogDefaults(options);
+        this.applyBufferPoolDefaults(options);
+
+        if (options.getWatchOptionsFile() == null) {
+            options.setWatchOptionsFile(true);
+        }
+
+        for (RouteOption routeOption : options.getRouteOptions()) {
+            if (routeOption.getScheme() == null) {
+                routeOption.setScheme(Scheme.ALL);
+            }
+
+            if (routeOption.getSubdomains() == null) {
+                routeOption.setSubdomains(new ArrayList<>());
+            }
+
+            if (routeOption.getDestinations() == null || routeOption.getDestinations().isEmpty()) {
+                routeOption.setDestinations(List.of(new DestinationOption(
+                        routeOption.getDestinationHost(), routeOption.getDestinationPort()
+                )));
+            }
+
+            if (routeOption.getLoadBalancing() == null) {
+                routeOption.setLoadBalancing(LoadBalancingStrategy.ROUND_ROBIN);
+            }
+
+            if (routeOption.getCacheResponses() == null) {
+                routeOption.setCacheResponses(false);
+            }
+
+            if (routeOption.getCompressResponses() == null) {
+                routeOption.setCompressResponses(false);
+            }
+
+            if (routeOption.getClientConnectionsPerSecond() == null || routeOption.getClientConnectionsPerSecond() < 0) {
+                routeOption.setClientConnectionsPerSecond(0D);
+            }
+
+            if (routeOption.getMaxClientConnections() == null || routeOption.getMaxClientConnections() < 0) {
+                routeOption.setMaxClientConnections(0);
+            }
+        }
+    }
+
+    /**
+     * Startup accepts whatever is in the file, but a reload must not replace working routes with broken ones.
+     */
+    private void validateRoutes(Options options) {
+        for (RouteOption routeOption : options.getRouteOptions()) {
+            if (routeOption.getHost() == null || routeOption.getHost().isBlank()) {
+                throw new IllegalArgumentException("Route option is missing host.");
+            }
+
+            for (DestinationOption destination : routeOption.getDestinations()) {
+                if (destination.getHost() == null || destination.getPort() < 1 || destination.getPort() > 65535) {
+                    throw new IllegalArgumentException(String.format(
+                            "Route option [%s] has invalid destination %s:%d.",
+                            routeOption.getHost(), destination.getHost(), destination.getPort()
+                    ));
+                }
+            }
+        }
+    }
+
+    private void applyUpstreamPoolDefaults(Options options) {
+        if (options.getUpstreamPoolOptions() == null) {
+            options.setUpstreamPoolOptions(new UpstreamPoolOptions());
+        }
+
+        final UpstreamPoolOptions poolOptions = options.getUpstreamPoolOptions();
+        if (poolOptions.getMaxIdlePerDestination() == null || poolOptions.getMaxIdlePerDestination() < 0) {
+            poolOptions.setMaxIdlePerDestination(General.DEFAULT_UPSTREAM_MAX_IDLE_PER_DESTINATION);
+        }
+
+        if (poolOptions.getMaxTotalPerDestination() == null) {
+            poolOptions.setMaxTotalPerDestination(General.DEFAULT_UPSTREAM_MAX_TOTAL_PER_DESTINATION);
+        }
+
+        if (poolOptions.getIdleTimeoutMillis() == null || poolOptions.getIdleTimeoutMillis() < 0) {
+            poolOptions.setIdleTimeoutMillis(General.DEFAULT_UPSTREAM_IDLE_TIMEOUT_MILLIS);
+        }
+
+        if (poolOptions.getAcquireTimeoutMillis() == null || poolOptions.getAcquireTimeoutMillis() < 0) {
+            poolOptions.setAcquireTimeoutMillis(General.DEFAULT_UPSTREAM_ACQUIRE_TIMEOUT_MILLIS);
+        }
+
+        if (poolOptions.getValidateOnBorrow() == null) {
+            poolOptions.setValidateOnBorrow(true);
+        }
+
+        if (poolOptions.getPipeliningDepth() == null || poolOptions.getPipeliningDepth() < 1) {
+            poolOptions.setPipeliningDepth(General.DEFAULT_UPSTREAM_PIPELINING_DEPTH);
+        }
+
+        log.info("Upstream pool: max idle {}, max total {}, idle timeout {} millis.",
+                poolOptions.getMaxIdlePerDestination(),
+                poolOptions.getMaxTotalPerDestination(),
+                poolOptions.getIdleTimeoutMillis()
+        );
+    }
+
+    private void applyHealthCheckDefaults(Options options) {
+        if (options.getHealthCheckOptions() == null) {
+            options.setHealthCheckOptions(new HealthCheckOptions());
+        }
+
+        final HealthCheckOptions healthOptions = options.getHealthCheckOptions();
+        if (healthOptions.getType() == null) {
+            healthOptions.setType(HealthCheckType.NONE);
+        }
+
+        if (healthOptions.getIntervalMillis() == null || healthOptions.getIntervalMillis() < 1) {
+            healthOptions.setIntervalMillis(General.DEFAULT_HEALTH_CHECK_INTERVAL_MILLIS);
+        }
+
+        if (healthOptions.getTimeoutMillis() == null || healthOptions.getTimeoutMillis() < 1) {
+            healthOptions.setTimeoutMillis(General.DEFAULT_HEALTH_CHECK_TIMEOUT_MILLIS);
+        }
+
+        if (healthOptions.getHttpPath() == null) {
+            healthOptions.setHttpPath(General.DEFAULT_HEALTH_CHECK_HTTP_PATH);
+        }
+
+        if (healthOptions.getHealthyThreshold() == null || healthOptions.getHealthyThreshold() < 1) {
+            healthOptions.setHealthyThreshold(General.DEFAULT_HEALTHY_THRESHOLD);
+        }
+
+        if (healthOptions.getUnhealthyThreshold() == null || healthOptions.getUnhealthyThreshold() < 1) {
+            healthOptions.setUnhealthyThreshold(General.DEFAULT_UNHEALTHY_THRESHOLD);
+        }
+
+        if (healthOptions.getMaxConsecutiveFailures() == null) {
+            healthOptions.setMaxConsecutiveFailures(General.DEFAULT_MAX_CONSECUTIVE_FAILURES);
+        }
+
+        if (healthOptions.getEjectionMillis() == null || healthOptions.getEjectionMillis() < 0) {
+            healthOptions.setEjectionMillis(General.DEFAULT_EJECTION_MILLIS);
+        }
+
+        log.info("Health checks: {} every {} millis, ejection after {} failures in a row.",
+                healthOptions.getType(),
+                healthOptions.getIntervalMillis(),
+                healthOptions.getMaxConsecutiveFailures()
+        );
+    }
+
+    private void applyMetricsDefaults(Options options) {
+        if (options.getMetricsOptions() == null) {
+            options.setMetricsOptions(new MetricsOptions());
+        }
+
+        final MetricsOptions metricsOptions = options.getMetricsOptions();
+        if (metricsOptions.getEnabled() == null) {
+            metricsOptions.setEnabled(false);
+        }
+
+        if (metricsOptions.getPort() == null) {
+            metricsOptions.setPort(General.DEFAULT_METRICS_PORT);
+        }
+
+        if (metricsOptions.getBindAddress() == null) {
+            metricsOptions.setBindAddress(General.DEFAULT_METRICS_BIND_ADDRESS);
+        }
+    }
+
+    private void applyResponseCacheDefaults(Options options) {
+        if (options.getResponseCacheOptions() == null) {
+            options.setResponseCacheOptions(new ResponseCacheOptions());
+        }
+
+        final ResponseCacheOptions cacheOptions = options.getResponseCacheOptions();
+        if (cacheOptions.getMaxSizeBytes() == null || cacheOptions.getMaxSizeBytes() < 0) {
+            cacheOptions.setMaxSizeBytes(General.DEFAULT_RESPONSE_CACHE_MAX_SIZE_BYTES);
+        }
+
+        if (cacheOptions.getMaxEntrySizeBytes() == null || cacheOptions.getMaxEntrySizeBytes() < 0) {
+            cacheOptions.setMaxEntrySizeBytes(General.DEFAULT_RESPONSE_CACHE_MAX_ENTRY_SIZE_BYTES);
+        }
+    }
+
+    private void applyCompressionDefaults(Options options) {
+        if (options.getCompressionOptions() == null) {
+            options.setCompressionOptions(new CompressionOptions());
+        }
+
+        final CompressionOptions compressionOptions = options.getCompressionOptions();
+        if (compressionOptions.getMimeTypes() == null) {
+            compressionOptions.setMimeTypes(General.DEFAULT_COMPRESSION_MIME_TYPES);
+        }
+
+        if (compressionOptions.getMinSizeBytes() == null || compressionOptions.getMinSizeBytes() < 0) {
+            compressionOptions.setMinSizeBytes(General.DEFAULT_COMPRESSION_MIN_SIZE_BYTES);
+        }
+
+        if (compressionOptions.getLevel() == null
+                || compressionOptions.getLevel() < Deflater.BEST_SPEED
+                || compressionOptions.getLevel() > Deflater.BEST_COMPRESSION) {
+            compressionOptions.setLevel(General.DEFAULT_COMPRESSION_LEVEL);
+        }
+
+        if (compressionOptions.getCacheMaxSizeBytes() == null || compressionOptions.getCacheMaxSizeBytes() < 0) {
+            compressionOptions.setCacheMaxSizeBytes(General.DEFAULT_COMPRESSION_CACHE_MAX_SIZE_BYTES);
+        }
+    }
+
+    private void applyHttp2Defaults(Options options) {
+        if (options.getHttp2Options() == null) {
+            options.setHttp2Options(new Http2Options());
+        }
+
+        final Http2Options http2Options = options.getHttp2Options();
+        if (http2Options.getEnabled() == null) {
+            http2Options.setEnabled(false);
+        }
+
+        if (http2Options.getMaxConcurrentStreams() == null || http2Options.getMaxConcurrentStreams() < 1) {
+            http2Options.setMaxConcurrentStreams(General.DEFAULT_HTTP2_MAX_CONCURRENT_STREAMS);
+        }
+
+        if (http2Options.getInitialWindowSizeBytes() == null || http2Options.getInitialWindowSizeBytes() < 1) {
+            http2Options.setInitialWindowSizeBytes(General.DEFAULT_HTTP2_INITIAL_WINDOW_SIZE_BYTES);
+        }
+    }
+
+    private void applyAdmissionDefaults(Options options) {
+        if (options.getAdmissionOptions() == null) {
+            options.setAdmissionOptions(new AdmissionOptions());
+        }
+
+        final AdmissionOptions admissionOptions = options.getAdmissionOptions();
+        if (admissionOptions.getEnabled() == null) {
+            admissionOptions.setEnabled(true);
+        }
+
+        if (admissionOptions.getMaxQueuedConnections() == null || admissionOptions.getMaxQueuedConnections() < 1) {
+            admissionOptions.setMaxQueuedConnections(General.DEFAULT_ADMISSION_MAX_QUEUED_CONNECTIONS);
+        }
+
+        if (admissionOptions.getTargetQueueDelayMillis() == null || admissionOptions.getTargetQueueDelayMillis() < 1) {
+            admissionOptions.setTargetQueueDelayMillis(General.DEFAULT_ADMISSION_TARGET_QUEUE_DELAY_MILLIS);
+        }
+
+        if (admissionOptions.getIntervalMillis() == null || admissionOptions.getIntervalMillis() < 1) {
+            admissionOptions.setIntervalMillis(General.DEFAULT_ADMISSION_INTERVAL_MILLIS);
+        }
+
+        if (admissionOptions.getRetryAfterSeconds() == null || admissionOptions.getRetryAfterSeconds() < 0) {
+            admissionOptions.setRetryAfterSeconds(General.DEFAULT_ADMISSION_RETRY_AFTER_SECONDS);
+        }
+    }
+
+    private void applyRateLimitDefaults(Options options) {
+        if (options.getRateLimitOptions() == null) {
+            options.setRateLimitOptions(new RateLimitOptions());
+        }
+
+        final RateLimitOptions rateLimitOptions = options.getRateLimitOptions();
+        if (rateLimitOptions.getEnabled() == null) {
+            rateLimitOptions.setEnabled(false);
+        }
+
+        if (rateLimitOptions.getConnectionsPerSecond() == null || rateLimitOptions.getConnectionsPerSecond() <= 0) {
+            rateLimitOptions.setConnectionsPerSecond(General.DEFAULT_RATE_LIMIT_CONNECTIONS_PER_SECOND);
+        }
+
+        if (rateLimitOptions.getBurst() == null || rateLimitOptions.getBurst() < 1) {
+            rateLimitOptions.setBurst(General.DEFAULT_RATE_LIMIT_BURST);
+        }
+
+        if (rateLimitOptions.getMaxConcurrentConnections() == null || rateLimitOptions.getMaxConcurrentConnections() < 0) {
+            rateLimitOptions.setMaxConcurrentConnections(General.DEFAULT_RATE_LIMIT_MAX_CONCURRENT_CONNECTIONS);
+        }
+
+        if (rateLimitOptions.getTableSize() == null || rateLimitOptions.getTableSize() < 1) {
+            rateLimitOptions.setTableSize(General.DEFAULT_RATE_LIMIT_TABLE_SIZE);
+        }
+
+        if (rateLimitOptions.getRetryAfterSeconds() == null || rateLimitOptions.getRetryAfterSeconds() < 0) {
+            rateLimitOptions.setRetryAfterSeconds(General.DEFAULT_RATE_LIMIT_RETRY_AFTER_SECONDS);
+        }
+    }
+
+    private void applyAccessLogDefaults(Options options) {
+        if (options.getAccessLogOptions() == null) {
+            options.setAccessLogOptions(new AccessLogOptions());
+        }
+
+        final AccessLogOptions accessLogOptions = options.getAccessLogOptions();
+        if (accessLogOptions.getEnabled() == null) {
+            accessLogOptions.setEnabled(false);
+        }
+
+        if (accessLogOptions.getFileName() == null || accessLogOptions.getFileName().isBlank()) {
+            accessLogOptions.setFileName(General.DEFAULT_ACCESS_LOG_FILE_NAME);
+        }
+
+        if (accessLogOptions.getMaxFileSizeBytes() == null || accessLogOptions.getMaxFileSizeBytes() < 1) {
+            accessLogOptions.setMaxFileSizeBytes(General.DEFAULT_ACCESS_LOG_MAX_FILE_SIZE_BYTES);
+        }
+
+        if (accessLogOptions.getMaxFiles() == null || accessLogOptions.getMaxFiles() < 0) {
+            accessLogOptions.setMaxFiles(General.DEFAULT_ACCESS_LOG_MAX_FILES);
+        }
+
+        if (accessLogOptions.getBufferSize() == null || accessLogOptions.getBufferSize() < 1) {
+            accessLogOptions.setBufferSize(General.DEFAULT_ACCESS_LOG_BUFFER_SIZE);
+        }
+
+        if (accessLogOptions.getOverflowPolicy() == null) {
+            accessLogOptions.setOverflowPolicy(OverflowPolicy.DROP);
+        }
+    }
+
+    private void applyBufferPoolDefaults(Options options) {
+        if (options.getBufferPoolOptions() == null) {
+            options.setBufferPoolOptions(new BufferPoolOptions());
+        }
+
+        final BufferPoolOptions bufferPoolOptions = options.getBufferPoolOptions();
+        if (bufferPoolOptions.getMaxMemoryBytes() == null || bufferPoolOptions.getMaxMemoryBytes() < 1) {
+            bufferPoolOptions.setMaxMemoryBytes(General.DEFAULT_BUFFER_POOL_MAX_MEMORY_BYTES);
+        }
+
+        if (bufferPoolOptions.getMaxIdleBytes() == null || bufferPoolOptions.getMaxIdleBytes() < 0) {
+            bufferPoolOptions.setMaxIdleBytes(General.DEFAULT_BUFFER_POOL_MAX_IDLE_BYTES);
+        }
+
+        if (bufferPoolOptions.getThreadCacheSize() == null || bufferPoolOptions.getThreadCacheSize() < 0) {
+            bufferPoolOptions.setThreadCacheSize(General.DEFAULT_BUFFER_POOL_THREAD_CACHE_SIZE);
+        }
+    }
+}
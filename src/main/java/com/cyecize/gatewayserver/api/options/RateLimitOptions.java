@@ -0,0 +1,24 @@
+package com.cyecize.gatewayserver.api.options;
+
+import lombok.Data;
+
+@Data
+public class RateLimitOptions {
+    /**
+     * Limits how fast and how many connections a single client address may open, checked when accepting them.
+     */
+    private Boolean enabled;
+    private Double connectionsPerSecond;
+
+    /**
+     * Connections that a client may open at once after being quiet, e.g. a browser opening its parallel connections.
+     */
+    private Integer burst;
+    private Integer maxConcurrentConnections;
+
+    /**
+     * Number of clients that are remembered, the least recently seen ones are forgotten first.
+     */
+    private Integer tableSize;
+    private Integer retryAfterSeconds;
+}
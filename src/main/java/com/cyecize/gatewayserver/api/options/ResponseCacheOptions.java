@@ -0,0 +1,9 @@
+package com.cyecize.gatewayserver.api.options;
+
+import lombok.Data;
+
+@Data
+public class ResponseCacheOptions {
+    private Long maxSizeBytes;
+    private Integer maxEntrySizeBytes;
+}
@@ -1,16 +1,43 @@
-package com.cyecize.gatewayserver.api.options;
-
-import com.cyecize.gatewayserver.api.server.Scheme;
-import lombok.Data;
-
-import java.util.List;
-
-@Data
-public class RouteOption {
-    private String host;
-    private List<String> subdomains;
-    private String destinationHost;
-    private int destinationPort;
-    private String certificateAlias;
-    private Scheme scheme;
-}
+package com.cyecize.gatewayserver.api.options;
+
+import com.cyecize.gatewayserver.api.balancing.LoadBalancingStrategy;
+import com.cyecize.gatewayserver.api.server.Scheme;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class RouteOption {
+    private String host;
+    private List<String> subdomains;
+    private String destinationHost;
+    private int destinationPort;
+
+    /**
+     * Replicas that share the traffic of the route, used instead of destination host and port when present.
+     */
+    private List<DestinationOption> destinations;
+    private LoadBalancingStrategy loadBalancing;
+    private String certificateAlias;
+    private Scheme scheme;
+
+    /**
+     * Keeps responses that the destination marks as cacheable and answers repeated requests without it.
+     */
+    private Boolean cacheResponses;
+
+    /**
+     * Compresses responses of allowed media types for clients that accept gzip or deflate.
+     */
+    private Boolean compressResponses;
+
+    /**
+     * Connections that a single client may open to this route per second, 0 for no limit.
+     */
+    private Double clientConnectionsPerSecond;
+
+    /**
+     * Connections that a single client may have open to this route at once, 0 for no limit.
+     */
+    private Integer maxClientConnections;
+}
@@ -0,0 +1,13 @@
+package com.cyecize.gatewayserver.api.options;
+
+import lombok.Data;
+
+@Data
+public class UpstreamPoolOptions {
+    private Integer maxIdlePerDestination;
+    private Integer maxTotalPerDestination;
+    private Integer idleTimeoutMillis;
+    private Integer acquireTimeoutMillis;
+    private Boolean validateOnBorrow;
+    private Integer pipeliningDepth;
+}
@@ -0,0 +1,74 @@
+package com.cyecize.gatewayserver.api.pool;
+
+/**
+ * Decides whether the pool takes on new client connections, based on how long tasks wait for a thread.
+ * <p>
+ * Follows the idea of CoDel, see RFC 8289. A queue that empties now and then is a burst and is left alone, while
+ * a queue whose shortest wait stays above the target for a whole interval is a standing queue. From then on new
+ * connections are shed until a task gets a thread within the target again or the queue runs empty. A hard limit on
+ * the number of waiting connections guards against bursts that are too large to wait out.
+ */
+class AdmissionController {
+    private final int maxQueuedConnections;
+
+    private final long targetNanos;
+
+    private final long intervalNanos;
+
+    /**
+     * End of the interval in which the wait has to drop below the target, 0 while it is below.
+     */
+    private long firstAboveTime;
+
+    private volatile boolean isDropping;
+
+    AdmissionController(int maxQueuedConnections, long targetNanos, long intervalNanos) {
+        this.maxQueuedConnections = maxQueuedConnections;
+        this.targetNanos = targetNanos;
+        this.intervalNanos = intervalNanos;
+    }
+
+    /**
+     * @param queuedConnections connections that already wait for a thread.
+     * @param queueSize         tasks of any kind that wait for a thread.
+     */
+    boolean canAdmit(int queuedConnections, int queueSize) {
+        if (queuedConnections >= this.maxQueuedConnections) {
+            return false;
+        }
+
+        // Nothing is dequeued from an empty queue, so it would never leave the dropping state on its own.
+        if (queueSize == 0) {
+            if (this.isDropping) {
+                this.reset();
+            }
+            return true;
+        }
+
+        return !this.isDropping;
+    }
+
+    /**
+     * Called when a task gets a thread.
+     *
+     * @param waitNanos how long the task has been queued.
+     */
+    synchronized void onDequeued(long waitNanos, long nowNanos) {
+        if (waitNanos < this.targetNanos) {
+            this.firstAboveTime = 0;
+            this.isDropping = false;
+            return;
+        }
+
+        if (this.firstAboveTime == 0) {
+            this.firstAboveTime = nowNanos + this.intervalNanos;
+        } else if (nowNanos - this.firstAboveTime >= 0) {
+            this.isDropping = true;
+        }
+    }
+
+    private synchronized void reset() {
+        this.firstAboveTime = 0;
+        this.isDropping = false;
+    }
+}
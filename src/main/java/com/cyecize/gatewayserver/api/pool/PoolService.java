@@ -1,9 +1,33 @@
-package com.cyecize.gatewayserver.api.pool;
-
-import java.util.concurrent.Future;
-
-public interface PoolService {
-    Future<?> submit(Task task);
-
-    void updateCurrentTaskName(String name);
-}
+package com.cyecize.gatewayserver.api.pool;
+
+import java.util.concurrent.Future;
+
+public interface PoolService {
+    /**
+     * Runs work of a client that was already admitted. Never refused.
+     */
+    Future<?> submit(Task task);
+
+    /**
+     * Runs the task of a new client connection or HTTP/2 stream, unless the pool is overloaded.
+     *
+     * @return false if the connection or stream was shed and should be turned away.
+     */
+    boolean trySubmit(Task task);
+
+    void updateCurrentTaskName(String name);
+
+    int getThreadCount();
+
+    int getActiveThreadCount();
+
+    /**
+     * @return number of tasks that wait for a thread.
+     */
+    int getQueueSize();
+
+    /**
+     * @return number of connections that were shed since start up.
+     */
+    long getShedCount();
+}
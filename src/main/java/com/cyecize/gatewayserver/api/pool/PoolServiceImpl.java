@@ -1,113 +1,191 @@
-package com.cyecize.gatewayserver.api.pool;
-
-import com.cyecize.gatewayserver.api.options.Options;
-import com.cyecize.gatewayserver.constants.General;
-import com.cyecize.ioc.annotations.Service;
-import lombok.extern.slf4j.Slf4j;
-
-import java.util.Optional;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
-
-
-@Slf4j
-@Service
-public class PoolServiceImpl implements PoolService {
-
-    private final Options options;
-
-    private final ExecutorService pool;
-
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
-
-    private final AtomicInteger runningTasks = new AtomicInteger();
-
-    private final ThreadLocal<Task> currentTask = new ThreadLocal<>();
-
-    public PoolServiceImpl(Options options) {
-        this.options = options;
-        this.pool = this.getPool();
-        this.initScheduledTasks();
-    }
-
-    @Override
-    public Future<?> submit(Task task) {
-        return this.pool.submit(() -> {
-            this.currentTask.set(task);
-            Thread.currentThread().setName(task.getTaskName());
-            this.runningTasks.incrementAndGet();
-            final Optional<ScheduledExecutorService> stuckTaskScheduler = this.createForStuckTask(task);
-
-            try {
-                task.getRunnable().run();
-            } finally {
-                stuckTaskScheduler.ifPresent(ExecutorService::shutdownNow);
-                this.runningTasks.decrementAndGet();
-            }
-        });
-    }
-
-    @Override
-    public void updateCurrentTaskName(String name) {
-        this.currentTask.get().setTaskName(name);
-        Thread.currentThread().setName(name);
-    }
-
-    private ExecutorService getPool() {
-        final int minPoolSize = Math.max(
-                this.options.getMinThreadPoolSize(),
-                General.MIN_THREAD_POOL_SIZE
-        );
-
-        final int poolSize = Math.max(
-                this.options.getThreadPoolSize(),
-                minPoolSize
-        );
-
-        log.info("Initializing thread pool of size: {} - {}.", minPoolSize, poolSize);
-
-        return new ScalingThreadPool(
-                minPoolSize,
-                poolSize,
-                1L,
-                TimeUnit.MINUTES
-        );
-    }
-
-    private void initScheduledTasks() {
-        if (this.options.getDebuggingOptions() == null) {
-            return;
-        }
-
-        final int runningTasksInterval = this.options.getDebuggingOptions().getRunningTasksIntervalSeconds();
-        if (runningTasksInterval > 0) {
-            this.scheduler.scheduleAtFixedRate(() -> {
-                if (this.runningTasks.get() > 0) {
-                    log.info("Currently running {} tasks", this.runningTasks);
-                }
-            }, 0, runningTasksInterval, TimeUnit.SECONDS);
-        }
-    }
-
-    private Optional<ScheduledExecutorService> createForStuckTask(Task task) {
-        if (this.options.getDebuggingOptions() == null) {
-            return Optional.empty();
-        }
-
-        final int interval = this.options.getDebuggingOptions().getTaskStuckIntervalSeconds();
-        if (interval < 1) {
-            return Optional.empty();
-        }
-
-        final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
-        scheduler.scheduleAtFixedRate(
-                () -> log.error("Stuck on task: {}", task.getTaskName()), interval, interval, TimeUnit.SECONDS
-        );
-
-        return Optional.of(scheduler);
-    }
-}
+package com.cyecize.gatewayserver.api.pool;
+
+import com.cyecize.gatewayserver.api.options.AdmissionOptions;
+import com.cyecize.gatewayserver.api.options.Options;
+import com.cyecize.gatewayserver.api.timer.Timeout;
+import com.cyecize.gatewayserver.api.timer.TimerService;
+import com.cyecize.gatewayserver.constants.General;
+import com.cyecize.ioc.annotations.Service;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Optional;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+
+@Slf4j
+@Service
+public class PoolServiceImpl implements PoolService {
+
+    private final Options options;
+
+    private final ThreadPoolExecutor pool;
+
+    private final TimerService timerService;
+
+    private final AtomicInteger runningTasks = new AtomicInteger();
+
+    private final ThreadLocal<Task> currentTask = new ThreadLocal<>();
+
+    /**
+     * Null if admission control is disabled.
+     */
+    private final AdmissionController admissionController;
+
+    private final AtomicInteger queuedConnections = new AtomicInteger();
+
+    private final LongAdder shedConnections = new LongAdder();
+
+    public PoolServiceImpl(Options options, TimerService timerService) {
+        this.options = options;
+        this.timerService = timerService;
+        this.pool = this.getPool();
+        this.admissionController = this.createAdmissionController();
+        this.initScheduledTasks();
+    }
+
+    @Override
+    public Future<?> submit(Task task) {
+        return this.execute(task, false);
+    }
+
+    @Override
+    public boolean trySubmit(Task task) {
+        if (this.admissionController == null) {
+            this.execute(task, false);
+            return true;
+        }
+
+        if (!this.admissionController.canAdmit(this.queuedConnections.get(), this.pool.getQueue().size())) {
+            this.shedConnections.increment();
+            return false;
+        }
+
+        this.queuedConnections.incrementAndGet();
+        this.execute(task, true);
+        return true;
+    }
+
+    @Override
+    public void updateCurrentTaskName(String name) {
+        this.currentTask.get().setTaskName(name);
+        Thread.currentThread().setName(name);
+    }
+
+    @Override
+    public int getThreadCount() {
+        return this.pool.getPoolSize();
+    }
+
+    @Override
+    public int getActiveThreadCount() {
+        return this.pool.getActiveCount();
+    }
+
+    @Override
+    public int getQueueSize() {
+        return this.pool.getQueue().size();
+    }
+
+    @Override
+    public long getShedCount() {
+        return this.shedConnections.sum();
+    }
+
+    /**
+     * Every task reports how long it waited for a thread, so that connections are shed as soon as any kind of work
+     * starts queueing up.
+     */
+    private Future<?> execute(Task task, boolean isNewConnection) {
+        final long submittedAt = System.nanoTime();
+
+        return this.pool.submit(() -> {
+            if (this.admissionController != null) {
+                final long now = System.nanoTime();
+                this.admissionController.onDequeued(now - submittedAt, now);
+                if (isNewConnection) {
+                    this.queuedConnections.decrementAndGet();
+                }
+            }
+
+            this.currentTask.set(task);
+            Thread.currentThread().setName(task.getTaskName());
+            this.runningTasks.incrementAndGet();
+            final Optional<Timeout> stuckTaskTimeout = this.createForStuckTask(task);
+
+            try {
+                task.getRunnable().run();
+            } finally {
+                stuckTaskTimeout.ifPresent(Timeout::cancel);
+                this.runningTasks.decrementAndGet();
+            }
+        });
+    }
+
+    private ThreadPoolExecutor getPool() {
+        final int minPoolSize = Math.max(
+                this.options.getMinThreadPoolSize(),
+                General.MIN_THREAD_POOL_SIZE
+        );
+
+        final int poolSize = Math.max(
+                this.options.getThreadPoolSize(),
+                minPoolSize
+        );
+
+        log.info("Initializing thread pool of size: {} - {}.", minPoolSize, poolSize);
+
+        return new ScalingThreadPool(
+                minPoolSize,
+                poolSize,
+                1L,
+                TimeUnit.MINUTES
+        );
+    }
+
+    private AdmissionController createAdmissionController() {
+        final AdmissionOptions admissionOptions = this.options.getAdmissionOptions();
+        if (!admissionOptions.getEnabled()) {
+            return null;
+        }
+
+        return new AdmissionController(
+                admissionOptions.getMaxQueuedConnections(),
+                TimeUnit.MILLISECONDS.toNanos(admissionOptions.getTargetQueueDelayMillis()),
+                TimeUnit.MILLISECONDS.toNanos(admissionOptions.getIntervalMillis())
+        );
+    }
+
+    private void initScheduledTasks() {
+        if (this.options.getDebuggingOptions() == null) {
+            return;
+        }
+
+        final int runningTasksInterval = this.options.getDebuggingOptions().getRunningTasksIntervalSeconds();
+        if (runningTasksInterval > 0) {
+            this.timerService.scheduleAtFixedRate(() -> {
+                if (this.runningTasks.get() > 0) {
+                    log.info("Currently running {} tasks", this.runningTasks);
+                }
+            }, runningTasksInterval, TimeUnit.SECONDS);
+        }
+    }
+
+    private Optional<Timeout> createForStuckTask(Task task) {
+        if (this.options.getDebuggingOptions() == null) {
+            return Optional.empty();
+        }
+
+        final int interval = this.options.getDebuggingOptions().getTaskStuckIntervalSeconds();
+        if (interval < 1) {
+            return Optional.empty();
+        }
+
+        return Optional.of(this.timerService.scheduleAtFixedRate(
+                () -> log.error("Stuck on task: {}", task.getTaskName()), interval, TimeUnit.SECONDS
+        ));
+    }
+}
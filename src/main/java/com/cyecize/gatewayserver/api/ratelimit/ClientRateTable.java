@@ -0,0 +1,214 @@
+package com.cyecize.gatewayserver.api.ratelimit;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Token buckets and connection counts of clients, kept in a table of fixed size so that memory stays bounded
+ * no matter how many addresses connect.
+ * <p>
+ * The table is split into stripes, each guarded by its own lock and holding plain arrays instead of an object per
+ * client. A client is looked up in a short window of slots, when none of them is free the least recently seen client
+ * of the window is evicted, preferring clients without open connections. Clients that are forgotten that way start
+ * over with a full bucket, which only lets a client through that has been quiet for longer than the others.
+ */
+class ClientRateTable {
+    private static final int PROBE_LENGTH = 8;
+
+    private static final double NANOS_PER_SECOND = 1_000_000_000d;
+
+    private final Stripe[] stripes;
+
+    private final int stripeMask;
+
+    /**
+     * Keeps clients from picking addresses that collide on purpose.
+     */
+    private final long seed = ThreadLocalRandom.current().nextLong();
+
+    /**
+     * @param capacity    total number of clients, rounded up so that every stripe has a power of two slots.
+     * @param stripeCount number of locks, a power of two.
+     */
+    ClientRateTable(int capacity, int stripeCount) {
+        this.stripes = new Stripe[stripeCount];
+        this.stripeMask = stripeCount - 1;
+
+        final int slotsPerStripe = Math.max(
+                PROBE_LENGTH, Integer.highestOneBit(Math.max(1, capacity / stripeCount - 1)) << 1
+        );
+        for (int i = 0; i < stripeCount; i++) {
+            this.stripes[i] = new Stripe(slotsPerStripe);
+        }
+    }
+
+    /**
+     * Takes a token from the bucket of the client and counts one more open connection.
+     *
+     * @param scope          0 for limits of the whole gateway, otherwise the route that the limits belong to.
+     * @param ratePerSecond  tokens added each second.
+     * @param burst          tokens that the bucket holds at most.
+     * @param maxConcurrent  open connections that the client may have, 0 for no limit and no counting.
+     * @return false if the bucket is empty or the client has too many open connections.
+     */
+    boolean tryAcquire(long high, long low, int scope, double ratePerSecond, double burst, int maxConcurrent,
+                       long nowNanos) {
+        final int hash = this.hash(high, low, scope);
+        final Stripe stripe = this.stripes[hash & this.stripeMask];
+
+        synchronized (stripe) {
+            final int slot = stripe.findOrEvict(high, low, scope, hash, nowNanos, burst);
+            stripe.lastAccess[slot] = nowNanos;
+
+            final double elapsedSeconds = (nowNanos - stripe.refilledAt[slot]) / NANOS_PER_SECOND;
+            final double tokens = Math.min(burst, stripe.tokens[slot] + elapsedSeconds * ratePerSecond);
+            stripe.refilledAt[slot] = nowNanos;
+
+            if (tokens < 1 || (maxConcurrent > 0 && stripe.concurrent[slot] >= maxConcurrent)) {
+                stripe.tokens[slot] = tokens;
+                return false;
+            }
+
+            stripe.tokens[slot] = tokens - 1;
+            if (maxConcurrent > 0) {
+                stripe.concurrent[slot]++;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Counts one connection less, for a client that got one through {@link #tryAcquire}.
+     */
+    void release(long high, long low, int scope) {
+        final int hash = this.hash(high, low, scope);
+        final Stripe stripe = this.stripes[hash & this.stripeMask];
+
+        synchronized (stripe) {
+            final int slot = stripe.find(high, low, scope, hash);
+            if (slot >= 0 && stripe.concurrent[slot] > 0) {
+                stripe.concurrent[slot]--;
+            }
+        }
+    }
+
+    private int hash(long high, long low, int scope) {
+        long h = this.seed ^ high;
+        h = mix(h ^ low);
+        h = mix(h ^ scope);
+
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Finalizer of MurmurHash3, spreads every input bit over the whole result.
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private final class Stripe {
+        private final int slotMask;
+
+        private final long[] highs;
+
+        private final long[] lows;
+
+        private final int[] scopes;
+
+        private final boolean[] isUsed;
+
+        private final double[] tokens;
+
+        private final long[] refilledAt;
+
+        private final long[] lastAccess;
+
+        private final int[] concurrent;
+
+        private Stripe(int slotCount) {
+            this.slotMask = slotCount - 1;
+            this.highs = new long[slotCount];
+            this.lows = new long[slotCount];
+            this.scopes = new int[slotCount];
+            this.isUsed = new boolean[slotCount];
+            this.tokens = new double[slotCount];
+            this.refilledAt = new long[slotCount];
+            this.lastAccess = new long[slotCount];
+            this.concurrent = new int[slotCount];
+        }
+
+        private int find(long high, long low, int scope, int hash) {
+            final int start = this.getStart(hash);
+            for (int i = 0; i < PROBE_LENGTH; i++) {
+                final int slot = (start + i) & this.slotMask;
+                if (this.isUsed[slot] && this.matches(slot, high, low, scope)) {
+                    return slot;
+                }
+            }
+
+            return -1;
+        }
+
+        private int findOrEvict(long high, long low, int scope, int hash, long nowNanos, double burst) {
+            final int start = this.getStart(hash);
+
+            int victim = -1;
+            for (int i = 0; i < PROBE_LENGTH; i++) {
+                final int slot = (start + i) & this.slotMask;
+                if (!this.isUsed[slot]) {
+                    if (victim < 0 || this.isUsed[victim]) {
+                        victim = slot;
+                    }
+                    continue;
+                }
+
+                if (this.matches(slot, high, low, scope)) {
+                    return slot;
+                }
+
+                if (victim < 0 || (this.isUsed[victim] && this.isBetterVictim(slot, victim))) {
+                    victim = slot;
+                }
+            }
+
+            this.isUsed[victim] = true;
+            this.highs[victim] = high;
+            this.lows[victim] = low;
+            this.scopes[victim] = scope;
+            this.tokens[victim] = burst;
+            this.refilledAt[victim] = nowNanos;
+            this.concurrent[victim] = 0;
+
+            return victim;
+        }
+
+        /**
+         * Clients with open connections are kept, so that their count is not lost while they still use it.
+         */
+        private boolean isBetterVictim(int slot, int victim) {
+            final boolean isIdle = this.concurrent[slot] == 0;
+            final boolean isVictimIdle = this.concurrent[victim] == 0;
+            if (isIdle != isVictimIdle) {
+                return isIdle;
+            }
+
+            return this.lastAccess[slot] - this.lastAccess[victim] < 0;
+        }
+
+        private boolean matches(int slot, long high, long low, int scope) {
+            return this.highs[slot] == high && this.lows[slot] == low && this.scopes[slot] == scope;
+        }
+
+        /**
+         * The lowest bits of the hash already picked the stripe.
+         */
+        private int getStart(int hash) {
+            return (hash >>> Integer.numberOfTrailingZeros(ClientRateTable.this.stripes.length)) & this.slotMask;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.cyecize.gatewayserver.api.ratelimit;
+
+import com.cyecize.gatewayserver.api.balancing.DestinationGroup;
+
+import java.net.InetAddress;
+
+public interface RateLimitService {
+    /**
+     * Called for every accepted connection, before any work is spent on it.
+     *
+     * @return false if the client opens connections too fast or has too many open.
+     * If true, {@link #release(InetAddress)} has to be called once the connection is closed.
+     */
+    boolean tryAcquire(InetAddress address);
+
+    void release(InetAddress address);
+
+    /**
+     * Applies the limits of the route, if it has any, whenever a connection starts sending requests to the route.
+     *
+     * @return false if the client opens connections to the route too fast or has too many open.
+     * If true, {@link #release(InetAddress, DestinationGroup)} has to be called once the connection leaves the route.
+     */
+    boolean tryAcquire(InetAddress address, DestinationGroup route);
+
+    void release(InetAddress address, DestinationGroup route);
+
+    /**
+     * @return number of connections that were turned away since start up.
+     */
+    long getLimitedCount();
+}
@@ -0,0 +1,183 @@
+package com.cyecize.gatewayserver.api.ratelimit;
+
+import com.cyecize.gatewayserver.api.balancing.DestinationGroup;
+import com.cyecize.gatewayserver.api.options.Options;
+import com.cyecize.gatewayserver.api.options.RateLimitOptions;
+import com.cyecize.gatewayserver.constants.General;
+import com.cyecize.ioc.annotations.Service;
+import lombok.extern.slf4j.Slf4j;
+
+import java.net.InetAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Clients are told apart by address. IPv6 clients are told apart by their /64 prefix, since a single host usually
+ * gets a whole /64 and could otherwise spray connections from countless addresses.
+ */
+@Slf4j
+@Service
+public class RateLimitServiceImpl implements RateLimitService {
+    private static final int GLOBAL_SCOPE = 0;
+
+    private final RateLimitOptions rateLimitOptions;
+
+    private final boolean isEnabled;
+
+    /**
+     * Scopes of the routes with limits, by host of the route, so that they survive reloading the routes.
+     */
+    private final Map<String, Integer> routeScopes = new ConcurrentHashMap<>();
+
+    private final AtomicInteger nextRouteScope = new AtomicInteger(GLOBAL_SCOPE + 1);
+
+    private final LongAdder limitedConnections = new LongAdder();
+
+    /**
+     * Created on first use, so that no memory is spent on it while no limit is configured.
+     */
+    private volatile ClientRateTable table;
+
+    public RateLimitServiceImpl(Options options) {
+        this.rateLimitOptions = options.getRateLimitOptions();
+        this.isEnabled = this.rateLimitOptions.getEnabled();
+
+        if (this.isEnabled) {
+            log.info("Rate limiting clients to {} connections per second, burst {}, {} open connections at most.",
+                    this.rateLimitOptions.getConnectionsPerSecond(),
+                    this.rateLimitOptions.getBurst(),
+                    this.rateLimitOptions.getMaxConcurrentConnections()
+            );
+        }
+    }
+
+    @Override
+    public boolean tryAcquire(InetAddress address) {
+        if (!this.isEnabled) {
+            return true;
+        }
+
+        final byte[] bytes = address.getAddress();
+        final boolean isAcquired = this.getTable().tryAcquire(
+                getHigh(bytes),
+                getLow(bytes),
+                GLOBAL_SCOPE,
+                this.rateLimitOptions.getConnectionsPerSecond(),
+                this.rateLimitOptions.getBurst(),
+                this.rateLimitOptions.getMaxConcurrentConnections(),
+                System.nanoTime()
+        );
+
+        if (!isAcquired) {
+            this.limitedConnections.increment();
+        }
+        return isAcquired;
+    }
+
+    @Override
+    public void release(InetAddress address) {
+        if (!this.isEnabled) {
+            return;
+        }
+
+        final byte[] bytes = address.getAddress();
+        this.getTable().release(getHigh(bytes), getLow(bytes), GLOBAL_SCOPE);
+    }
+
+    /**
+     * A route allows one second worth of connections at once. A route that only limits open connections gets a
+     * bucket that never runs dry.
+     */
+    @Override
+    public boolean tryAcquire(InetAddress address, DestinationGroup route) {
+        final double connectionsPerSecond = route.getClientConnectionsPerSecond();
+        if (connectionsPerSecond <= 0 && route.getMaxClientConnections() <= 0) {
+            return true;
+        }
+
+        final double rate = connectionsPerSecond > 0 ? connectionsPerSecond : Double.MAX_VALUE;
+        final byte[] bytes = address.getAddress();
+        final boolean isAcquired = this.getTable().tryAcquire(
+                getHigh(bytes),
+                getLow(bytes),
+                this.getRouteScope(route),
+                rate,
+                Math.max(1, rate),
+                route.getMaxClientConnections(),
+                System.nanoTime()
+        );
+
+        if (!isAcquired) {
+            this.limitedConnections.increment();
+        }
+        return isAcquired;
+    }
+
+    /**
+     * Open connections are only counted for routes that limit them.
+     */
+    @Override
+    public void release(InetAddress address, DestinationGroup route) {
+        if (route.getMaxClientConnections() <= 0) {
+            return;
+        }
+
+        final byte[] bytes = address.getAddress();
+        this.getTable().release(getHigh(bytes), getLow(bytes), this.getRouteScope(route));
+    }
+
+    @Override
+    public long getLimitedCount() {
+        return this.limitedConnections.sum();
+    }
+
+    private int getRouteScope(DestinationGroup route) {
+        return this.routeScopes.computeIfAbsent(
+                route.getMetrics().getRoute(), host -> this.nextRouteScope.getAndIncrement()
+        );
+    }
+
+    private ClientRateTable getTable() {
+        ClientRateTable table = this.table;
+        if (table == null) {
+            synchronized (this) {
+                table = this.table;
+                if (table == null) {
+                    table = new ClientRateTable(this.rateLimitOptions.getTableSize(), General.RATE_LIMIT_STRIPES);
+                    this.table = table;
+                }
+            }
+        }
+
+        return table;
+    }
+
+    /**
+     * IPv4 addresses are keyed like their IPv4-mapped IPv6 form.
+     */
+    private static long getHigh(byte[] address) {
+        return address.length == 16 ? toLong(address, 0) : 0;
+    }
+
+    private static long getLow(byte[] address) {
+        if (address.length == 16) {
+            return 0;
+        }
+
+        return 0xFFFF_0000_0000L | (toLong(address, 0) >>> 32);
+    }
+
+    private static long toLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value <<= 8;
+            if (offset + i < bytes.length) {
+                value |= bytes[offset + i] & 0xFF;
+            }
+        }
+
+        return value;
+    }
+}
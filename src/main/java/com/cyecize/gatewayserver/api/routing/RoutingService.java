@@ -0,0 +1,22 @@
+package com.cyecize.gatewayserver.api.routing;
+
+import com.cyecize.gatewayserver.api.balancing.DestinationGroup;
+import com.cyecize.gatewayserver.api.connection.DestinationDto;
+import com.cyecize.gatewayserver.api.server.Connection;
+
+import java.util.Collection;
+
+public interface RoutingService {
+    /**
+     * Finds the route for a request whose lines are already read. Called for every request, so that
+     * requests of a keep-alive session are balanced as well, by choosing from the returned group.
+     *
+     * @return destinations of the route or null if no route matches the host.
+     */
+    DestinationGroup resolveRoute(Connection connection);
+
+    /**
+     * @return every distinct destination of the current routes.
+     */
+    Collection<DestinationDto> getDestinations();
+}
@@ -0,0 +1,93 @@
+package com.cyecize.gatewayserver.api.routing;
+
+import com.cyecize.gatewayserver.api.balancing.DestinationGroup;
+import com.cyecize.gatewayserver.api.connection.DestinationDto;
+import com.cyecize.gatewayserver.api.dns.DestinationResolverService;
+import com.cyecize.gatewayserver.api.health.HealthCheckService;
+import com.cyecize.gatewayserver.api.metrics.MetricsService;
+import com.cyecize.gatewayserver.api.options.Options;
+import com.cyecize.gatewayserver.api.options.OptionsReloadListener;
+import com.cyecize.gatewayserver.api.server.Connection;
+import com.cyecize.ioc.annotations.PostConstruct;
+import com.cyecize.ioc.annotations.Service;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collection;
+import java.util.List;
+
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class RoutingServiceImpl implements RoutingService, OptionsReloadListener {
+
+    private final Options options;
+
+    private final HealthCheckService healthCheckService;
+
+    private final DestinationResolverService destinationResolverService;
+
+    private final MetricsService metricsService;
+
+    /**
+     * Mapping of host to the desired destination server / servers.
+     * If more than one route is present for a host, the first one that accepts the scheme is chosen and
+     * its destinations share the requests.
+     * <p>
+     * Eg.
+     * abc.com -> localhost:8080
+     * www.abc.com -> localhost:8080
+     * <p>
+     * xyz.com -> http localhost:5050, https localhost:5051
+     * abc.xyz.com -> localhost:5060, localhost:5061
+     * *.xyz.com -> localhost:5070
+     * <p>
+     * yyy.com -> 192.168.0.1:80
+     * 134.134.122.19 -> localhost:8090
+     */
+    private volatile RoutingTable routingTable;
+
+    @PostConstruct
+    void init() {
+        this.routingTable = RoutingTable.compile(
+                this.options.getRouteOptions(), List.of(), this.metricsService::getRouteMetrics
+        );
+        this.healthCheckService.watch(this.routingTable.getDestinations());
+        this.destinationResolverService.watch(this.routingTable.getDestinations());
+    }
+
+    /**
+     * Destinations that are still present keep their load, health and addresses, routes keep their metrics.
+     */
+    @Override
+    public Runnable prepareReload(Options newOptions) {
+        final RoutingTable newRoutingTable = RoutingTable.compile(
+                newOptions.getRouteOptions(),
+                this.routingTable.getDestinations(),
+                this.metricsService::getRouteMetrics
+        );
+
+        return () -> {
+            this.routingTable = newRoutingTable;
+            this.healthCheckService.watch(newRoutingTable.getDestinations());
+            this.destinationResolverService.watch(newRoutingTable.getDestinations());
+        };
+    }
+
+    @Override
+    public DestinationGroup resolveRoute(Connection connection) {
+        final String host = connection.getHost();
+
+        final DestinationGroup group = this.routingTable.resolve(host, connection.isSsl());
+        if (group == null) {
+            log.warn("No such host " + host);
+        }
+
+        return group;
+    }
+
+    @Override
+    public Collection<DestinationDto> getDestinations() {
+        return this.routingTable.getDestinations();
+    }
+}
@@ -0,0 +1,294 @@
+package com.cyecize.gatewayserver.api.routing;
+
+import com.cyecize.gatewayserver.api.balancing.DestinationGroup;
+import com.cyecize.gatewayserver.api.connection.DestinationDto;
+import com.cyecize.gatewayserver.api.metrics.RouteMetrics;
+import com.cyecize.gatewayserver.api.options.DestinationOption;
+import com.cyecize.gatewayserver.api.options.RouteOption;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Immutable host to destination mapping, compiled from route options.
+ * <p>
+ * Hosts are stored as a trie of their labels in reverse order, e.g. "www.abc.com" is found under com -> abc -> www,
+ * which makes "*.abc.com" an entry on the abc node that matches every host below it. The most specific match
+ * wins, exact hosts before wildcards. Lookups walk the host string in place, ignoring case and port, and use
+ * destination groups that are already filtered by scheme, so resolving a host does not allocate.
+ * <p>
+ * Eg.
+ * abc.com -> localhost:8080
+ * *.abc.com -> localhost:8081
+ * <p>
+ * ABC.com:80 -> localhost:8080
+ * www.abc.com -> localhost:8081
+ * a.b.abc.com -> localhost:8081
+ */
+public class RoutingTable {
+    private static final String WILDCARD_LABEL = "*";
+
+    private final Node root;
+
+    private final Collection<DestinationDto> destinations;
+
+    private RoutingTable(Node root, Collection<DestinationDto> destinations) {
+        this.root = root;
+        this.destinations = destinations;
+    }
+
+    /**
+     * @param previousDestinations destinations of the table that is being replaced, reused when equal.
+     * @param routeMetrics          provides the metrics of a route by its host.
+     */
+    public static RoutingTable compile(List<RouteOption> routeOptions,
+                                       Collection<DestinationDto> previousDestinations,
+                                       Function<String, RouteMetrics> routeMetrics) {
+        final NodeBuilder root = new NodeBuilder();
+
+        final Map<DestinationDto, DestinationDto> previous = new HashMap<>();
+        previousDestinations.forEach(d -> previous.put(d, d));
+
+        // Routes to the same destination share one instance, so that their load is counted together.
+        final Map<DestinationDto, DestinationDto> destinations = new HashMap<>();
+
+        for (RouteOption option : routeOptions) {
+            final DestinationDto[] groupDestinations = new DestinationDto[option.getDestinations().size()];
+            for (int i = 0; i < groupDestinations.length; i++) {
+                final DestinationOption destinationOption = option.getDestinations().get(i);
+                final DestinationDto destination = new DestinationDto(
+                        destinationOption.getPort(),
+                        destinationOption.getHost(),
+                        option.getScheme()
+                );
+
+                groupDestinations[i] = destinations.computeIfAbsent(destination, d -> previous.getOrDefault(d, d));
+            }
+
+            final DestinationGroup group = new DestinationGroup(
+                    option.getScheme(),
+                    groupDestinations,
+                    option.getLoadBalancing().createBalancer(),
+                    routeMetrics.apply(option.getHost()),
+                    option.getCacheResponses(),
+                    option.getCompressResponses(),
+                    option.getClientConnectionsPerSecond(),
+                    option.getMaxClientConnections()
+            );
+
+            root.add(option.getHost(), group);
+            for (String subdomain : option.getSubdomains()) {
+                root.add(subdomain + "." + option.getHost(), group);
+            }
+        }
+
+        return new RoutingTable(root.build(), List.copyOf(destinations.values()));
+    }
+
+    /**
+     * @return every distinct destination of the routes.
+     */
+    public Collection<DestinationDto> getDestinations() {
+        return this.destinations;
+    }
+
+    /**
+     * @param host value of the Host header, may contain a port.
+     * @return destinations of the first among the most specific routes that accepts the scheme or null.
+     */
+    public DestinationGroup resolve(String host, boolean isSsl) {
+        if (host == null) {
+            return null;
+        }
+
+        final int hostEnd = findHostEnd(host);
+        if (hostEnd == 0) {
+            return null;
+        }
+
+        Node node = this.root;
+        DestinationGroup wildcardMatch = node.getWildcardGroup(isSsl);
+
+        int labelEnd = hostEnd;
+        while (true) {
+            final int labelStart = host.lastIndexOf('.', labelEnd - 1) + 1;
+
+            node = node.getChild(host, labelStart, labelEnd);
+            if (node == null) {
+                return wildcardMatch;
+            }
+
+            if (labelStart == 0) {
+                final DestinationGroup exactMatch = node.getExactGroup(isSsl);
+                return exactMatch != null ? exactMatch : wildcardMatch;
+            }
+
+            final DestinationGroup nodeWildcard = node.getWildcardGroup(isSsl);
+            if (nodeWildcard != null) {
+                wildcardMatch = nodeWildcard;
+            }
+
+            labelEnd = labelStart - 1;
+        }
+    }
+
+    /**
+     * @return index after the last character of the host name, without port and trailing dot.
+     */
+    private static int findHostEnd(String host) {
+        int end;
+        if (host.startsWith("[")) {
+            // IPv6 literal, its colons are not a port.
+            end = host.indexOf(']') + 1;
+            if (end == 0) {
+                end = host.length();
+            }
+        } else {
+            end = host.indexOf(':');
+            if (end < 0) {
+                end = host.length();
+            }
+        }
+
+        if (end > 0 && host.charAt(end - 1) == '.') {
+            end--;
+        }
+
+        return end;
+    }
+
+    private static int hash(String value, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + toLowerCase(value.charAt(i));
+        }
+
+        // Spread higher bits, since the table index uses only the lower ones.
+        return hash ^ (hash >>> 16);
+    }
+
+    private static char toLowerCase(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    private static String toLowerCase(String value) {
+        final char[] chars = value.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = toLowerCase(chars[i]);
+        }
+
+        return new String(chars);
+    }
+
+    /**
+     * Trie node with children in an open addressing table.
+     */
+    private static class Node {
+        private final String[] labels;
+
+        private final Node[] children;
+
+        private final int mask;
+
+        private final DestinationGroup exactHttp;
+
+        private final DestinationGroup exactHttps;
+
+        private final DestinationGroup wildcardHttp;
+
+        private final DestinationGroup wildcardHttps;
+
+        Node(Map<String, Node> children, List<DestinationGroup> exact, List<DestinationGroup> wildcard) {
+            int capacity = 1;
+            while (capacity < children.size() * 2) {
+                capacity <<= 1;
+            }
+
+            this.labels = new String[capacity];
+            this.children = new Node[capacity];
+            this.mask = capacity - 1;
+
+            for (Map.Entry<String, Node> entry : children.entrySet()) {
+                final String label = entry.getKey();
+                int index = hash(label, 0, label.length()) & this.mask;
+                while (this.labels[index] != null) {
+                    index = (index + 1) & this.mask;
+                }
+
+                this.labels[index] = label;
+                this.children[index] = entry.getValue();
+            }
+
+            this.exactHttp = findFirst(exact, false);
+            this.exactHttps = findFirst(exact, true);
+            this.wildcardHttp = findFirst(wildcard, false);
+            this.wildcardHttps = findFirst(wildcard, true);
+        }
+
+        Node getChild(String host, int start, int end) {
+            final int length = end - start;
+
+            int index = hash(host, start, end) & this.mask;
+            String label;
+            while ((label = this.labels[index]) != null) {
+                if (label.length() == length && label.regionMatches(true, 0, host, start, length)) {
+                    return this.children[index];
+                }
+                index = (index + 1) & this.mask;
+            }
+
+            return null;
+        }
+
+        DestinationGroup getExactGroup(boolean isSsl) {
+            return isSsl ? this.exactHttps : this.exactHttp;
+        }
+
+        DestinationGroup getWildcardGroup(boolean isSsl) {
+            return isSsl ? this.wildcardHttps : this.wildcardHttp;
+        }
+
+        private static DestinationGroup findFirst(List<DestinationGroup> groups, boolean isSsl) {
+            return groups.stream()
+                    .filter(g -> g.getScheme().isCompatibleWith(isSsl))
+                    .findFirst().orElse(null);
+        }
+    }
+
+    private static class NodeBuilder {
+        private final Map<String, NodeBuilder> children = new LinkedHashMap<>();
+
+        private final List<DestinationGroup> exact = new ArrayList<>();
+
+        private final List<DestinationGroup> wildcard = new ArrayList<>();
+
+        void add(String host, DestinationGroup group) {
+            final String normalized = toLowerCase(host.substring(0, findHostEnd(host)));
+            final String[] labels = normalized.split("\\.");
+
+            NodeBuilder node = this;
+            for (int i = labels.length - 1; i > 0; i--) {
+                node = node.children.computeIfAbsent(labels[i], l -> new NodeBuilder());
+            }
+
+            // "*.abc.com" is a wildcard on the abc node, a lone "*" matches any host.
+            if (WILDCARD_LABEL.equals(labels[0])) {
+                node.wildcard.add(group);
+            } else {
+                node.children.computeIfAbsent(labels[0], l -> new NodeBuilder()).exact.add(group);
+            }
+        }
+
+        Node build() {
+            final Map<String, Node> builtChildren = new LinkedHashMap<>();
+            this.children.forEach((label, child) -> builtChildren.put(label, child.build()));
+
+            return new Node(builtChildren, this.exact, this.wildcard);
+        }
+    }
+}
@@ -1,137 +1,288 @@
-package com.cyecize.gatewayserver.api.server;
-
-import com.cyecize.gatewayserver.error.CannotParseRequestException;
-import com.cyecize.gatewayserver.error.EmptyRequestException;
-import com.cyecize.gatewayserver.util.HttpProtocolUtils;
-import lombok.Getter;
-import lombok.SneakyThrows;
-import lombok.ToString;
-import lombok.extern.slf4j.Slf4j;
-
-import java.io.IOException;
-import java.net.Socket;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.Objects;
-
-
-@ToString
-@Slf4j
-public class Connection {
-    @Getter
-    private final Socket socket;
-
-    private boolean isClosed;
-
-    private final boolean isSsl;
-
-    private List<String> requestLines;
-
-    private boolean isRequestLinesRead;
-
-    private Map<String, String> headers;
-
-    /**
-     * Resources that are bound to this connection and depend on it being active to function properly.
-     */
-    private final List<Closeable> closeables = new ArrayList<>();
-
-    public Connection(Socket socket, boolean isSsl) {
-        this.socket = socket;
-        this.isSsl = isSsl;
-    }
-
-    public boolean isSsl() {
-        return this.isSsl;
-    }
-
-    public void close() {
-        if (this.isClosed) {
-            return;
-        }
-
-        try {
-            this.socket.close();
-        } catch (IOException e) {
-            log.warn("Error occurred while closing connection.", e);
-        }
-
-        this.closeables.forEach(Closeable::close);
-
-        this.isClosed = true;
-    }
-
-    public String getHostOrIp() {
-        if (this.isRequestLinesRead) {
-            return String.format("%s / %s", this.getHost(), this.socket.getInetAddress().getHostName());
-        }
-        return this.socket.getInetAddress().getHostName();
-    }
-
-    public void addCloseable(Closeable closeable) {
-        this.closeables.add(closeable);
-    }
-
-    public void closeCloseables() {
-        this.closeables.forEach(Closeable::close);
-        this.closeables.clear();
-    }
-
-    public boolean readRequestLines() throws IOException {
-        if (this.isRequestLinesRead) {
-            return true;
-        }
-
-        try {
-            this.requestLines = HttpProtocolUtils.parseMetadataLines(this.socket.getInputStream(), true);
-            this.isRequestLinesRead = true;
-        } catch (CannotParseRequestException ex) {
-            log.warn("Error while reading HTTP request lines (ip: {}). {}", this.getHostOrIp(), ex.getMessage());
-            this.close();
-            return false;
-        } catch (EmptyRequestException ex) {
-            // Ignore this exception!
-            // Web browsers often send empty socket connection when caching is enabled, mainly for favicon.ico
-            // We do not want to keep this connection alive and flood our thread pool.
-            this.close();
-            return false;
-        }
-
-        return true;
-    }
-
-    public List<String> getRequestLines() {
-        Objects.requireNonNull(this.requestLines, "Please read request lines first");
-        return this.requestLines;
-    }
-
-    public String getHost() {
-        this.setHeaders();
-        return HttpProtocolUtils.getHost(this.socket, this.headers);
-    }
-
-    public String getConnection() {
-        this.setHeaders();
-        return this.headers.get("Connection");
-    }
-
-    @SneakyThrows
-    public int getContentLength() {
-        this.setHeaders();
-        return HttpProtocolUtils.getContentLength(this.socket.getInputStream(), this.headers);
-    }
-
-    private void setHeaders() {
-        if (this.headers != null) {
-            return;
-        }
-        Objects.requireNonNull(this.requestLines, "Please read request lines first");
-        this.headers = HttpProtocolUtils.getHeaders(this.requestLines);
-    }
-
-    @FunctionalInterface
-    public static interface Closeable {
-        void close();
-    }
-}
+package com.cyecize.gatewayserver.api.server;
+
+import com.cyecize.gatewayserver.api.buffer.BufferPool;
+import com.cyecize.gatewayserver.api.http.BodyFraming;
+import com.cyecize.gatewayserver.api.http.HttpHead;
+import com.cyecize.gatewayserver.api.http.HttpHeadReader;
+import com.cyecize.gatewayserver.api.http.HttpHeaders;
+import com.cyecize.gatewayserver.error.CannotParseRequestException;
+import com.cyecize.gatewayserver.error.EmptyRequestException;
+import com.cyecize.gatewayserver.util.HttpProtocolUtils;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.SneakyThrows;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.net.ssl.SSLSocket;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+
+@ToString
+@Slf4j
+public class Connection {
+    @Getter
+    private final Socket socket;
+
+    private boolean isClosed;
+
+    private final boolean isSsl;
+
+    /**
+     * Literal address, taken from the accepted socket so that it never causes a reverse lookup.
+     */
+    private final String clientAddress;
+
+    /**
+     * Name from the reverse lookup cache, if it had one at the time of accepting, only used in logs.
+     */
+    @Getter
+    @Setter
+    private String clientName;
+
+    @Getter
+    @ToString.Exclude
+    private final BufferPool bufferPool;
+
+    private HttpHeadReader headReader;
+
+    private HttpHead head;
+
+    private boolean isRequestLinesRead;
+
+    /**
+     * Resources that are bound to this connection and depend on it being active to function properly.
+     */
+    private final List<Closeable> closeables = new ArrayList<>();
+
+    /**
+     * @param bufferPool used for the head reader of the connection and for relaying bodies.
+     */
+    public Connection(Socket socket, boolean isSsl, BufferPool bufferPool) {
+        this.socket = socket;
+        this.isSsl = isSsl;
+        this.clientAddress = socket.getInetAddress().getHostAddress();
+        this.bufferPool = bufferPool;
+    }
+
+    /**
+     * Creates a connection for the next message of a socket, keeping whatever the previous message over-read.
+     */
+    public Connection(Socket socket, boolean isSsl, HttpHeadReader headReader) {
+        this(socket, isSsl, headReader.getBufferPool());
+        this.headReader = headReader;
+    }
+
+    /**
+     * Creates a connection whose head was already read by other means, e.g. by an event loop.
+     */
+    public Connection(Socket socket, boolean isSsl, HttpHead head, BufferPool bufferPool) {
+        this(socket, isSsl, bufferPool);
+        this.head = head;
+        this.isRequestLinesRead = true;
+    }
+
+    public boolean isSsl() {
+        return this.isSsl;
+    }
+
+    public void close() {
+        if (this.isClosed) {
+            return;
+        }
+
+        try {
+            this.socket.close();
+        } catch (IOException e) {
+            log.warn("Error occurred while closing connection.", e);
+        }
+
+        this.closeables.forEach(Closeable::close);
+
+        this.isClosed = true;
+    }
+
+    /**
+     * Completes the TLS handshake, if it has not happened yet, to find out what protocol was negotiated via ALPN.
+     *
+     * @return the negotiated protocol, e.g. "h2", or null if there was no negotiation.
+     */
+    public String getApplicationProtocol() throws IOException {
+        if (!(this.socket instanceof SSLSocket)) {
+            return null;
+        }
+
+        final SSLSocket sslSocket = (SSLSocket) this.socket;
+        if (sslSocket.getApplicationProtocol() == null) {
+            sslSocket.startHandshake();
+        }
+
+        final String protocol = sslSocket.getApplicationProtocol();
+        return protocol == null || protocol.isEmpty() ? null : protocol;
+    }
+
+    public String getHostOrIp() {
+        final String client = this.clientName == null
+                ? this.clientAddress
+                : String.format("%s (%s)", this.clientName, this.clientAddress);
+
+        if (this.isRequestLinesRead) {
+            return String.format("%s / %s", this.getHost(), client);
+        }
+        return client;
+    }
+
+    public void addCloseable(Closeable closeable) {
+        this.closeables.add(closeable);
+    }
+
+    public void closeCloseables() {
+        this.closeables.forEach(Closeable::close);
+        this.closeables.clear();
+    }
+
+    public boolean readRequestLines() throws IOException {
+        if (this.isRequestLinesRead) {
+            return true;
+        }
+
+        try {
+            this.head = this.getHeadReader().readHead();
+            this.isRequestLinesRead = true;
+        } catch (CannotParseRequestException ex) {
+            log.warn("Error while reading HTTP request lines (ip: {}). {}", this.getHostOrIp(), ex.getMessage());
+            this.close();
+            return false;
+        } catch (EmptyRequestException ex) {
+            // Ignore this exception!
+            // Web browsers often send empty socket connection when caching is enabled, mainly for favicon.ico
+            // We do not want to keep this connection alive and flood our thread pool.
+            this.close();
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Reads the next head only if it has already arrived, without waiting for the socket.
+     *
+     * @return false if the head is not buffered yet.
+     */
+    public boolean readBufferedRequestLines() throws CannotParseRequestException {
+        final HttpHead head = this.getHeadReader().readBufferedHead();
+        if (head == null) {
+            return false;
+        }
+
+        this.head = head;
+        this.isRequestLinesRead = true;
+        return true;
+    }
+
+    public List<String> getRequestLines() {
+        return this.getHead().getLines();
+    }
+
+    /**
+     * @return true once the head of the message has been read.
+     */
+    public boolean isHeadRead() {
+        return this.head != null;
+    }
+
+    public HttpHead getHead() {
+        Objects.requireNonNull(this.head, "Please read request lines first");
+        return this.head;
+    }
+
+    @SneakyThrows
+    public HttpHeadReader getHeadReader() {
+        if (this.headReader == null) {
+            this.headReader = new HttpHeadReader(this.socket.getInputStream(), this.bufferPool);
+        }
+
+        return this.headReader;
+    }
+
+    /**
+     * Gives the buffer of the reader back to the pool, called by the thread that reads once it is done.
+     */
+    public void releaseHeadReader() {
+        if (this.headReader != null) {
+            this.headReader.release();
+        }
+    }
+
+    /**
+     * @return true if bytes were read past the current message, e.g. a pipelined request.
+     */
+    public boolean hasBufferedInput() {
+        return this.headReader != null && this.headReader.getBufferedCount() > 0;
+    }
+
+    public String getHost() {
+        return HttpProtocolUtils.getHost(this.socket, this.getHeaders());
+    }
+
+    /**
+     * @return value of a header field, the name is matched ignoring case, or null.
+     */
+    public String getHeader(String name) {
+        return this.getHeaders().get(name);
+    }
+
+    public HttpHeaders getHeaders() {
+        return this.getHead().getHeaders();
+    }
+
+    public String getConnection() {
+        return this.getHeaders().getConnection();
+    }
+
+    /**
+     * HTTP/1.1 connections are persistent unless "close" is sent, HTTP/1.0 ones only with "keep-alive".
+     */
+    public boolean isKeepAlive() {
+        return HttpProtocolUtils.isKeepAlive(this.getHead().getLine(0), this.getConnection());
+    }
+
+    public long getContentLength() {
+        return this.getHeaders().getContentLength();
+    }
+
+    public BodyFraming getRequestBodyFraming() {
+        return HttpProtocolUtils.getRequestBodyFraming(this.getHeaders());
+    }
+
+    public String getMethod() {
+        return HttpProtocolUtils.getMethod(this.getHead().getLine(0));
+    }
+
+    /**
+     * @return target of a request line like "GET /index.html HTTP/1.1".
+     */
+    public String getRequestTarget() {
+        return HttpProtocolUtils.getRequestTarget(this.getHead().getLine(0));
+    }
+
+    public int getStatusCode() {
+        return HttpProtocolUtils.getStatusCode(this.getHead().getLine(0));
+    }
+
+    /**
+     * @param requestMethod method of the request that this response answers.
+     */
+    public BodyFraming getResponseBodyFraming(String requestMethod) {
+        return HttpProtocolUtils.getResponseBodyFraming(requestMethod, this.getStatusCode(), this.getHeaders());
+    }
+
+    @FunctionalInterface
+    public static interface Closeable {
+        void close();
+    }
+}
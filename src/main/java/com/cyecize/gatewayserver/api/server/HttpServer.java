@@ -1,50 +1,103 @@
-package com.cyecize.gatewayserver.api.server;
-
-import com.cyecize.gatewayserver.api.connection.ConnectionHandler;
-import com.cyecize.gatewayserver.api.options.Options;
-import com.cyecize.gatewayserver.api.pool.PoolService;
-import com.cyecize.gatewayserver.api.pool.Task;
-import com.cyecize.ioc.annotations.Service;
-import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
-
-import java.io.IOException;
-import java.net.ServerSocket;
-import java.net.Socket;
-
-@Service
-@Slf4j
-@RequiredArgsConstructor
-public class HttpServer implements Server {
-
-    private final Options options;
-
-    private final PoolService poolService;
-
-    private final ConnectionHandler connectionHandler;
-
-    @Override
-    public void start() {
-        final Thread thread = new Thread(() -> {
-            log.info("Try port {}.", this.options.getHttpPort());
-
-            try (final ServerSocket server = new ServerSocket(this.options.getHttpPort())) {
-                log.info("Start listening for HTTP connections!");
-
-                while (true) {
-                    final Socket client = server.accept();
-                    client.setSoTimeout(this.options.getClientSoTimeoutMillis());
-                    final Connection connection = new Connection(client, false);
-
-                    this.poolService.submit(new Task(
-                            String.format("Client Connection Task, addr: %s", connection.getHostOrIp()),
-                            () -> this.connectionHandler.process(connection)
-                    ));
-                }
-            } catch (IOException e) {
-                log.error("Error while initializing server socket.", e);
-            }
-        }, "HTTP Server Thread");
-        thread.start();
-    }
-}
+package com.cyecize.gatewayserver.api.server;
+
+import com.cyecize.gatewayserver.api.buffer.BufferPool;
+import com.cyecize.gatewayserver.api.connection.ConnectionHandler;
+import com.cyecize.gatewayserver.api.dns.ClientNameService;
+import com.cyecize.gatewayserver.api.metrics.MetricsService;
+import com.cyecize.gatewayserver.api.nio.EventLoopGroup;
+import com.cyecize.gatewayserver.api.options.Options;
+import com.cyecize.gatewayserver.api.pool.PoolService;
+import com.cyecize.gatewayserver.api.pool.Task;
+import com.cyecize.gatewayserver.api.ratelimit.RateLimitService;
+import com.cyecize.ioc.annotations.Service;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class HttpServer implements Server {
+
+    private final Options options;
+
+    private final PoolService poolService;
+
+    private final ConnectionHandler connectionHandler;
+
+    private final EventLoopGroup eventLoopGroup;
+
+    private final ClientNameService clientNameService;
+
+    private final MetricsService metricsService;
+
+    private final RateLimitService rateLimitService;
+
+    private final BufferPool bufferPool;
+
+    @Override
+    public void start() {
+        if (this.options.getServerEngine() == ServerEngine.EVENT_LOOP) {
+            this.startEventLoop();
+            return;
+        }
+
+        final Thread thread = new Thread(() -> {
+            log.info("Try port {}.", this.options.getHttpPort());
+
+            // Opened as a channel, so that bodies can be relayed between channels of client and server sockets.
+            try (final ServerSocketChannel server = ServerSocketChannel.open()) {
+                server.bind(new InetSocketAddress(this.options.getHttpPort()));
+                log.info("Start listening for HTTP connections!");
+
+                while (true) {
+                    final Socket client = server.accept().socket();
+                    client.setSoTimeout(this.options.getClientSoTimeoutMillis());
+                    this.metricsService.onConnectionAccepted(false);
+                    final Connection connection = new Connection(client, false, this.bufferPool);
+                    connection.setClientName(this.clientNameService.getCachedName(client.getInetAddress()));
+
+                    if (!this.rateLimitService.tryAcquire(client.getInetAddress())) {
+                        this.connectionHandler.throttle(connection);
+                        continue;
+                    }
+
+                    final boolean isAdmitted = this.poolService.trySubmit(new Task(
+                            String.format("Client Connection Task, addr: %s", connection.getHostOrIp()),
+                            () -> {
+                                try {
+                                    this.connectionHandler.process(connection);
+                                } finally {
+                                    this.rateLimitService.release(client.getInetAddress());
+                                }
+                            }
+                    ));
+                    if (!isAdmitted) {
+                        this.rateLimitService.release(client.getInetAddress());
+                        this.connectionHandler.reject(connection);
+                    }
+                }
+            } catch (IOException e) {
+                log.error("Error while initializing server socket.", e);
+            }
+        }, "HTTP Server Thread");
+        thread.start();
+    }
+
+    private void startEventLoop() {
+        log.info("Try port {}.", this.options.getHttpPort());
+
+        try {
+            this.eventLoopGroup.listen(this.options.getHttpPort(), false);
+            log.info("Start listening for HTTP connections on {} event loop threads!",
+                    this.eventLoopGroup.getEventLoopCount()
+            );
+        } catch (IOException e) {
+            log.error("Error while initializing server socket channel.", e);
+        }
+    }
+}
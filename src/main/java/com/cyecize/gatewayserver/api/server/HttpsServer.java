@@ -1,64 +1,123 @@
-package com.cyecize.gatewayserver.api.server;
-
-import com.cyecize.gatewayserver.api.connection.ConnectionHandler;
-import com.cyecize.gatewayserver.api.options.Options;
-import com.cyecize.gatewayserver.api.pool.PoolService;
-import com.cyecize.gatewayserver.api.pool.Task;
-import com.cyecize.ioc.annotations.Nullable;
-import com.cyecize.ioc.annotations.Service;
-import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
-
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.SSLServerSocket;
-import javax.net.ssl.SSLServerSocketFactory;
-import javax.net.ssl.SSLSocket;
-import java.io.IOException;
-import java.net.ServerSocket;
-
-@Service
-@Slf4j
-@RequiredArgsConstructor
-public class HttpsServer implements Server {
-
-    private final Options options;
-
-    @Nullable
-    private final SSLContext sslContext;
-
-    private final PoolService poolService;
-
-    private final ConnectionHandler connectionHandler;
-
-    @Override
-    public void start() {
-        if (!this.options.isStartHttps()) {
-            return;
-        }
-
-        final Thread thread = new Thread(() -> {
-            log.info("Try port {}.", this.options.getHttpsPort());
-
-            final SSLServerSocketFactory factory = this.sslContext.getServerSocketFactory();
-            try (ServerSocket listener = factory.createServerSocket(this.options.getHttpsPort())) {
-                final SSLServerSocket sslListener = (SSLServerSocket) listener;
-                sslListener.setNeedClientAuth(false);
-
-                log.info("Start listening for HTTPS connections!");
-                while (true) {
-                    final SSLSocket client = (SSLSocket) sslListener.accept();
-                    client.setSoTimeout(this.options.getClientSoTimeoutMillis());
-
-                    this.poolService.submit(new Task(
-                            "Client Connection (SSL) Task",
-                            () -> this.connectionHandler.process(new Connection(client, true))
-                    ));
-                }
-
-            } catch (IOException ex) {
-                log.error("Error while initializing SSL server socket.", ex);
-            }
-        }, "HTTP Server Thread");
-        thread.start();
-    }
-}
+package com.cyecize.gatewayserver.api.server;
+
+import com.cyecize.gatewayserver.api.buffer.BufferPool;
+import com.cyecize.gatewayserver.api.connection.ConnectionHandler;
+import com.cyecize.gatewayserver.api.dns.ClientNameService;
+import com.cyecize.gatewayserver.api.http2.Http2Connection;
+import com.cyecize.gatewayserver.api.metrics.MetricsService;
+import com.cyecize.gatewayserver.api.nio.EventLoopGroup;
+import com.cyecize.gatewayserver.api.options.Options;
+import com.cyecize.gatewayserver.api.pool.PoolService;
+import com.cyecize.gatewayserver.api.pool.Task;
+import com.cyecize.gatewayserver.api.ratelimit.RateLimitService;
+import com.cyecize.ioc.annotations.Nullable;
+import com.cyecize.ioc.annotations.Service;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLServerSocketFactory;
+import javax.net.ssl.SSLSocket;
+import java.io.IOException;
+import java.net.ServerSocket;
+
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class HttpsServer implements Server {
+
+    private final Options options;
+
+    @Nullable
+    private final SSLContext sslContext;
+
+    private final PoolService poolService;
+
+    private final ConnectionHandler connectionHandler;
+
+    private final EventLoopGroup eventLoopGroup;
+
+    private final ClientNameService clientNameService;
+
+    private final MetricsService metricsService;
+
+    private final RateLimitService rateLimitService;
+
+    private final BufferPool bufferPool;
+
+    @Override
+    public void start() {
+        if (!this.options.isStartHttps()) {
+            return;
+        }
+
+        if (this.options.getServerEngine() == ServerEngine.EVENT_LOOP) {
+            this.startEventLoop();
+            return;
+        }
+
+        final Thread thread = new Thread(() -> {
+            log.info("Try port {}.", this.options.getHttpsPort());
+
+            final SSLServerSocketFactory factory = this.sslContext.getServerSocketFactory();
+            try (ServerSocket listener = factory.createServerSocket(this.options.getHttpsPort())) {
+                final SSLServerSocket sslListener = (SSLServerSocket) listener;
+                sslListener.setNeedClientAuth(false);
+                if (this.options.getHttp2Options().getEnabled()) {
+                    final SSLParameters sslParameters = sslListener.getSSLParameters();
+                    sslParameters.setApplicationProtocols(new String[]{Http2Connection.PROTOCOL, "http/1.1"});
+                    sslListener.setSSLParameters(sslParameters);
+                }
+
+                log.info("Start listening for HTTPS connections!");
+                while (true) {
+                    final SSLSocket client = (SSLSocket) sslListener.accept();
+                    client.setSoTimeout(this.options.getClientSoTimeoutMillis());
+                    this.metricsService.onConnectionAccepted(true);
+
+                    final Connection connection = new Connection(client, true, this.bufferPool);
+                    connection.setClientName(this.clientNameService.getCachedName(client.getInetAddress()));
+
+                    if (!this.rateLimitService.tryAcquire(client.getInetAddress())) {
+                        this.connectionHandler.throttle(connection);
+                        continue;
+                    }
+
+                    final boolean isAdmitted = this.poolService.trySubmit(new Task(
+                            "Client Connection (SSL) Task",
+                            () -> {
+                                try {
+                                    this.connectionHandler.process(connection);
+                                } finally {
+                                    this.rateLimitService.release(client.getInetAddress());
+                                }
+                            }
+                    ));
+                    if (!isAdmitted) {
+                        this.rateLimitService.release(client.getInetAddress());
+                        this.connectionHandler.reject(connection);
+                    }
+                }
+
+            } catch (IOException ex) {
+                log.error("Error while initializing SSL server socket.", ex);
+            }
+        }, "HTTP Server Thread");
+        thread.start();
+    }
+
+    private void startEventLoop() {
+        log.info("Try port {}.", this.options.getHttpsPort());
+
+        try {
+            this.eventLoopGroup.listen(this.options.getHttpsPort(), true);
+            log.info("Start listening for HTTPS connections on {} event loop threads!",
+                    this.eventLoopGroup.getEventLoopCount()
+            );
+        } catch (IOException ex) {
+            log.error("Error while initializing SSL server socket channel.", ex);
+        }
+    }
+}
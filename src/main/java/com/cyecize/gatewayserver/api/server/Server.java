@@ -1,5 +1,5 @@
-package com.cyecize.gatewayserver.api.server;
-
-public interface Server {
-    void start();
-}
+package com.cyecize.gatewayserver.api.server;
+
+public interface Server {
+    void start();
+}
@@ -0,0 +1,16 @@
+package com.cyecize.gatewayserver.api.server;
+
+/**
+ * I/O model used by {@link HttpServer} and {@link HttpsServer}.
+ */
+public enum ServerEngine {
+    /**
+     * Blocking accept loop, every connection is served by one or more pool threads.
+     */
+    BLOCKING,
+
+    /**
+     * Non-blocking selector threads that multiplex accept, TLS, request head reading and body relay.
+     */
+    EVENT_LOOP
+}
@@ -0,0 +1,13 @@
+package com.cyecize.gatewayserver.api.timer;
+
+/**
+ * Handle of a task scheduled in {@link TimerService}.
+ */
+public interface Timeout {
+    /**
+     * @return false if the task has already run or was already cancelled.
+     */
+    boolean cancel();
+
+    boolean isCancelled();
+}
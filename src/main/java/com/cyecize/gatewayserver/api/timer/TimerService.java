@@ -0,0 +1,13 @@
+package com.cyecize.gatewayserver.api.timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared timer for deadlines and periodic checks. Tasks run on a single timer thread and must be short,
+ * like closing a socket, handing work to another thread or writing a log line.
+ */
+public interface TimerService {
+    Timeout schedule(Runnable task, long delay, TimeUnit unit);
+
+    Timeout scheduleAtFixedRate(Runnable task, long period, TimeUnit unit);
+}
@@ -0,0 +1,280 @@
+package com.cyecize.gatewayserver.api.timer;
+
+import com.cyecize.gatewayserver.constants.General;
+import com.cyecize.ioc.annotations.Service;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hashed timing wheel, see "Hashed and Hierarchical Timing Wheels" by Varghese and Lauck.
+ * <p>
+ * Scheduling and cancelling only add to a queue, the timer thread moves timeouts into the bucket of their tick
+ * and on every tick expires the timeouts of a single bucket. Timeouts further away than one turn of the wheel
+ * wait in their bucket for the remaining rounds. Precision is one tick, which is plenty for connection deadlines.
+ */
+@Slf4j
+@Service
+public class TimerServiceImpl implements TimerService {
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    private final long tickNanos = TimeUnit.MILLISECONDS.toNanos(General.TIMER_TICK_MILLIS);
+
+    private final Bucket[] wheel = new Bucket[General.TIMER_WHEEL_SIZE];
+
+    private final int mask = General.TIMER_WHEEL_SIZE - 1;
+
+    private final Queue<WheelTimeout> pendingTimeouts = new ConcurrentLinkedQueue<>();
+
+    private final Queue<WheelTimeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+
+    private final long startTime = System.nanoTime();
+
+    private long tick;
+
+    public TimerServiceImpl() {
+        for (int i = 0; i < this.wheel.length; i++) {
+            this.wheel[i] = new Bucket();
+        }
+
+        final Thread thread = new Thread(this::run, "Timer Thread");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        final long deadline = System.nanoTime() + unit.toNanos(delay) - this.startTime;
+        final WheelTimeout timeout = new WheelTimeout(task, deadline);
+        this.pendingTimeouts.add(timeout);
+
+        return timeout;
+    }
+
+    @Override
+    public Timeout scheduleAtFixedRate(Runnable task, long period, TimeUnit unit) {
+        final RepeatingTimeout repeatingTimeout = new RepeatingTimeout(task, period, unit);
+        repeatingTimeout.scheduleNext();
+
+        return repeatingTimeout;
+    }
+
+    private void run() {
+        while (true) {
+            this.waitForNextTick();
+
+            this.removeCancelled();
+            this.transferPending();
+            this.wheel[(int) (this.tick & this.mask)].expire();
+
+            this.tick++;
+        }
+    }
+
+    private void waitForNextTick() {
+        final long deadline = (this.tick + 1) * this.tickNanos;
+        while (true) {
+            final long sleepNanos = deadline - (System.nanoTime() - this.startTime);
+            if (sleepNanos <= 0) {
+                return;
+            }
+
+            try {
+                Thread.sleep(TimeUnit.NANOSECONDS.toMillis(sleepNanos) + 1);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void removeCancelled() {
+        WheelTimeout timeout;
+        while ((timeout = this.cancelledTimeouts.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void transferPending() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            final WheelTimeout timeout = this.pendingTimeouts.poll();
+            if (timeout == null) {
+                return;
+            }
+
+            if (timeout.isCancelled()) {
+                continue;
+            }
+
+            // Timeouts that are already due go to the current tick.
+            final long expirationTick = Math.max(timeout.deadline / this.tickNanos, this.tick);
+            timeout.remainingRounds = (expirationTick - this.tick) / this.wheel.length;
+            this.wheel[(int) (expirationTick & this.mask)].add(timeout);
+        }
+    }
+
+    private class WheelTimeout implements Timeout {
+        private static final int STATE_SCHEDULED = 0;
+        private static final int STATE_CANCELLED = 1;
+        private static final int STATE_EXPIRED = 2;
+
+        private final Runnable task;
+
+        private final long deadline;
+
+        private final AtomicInteger state = new AtomicInteger(STATE_SCHEDULED);
+
+        // Following fields are only accessed by the timer thread.
+        private long remainingRounds;
+
+        private Bucket bucket;
+
+        private WheelTimeout previous;
+
+        private WheelTimeout next;
+
+        WheelTimeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (!this.state.compareAndSet(STATE_SCHEDULED, STATE_CANCELLED)) {
+                return false;
+            }
+
+            cancelledTimeouts.add(this);
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return this.state.get() == STATE_CANCELLED;
+        }
+
+        void expire() {
+            if (!this.state.compareAndSet(STATE_SCHEDULED, STATE_EXPIRED)) {
+                return;
+            }
+
+            try {
+                this.task.run();
+            } catch (Throwable ex) {
+                log.warn("Error while running timer task.", ex);
+            }
+        }
+    }
+
+    /**
+     * Doubly linked, so that cancelled timeouts are removed in constant time.
+     */
+    private static class Bucket {
+        private WheelTimeout head;
+
+        private WheelTimeout tail;
+
+        void add(WheelTimeout timeout) {
+            timeout.bucket = this;
+            if (this.head == null) {
+                this.head = timeout;
+            } else {
+                this.tail.next = timeout;
+                timeout.previous = this.tail;
+            }
+            this.tail = timeout;
+        }
+
+        void expire() {
+            WheelTimeout timeout = this.head;
+            while (timeout != null) {
+                final WheelTimeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    this.remove(timeout);
+                    timeout.expire();
+                } else if (timeout.isCancelled()) {
+                    this.remove(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        void remove(WheelTimeout timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+
+            if (timeout.previous != null) {
+                timeout.previous.next = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.previous = timeout.previous;
+            }
+            if (timeout == this.head) {
+                this.head = timeout.next;
+            }
+            if (timeout == this.tail) {
+                this.tail = timeout.previous;
+            }
+
+            timeout.previous = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+
+    private class RepeatingTimeout implements Timeout {
+        private final Runnable task;
+
+        private final long period;
+
+        private final TimeUnit unit;
+
+        private volatile Timeout current;
+
+        private volatile boolean isCancelled;
+
+        RepeatingTimeout(Runnable task, long period, TimeUnit unit) {
+            this.task = task;
+            this.period = period;
+            this.unit = unit;
+        }
+
+        void scheduleNext() {
+            this.current = schedule(() -> {
+                if (this.isCancelled) {
+                    return;
+                }
+
+                try {
+                    this.task.run();
+                } finally {
+                    this.scheduleNext();
+                }
+            }, this.period, this.unit);
+        }
+
+        @Override
+        public boolean cancel() {
+            if (this.isCancelled) {
+                return false;
+            }
+
+            this.isCancelled = true;
+            this.current.cancel();
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return this.isCancelled;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.cyecize.gatewayserver.api.upstream;
+
+import com.cyecize.gatewayserver.api.buffer.BufferPool;
+import com.cyecize.gatewayserver.api.connection.DestinationDto;
+import com.cyecize.gatewayserver.api.http.HttpHeadReader;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.SneakyThrows;
+
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Connection to a destination server, owned by {@link UpstreamConnectionPool}.
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PACKAGE)
+public class PooledSocket {
+    private final Socket socket;
+
+    private final DestinationDto destination;
+
+    @Getter(AccessLevel.NONE)
+    private final UpstreamConnectionPoolImpl pool;
+
+    @Getter(AccessLevel.NONE)
+    private final BufferPool bufferPool;
+
+    /**
+     * True if the connection was served before and was taken from the idle ones.
+     */
+    @Setter(AccessLevel.PACKAGE)
+    private boolean isReused;
+
+    @Setter(AccessLevel.PACKAGE)
+    private long idleSince;
+
+    @Getter(AccessLevel.NONE)
+    private final AtomicBoolean isDiscarded = new AtomicBoolean();
+
+    /**
+     * Lives as long as the socket, since responses to pipelined requests may be read together.
+     */
+    @Getter(AccessLevel.NONE)
+    private HttpHeadReader headReader;
+
+    @SneakyThrows
+    public HttpHeadReader getHeadReader() {
+        if (this.headReader == null) {
+            this.headReader = new HttpHeadReader(this.socket.getInputStream(), this.bufferPool);
+        }
+
+        return this.headReader;
+    }
+
+    /**
+     * Hands back a connection whose last response was read completely, so that it can be reused.
+     */
+    public void release() {
+        this.pool.release(this);
+    }
+
+    /**
+     * Closes a connection that cannot be reused. Safe to call more than once.
+     * The buffer of the reader only goes back to the pool when called by the thread that reads.
+     */
+    public void discard() {
+        if (this.headReader != null) {
+            this.headReader.release();
+        }
+        this.pool.discard(this);
+    }
+
+    /**
+     * @return false if the connection was already discarded.
+     */
+    boolean markDiscarded() {
+        return this.isDiscarded.compareAndSet(false, true);
+    }
+}
@@ -0,0 +1,23 @@
+package com.cyecize.gatewayserver.api.upstream;
+
+import com.cyecize.gatewayserver.api.connection.DestinationDto;
+
+import java.io.IOException;
+
+public interface UpstreamConnectionPool {
+    /**
+     * Connections are handed back through {@link PooledSocket#release()} or {@link PooledSocket#discard()}.
+     *
+     * @return an idle connection to the destination or a newly opened one.
+     */
+    PooledSocket borrow(DestinationDto destination) throws IOException;
+
+    /**
+     * @return a newly opened connection, bypassing the idle ones.
+     */
+    PooledSocket connect(DestinationDto destination) throws IOException;
+
+    long getHitCount();
+
+    long getMissCount();
+}
@@ -0,0 +1,241 @@
+package com.cyecize.gatewayserver.api.upstream;
+
+import com.cyecize.gatewayserver.api.buffer.BufferPool;
+import com.cyecize.gatewayserver.api.connection.DestinationDto;
+import com.cyecize.gatewayserver.api.dns.DestinationResolverService;
+import com.cyecize.gatewayserver.api.health.HealthCheckService;
+import com.cyecize.gatewayserver.api.metrics.MetricsService;
+import com.cyecize.gatewayserver.api.options.Options;
+import com.cyecize.gatewayserver.api.options.UpstreamPoolOptions;
+import com.cyecize.gatewayserver.api.timer.TimerService;
+import com.cyecize.gatewayserver.constants.General;
+import com.cyecize.ioc.annotations.Service;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Keeps idle keep-alive connections to destination servers so that requests of different clients skip the TCP
+ * handshake. Idle connections are reused most recently used first, since those are the least likely to have
+ * been closed by the server.
+ */
+@Slf4j
+@Service
+public class UpstreamConnectionPoolImpl implements UpstreamConnectionPool {
+
+    private final UpstreamPoolOptions poolOptions;
+
+    private final HealthCheckService healthCheckService;
+
+    private final DestinationResolverService destinationResolverService;
+
+    private final MetricsService metricsService;
+
+    private final BufferPool bufferPool;
+
+    private final Map<DestinationDto, DestinationPool> pools = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    public UpstreamConnectionPoolImpl(Options options,
+                                      TimerService timerService,
+                                      HealthCheckService healthCheckService,
+                                      DestinationResolverService destinationResolverService,
+                                      MetricsService metricsService,
+                                      BufferPool bufferPool) {
+        this.poolOptions = options.getUpstreamPoolOptions();
+        this.healthCheckService = healthCheckService;
+        this.destinationResolverService = destinationResolverService;
+        this.metricsService = metricsService;
+        this.bufferPool = bufferPool;
+
+        // Closing idle sockets is quick enough for the timer thread.
+        final long interval = Math.max(this.poolOptions.getIdleTimeoutMillis() / 2, General.TIMER_TICK_MILLIS);
+        timerService.scheduleAtFixedRate(this::evictExpired, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public PooledSocket borrow(DestinationDto destination) throws IOException {
+        final DestinationPool pool = this.getPool(destination);
+
+        PooledSocket pooledSocket;
+        while ((pooledSocket = pool.pollIdle()) != null) {
+            if (this.isExpired(pooledSocket, System.currentTimeMillis()) || !this.isUsable(pooledSocket)) {
+                this.discard(pooledSocket);
+                continue;
+            }
+
+            this.hits.increment();
+            pooledSocket.setReused(true);
+            return pooledSocket;
+        }
+
+        this.misses.increment();
+        return this.connect(destination);
+    }
+
+    @Override
+    public PooledSocket connect(DestinationDto destination) throws IOException {
+        final DestinationPool pool = this.getPool(destination);
+        pool.acquirePermit(destination, this.poolOptions.getAcquireTimeoutMillis());
+
+        try {
+            final long startNanos = System.nanoTime();
+            final SocketChannel channel = SocketChannel.open(this.destinationResolverService.resolve(destination));
+            this.metricsService.recordUpstreamConnect(System.nanoTime() - startNanos);
+
+            return new PooledSocket(channel.socket(), destination, this, this.bufferPool);
+        } catch (IOException | RuntimeException ex) {
+            pool.releasePermit();
+            this.healthCheckService.reportFailure(destination);
+            throw ex;
+        }
+    }
+
+    void release(PooledSocket pooledSocket) {
+        final DestinationPool pool = this.getPool(pooledSocket.getDestination());
+
+        pooledSocket.setIdleSince(System.currentTimeMillis());
+
+        final boolean isPooled = !pooledSocket.getSocket().isClosed()
+                && pool.offerIdle(pooledSocket, this.poolOptions.getMaxIdlePerDestination());
+        if (!isPooled) {
+            this.discard(pooledSocket);
+        }
+    }
+
+    void discard(PooledSocket pooledSocket) {
+        if (!pooledSocket.markDiscarded()) {
+            return;
+        }
+
+        try {
+            pooledSocket.getSocket().close();
+        } catch (IOException ex) {
+            log.warn("Error occurred while closing upstream connection.", ex);
+        }
+
+        this.getPool(pooledSocket.getDestination()).releasePermit();
+    }
+
+    @Override
+    public long getHitCount() {
+        return this.hits.sum();
+    }
+
+    @Override
+    public long getMissCount() {
+        return this.misses.sum();
+    }
+
+    private DestinationPool getPool(DestinationDto destination) {
+        return this.pools.computeIfAbsent(
+                destination, d -> new DestinationPool(this.poolOptions.getMaxTotalPerDestination())
+        );
+    }
+
+    private boolean isExpired(PooledSocket pooledSocket, long now) {
+        return now - pooledSocket.getIdleSince() > this.poolOptions.getIdleTimeoutMillis();
+    }
+
+    /**
+     * Idle connection must have nothing to read. End of stream means that the server has closed it, while data
+     * means a response that nobody asked for.
+     */
+    private boolean isUsable(PooledSocket pooledSocket) {
+        if (!this.poolOptions.getValidateOnBorrow()) {
+            return true;
+        }
+
+        final SocketChannel channel = pooledSocket.getSocket().getChannel();
+        try {
+            channel.configureBlocking(false);
+            try {
+                return channel.read(ByteBuffer.allocate(1)) == 0;
+            } finally {
+                channel.configureBlocking(true);
+            }
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    private void evictExpired() {
+        final long now = System.currentTimeMillis();
+        for (DestinationPool pool : this.pools.values()) {
+            for (PooledSocket expired : pool.removeIdle(s -> this.isExpired(s, now))) {
+                this.discard(expired);
+            }
+        }
+    }
+
+    /**
+     * Idle connections and open connection permits of a single destination.
+     * Every open connection, idle or in use, holds a permit.
+     */
+    private static class DestinationPool {
+        private final Deque<PooledSocket> idleSockets = new ArrayDeque<>();
+
+        private final Semaphore permits;
+
+        DestinationPool(int maxTotal) {
+            this.permits = maxTotal > 0 ? new Semaphore(maxTotal) : null;
+        }
+
+        synchronized PooledSocket pollIdle() {
+            return this.idleSockets.pollFirst();
+        }
+
+        synchronized boolean offerIdle(PooledSocket pooledSocket, int maxIdle) {
+            if (this.idleSockets.size() >= maxIdle) {
+                return false;
+            }
+
+            this.idleSockets.addFirst(pooledSocket);
+            return true;
+        }
+
+        synchronized List<PooledSocket> removeIdle(Predicate<PooledSocket> predicate) {
+            final List<PooledSocket> removed = new ArrayList<>();
+            this.idleSockets.removeIf(s -> predicate.test(s) && removed.add(s));
+            return removed;
+        }
+
+        void acquirePermit(DestinationDto destination, int timeoutMillis) throws IOException {
+            if (this.permits == null) {
+                return;
+            }
+
+            try {
+                if (!this.permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                    throw new IOException(String.format(
+                            "All connections to %s:%d are in use.", destination.getHost(), destination.getPort()
+                    ));
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for upstream connection.", ex);
+            }
+        }
+
+        void releasePermit() {
+            if (this.permits != null) {
+                this.permits.release();
+            }
+        }
+    }
+}
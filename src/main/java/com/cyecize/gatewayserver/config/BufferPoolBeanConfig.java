@@ -0,0 +1,28 @@
+package com.cyecize.gatewayserver.config;
+
+import com.cyecize.gatewayserver.api.buffer.BufferPool;
+import com.cyecize.gatewayserver.api.options.BufferPoolOptions;
+import com.cyecize.gatewayserver.api.options.Options;
+import com.cyecize.ioc.annotations.Bean;
+import com.cyecize.ioc.annotations.Service;
+import lombok.RequiredArgsConstructor;
+
+@Service
+@RequiredArgsConstructor
+public class BufferPoolBeanConfig {
+
+    private final Options options;
+
+    /**
+     * Given to head readers and relays through the connections that services create.
+     */
+    @Bean
+    public BufferPool bufferPool() {
+        final BufferPoolOptions bufferPoolOptions = this.options.getBufferPoolOptions();
+        return new BufferPool(
+                bufferPoolOptions.getMaxMemoryBytes(),
+                bufferPoolOptions.getMaxIdleBytes(),
+                bufferPoolOptions.getThreadCacheSize()
+        );
+    }
+}
@@ -1,34 +1,244 @@
-package com.cyecize.gatewayserver.constants;
-
-import java.net.URLDecoder;
-import java.nio.charset.StandardCharsets;
-
-public class General {
-    private final static String START_UP_PACKAGE_PATH = General.class.getName()
-            .replace(General.class.getSimpleName(), "")
-            .replaceAll("\\.", "/");
-
-    public static final String WORKING_DIRECTORY = URLDecoder.decode(General.class.getResource("").toString()
-            .replace("file:/", "/")
-            .replace(START_UP_PACKAGE_PATH, ""), StandardCharsets.UTF_8);
-
-    public static final String DEFAULT_OPTIONS_FILE_NAME = "options.json";
-
-    public static final String ENV_VAR_OPTIONS_FILE_NAME = "optionsFile";
-
-    public static final String DEFAULT_KEYSTORE_FILE_NAME = "self-signed.keystore";
-
-    public static final int DEFAULT_HTTP_PORT = 80;
-
-    public static final int DEFAULT_HTTPS_PORT = 443;
-
-    public static final int DEFAULT_CLIENT_SO_TIMEOUT_MILLIS = 2000;
-
-    public static final int DEFAULT_CONNECTION_TIMEOUT_SECONDS = 600;
-
-    public static final int READ_BUFFER_SIZE = 8196;
-
-    public static final int DEFAULT_THREAD_POOL_SIZE = 20;
-
-    public static final int MIN_THREAD_POOL_SIZE = 3;
-}
+package com.cyecize.gatewayserver.constants;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+public class General {
+    private final static String START_UP_PACKAGE_PATH = General.class.getName()
+            .replace(General.class.getSimpleName(), "")
+            .replaceAll("\\.", "/");
+
+    public static final String WORKING_DIRECTORY = URLDecoder.decode(General.class.getResource("").toString()
+            .replace("file:/", "/")
+            .replace(START_UP_PACKAGE_PATH, ""), StandardCharsets.UTF_8);
+
+    public static final String DEFAULT_OPTIONS_FILE_NAME = "options.json";
+
+    public static final String ENV_VAR_OPTIONS_FILE_NAME = "optionsFile";
+
+    public static final String DEFAULT_KEYSTORE_FILE_NAME = "self-signed.keystore";
+
+    public static final int DEFAULT_HTTP_PORT = 80;
+
+    public static final int DEFAULT_HTTPS_PORT = 443;
+
+    public static final int DEFAULT_CLIENT_SO_TIMEOUT_MILLIS = 2000;
+
+    public static final int DEFAULT_CONNECTION_TIMEOUT_SECONDS = 600;
+
+    public static final int READ_BUFFER_SIZE = 8192;
+
+    public static final int DEFAULT_THREAD_POOL_SIZE = 20;
+
+    public static final int MIN_THREAD_POOL_SIZE = 3;
+
+    public static final int DEFAULT_EVENT_LOOP_THREADS = Runtime.getRuntime().availableProcessors();
+
+    public static final int MAX_HEAD_SIZE = 64 * 1024;
+
+    public static final int MAX_HEAD_LINES = 128;
+
+    public static final int DEFAULT_SSL_HANDSHAKE_THREADS = Runtime.getRuntime().availableProcessors();
+
+    public static final int SSL_HANDSHAKE_QUEUE_SIZE = 1024;
+
+    public static final int MAX_POOLED_SSL_BUFFERS = 1024;
+
+    public static final int TIMER_TICK_MILLIS = 100;
+
+    /**
+     * Must be a power of two. With 100 millis ticks a turn of the wheel takes about 51 seconds.
+     */
+    public static final int TIMER_WHEEL_SIZE = 512;
+
+    public static final int DEFAULT_UPSTREAM_MAX_IDLE_PER_DESTINATION = 16;
+
+    public static final int DEFAULT_UPSTREAM_MAX_TOTAL_PER_DESTINATION = 256;
+
+    /**
+     * Below the 5 second keep-alive timeout that many servers use, so that idle connections are dropped
+     * by the gateway before the server closes them.
+     */
+    public static final int DEFAULT_UPSTREAM_IDLE_TIMEOUT_MILLIS = 4000;
+
+    public static final int DEFAULT_UPSTREAM_ACQUIRE_TIMEOUT_MILLIS = 5000;
+
+    /**
+     * Not every server handles pipelined requests well, so by default requests are sent one at a time.
+     */
+    public static final int DEFAULT_UPSTREAM_PIPELINING_DEPTH = 1;
+
+    /**
+     * Each latency sample moves the average by 1 / 2^shift of the difference, i.e. 1/8.
+     */
+    public static final int LATENCY_EWMA_SHIFT = 3;
+
+    public static final int DEFAULT_HEALTH_CHECK_INTERVAL_MILLIS = 5000;
+
+    public static final int DEFAULT_HEALTH_CHECK_TIMEOUT_MILLIS = 1000;
+
+    public static final String DEFAULT_HEALTH_CHECK_HTTP_PATH = "/";
+
+    public static final int DEFAULT_HEALTHY_THRESHOLD = 2;
+
+    public static final int DEFAULT_UNHEALTHY_THRESHOLD = 3;
+
+    public static final int DEFAULT_MAX_CONSECUTIVE_FAILURES = 5;
+
+    public static final int DEFAULT_EJECTION_MILLIS = 10000;
+
+    /**
+     * Editors often save a file in several writes, the reload waits until there are no changes for this long.
+     */
+    public static final int OPTIONS_RELOAD_DELAY_MILLIS = 500;
+
+    /**
+     * Long enough that busy clients are looked up rarely, short enough that changed PTR records show up.
+     */
+    public static final int DEFAULT_CLIENT_NAME_TTL_MILLIS = 300000;
+
+    public static final int MAX_CACHED_CLIENT_NAMES = 10000;
+
+    public static final int CLIENT_NAME_LOOKUP_QUEUE_SIZE = 256;
+
+    /**
+     * Same as the default TTL of the JVM address cache.
+     */
+    public static final int DEFAULT_DESTINATION_DNS_TTL_MILLIS = 30000;
+
+    public static final int DNS_REFRESH_CHECK_MILLIS = 1000;
+
+    public static final int DNS_RETRY_MILLIS = 5000;
+
+    public static final int DEFAULT_METRICS_PORT = 9180;
+
+    public static final String DEFAULT_METRICS_BIND_ADDRESS = "127.0.0.1";
+
+    public static final long DEFAULT_RESPONSE_CACHE_MAX_SIZE_BYTES = 64L * 1024 * 1024;
+
+    /**
+     * Larger responses are relayed as they arrive instead of being read whole into the cache.
+     */
+    public static final int DEFAULT_RESPONSE_CACHE_MAX_ENTRY_SIZE_BYTES = 1024 * 1024;
+
+    /**
+     * How long concurrent requests for a resource wait for the one that fills the cache, before going to the
+     * destination themselves.
+     */
+    public static final int RESPONSE_CACHE_FILL_WAIT_MILLIS = 5000;
+
+    public static final List<String> DEFAULT_COMPRESSION_MIME_TYPES = List.of(
+            "text/*",
+            "application/javascript",
+            "application/json",
+            "application/xml",
+            "image/svg+xml"
+    );
+
+    /**
+     * Below about a packet the compressed response is hardly any faster to send.
+     */
+    public static final int DEFAULT_COMPRESSION_MIN_SIZE_BYTES = 1024;
+
+    public static final int DEFAULT_COMPRESSION_LEVEL = 6;
+
+    public static final long DEFAULT_COMPRESSION_CACHE_MAX_SIZE_BYTES = 16L * 1024 * 1024;
+
+    /**
+     * Browsers rarely have more than this many requests in flight towards one origin.
+     */
+    public static final int DEFAULT_HTTP2_MAX_CONCURRENT_STREAMS = 100;
+
+    public static final int DEFAULT_HTTP2_INITIAL_WINDOW_SIZE_BYTES = 256 * 1024;
+
+    /**
+     * Request bodies are bounded by the windows of their streams, so the connection window only has to be large
+     * enough not to throttle uploads on its own.
+     */
+    public static final int HTTP2_CONNECTION_WINDOW_SIZE_BYTES = 16 * 1024 * 1024;
+
+    /**
+     * Browsers reset streams when pages are left, but hardly this many in a short while.
+     */
+    public static final int HTTP2_MAX_RESETS_PER_WINDOW = 200;
+
+    public static final long HTTP2_RESET_WINDOW_MILLIS = 30_000;
+
+    /**
+     * Beyond this many connections waiting for a thread, new ones are shed regardless of how long they waited.
+     */
+    public static final int DEFAULT_ADMISSION_MAX_QUEUED_CONNECTIONS = 1024;
+
+    /**
+     * Waits above the target are tolerated for one interval, so that short bursts of connections are queued.
+     */
+    public static final int DEFAULT_ADMISSION_TARGET_QUEUE_DELAY_MILLIS = 50;
+
+    public static final int DEFAULT_ADMISSION_INTERVAL_MILLIS = 500;
+
+    public static final int DEFAULT_ADMISSION_RETRY_AFTER_SECONDS = 1;
+
+    public static final double DEFAULT_RATE_LIMIT_CONNECTIONS_PER_SECOND = 20;
+
+    public static final int DEFAULT_RATE_LIMIT_BURST = 50;
+
+    /**
+     * Browsers open about six connections per origin, a client behind a NAT may stand for many of them.
+     */
+    public static final int DEFAULT_RATE_LIMIT_MAX_CONCURRENT_CONNECTIONS = 64;
+
+    /**
+     * About 3 MB of buckets, clients that are forgotten start over with a full bucket.
+     */
+    public static final int DEFAULT_RATE_LIMIT_TABLE_SIZE = 65536;
+
+    public static final int DEFAULT_RATE_LIMIT_RETRY_AFTER_SECONDS = 1;
+
+    /**
+     * Locks of the rate limit table, enough for accept threads and workers to rarely wait for each other.
+     */
+    public static final int RATE_LIMIT_STRIPES = 64;
+
+    public static final String DEFAULT_ACCESS_LOG_FILE_NAME = "logs/access.log";
+
+    public static final long DEFAULT_ACCESS_LOG_MAX_FILE_SIZE_BYTES = 64L * 1024 * 1024;
+
+    public static final int DEFAULT_ACCESS_LOG_MAX_FILES = 5;
+
+    /**
+     * About a second of entries at a high request rate, the slots are allocated once at startup.
+     */
+    public static final int DEFAULT_ACCESS_LOG_BUFFER_SIZE = 16384;
+
+    /**
+     * How long the access log writer sleeps when it has nothing to write, entries wait at most this long.
+     */
+    public static final long ACCESS_LOG_IDLE_PARK_NANOS = 5_000_000;
+
+    /**
+     * How long a request thread sleeps between attempts when the access log buffer is full and it has to wait.
+     */
+    public static final long ACCESS_LOG_FULL_PARK_NANOS = 100_000;
+
+    /**
+     * Smallest and largest pooled buffer, the largest fits a head of the maximum size with the bytes read after it.
+     */
+    public static final int BUFFER_POOL_MIN_SIZE = 4 * 1024;
+
+    public static final int BUFFER_POOL_MAX_SIZE = 128 * 1024;
+
+    public static final long DEFAULT_BUFFER_POOL_MAX_MEMORY_BYTES = 256L * 1024 * 1024;
+
+    public static final long DEFAULT_BUFFER_POOL_MAX_IDLE_BYTES = 32L * 1024 * 1024;
+
+    /**
+     * Buffers of each size class that a thread keeps for itself, enough for a relay and the heads of both sides.
+     */
+    public static final int DEFAULT_BUFFER_POOL_THREAD_CACHE_SIZE = 4;
+
+    /**
+     * Larger responses with validators are compressed while they are relayed, like the ones without.
+     */
+    public static final int MAX_PRECOMPRESSED_BODY_SIZE = 1024 * 1024;
+}
@@ -1,13 +1,13 @@
-package com.cyecize.gatewayserver.error;
-
-import java.io.IOException;
-
-public class CannotParseRequestException extends IOException {
-    public CannotParseRequestException(String message) {
-        super(message);
-    }
-
-    public CannotParseRequestException(String message, Throwable cause) {
-        super(message, cause);
-    }
-}
+package com.cyecize.gatewayserver.error;
+
+import java.io.IOException;
+
+public class CannotParseRequestException extends IOException {
+    public CannotParseRequestException(String message) {
+        super(message);
+    }
+
+    public CannotParseRequestException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -1,7 +1,7 @@
-package com.cyecize.gatewayserver.error;
-
-import java.io.IOException;
-
-public class EmptyRequestException extends IOException {
-
-}
+package com.cyecize.gatewayserver.error;
+
+import java.io.IOException;
+
+public class EmptyRequestException extends IOException {
+
+}
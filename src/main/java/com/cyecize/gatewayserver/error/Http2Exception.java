@@ -0,0 +1,38 @@
+package com.cyecize.gatewayserver.error;
+
+import com.cyecize.gatewayserver.api.http2.Http2ErrorCode;
+
+import java.io.IOException;
+
+/**
+ * Violation of the HTTP/2 protocol. Errors of stream 0 end the whole connection, others only their stream.
+ */
+public class Http2Exception extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final int streamId;
+
+    private final Http2ErrorCode errorCode;
+
+    public Http2Exception(Http2ErrorCode errorCode, String message) {
+        this(0, errorCode, message);
+    }
+
+    public Http2Exception(int streamId, Http2ErrorCode errorCode, String message) {
+        super(message);
+        this.streamId = streamId;
+        this.errorCode = errorCode;
+    }
+
+    public int getStreamId() {
+        return this.streamId;
+    }
+
+    public Http2ErrorCode getErrorCode() {
+        return this.errorCode;
+    }
+
+    public boolean isConnectionError() {
+        return this.streamId == 0;
+    }
+}
@@ -0,0 +1,14 @@
+package com.cyecize.gatewayserver.error;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a buffer is needed while buffers already hold as much memory as the gateway may use.
+ */
+public class MemoryLimitExceededException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    public MemoryLimitExceededException(String message) {
+        super(message);
+    }
+}
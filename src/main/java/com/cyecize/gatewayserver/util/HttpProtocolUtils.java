@@ -1,176 +1,214 @@
-package com.cyecize.gatewayserver.util;
-
-import com.cyecize.gatewayserver.api.connection.Exchange;
-import com.cyecize.gatewayserver.api.server.Connection;
-import com.cyecize.gatewayserver.constants.General;
-import com.cyecize.gatewayserver.error.CannotParseRequestException;
-import com.cyecize.gatewayserver.error.EmptyRequestException;
-import lombok.extern.slf4j.Slf4j;
-
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.Socket;
-import java.net.SocketTimeoutException;
-import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
-@Slf4j
-public class HttpProtocolUtils {
-    public static List<String> parseMetadataLines(InputStream inputStream, boolean allowNewLineWithoutReturn)
-            throws CannotParseRequestException, EmptyRequestException {
-        try {
-            final List<String> metadataLines = new ArrayList<>();
-
-            StringBuilder metadataBuilder = new StringBuilder();
-            boolean wasNewLine = true;
-            int lineNumber = 1;
-            int readBytesCount = 0;
-            int b;
-
-            while ((b = inputStream.read()) >= 0) {
-                readBytesCount++;
-                if (b == '\r') {
-                    // expect new-line
-                    int next = inputStream.read();
-                    if (next < 0 || next == '\n') {
-                        lineNumber++;
-                        if (wasNewLine) break;
-                        metadataLines.add(metadataBuilder.toString());
-                        if (next < 0) break;
-                        metadataBuilder = new StringBuilder();
-                        wasNewLine = true;
-                    } else {
-                        inputStream.close();
-                        throw new CannotParseRequestException(
-                                String.format("Illegal character after return on line %d.", lineNumber)
-                        );
-                    }
-                } else if (b == '\n') {
-                    if (!allowNewLineWithoutReturn) {
-                        throw new CannotParseRequestException(
-                                String.format("Illegal new-line character without preceding return on line %d.", lineNumber)
-                        );
-                    }
-
-                    // unexpected, but let's accept new-line without returns
-                    lineNumber++;
-                    if (wasNewLine) break;
-                    metadataLines.add(metadataBuilder.toString());
-                    metadataBuilder = new StringBuilder();
-                    wasNewLine = true;
-                } else {
-                    metadataBuilder.append((char) b);
-                    wasNewLine = false;
-                }
-            }
-
-            if (metadataBuilder.length() > 0) {
-                metadataLines.add(metadataBuilder.toString());
-            }
-
-            if (readBytesCount < 2) {
-                throw new CannotParseRequestException("Request is empty");
-            }
-
-            return metadataLines;
-        } catch (IOException ex) {
-            if (ex instanceof SocketTimeoutException) {
-                throw new EmptyRequestException();
-            }
-
-            throw new CannotParseRequestException(ex.getMessage(), ex);
-        }
-    }
-
-    public static Map<String, String> getHeaders(List<String> requestMetadata) {
-        final Map<String, String> headers = new HashMap<>();
-        for (int i = 1; i < requestMetadata.size(); i++) {
-            final String[] headerKeyValuePair = requestMetadata.get(i).split(":\\s+");
-            headers.put(headerKeyValuePair[0], headerKeyValuePair[1]);
-        }
-
-        return headers;
-    }
-
-    public static int getContentLength(InputStream inputStream, Map<String, String> headers) throws IOException {
-        if (headers.containsKey("Content-Length")) {
-            return Integer.parseInt(headers.get("Content-Length"));
-        }
-
-        return inputStream.available();
-    }
-
-    public static String getHost(Socket socket, Map<String, String> headers) {
-        if (headers.containsKey("Host")) {
-            return headers.get("Host");
-        }
-
-        return socket.getInetAddress().getHostName();
-    }
-
-    /**
-     * First send the data that was already read.
-     * Then proceed to transfer the rest of the stream.
-     */
-    public static void transferHttpRequest(Exchange exchange) throws IOException {
-        final Connection clientConnection = exchange.getClientConnection();
-        final Connection serverConnection = exchange.getServerConnection();
-
-        final String metadataFormatted = String.join("\r\n", clientConnection.getRequestLines())
-                + "\r\n"
-                + "\r\n";
-
-        serverConnection.getSocket().getOutputStream().write(metadataFormatted.getBytes(StandardCharsets.UTF_8));
-
-        final byte[] bytes = new byte[General.READ_BUFFER_SIZE];
-        final InputStream inputStream = clientConnection.getSocket().getInputStream();
-        final OutputStream outputStream = serverConnection.getSocket().getOutputStream();
-
-        int contentLength = clientConnection.getContentLength();
-        while (contentLength > 0) {
-            final int read = inputStream.read(bytes, 0, Math.min(General.READ_BUFFER_SIZE, contentLength));
-            contentLength -= read;
-
-            if (read > 0) {
-                outputStream.write(bytes, 0, read);
-            }
-        }
-    }
-
-    /**
-     * Read the metadata first to try and get the content length of the body.
-     */
-    public static void transferHttpResponse(Exchange exchange) throws IOException {
-        final Connection clientConnection = exchange.getClientConnection();
-        final Connection serverConnection = exchange.getServerConnection();
-
-        if (!serverConnection.readRequestLines()) {
-            return;
-        }
-
-        int contentLength = serverConnection.getContentLength();
-
-        final String metadataFormatted = String.join("\r\n", serverConnection.getRequestLines())
-                + "\r\n"
-                + "\r\n";
-
-        final OutputStream outputStream = clientConnection.getSocket().getOutputStream();
-        final InputStream inputStream = serverConnection.getSocket().getInputStream();
-
-        outputStream.write(metadataFormatted.getBytes(StandardCharsets.UTF_8));
-
-        final byte[] bytes = new byte[General.READ_BUFFER_SIZE];
-        while (contentLength > 0) {
-            final int read = inputStream.read(bytes, 0, Math.min(General.READ_BUFFER_SIZE, contentLength));
-            contentLength -= read;
-
-            if (read > 0) {
-                outputStream.write(bytes, 0, read);
-            }
-        }
-    }
-}
+package com.cyecize.gatewayserver.util;
+
+import com.cyecize.gatewayserver.api.cache.CacheFill;
+import com.cyecize.gatewayserver.api.cache.CachedResponse;
+import com.cyecize.gatewayserver.api.compression.ResponseCompression;
+import com.cyecize.gatewayserver.api.connection.Exchange;
+import com.cyecize.gatewayserver.api.http.BodyFraming;
+import com.cyecize.gatewayserver.api.http.HttpHeaders;
+import com.cyecize.gatewayserver.api.server.Connection;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.Socket;
+
+@Slf4j
+public class HttpProtocolUtils {
+    /**
+     * A request with neither chunked coding nor Content-Length has no body. Requests with both are turned away
+     * before, see {@link HttpHeaders#validateRequest()}.
+     */
+    public static BodyFraming getRequestBodyFraming(HttpHeaders headers) {
+        if (headers.isChunked()) {
+            return BodyFraming.CHUNKED;
+        }
+
+        if (headers.hasContentLength()) {
+            return BodyFraming.CONTENT_LENGTH;
+        }
+
+        return BodyFraming.NONE;
+    }
+
+    /**
+     * Responses to HEAD and informational, 204 and 304 responses never have a body. A response with neither
+     * chunked coding nor Content-Length lasts until the server closes the connection.
+     */
+    public static BodyFraming getResponseBodyFraming(String requestMethod,
+                                                     int statusCode,
+                                                     HttpHeaders headers) {
+        // After switching protocols the connection does not carry HTTP messages anymore.
+        if (statusCode == 101) {
+            return BodyFraming.UNTIL_CLOSED;
+        }
+
+        if ("HEAD".equals(requestMethod) || isInformational(statusCode) || statusCode == 204 || statusCode == 304) {
+            return BodyFraming.NONE;
+        }
+
+        if (headers.isChunked()) {
+            return BodyFraming.CHUNKED;
+        }
+
+        if (headers.hasContentLength()) {
+            return BodyFraming.CONTENT_LENGTH;
+        }
+
+        return BodyFraming.UNTIL_CLOSED;
+    }
+
+    public static boolean isInformational(int statusCode) {
+        return statusCode / 100 == 1;
+    }
+
+    public static String getMethod(String requestLine) {
+        final int methodEnd = requestLine.indexOf(' ');
+        return methodEnd < 0 ? requestLine : requestLine.substring(0, methodEnd);
+    }
+
+    public static String getRequestTarget(String requestLine) {
+        final int targetStart = requestLine.indexOf(' ') + 1;
+        final int targetEnd = requestLine.indexOf(' ', targetStart);
+
+        return targetEnd < 0 ? requestLine.substring(targetStart) : requestLine.substring(targetStart, targetEnd);
+    }
+
+    /**
+     * @return status code of a status line like "HTTP/1.1 200 OK" or -1 if there is none.
+     */
+    public static int getStatusCode(String statusLine) {
+        final String[] parts = statusLine.split(" ", 3);
+        if (parts.length < 2) {
+            return -1;
+        }
+
+        try {
+            return Integer.parseInt(parts[1]);
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    public static boolean isKeepAlive(String startLine, String connection) {
+        if (connection != null) {
+            final String value = connection.toLowerCase();
+            if (value.contains("close")) {
+                return false;
+            }
+
+            if (value.contains("keep-alive")) {
+                return true;
+            }
+        }
+
+        return !startLine.contains("HTTP/1.0");
+    }
+
+    public static String getHost(Socket socket, HttpHeaders headers) {
+        final String host = headers.getHost();
+        if (host != null) {
+            return host;
+        }
+
+        // Without a Host header, the address that the client connected to, never a reverse lookup.
+        return socket.getLocalAddress().getHostAddress();
+    }
+
+    /**
+     * First send the head and the body bytes that were read together with it.
+     * Then proceed to transfer the rest of the stream.
+     * A request that revalidates a cached response gets the entity tag of that response as a condition.
+     */
+    public static void transferHttpRequest(Exchange exchange) throws IOException {
+        final Connection clientConnection = exchange.getClientConnection();
+        final Connection serverConnection = exchange.getServerConnection();
+
+        final CacheFill cacheFill = exchange.getCacheFill();
+        if (cacheFill != null && cacheFill.isRevalidating()) {
+            final byte[] head = cacheFill.createRevalidationHead();
+            serverConnection.getSocket().getOutputStream().write(head);
+            exchange.addBytesIn(head.length);
+        } else {
+            clientConnection.getHead().writeTo(serverConnection.getSocket().getOutputStream());
+            exchange.addBytesIn(clientConnection.getHead().getSize());
+        }
+
+        exchange.addBytesIn(
+                relayBody(clientConnection, serverConnection, clientConnection.getRequestBodyFraming())
+        );
+    }
+
+    /**
+     * Read the metadata first to find out how the body is framed.
+     * Responses that fill the cache are sent from the cache once stored, others may be compressed on the way.
+     *
+     * @return false if the server did not send a response.
+     */
+    public static boolean transferHttpResponse(Exchange exchange) throws IOException {
+        final Connection clientConnection = exchange.getClientConnection();
+        Connection serverConnection = exchange.getServerConnection();
+
+        if (!serverConnection.readRequestLines()) {
+            return false;
+        }
+        exchange.onResponseStarted();
+
+        // Interim responses like "100 Continue" are forwarded and followed by the actual one.
+        // Switching protocols is final, since nothing that follows it is HTTP.
+        while (isInformational(serverConnection.getStatusCode()) && serverConnection.getStatusCode() != 101) {
+            serverConnection.getHead().writeTo(clientConnection.getSocket().getOutputStream());
+            exchange.addBytesOut(serverConnection.getHead().getSize());
+
+            serverConnection = exchange.nextServerConnection();
+            if (!serverConnection.readRequestLines()) {
+                return false;
+            }
+        }
+
+        final CacheFill cacheFill = exchange.getCacheFill();
+        if (cacheFill != null) {
+            final CachedResponse cachedResponse = cacheFill.complete(serverConnection);
+            if (cachedResponse != null) {
+                exchange.addBytesOut(
+                        cachedResponse.writeTo(clientConnection, System.currentTimeMillis())
+                );
+                return true;
+            }
+        }
+
+        final ResponseCompression responseCompression = exchange.getResponseCompression();
+        if (responseCompression != null && responseCompression.canCompress(serverConnection)) {
+            exchange.addBytesOut(responseCompression.relay(serverConnection, clientConnection));
+            return true;
+        }
+
+        serverConnection.getHead().writeTo(clientConnection.getSocket().getOutputStream());
+        exchange.addBytesOut(serverConnection.getHead().getSize());
+
+        exchange.addBytesOut(relayBody(
+                serverConnection,
+                clientConnection,
+                serverConnection.getResponseBodyFraming(clientConnection.getMethod())
+        ));
+
+        return true;
+    }
+
+    /**
+     * @return the number of relayed body bytes.
+     */
+    private static long relayBody(Connection source, Connection target, BodyFraming framing) throws IOException {
+        switch (framing) {
+            case CONTENT_LENGTH:
+                return RelayUtils.relay(
+                        source.getHeadReader(), source.getSocket(), target.getSocket(), source.getContentLength()
+                );
+            case CHUNKED:
+                return RelayUtils.relayChunked(source.getHeadReader(), source.getSocket(), target.getSocket());
+            case UNTIL_CLOSED:
+                return RelayUtils.relayUntilClosed(source.getHeadReader(), source.getSocket(), target.getSocket());
+            default:
+                return 0;
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package com.cyecize.gatewayserver.util;
+
+import com.cyecize.gatewayserver.api.buffer.BufferPool;
+import com.cyecize.gatewayserver.api.buffer.MemoryAccount;
+import com.cyecize.gatewayserver.api.http.BodyFraming;
+import com.cyecize.gatewayserver.api.http.HttpHeadReader;
+import com.cyecize.gatewayserver.constants.General;
+import com.cyecize.gatewayserver.error.CannotParseRequestException;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Moves message bodies between sockets without allocating a buffer per message.
+ * <p>
+ * When both sockets are backed by channels, bytes go through pooled direct buffers and never reach the java heap.
+ * Sockets without a channel, like {@link javax.net.ssl.SSLSocket}, and sockets with a read timeout fall back to
+ * streams with a pooled array, since channel reads ignore socket timeouts. Client sessions remove the read timeout
+ * once the head of their first request is read, so only TLS clients take the stream path. Buffers come from the
+ * {@link BufferPool} of the source reader and are charged to its memory account, if there is one.
+ */
+public class RelayUtils {
+
+    /**
+     * Transfers exactly {@code length} bytes from source to target.
+     *
+     * @return the number of transferred bytes.
+     * @throws EOFException if source is closed before that.
+     */
+    public static long relay(Socket source, Socket target, long length, BufferPool bufferPool) throws IOException {
+        if (length <= 0) {
+            return 0;
+        }
+
+        return relay(source, target, length, false, bufferPool, null);
+    }
+
+    /**
+     * Same as {@link #relay(Socket, Socket, long, BufferPool)}, but starts with the bytes that the reader has
+     * buffered.
+     */
+    public static long relay(HttpHeadReader sourceReader, Socket source, Socket target, long length)
+            throws IOException {
+        final int drained = sourceReader.drainTo(target.getOutputStream(), length);
+        if (length - drained <= 0) {
+            return drained;
+        }
+
+        return drained + relay(
+                source, target, length - drained, false, sourceReader.getBufferPool(), sourceReader.getMemoryAccount()
+        );
+    }
+
+    /**
+     * Transfers everything until source is closed, used for bodies that are delimited by closing the connection.
+     */
+    public static long relayUntilClosed(HttpHeadReader sourceReader, Socket source, Socket target)
+            throws IOException {
+        final int drained = sourceReader.drainTo(target.getOutputStream(), Long.MAX_VALUE);
+        return drained + relay(
+                source, target, Long.MAX_VALUE, true, sourceReader.getBufferPool(), sourceReader.getMemoryAccount()
+        );
+    }
+
+    /**
+     * Forwards a chunked body as is, chunk by chunk as they arrive, while following chunk sizes to find the end
+     * of the body. Chunks and trailers are not buffered as a whole.
+     */
+    public static long relayChunked(HttpHeadReader sourceReader, Socket source, Socket target) throws IOException {
+        final OutputStream outputStream = target.getOutputStream();
+        long transferred = 0;
+
+        long chunkSize;
+        do {
+            final String sizeLine = sourceReader.readLine();
+            chunkSize = parseChunkSize(sizeLine);
+            transferred += writeLine(outputStream, sizeLine);
+
+            if (chunkSize > 0) {
+                transferred += relay(sourceReader, source, target, chunkSize);
+                if (!sourceReader.readLine().isEmpty()) {
+                    throw new CannotParseRequestException("Chunk is longer than its size.");
+                }
+                transferred += writeLine(outputStream, "");
+            }
+        } while (chunkSize > 0);
+
+        // Trailer fields, if any, and the empty line that ends the body.
+        for (int lineCount = 0; ; lineCount++) {
+            if (lineCount > General.MAX_HEAD_LINES) {
+                throw new CannotParseRequestException(String.format(
+                        "Trailer exceeds %d lines.", General.MAX_HEAD_LINES
+                ));
+            }
+
+            final String trailerLine = sourceReader.readLine();
+            transferred += writeLine(outputStream, trailerLine);
+
+            if (trailerLine.isEmpty()) {
+                return transferred;
+            }
+        }
+    }
+
+    /**
+     * Decodes a body into a stream instead of forwarding it as is, chunk sizes and trailer fields are dropped.
+     *
+     * @param contentLength length of a body framed by Content-Length, ignored otherwise.
+     * @return the number of content bytes.
+     */
+    public static long transferContent(HttpHeadReader sourceReader,
+                                       Socket source,
+                                       BodyFraming framing,
+                                       long contentLength,
+                                       OutputStream target) throws IOException {
+        switch (framing) {
+            case CONTENT_LENGTH:
+                return transferContent(sourceReader, source, contentLength, target);
+            case CHUNKED:
+                break;
+            case UNTIL_CLOSED:
+                final int drained = sourceReader.drainTo(target, Long.MAX_VALUE);
+                return drained + relayStreams(
+                        source.getInputStream(),
+                        target,
+                        Long.MAX_VALUE,
+                        true,
+                        sourceReader.getBufferPool(),
+                        sourceReader.getMemoryAccount()
+                );
+            default:
+                return 0;
+        }
+
+        long transferred = 0;
+        long chunkSize;
+        while ((chunkSize = parseChunkSize(sourceReader.readLine())) > 0) {
+            transferred += transferContent(sourceReader, source, chunkSize, target);
+            if (!sourceReader.readLine().isEmpty()) {
+                throw new CannotParseRequestException("Chunk is longer than its size.");
+            }
+        }
+
+        for (int lineCount = 0; !sourceReader.readLine().isEmpty(); lineCount++) {
+            if (lineCount >= General.MAX_HEAD_LINES) {
+                throw new CannotParseRequestException(String.format(
+                        "Trailer exceeds %d lines.", General.MAX_HEAD_LINES
+                ));
+            }
+        }
+
+        return transferred;
+    }
+
+    /**
+     * Reads until the buffer is full, starting with the bytes that the reader has buffered.
+     *
+     * @throws EOFException if source is closed before that.
+     */
+    public static void readFully(HttpHeadReader sourceReader, Socket source, ByteBuffer target) throws IOException {
+        sourceReader.drainTo(target);
+
+        final SocketChannel channel = source.getChannel();
+        if (channel != null && channel.isBlocking() && source.getSoTimeout() == 0) {
+            while (target.hasRemaining()) {
+                if (channel.read(target) < 0) {
+                    throw createEofException(target.remaining());
+                }
+            }
+            return;
+        }
+
+        final InputStream inputStream = source.getInputStream();
+        final BufferPool bufferPool = sourceReader.getBufferPool();
+        final MemoryAccount account = sourceReader.getMemoryAccount();
+        final byte[] bytes = bufferPool.acquireHeap(General.READ_BUFFER_SIZE, account);
+        try {
+            while (target.hasRemaining()) {
+                final int read = inputStream.read(bytes, 0, Math.min(bytes.length, target.remaining()));
+                if (read < 0) {
+                    throw createEofException(target.remaining());
+                }
+                target.put(bytes, 0, read);
+            }
+        } finally {
+            bufferPool.releaseHeap(bytes, account);
+        }
+    }
+
+    /**
+     * Writes the remaining bytes of a buffer that may live outside of the java heap, e.g. a cached body.
+     *
+     * @return the number of written bytes.
+     */
+    public static long write(ByteBuffer source, Socket target, BufferPool bufferPool) throws IOException {
+        final int length = source.remaining();
+
+        final SocketChannel channel = target.getChannel();
+        if (channel != null && channel.isBlocking()) {
+            while (source.hasRemaining()) {
+                channel.write(source);
+            }
+            return length;
+        }
+
+        final OutputStream outputStream = target.getOutputStream();
+        final byte[] bytes = bufferPool.acquireHeap(General.READ_BUFFER_SIZE, null);
+        try {
+            while (source.hasRemaining()) {
+                final int count = Math.min(bytes.length, source.remaining());
+                source.get(bytes, 0, count);
+                outputStream.write(bytes, 0, count);
+            }
+        } finally {
+            bufferPool.releaseHeap(bytes, null);
+        }
+
+        return length;
+    }
+
+    private static long transferContent(HttpHeadReader sourceReader, Socket source, long length, OutputStream target)
+            throws IOException {
+        final int drained = sourceReader.drainTo(target, length);
+        return drained + relayStreams(
+                source.getInputStream(),
+                target,
+                length - drained,
+                false,
+                sourceReader.getBufferPool(),
+                sourceReader.getMemoryAccount()
+        );
+    }
+
+    private static long parseChunkSize(String sizeLine) throws CannotParseRequestException {
+        final int extensionIndex = sizeLine.indexOf(';');
+        final String size = (extensionIndex < 0 ? sizeLine : sizeLine.substring(0, extensionIndex)).trim();
+
+        try {
+            final long chunkSize = Long.parseLong(size, 16);
+            if (chunkSize < 0) {
+                throw new NumberFormatException();
+            }
+            return chunkSize;
+        } catch (NumberFormatException ex) {
+            throw new CannotParseRequestException(String.format("Invalid chunk size '%s'.", size));
+        }
+    }
+
+    private static int writeLine(OutputStream outputStream, String line) throws IOException {
+        final byte[] bytes = (line + "\r\n").getBytes(StandardCharsets.ISO_8859_1);
+        outputStream.write(bytes);
+        return bytes.length;
+    }
+
+    private static long relay(Socket source,
+                              Socket target,
+                              long length,
+                              boolean untilClosed,
+                              BufferPool bufferPool,
+                              MemoryAccount account) throws IOException {
+        if (canRelayChannels(source, target)) {
+            return relayChannels(
+                    source.getChannel(), target.getChannel(), length, untilClosed, bufferPool, account
+            );
+        }
+
+        return relayStreams(
+                source.getInputStream(), target.getOutputStream(), length, untilClosed, bufferPool, account
+        );
+    }
+
+    private static boolean canRelayChannels(Socket source, Socket target) throws SocketException {
+        final SocketChannel sourceChannel = source.getChannel();
+        final SocketChannel targetChannel = target.getChannel();
+
+        return sourceChannel != null && targetChannel != null
+                && sourceChannel.isBlocking() && targetChannel.isBlocking()
+                && source.getSoTimeout() == 0;
+    }
+
+    private static long relayChannels(SocketChannel source,
+                                      SocketChannel target,
+                                      long length,
+                                      boolean untilClosed,
+                                      BufferPool bufferPool,
+                                      MemoryAccount account) throws IOException {
+        final ByteBuffer buffer = bufferPool.acquireDirect(General.READ_BUFFER_SIZE, account);
+        try {
+            long remaining = length;
+            while (remaining > 0) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), remaining));
+
+                final int read = source.read(buffer);
+                if (read < 0) {
+                    if (untilClosed) {
+                        return length - remaining;
+                    }
+                    throw createEofException(remaining);
+                }
+                remaining -= read;
+
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    target.write(buffer);
+                }
+            }
+
+            return length;
+        } finally {
+            bufferPool.releaseDirect(buffer, account);
+        }
+    }
+
+    private static long relayStreams(InputStream source,
+                                     OutputStream target,
+                                     long length,
+                                     boolean untilClosed,
+                                     BufferPool bufferPool,
+                                     MemoryAccount account) throws IOException {
+        final byte[] bytes = bufferPool.acquireHeap(General.READ_BUFFER_SIZE, account);
+        try {
+            long remaining = length;
+            while (remaining > 0) {
+                final int read = source.read(bytes, 0, (int) Math.min(bytes.length, remaining));
+                if (read < 0) {
+                    if (untilClosed) {
+                        return length - remaining;
+                    }
+                    throw createEofException(remaining);
+                }
+                remaining -= read;
+
+                target.write(bytes, 0, read);
+            }
+
+            return length;
+        } finally {
+            bufferPool.releaseHeap(bytes, account);
+        }
+    }
+
+    private static EOFException createEofException(long remaining) {
+        return new EOFException(String.format("Connection closed with %d bytes of the body remaining.", remaining));
+    }
+}
@@ -0,0 +1,64 @@
+package com.cyecize.gatewayserver.api.http;
+
+import com.cyecize.gatewayserver.constants.General;
+import com.cyecize.gatewayserver.error.CannotParseRequestException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HttpHeadersTest {
+
+    @Test
+    void validateRequest_acceptsValidFields() {
+        final HttpHeaders headers = parse("POST / HTTP/1.1\r\nHost: site.test\r\nTransfer-Encoding: chunked\r\n\r\n");
+
+        assertDoesNotThrow(headers::validateRequest);
+        assertEquals("site.test", headers.getHost());
+    }
+
+    @Test
+    void validateRequest_rejectsWhitespaceBeforeColon() {
+        final HttpHeaders headers = parse("POST / HTTP/1.1\r\nHost: site.test\r\nTransfer-Encoding : chunked\r\n\r\n");
+
+        assertThrows(CannotParseRequestException.class, headers::validateRequest);
+        assertNull(headers.getTransferEncoding());
+    }
+
+    @Test
+    void validateRequest_rejectsLineWithoutColon() {
+        final HttpHeaders headers = parse("GET / HTTP/1.1\r\nHost: site.test\r\nX-Forwarded-For 10.0.0.1\r\n\r\n");
+
+        assertThrows(CannotParseRequestException.class, headers::validateRequest);
+    }
+
+    @Test
+    void validateRequest_rejectsFoldedLine() {
+        final HttpHeaders headers = parse("GET / HTTP/1.1\r\nHost: site.test\r\nX-Test: a\r\n b\r\n\r\n");
+
+        assertThrows(CannotParseRequestException.class, headers::validateRequest);
+    }
+
+    @Test
+    void validate_allowsInvalidLinesInResponses() {
+        final HttpHeaders headers = parse("HTTP/1.1 200 OK\r\nContent-Length: 3\r\nBroken\r\n\r\n");
+
+        assertDoesNotThrow(headers::validate);
+        assertEquals(3, headers.getContentLength());
+    }
+
+    private static HttpHeaders parse(String head) {
+        final byte[] bytes = head.getBytes(StandardCharsets.ISO_8859_1);
+        final HttpHeadParser parser = new HttpHeadParser(General.MAX_HEAD_SIZE, General.MAX_HEAD_LINES);
+
+        try {
+            return parser.toHead(bytes, parser.scan(bytes, bytes.length)).getHeaders();
+        } catch (CannotParseRequestException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}